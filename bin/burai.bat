@@ -28,5 +28,11 @@ if not exist "%JAVAFX_LIB_PATH%" (
     exit /b 1
 )
 
+REM Batch mode runs without display: burai.bat batch <command> [options] <project>...
+if /i "%~1"=="batch" (
+    for /f "tokens=1,* delims= " %%a in ("%*") do java -Djava.awt.headless=true --module-path "%JAVAFX_LIB_PATH%" --add-modules javafx.base,javafx.graphics -cp "%SCRIPT_DIR%burai.jar" burai.batch.BatchMain %%b
+    exit /b %ERRORLEVEL%
+)
+
 REM Launch BURAI with JavaFX modules
 java --module-path "%JAVAFX_LIB_PATH%" --add-modules javafx.controls,javafx.fxml,javafx.web,javafx.media,javafx.swing -jar "%SCRIPT_DIR%burai.jar" %*
@@ -25,6 +25,7 @@ import java.util.Queue;
 import java.util.ResourceBundle;
 
 import burai.app.about.QEFXAboutDialog;
+import burai.app.daemon.QEFXDaemonDialog;
 import burai.app.explorer.QEFXExplorer;
 import burai.app.explorer.QEFXExplorerFacade;
 import burai.app.icon.QEFXFolderIcon;
@@ -129,6 +130,9 @@ public class QEFXMainController implements Initializable {
     @FXML
     private MenuItem proxyMItem;
 
+    @FXML
+    private MenuItem daemonMItem;
+
     @FXML
     private MenuItem remoteMItem;
 
@@ -308,6 +312,13 @@ public class QEFXMainController implements Initializable {
             });
         }
 
+        if (this.daemonMItem != null) {
+            this.daemonMItem.setOnAction(event -> {
+                QEFXDaemonDialog dialog = new QEFXDaemonDialog();
+                dialog.showAndSetProperties();
+            });
+        }
+
         if (this.remoteMItem != null) {
             this.remoteMItem.setOnAction(event -> {
                 QEFXSSHDialog dialog = new QEFXSSHDialog(this);
@@ -0,0 +1,351 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.app.daemon;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.ResourceBundle;
+
+import burai.app.QEFXMain;
+import burai.run.daemon.DaemonClient;
+import burai.run.daemon.DaemonJob;
+import burai.run.daemon.DaemonResponse;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.fxml.Initializable;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.DialogPane;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+
+public class QEFXDaemonDialog extends Dialog<ButtonType> implements Initializable {
+
+    private static final long REFRESH_INTERVAL = 2000L;
+
+    @FXML
+    private CheckBox daemonCheck;
+
+    @FXML
+    private Label statusLabel;
+
+    @FXML
+    private Button startButton;
+
+    @FXML
+    private Button stopButton;
+
+    @FXML
+    private ListView<DaemonJob> jobList;
+
+    @FXML
+    private Button cancelButton;
+
+    @FXML
+    private Button upButton;
+
+    @FXML
+    private Button downButton;
+
+    private volatile boolean showing;
+
+    public QEFXDaemonDialog() {
+        super();
+
+        DialogPane dialogPane = this.getDialogPane();
+        QEFXMain.initializeStyleSheets(dialogPane.getStylesheets());
+        QEFXMain.initializeDialogOwner(this);
+
+        this.setResizable(false);
+        this.setTitle("Job daemon");
+        dialogPane.setHeaderText("Jobs on the daemon keep running after BURAI is closed.");
+        dialogPane.getButtonTypes().clear();
+        dialogPane.getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        Node node = null;
+        try {
+            node = this.createContent();
+        } catch (Exception e) {
+            node = new Label("ERROR: cannot show QEFXDaemonDialog.");
+            e.printStackTrace();
+        }
+
+        dialogPane.setContent(node);
+
+        this.setResultConverter(buttonType -> {
+            return buttonType;
+        });
+
+        this.showing = false;
+    }
+
+    private Node createContent() throws IOException {
+        FXMLLoader fxmlLoader = new FXMLLoader(this.getClass().getResource("QEFXDaemonDialog.fxml"));
+        fxmlLoader.setController(this);
+        return fxmlLoader.load();
+    }
+
+    @Override
+    public void initialize(URL location, ResourceBundle resources) {
+        this.setupDaemonCheck();
+        this.setupStartButton();
+        this.setupStopButton();
+        this.setupCancelButton();
+        this.setupUpButton();
+        this.setupDownButton();
+    }
+
+    private void setupDaemonCheck() {
+        if (this.daemonCheck == null) {
+            return;
+        }
+
+        this.daemonCheck.setSelected(DaemonClient.isEnabled());
+    }
+
+    private void setupStartButton() {
+        if (this.startButton == null) {
+            return;
+        }
+
+        this.startButton.setOnAction(event -> {
+            this.startButton.setDisable(true);
+            this.updateStatus("starting the daemon ...");
+
+            Thread thread = new Thread(() -> {
+                DaemonClient.startDaemon();
+                this.refreshJobs();
+            });
+
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    private void setupStopButton() {
+        if (this.stopButton == null) {
+            return;
+        }
+
+        this.stopButton.setOnAction(event -> {
+            this.stopButton.setDisable(true);
+            this.requestDaemon(client -> client.shutdown());
+        });
+    }
+
+    private void setupCancelButton() {
+        if (this.cancelButton == null) {
+            return;
+        }
+
+        this.cancelButton.setOnAction(event -> {
+            DaemonJob job = this.getSelectedJob();
+            if (job != null) {
+                this.requestDaemon(client -> client.cancel(job.getId()));
+            }
+        });
+    }
+
+    private void setupUpButton() {
+        if (this.upButton == null) {
+            return;
+        }
+
+        this.upButton.setOnAction(event -> {
+            this.moveSelectedJob(-1);
+        });
+    }
+
+    private void setupDownButton() {
+        if (this.downButton == null) {
+            return;
+        }
+
+        this.downButton.setOnAction(event -> {
+            this.moveSelectedJob(1);
+        });
+    }
+
+    private DaemonJob getSelectedJob() {
+        if (this.jobList == null) {
+            return null;
+        }
+
+        return this.jobList.getSelectionModel().getSelectedItem();
+    }
+
+    private void moveSelectedJob(int delta) {
+        DaemonJob job = this.getSelectedJob();
+        if (job == null || !DaemonJob.STATUS_QUEUED.equals(job.getStatus())) {
+            return;
+        }
+
+        // index among the queued jobs
+        int index = -1;
+        for (DaemonJob job2 : this.jobList.getItems()) {
+            if (DaemonJob.STATUS_QUEUED.equals(job2.getStatus())) {
+                index++;
+            }
+            if (job2 == job) {
+                break;
+            }
+        }
+
+        int index2 = Math.max(0, index + delta);
+        this.requestDaemon(client -> client.move(job.getId(), index2));
+    }
+
+    @FunctionalInterface
+    private interface DaemonRequester {
+        public abstract DaemonResponse request(DaemonClient client) throws IOException;
+    }
+
+    private void requestDaemon(DaemonRequester requester) {
+        Thread thread = new Thread(() -> {
+            DaemonClient client = DaemonClient.getClient();
+            if (client != null) {
+                try {
+                    requester.request(client);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            this.refreshJobs();
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void refreshJobs() {
+        DaemonClient client = DaemonClient.getClient();
+
+        DaemonResponse response = null;
+        if (client != null) {
+            try {
+                response = client.list();
+            } catch (IOException e) {
+                response = null;
+            }
+        }
+
+        final DaemonResponse response_ = response;
+
+        Platform.runLater(() -> {
+            boolean running = response_ != null && response_.isSuccess();
+
+            if (this.startButton != null) {
+                this.startButton.setDisable(running);
+            }
+
+            if (this.stopButton != null) {
+                this.stopButton.setDisable(!running);
+            }
+
+            if (running) {
+                this.updateStatus("running, " + response_.getNumUsedCores() + " / " + response_.getNumCores() + " cores");
+            } else {
+                this.updateStatus("not running");
+            }
+
+            this.updateJobs(running ? response_.getJobs() : null);
+        });
+    }
+
+    private void updateStatus(String text) {
+        if (this.statusLabel != null) {
+            this.statusLabel.setText(text == null ? "" : text);
+        }
+    }
+
+    private void updateJobs(List<DaemonJob> jobs) {
+        if (this.jobList == null) {
+            return;
+        }
+
+        DaemonJob selectedJob = this.getSelectedJob();
+
+        List<DaemonJob> jobs2 = new ArrayList<DaemonJob>();
+        if (jobs != null) {
+            for (DaemonJob job : jobs) {
+                if (job != null) {
+                    jobs2.add(job);
+                }
+            }
+        }
+
+        this.jobList.getItems().setAll(jobs2);
+
+        if (selectedJob != null) {
+            for (DaemonJob job : jobs2) {
+                if (job.getId() == selectedJob.getId()) {
+                    this.jobList.getSelectionModel().select(job);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void startRefreshing() {
+        this.showing = true;
+
+        Thread thread = new Thread(() -> {
+            while (this.showing) {
+                this.refreshJobs();
+
+                try {
+                    Thread.sleep(REFRESH_INTERVAL);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void showAndSetProperties() {
+        this.startRefreshing();
+
+        Optional<ButtonType> optButtonType = null;
+        try {
+            optButtonType = this.showAndWait();
+        } finally {
+            this.showing = false;
+        }
+
+        if (optButtonType == null || !optButtonType.isPresent()) {
+            return;
+        }
+        if (optButtonType.get() != ButtonType.OK) {
+            return;
+        }
+
+        if (this.daemonCheck != null) {
+            DaemonClient.setEnabled(this.daemonCheck.isSelected());
+        }
+    }
+}
@@ -30,6 +30,10 @@ import burai.run.RunningNode;
 import burai.run.RunningStatus;
 import burai.run.RunningStatusChanged;
 import burai.run.RunningType;
+import burai.run.telemetry.TelemetryChanged;
+import burai.run.telemetry.TelemetryManager;
+import burai.run.telemetry.TelemetrySample;
+import burai.run.telemetry.TelemetrySeries;
 
 public class QEFXRunningIcon extends QEFXProjectIcon implements RunningStatusChanged {
 
@@ -48,6 +52,10 @@ public class QEFXRunningIcon extends QEFXProjectIcon implements RunningStatusCha
 
     private RunningNode runningNode;
 
+    private TelemetrySeries telemetrySeries;
+
+    private TelemetryChanged onTelemetryChanged;
+
     public QEFXRunningIcon(Project project, RunningNode runningNode) {
         super(project);
 
@@ -60,6 +68,17 @@ public class QEFXRunningIcon extends QEFXProjectIcon implements RunningStatusCha
         this.labelBase = null;
         this.runningNode = runningNode;
         this.runningNode.addOnStatusChanged(this);
+
+        this.telemetrySeries = TelemetryManager.getInstance().getSeries(project);
+        this.onTelemetryChanged = series -> {
+            RunningNode runningNode2 = this.runningNode;
+            if (runningNode2 != null) {
+                this.onRunningStatusChanged(runningNode2.getStatus());
+            }
+        };
+        if (this.telemetrySeries != null) {
+            this.telemetrySeries.addOnChanged(this.onTelemetryChanged);
+        }
     }
 
     public RunningNode getRunningNode() {
@@ -72,6 +91,10 @@ public class QEFXRunningIcon extends QEFXProjectIcon implements RunningStatusCha
 
         this.runningNode.removeOnStatusChanged(this);
 
+        if (this.telemetrySeries != null) {
+            this.telemetrySeries.removeOnChanged(this.onTelemetryChanged);
+        }
+
         this.labelText = null;
         this.labelBase = null;
         this.runningNode = null;
@@ -156,6 +179,10 @@ public class QEFXRunningIcon extends QEFXProjectIcon implements RunningStatusCha
             this.labelText.setStyle(strFontSize + "-fx-text-fill: derive(black, 20.0%)");
             this.labelBase.setStyle("-fx-background-color: derive(yellow, 5.0%)");
 
+        } else if (RunningStatus.RUNNING.equals(runningStatus) && this.getTelemetryWarning() != null) {
+            this.labelText.setStyle(strFontSize + "-fx-text-fill: derive(black, 20.0%)");
+            this.labelBase.setStyle("-fx-background-color: derive(orange, 5.0%)");
+
         } else if (RunningStatus.RUNNING.equals(runningStatus)) {
             this.labelText.setStyle(strFontSize + "-fx-text-fill: derive(lightgray, 20.0%)");
             this.labelBase.setStyle("-fx-background-color: derive(red, -10.0%)");
@@ -201,9 +228,24 @@ public class QEFXRunningIcon extends QEFXProjectIcon implements RunningStatusCha
         runningCaption = runningCaption + "#thread: " + numThread + " )";
 
         caption = caption + System.lineSeparator() + runningCaption;
+
+        TelemetrySample sample = this.telemetrySeries == null ? null : this.telemetrySeries.getLastSample();
+        if (RunningStatus.RUNNING.equals(runningStatus) && sample != null) {
+            caption = caption + System.lineSeparator() + "( " + sample.toString() + " )";
+
+            String warning = this.getTelemetryWarning();
+            if (warning != null) {
+                caption = caption + System.lineSeparator() + "Warning: " + warning + ".";
+            }
+        }
+
         return caption;
     }
 
+    private String getTelemetryWarning() {
+        return this.telemetrySeries == null ? null : this.telemetrySeries.getWarning();
+    }
+
     @Override
     public void onRunningStatusChanged(RunningStatus runningStatus) {
         Platform.runLater(() -> {
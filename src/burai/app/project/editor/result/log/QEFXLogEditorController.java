@@ -16,8 +16,6 @@
 
 package burai.app.project.editor.result.log;
 
-import java.util.List;
-
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextArea;
@@ -102,22 +100,17 @@ public class QEFXLogEditorController extends QEFXResultEditorController<QEFXLogV
             text = text.trim();
         }
 
-        List<String> searchedList = null;
-        if (this.viewerController != null) {
-            searchedList = this.viewerController.searchText(text);
+        if (this.searchArea != null) {
+            this.searchArea.setText("");
         }
 
-        if (this.searchArea == null) {
-            return;
-        }
-
-        this.searchArea.setText("");
-        if (searchedList != null) {
-            for (String searchedStr : searchedList) {
-                if (searchedStr != null) {
-                    this.searchArea.appendText(searchedStr + System.lineSeparator());
+        if (this.viewerController != null) {
+            this.viewerController.searchText(text, (index, line) -> {
+                if (this.searchArea != null && line != null) {
+                    this.searchArea.appendText(line + System.lineSeparator());
                 }
-            }
+                return true;
+            });
         }
     }
 }
@@ -32,6 +32,7 @@ import burai.app.project.viewer.run.RunAction;
 import burai.app.project.viewer.run.RunEvent;
 import burai.app.project.viewer.save.SaveAction;
 import burai.app.project.viewer.screenshot.QEFXScreenshotDialog;
+import burai.app.project.viewer.sweep.SweepAction;
 import burai.project.Project;
 import javafx.scene.Node;
 import javafx.scene.control.ButtonType;
@@ -48,6 +49,8 @@ public class ViewerActions extends ProjectActions<Node> {
 
     private ResultAction resultAction;
 
+    private SweepAction sweepAction;
+
     public ViewerActions(Project project, QEFXProjectController controller) {
         super(project, controller);
 
@@ -57,6 +60,7 @@ public class ViewerActions extends ProjectActions<Node> {
         this.modelerAction = null;
         this.designerAction = null;
         this.resultAction = null;
+        this.sweepAction = null;
 
         this.setupOnViewerSelected();
         this.setupActions();
@@ -140,6 +144,9 @@ public class ViewerActions extends ProjectActions<Node> {
             } else if (item == this.itemSet.getRunItem()) {
                 this.actions.put(item, controller2 -> this.actionRun(controller2));
 
+            } else if (item == this.itemSet.getSweepItem()) {
+                this.actions.put(item, controller2 -> this.actionSweep(controller2));
+
             } else if (item == this.itemSet.getResultItem()) {
                 this.actions.put(item, controller2 -> this.actionResult(controller2));
             }
@@ -259,6 +266,26 @@ public class ViewerActions extends ProjectActions<Node> {
         }
     }
 
+    private void actionSweep(QEFXProjectController controller) {
+        if (controller == null) {
+            return;
+        }
+
+        if (this.project.getDirectoryPath() == null && !this.actionSaveFile(controller)) {
+            return;
+        }
+
+        this.project.resolveQEInputs();
+
+        if (this.sweepAction == null || controller != this.sweepAction.getController()) {
+            this.sweepAction = new SweepAction(this.project, controller);
+        }
+
+        if (this.sweepAction != null) {
+            this.sweepAction.showSweep();
+        }
+    }
+
     private void actionResult(QEFXProjectController controller) {
         if (controller == null) {
             return;
@@ -28,6 +28,7 @@ public class ViewerItemSet {
     private ViewerItem designerItem;
     private ViewerItem screenShotItem;
     private ViewerItem runItem;
+    private ViewerItem sweepItem;
     private ViewerItem resultItem;
 
     public ViewerItemSet() {
@@ -39,6 +40,7 @@ public class ViewerItemSet {
         this.designerItem = new ViewerItem(SVGData.COLORS, "Designer");
         this.screenShotItem = new ViewerItem(SVGData.CAMERA, "Screen-shot");
         this.runItem = new ViewerItem(SVGData.RUN, "Run");
+        this.sweepItem = new ViewerItem(SVGData.CALCULATOR, "Sweep");
         this.resultItem = new ViewerItem(SVGData.RESULT, "Result");
     }
 
@@ -52,6 +54,7 @@ public class ViewerItemSet {
                 this.designerItem,
                 this.screenShotItem,
                 this.runItem,
+                this.sweepItem,
                 this.resultItem
         };
     }
@@ -88,6 +91,10 @@ public class ViewerItemSet {
         return this.runItem;
     }
 
+    public ViewerItem getSweepItem() {
+        return this.sweepItem;
+    }
+
     public ViewerItem getResultItem() {
         return this.resultItem;
     }
@@ -41,13 +41,18 @@ import burai.app.project.viewer.result.graph.QEFXOptEnergyButton;
 import burai.app.project.viewer.result.graph.QEFXOptForceButton;
 import burai.app.project.viewer.result.graph.QEFXOptLatticeButton;
 import burai.app.project.viewer.result.graph.QEFXOptStressButton;
+import burai.app.project.viewer.result.graph.QEFXScfAccuracyButton;
 import burai.app.project.viewer.result.graph.QEFXScfButton;
+import burai.app.project.viewer.result.graph.QEFXTelemetryButton;
+import burai.app.project.viewer.result.graph.TelemetryType;
 import burai.app.project.viewer.result.log.QEFXCrashButton;
 import burai.app.project.viewer.result.log.QEFXErrorButton;
 import burai.app.project.viewer.result.log.QEFXInputButton;
 import burai.app.project.viewer.result.log.QEFXOutputButton;
 import burai.app.project.viewer.result.movie.QEFXMdMovieButton;
 import burai.app.project.viewer.result.movie.QEFXOptMovieButton;
+import burai.com.file.FileChanged;
+import burai.com.file.FileWatcher;
 import burai.com.keys.PriorKeyEvent;
 import burai.project.Project;
 import burai.run.RunningManager;
@@ -71,6 +76,8 @@ public class QEFXResultExplorer {
 
     private boolean autoReloading;
 
+    private boolean fileChanged;
+
     private ScrollPane scrollPane;
 
     private TilePane tilePane;
@@ -91,6 +98,7 @@ public class QEFXResultExplorer {
         this.buttonMap = null;
 
         this.autoReloading = false;
+        this.fileChanged = false;
 
         this.createScrollPane();
         this.createTilePane();
@@ -151,6 +159,7 @@ public class QEFXResultExplorer {
         this.updateMdButtons();
         this.updateDosButtons();
         this.updateBandButtons();
+        this.updateTelemetryButtons();
 
         int numNode1 = this.buttonList == null ? 0 : this.buttonList.size();
         int numNode2 = this.tilePane.getChildren().size();
@@ -187,18 +196,40 @@ public class QEFXResultExplorer {
     }
 
     private void autoReload() {
+        File directory = this.project.getDirectory();
+
+        FileChanged onFileChanged = file -> {
+            synchronized (this) {
+                this.fileChanged = true;
+                this.notifyAll();
+            }
+        };
+
         Thread thread = new Thread(() -> {
             synchronized (this) {
-                while (RunningManager.getInstance().getNode(this.project) != null) {
+                if (directory != null) {
+                    FileWatcher.getInstance().addListener(directory, null, onFileChanged);
+                }
+
+                boolean running = RunningManager.getInstance().getNode(this.project) != null;
+                while (running) {
                     try {
                         this.wait(AUTORELOADING_TIME);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
 
-                    Platform.runLater(() -> this.reload());
+                    running = RunningManager.getInstance().getNode(this.project) != null;
+
+                    // reload only if files are changed, and once more when the calculation is ended.
+                    if (this.fileChanged || (!running)) {
+                        this.fileChanged = false;
+                        Platform.runLater(() -> this.reload());
+                    }
                 }
 
+                FileWatcher.getInstance().removeListener(onFileChanged);
+
                 this.autoReloading = false;
             }
         });
@@ -326,6 +357,10 @@ public class QEFXResultExplorer {
         this.updateButton("QEFXScfButton", () -> {
             return QEFXScfButton.getWrapper(this.projectController, this.project);
         });
+
+        this.updateButton("QEFXScfAccuracyButton", () -> {
+            return QEFXScfAccuracyButton.getWrapper(this.projectController, this.project);
+        });
     }
 
     private void updateOptButtons() {
@@ -412,6 +447,20 @@ public class QEFXResultExplorer {
         });
     }
 
+    private void updateTelemetryButtons() {
+        this.updateButton("QEFXTelemetryButton#CPU", () -> {
+            return QEFXTelemetryButton.getWrapper(this.projectController, this.project, TelemetryType.CPU);
+        });
+
+        this.updateButton("QEFXTelemetryButton#MEMORY", () -> {
+            return QEFXTelemetryButton.getWrapper(this.projectController, this.project, TelemetryType.MEMORY);
+        });
+
+        this.updateButton("QEFXTelemetryButton#IO", () -> {
+            return QEFXTelemetryButton.getWrapper(this.projectController, this.project, TelemetryType.IO);
+        });
+    }
+
     private <T extends QEFXResultButton<?, ?>> boolean updateButton(String key, ButtonGetter<T> buttonGetter) {
         if (key == null) {
             return false;
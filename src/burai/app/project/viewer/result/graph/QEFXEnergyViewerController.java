@@ -139,6 +139,9 @@ public class QEFXEnergyViewerController extends QEFXGraphViewerController {
 
         int numConverged = 0;
         double lastValue = 0.0;
+        double firstTime = -1.0;
+        double lastTime = -1.0;
+        int numTimes = 0;
 
         Series<Number, Number> series = new Series<Number, Number>();
 
@@ -169,6 +172,13 @@ public class QEFXEnergyViewerController extends QEFXGraphViewerController {
                 numConverged++;
                 lastValue = value;
 
+                double cpuTime = projectGeometry == null ? -1.0 : projectGeometry.getCpuTime();
+                if (cpuTime >= 0.0) {
+                    firstTime = numTimes < 1 ? cpuTime : firstTime;
+                    lastTime = cpuTime;
+                    numTimes++;
+                }
+
                 if (this.mdMode) {
                     double time = projectGeometry == null ? 0.0 : projectGeometry.getTime();
                     series.getData().add(new Data<Number, Number>(time, value));
@@ -205,13 +215,15 @@ public class QEFXEnergyViewerController extends QEFXGraphViewerController {
                 }
             }
 
-            Node note = null;
-            if (strEnergy != null) {
-                note = this.getNote(strIteration, strConverged, strEnergy);
-            } else {
-                note = this.getNote(strIteration, strConverged);
+            String strTime = null;
+            if (numTimes > 0) {
+                double timePerStep = numTimes > 1 ? ((lastTime - firstTime) / (numTimes - 1)) : lastTime;
+                strTime = "CPU time = " + this.getTimeText(lastTime)
+                        + " (" + this.getTimeText(timePerStep) + "/step)";
             }
 
+            Node note = this.getNote(strIteration, strConverged, strEnergy, strTime);
+
             if (note != null) {
                 this.stackNode(note, Pos.TOP_RIGHT);
             }
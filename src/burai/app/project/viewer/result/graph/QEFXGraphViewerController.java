@@ -197,6 +197,21 @@ public abstract class QEFXGraphViewerController extends QEFXResultViewerControll
         return pane;
     }
 
+    protected String getTimeText(double time) {
+        long seconds = Math.round(Math.max(0.0, time));
+        long hours = seconds / 3600L;
+        long minutes = (seconds % 3600L) / 60L;
+        seconds = seconds % 60L;
+
+        if (hours > 0L) {
+            return String.format("%dh %02dm %02ds", hours, minutes, seconds);
+        } else if (minutes > 0L) {
+            return String.format("%dm %02ds", minutes, seconds);
+        } else {
+            return String.format("%ds", seconds);
+        }
+    }
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         this.setupLineChart();
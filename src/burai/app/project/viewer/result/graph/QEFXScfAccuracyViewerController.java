@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.app.project.viewer.result.graph;
+
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart.Data;
+import javafx.scene.chart.XYChart.Series;
+import burai.app.project.QEFXProjectController;
+import burai.project.property.ProjectEnergies;
+import burai.project.property.ProjectProperty;
+import burai.project.property.ProjectStatus;
+
+public class QEFXScfAccuracyViewerController extends QEFXGraphViewerController {
+
+    private ProjectStatus projectStatus;
+
+    private ProjectEnergies projectEnergies;
+
+    public QEFXScfAccuracyViewerController(QEFXProjectController projectController, ProjectProperty projectProperty) {
+        super(projectController, Pos.BOTTOM_LEFT);
+
+        if (projectProperty == null) {
+            throw new IllegalArgumentException("projectProperty is null.");
+        }
+
+        this.projectStatus = projectProperty.getStatus();
+        this.projectEnergies = projectProperty.getScfEnergies();
+    }
+
+    @Override
+    protected int getCalculationID() {
+        if (this.projectStatus == null) {
+            return 0;
+        }
+
+        int offset = 0;
+        if (this.projectEnergies != null && !(this.projectEnergies.isConverged())) {
+            offset = 1;
+        }
+
+        return offset + this.projectStatus.getScfCount();
+    }
+
+    @Override
+    protected GraphProperty createProperty() {
+        GraphProperty property = new GraphProperty();
+
+        property.setTitle("Accuracy of SCF");
+        property.setXLabel("# Iterations");
+        property.setYLabel("log10 (Estimated accuracy / Ry)");
+
+        SeriesProperty seriesProperty1 = new SeriesProperty();
+        seriesProperty1.setName("Estimated accuracy");
+        seriesProperty1.setColor("dodgerblue");
+        seriesProperty1.setDash(SeriesProperty.DASH_NULL);
+        seriesProperty1.setWithSymbol(true);
+        seriesProperty1.setWidth(2.0);
+        property.addSeries(seriesProperty1);
+
+        SeriesProperty seriesProperty2 = new SeriesProperty();
+        seriesProperty2.setName("Fitted convergence");
+        seriesProperty2.setColor("darkorange");
+        seriesProperty2.setDash(SeriesProperty.DASH_LARGE);
+        seriesProperty2.setWithSymbol(false);
+        seriesProperty2.setWidth(1.5);
+        property.addSeries(seriesProperty2);
+
+        SeriesProperty seriesProperty3 = new SeriesProperty();
+        seriesProperty3.setName("Threshold");
+        seriesProperty3.setColor("crimson");
+        seriesProperty3.setDash(SeriesProperty.DASH_SMALL);
+        seriesProperty3.setWithSymbol(false);
+        seriesProperty3.setWidth(1.5);
+        property.addSeries(seriesProperty3);
+
+        return property;
+    }
+
+    @Override
+    protected void reloadData(LineChart<Number, Number> lineChart) {
+        if (lineChart == null) {
+            return;
+        }
+
+        if (this.projectEnergies == null) {
+            lineChart.getData().clear();
+            return;
+        }
+
+        ProjectEnergies projectEnergies = this.projectEnergies.copyEnergies();
+        if (projectEnergies == null) {
+            lineChart.getData().clear();
+            return;
+        }
+
+        int numEnergies = projectEnergies.numEnergies();
+
+        Series<Number, Number> series1 = new Series<Number, Number>();
+        for (int i = 0; i < numEnergies; i++) {
+            double accuracy = projectEnergies.getAccuracy(i);
+            if (accuracy > 0.0) {
+                series1.getData().add(new Data<Number, Number>(i + 1, Math.log10(accuracy)));
+            }
+        }
+
+        int numIterations = projectEnergies.predictIterations();
+        int lastIteration = numEnergies + Math.max(0, numIterations);
+
+        Series<Number, Number> series2 = new Series<Number, Number>();
+        double[] fitting = projectEnergies.fitConvergence();
+        if (fitting != null && fitting.length > 1) {
+            int firstIteration = Math.max(1, numEnergies - 5);
+            for (int i = firstIteration; i <= lastIteration; i++) {
+                double lnAccuracy = fitting[0] * i + fitting[1];
+                series2.getData().add(new Data<Number, Number>(i, lnAccuracy / Math.log(10.0)));
+            }
+        }
+
+        double logThr = Math.log10(projectEnergies.getConvThreshold());
+        Series<Number, Number> series3 = new Series<Number, Number>();
+        series3.getData().add(new Data<Number, Number>(1, logThr));
+        series3.getData().add(new Data<Number, Number>(Math.max(2, lastIteration), logThr));
+
+        lineChart.getData().clear();
+        lineChart.getData().add(series1);
+        lineChart.getData().add(series2);
+        lineChart.getData().add(series3);
+
+        String strIteration = numEnergies + " iteration" + (numEnergies > 1 ? "s were" : " was") + " done.";
+
+        String strAccuracy = null;
+        if (numEnergies > 0 && projectEnergies.getAccuracy(numEnergies - 1) > 0.0) {
+            double accuracy = projectEnergies.getAccuracy(numEnergies - 1);
+            strAccuracy = "Estimated accuracy = " + String.format("%.3e", accuracy) + " Ry";
+        }
+
+        String strRate = null;
+        if (fitting != null && fitting.length > 0) {
+            strRate = "Convergence rate = " + String.format("%.3f", fitting[0] / Math.log(10.0)) + " decade/iteration";
+        }
+
+        String strRest = this.getPredictionText(projectEnergies);
+
+        Node note = this.getNote(strIteration, strAccuracy, strRate, strRest);
+        if (note != null) {
+            this.stackNode(note, Pos.TOP_RIGHT);
+        }
+    }
+
+    private String getPredictionText(ProjectEnergies projectEnergies) {
+        if (projectEnergies.isConverged()) {
+            return "SCF is converged.";
+        }
+
+        int numIterations = projectEnergies.predictIterations();
+        if (numIterations < 0) {
+            return "Remaining iterations are unpredictable.";
+        }
+
+        String strRest = "Remaining ~ " + numIterations + " iteration" + (numIterations > 1 ? "s" : "");
+
+        double time = projectEnergies.predictTime();
+        if (time >= 0.0) {
+            strRest = strRest + " (" + this.getTimeText(time) + ")";
+        }
+
+        return strRest;
+    }
+}
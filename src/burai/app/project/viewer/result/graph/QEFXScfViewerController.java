@@ -113,13 +113,26 @@ public class QEFXScfViewerController extends QEFXGraphViewerController {
             strEnergy = "Total energy = " + String.format("%.8f", energy) + " Ry";
         }
 
-        Node note = null;
-        if (strEnergy != null) {
-            note = this.getNote(strIteration, strConverged, strEnergy);
-        } else {
-            note = this.getNote(strIteration, strConverged);
+        String strTime = null;
+        double time = projectEnergies.numEnergies() > 0 ? projectEnergies.getTime(projectEnergies.numEnergies() - 1) : -1.0;
+        if (time >= 0.0) {
+            strTime = "CPU time = " + this.getTimeText(time);
+            double timePerIteration = projectEnergies.getTimePerIteration();
+            if (timePerIteration >= 0.0) {
+                strTime = strTime + " (" + String.format("%.2f", timePerIteration) + " s/iteration)";
+            }
         }
 
+        String strRest = null;
+        if (!converged) {
+            double restTime = projectEnergies.predictTime();
+            if (restTime >= 0.0) {
+                strRest = "Time to convergence ~ " + this.getTimeText(restTime);
+            }
+        }
+
+        Node note = this.getNote(strIteration, strConverged, strEnergy, strTime, strRest);
+
         if (note != null) {
             this.stackNode(note, Pos.TOP_RIGHT);
         }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.app.project.viewer.result.graph;
+
+import java.io.File;
+import java.io.IOException;
+
+import burai.app.project.QEFXProjectController;
+import burai.app.project.viewer.result.QEFXResultButtonWrapper;
+import burai.project.Project;
+import burai.run.telemetry.TelemetryManager;
+import burai.run.telemetry.TelemetrySeries;
+
+public class QEFXTelemetryButton extends QEFXGraphButton<QEFXTelemetryViewer> {
+
+    private static final String FILE_NAME = ".burai.graph.tele";
+
+    private static final String BUTTON_TITLE = "RUN";
+    private static final String BUTTON_SUBTITLE = ".tele";
+    private static final String BUTTON_FONT_COLOR = "-fx-text-fill: derive(slategray, -30.0%)";
+    private static final String BUTTON_BACKGROUND = "-fx-background-color: snow";
+
+    public static QEFXResultButtonWrapper<QEFXTelemetryButton> getWrapper(
+            QEFXProjectController projectController, Project project, TelemetryType teleType) {
+
+        if (projectController == null) {
+            return null;
+        }
+
+        if (teleType == null) {
+            return null;
+        }
+
+        TelemetrySeries series = TelemetryManager.getInstance().getSeries(project);
+        if (series == null || series.numSamples() < 2) {
+            return null;
+        }
+
+        return () -> {
+            QEFXTelemetryButton button = new QEFXTelemetryButton(projectController, series, teleType);
+
+            String propPath = project == null ? null : project.getDirectoryPath();
+            File propFile = propPath == null ? null : new File(propPath, FILE_NAME + "." + teleType.toString());
+            if (propFile != null) {
+                button.setPropertyFile(propFile);
+            }
+
+            return button;
+        };
+    }
+
+    private TelemetryType teleType;
+
+    private TelemetrySeries series;
+
+    private QEFXTelemetryButton(QEFXProjectController projectController, TelemetrySeries series, TelemetryType teleType) {
+        super(projectController,
+                BUTTON_TITLE, BUTTON_SUBTITLE + "." + (teleType == null ? "" : teleType.name()));
+
+        if (series == null) {
+            throw new IllegalArgumentException("series is null.");
+        }
+
+        if (teleType == null) {
+            throw new IllegalArgumentException("teleType is null.");
+        }
+
+        this.series = series;
+        this.teleType = teleType;
+
+        this.setIconStyle(BUTTON_BACKGROUND);
+        this.setLabelStyle(BUTTON_FONT_COLOR);
+    }
+
+    @Override
+    protected QEFXTelemetryViewer createGraphViewer() throws IOException {
+        if (this.projectController == null) {
+            return null;
+        }
+
+        return new QEFXTelemetryViewer(this.projectController, this.series, this.teleType);
+    }
+}
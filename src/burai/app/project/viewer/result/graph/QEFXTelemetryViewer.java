@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.app.project.viewer.result.graph;
+
+import java.io.IOException;
+
+import burai.app.project.QEFXProjectController;
+import burai.run.telemetry.TelemetrySeries;
+
+public class QEFXTelemetryViewer extends QEFXGraphViewer<QEFXTelemetryViewerController> {
+
+    public QEFXTelemetryViewer(QEFXProjectController projectController,
+            TelemetrySeries series, TelemetryType teleType) throws IOException {
+
+        super(new QEFXTelemetryViewerController(projectController, series, teleType));
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.app.project.viewer.result.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart.Data;
+import javafx.scene.chart.XYChart.Series;
+import burai.app.project.QEFXProjectController;
+import burai.run.telemetry.TelemetrySample;
+import burai.run.telemetry.TelemetrySeries;
+
+public class QEFXTelemetryViewerController extends QEFXGraphViewerController {
+
+    private TelemetryType teleType;
+
+    private TelemetrySeries series;
+
+    private LineChart<Number, Number> lineChart;
+
+    public QEFXTelemetryViewerController(QEFXProjectController projectController,
+            TelemetrySeries series, TelemetryType teleType) {
+
+        super(projectController, Pos.TOP_LEFT);
+
+        if (series == null) {
+            throw new IllegalArgumentException("series is null.");
+        }
+
+        if (teleType == null) {
+            throw new IllegalArgumentException("teleType is null.");
+        }
+
+        this.series = series;
+        this.teleType = teleType;
+        this.lineChart = null;
+
+        // reload while the graph is shown
+        this.series.addOnChanged(series2 -> Platform.runLater(() -> {
+            if (this.lineChart != null && this.lineChart.getScene() != null) {
+                this.reloadSafely();
+            }
+        }));
+    }
+
+    @Override
+    protected void initializeLineChart(LineChart<Number, Number> lineChart) {
+        this.lineChart = lineChart;
+    }
+
+    @Override
+    protected int getCalculationID() {
+        return this.series.getCalculationID();
+    }
+
+    @Override
+    protected GraphProperty createProperty() {
+        GraphProperty property = new GraphProperty();
+        property.setXLabel("Time / min");
+
+        String[] names = null;
+        String[] colors = null;
+
+        if (TelemetryType.CPU.equals(this.teleType)) {
+            property.setTitle("CPU usage");
+            property.setYLabel("# Cores");
+            names = new String[] { "Usage", "Slowest process", "Load average", "Allocated" };
+            colors = new String[] { "red", "darkorange", "dimgray", "crimson" };
+
+        } else if (TelemetryType.MEMORY.equals(this.teleType)) {
+            property.setTitle("Memory");
+            property.setYLabel("Memory / MB");
+            names = new String[] { "RSS", "Swap" };
+            colors = new String[] { "blue", "crimson" };
+
+        } else if (TelemetryType.IO.equals(this.teleType)) {
+            property.setTitle("Disk I/O");
+            property.setYLabel("Rate / (MB/s)");
+            names = new String[] { "Read", "Write" };
+            colors = new String[] { "green", "mediumorchid" };
+        }
+
+        for (int iSeries = 0; names != null && iSeries < names.length; iSeries++) {
+            SeriesProperty seriesProperty = new SeriesProperty();
+            seriesProperty.setName(names[iSeries]);
+            seriesProperty.setColor(colors[iSeries]);
+            boolean reference = TelemetryType.CPU.equals(this.teleType) && iSeries >= 2;
+            seriesProperty.setDash(reference ? SeriesProperty.DASH_SMALL : SeriesProperty.DASH_NULL);
+            seriesProperty.setWithSymbol(false);
+            seriesProperty.setWidth(reference ? 1.5 : 2.0);
+            property.addSeries(seriesProperty);
+        }
+
+        return property;
+    }
+
+    @Override
+    protected void reloadData(LineChart<Number, Number> lineChart) {
+        if (lineChart == null) {
+            return;
+        }
+
+        List<TelemetrySample> samples = this.series.getSamples();
+        long startTime = this.series.getStartTime();
+        int numCores = this.series.getNumCores();
+
+        int numSeries = TelemetryType.CPU.equals(this.teleType) ? 4 : 2;
+        List<Series<Number, Number>> seriesList = new ArrayList<Series<Number, Number>>();
+        for (int iSeries = 0; iSeries < numSeries; iSeries++) {
+            seriesList.add(new Series<Number, Number>());
+        }
+
+        for (TelemetrySample sample : samples) {
+            double time = (sample.getTime() - startTime) / 60000.0;
+
+            double[] values = null;
+            if (TelemetryType.CPU.equals(this.teleType)) {
+                values = new double[] { sample.getCpuUsage(), sample.getMinCpuUsage(),
+                        sample.getLoadAverage(), numCores };
+
+            } else if (TelemetryType.MEMORY.equals(this.teleType)) {
+                values = new double[] { sample.getMemory(), sample.getSwap() };
+
+            } else {
+                values = new double[] { sample.getReadRate(), sample.getWriteRate() };
+            }
+
+            for (int iSeries = 0; iSeries < numSeries; iSeries++) {
+                seriesList.get(iSeries).getData().add(new Data<Number, Number>(time, values[iSeries]));
+            }
+        }
+
+        lineChart.getData().clear();
+        lineChart.getData().addAll(seriesList);
+
+        TelemetrySample lastSample = samples.isEmpty() ? null : samples.get(samples.size() - 1);
+        if (lastSample == null) {
+            return;
+        }
+
+        String strTime = "Elapsed time = " + this.getTimeText(0.001 * (lastSample.getTime() - startTime));
+        String strProcess = "#process = " + lastSample.getNumProcesses() + ", #thread = " + lastSample.getNumThreads();
+
+        String strValue = null;
+        if (TelemetryType.CPU.equals(this.teleType)) {
+            strValue = String.format("Usage = %.2f / %d cores", lastSample.getCpuUsage(), numCores);
+        } else if (TelemetryType.MEMORY.equals(this.teleType)) {
+            strValue = String.format("Major faults = %.1f /s", lastSample.getFaultRate());
+        } else {
+            strValue = String.format("Read = %.2f MB/s, Write = %.2f MB/s", lastSample.getReadRate(), lastSample.getWriteRate());
+        }
+
+        String warning = this.series.getWarning();
+        String strWarning = warning == null ? null : ("Warning: " + warning + ".");
+
+        Node note = this.getNote(strTime, strProcess, strValue, strWarning);
+        if (note != null) {
+            this.stackNode(note, Pos.TOP_RIGHT);
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.app.project.viewer.result.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/*
+ * Sparse index of line offsets of a (growing) text file.
+ * The offset of every BLOCK_LINES-th line is stored, and the file is scanned through memory-mapped segments.
+ */
+public class FileLineIndex {
+
+    public static final int BLOCK_LINES = 32;
+
+    private static final long SEGMENT_SIZE = 64L * 1024L * 1024L;
+
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    private static final int READ_SIZE = 8192;
+
+    private File file;
+
+    private Charset charset;
+
+    private long[] blockOffsets;
+
+    private int numBlocks;
+
+    private int numCompleteLines;
+
+    private long lastLineOffset;
+
+    private long fileSize;
+
+    public FileLineIndex(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null.");
+        }
+
+        this.file = file;
+        this.charset = Charset.defaultCharset();
+        this.clear();
+    }
+
+    private synchronized void clear() {
+        this.blockOffsets = new long[256];
+        this.blockOffsets[0] = 0L;
+        this.numBlocks = 1;
+        this.numCompleteLines = 0;
+        this.lastLineOffset = 0L;
+        this.fileSize = 0L;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public synchronized int numLines() {
+        return this.numCompleteLines + (this.fileSize > this.lastLineOffset ? 1 : 0);
+    }
+
+    public synchronized int numCompleteLines() {
+        return this.numCompleteLines;
+    }
+
+    /*
+     * index appended bytes only. returns false if the file is rewritten (shrinked) and indexed from the beginning.
+     */
+    public boolean update() throws IOException {
+        boolean appended = true;
+
+        long size = this.file.length();
+
+        long offset = 0L;
+        int numLines = 0;
+        synchronized (this) {
+            if (size < this.fileSize) {
+                this.clear();
+                appended = false;
+            }
+
+            offset = this.lastLineOffset;
+            numLines = this.numCompleteLines;
+        }
+
+        if (size <= offset) {
+            synchronized (this) {
+                this.fileSize = size;
+            }
+            return appended;
+        }
+
+        RandomAccessFile randomFile = null;
+
+        try {
+            randomFile = new RandomAccessFile(this.file, "r");
+            FileChannel channel = randomFile.getChannel();
+
+            long position = offset;
+            while (position < size) {
+                long length = Math.min(SEGMENT_SIZE, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                long[] offsets = new long[16];
+                int numOffsets = 0;
+                long lineOffset = -1L;
+
+                for (int i = 0; i < length; i++) {
+                    if (buffer.get(i) != '\n') {
+                        continue;
+                    }
+
+                    numLines++;
+                    lineOffset = position + i + 1L;
+                    if ((numLines % BLOCK_LINES) == 0) {
+                        if (numOffsets >= offsets.length) {
+                            offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+                        }
+                        offsets[numOffsets] = lineOffset;
+                        numOffsets++;
+                    }
+                }
+
+                synchronized (this) {
+                    if ((this.numBlocks + numOffsets) > this.blockOffsets.length) {
+                        int capacity = Math.max(2 * this.blockOffsets.length, this.numBlocks + numOffsets);
+                        this.blockOffsets = Arrays.copyOf(this.blockOffsets, capacity);
+                    }
+
+                    System.arraycopy(offsets, 0, this.blockOffsets, this.numBlocks, numOffsets);
+                    this.numBlocks += numOffsets;
+
+                    this.numCompleteLines = numLines;
+                    if (lineOffset >= 0L) {
+                        this.lastLineOffset = lineOffset;
+                    }
+
+                    this.fileSize = position + length;
+                }
+
+                position += length;
+            }
+
+        } finally {
+            if (randomFile != null) {
+                randomFile.close();
+            }
+        }
+
+        return appended;
+    }
+
+    /*
+     * lines of the block, which are BLOCK_LINES lines from the line (block * BLOCK_LINES),
+     * or less at the end of the file. returns null if the block does not exist.
+     */
+    public String[] getBlockLines(int block) throws IOException {
+        long offset = 0L;
+        int numLines = 0;
+        long size = 0L;
+
+        synchronized (this) {
+            int startLine = block * BLOCK_LINES;
+            if (block < 0 || block >= this.numBlocks || startLine >= this.numLines()) {
+                return null;
+            }
+
+            offset = this.blockOffsets[block];
+            numLines = Math.min(BLOCK_LINES, this.numLines() - startLine);
+            size = this.fileSize;
+        }
+
+        String[] lines = new String[numLines];
+        int iLine = 0;
+
+        RandomAccessFile randomFile = null;
+
+        try {
+            randomFile = new RandomAccessFile(this.file, "r");
+            FileChannel channel = randomFile.getChannel();
+
+            ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+            byte[] lineBytes = new byte[256];
+            int lineLength = 0;
+
+            long position = offset;
+            while (position < size && iLine < numLines) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - position));
+                int numRead = channel.read(buffer, position);
+                if (numRead <= 0) {
+                    break;
+                }
+
+                for (int i = 0; i < numRead && iLine < numLines; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n') {
+                        lines[iLine] = this.decodeLine(lineBytes, lineLength);
+                        iLine++;
+                        lineLength = 0;
+                        continue;
+                    }
+
+                    if (lineLength < MAX_LINE_LENGTH) {
+                        if (lineLength >= lineBytes.length) {
+                            lineBytes = Arrays.copyOf(lineBytes, 2 * lineBytes.length);
+                        }
+                        lineBytes[lineLength] = b;
+                        lineLength++;
+                    }
+                }
+
+                position += numRead;
+            }
+
+            // the last line may be incomplete.
+            if (iLine < numLines) {
+                lines[iLine] = this.decodeLine(lineBytes, lineLength);
+                iLine++;
+            }
+
+        } finally {
+            if (randomFile != null) {
+                randomFile.close();
+            }
+        }
+
+        return iLine < numLines ? Arrays.copyOf(lines, iLine) : lines;
+    }
+
+    private String decodeLine(byte[] lineBytes, int lineLength) {
+        int length = lineLength;
+        if (length > 0 && lineBytes[length - 1] == '\r') {
+            length--;
+        }
+
+        return new String(lineBytes, 0, length, this.charset);
+    }
+
+    /*
+     * search complete lines in [startLine, numCompleteLines), case-insensitively.
+     * returns the number of lines searched, or -1 if cancelled.
+     */
+    public int search(String text, int startLine, FileLineSearched onSearched) throws IOException {
+        return this.search(text, startLine, Integer.MAX_VALUE, onSearched);
+    }
+
+    /*
+     * search at least maxLines lines (rounded up to blocks), when they are complete.
+     */
+    public int search(String text, int startLine, int maxLines, FileLineSearched onSearched) throws IOException {
+        if (text == null || text.isEmpty()) {
+            return -1;
+        }
+
+        byte[] pattern = text.toUpperCase().getBytes(this.charset);
+        if (pattern.length < 1) {
+            return -1;
+        }
+
+        int startBlock = Math.max(0, startLine) / BLOCK_LINES;
+        int endLine = 0;
+        long[] offsets = null;
+        int numOffsets = 0;
+        long endOffset = 0L;
+
+        synchronized (this) {
+            endLine = this.numCompleteLines;
+            offsets = this.blockOffsets;
+            numOffsets = this.numBlocks;
+            endOffset = this.lastLineOffset;
+
+            long lastLine = (long) Math.max(0, startLine) + (long) Math.max(BLOCK_LINES, maxLines);
+            if (lastLine < endLine) {
+                int endBlock = (int) (lastLine / BLOCK_LINES);
+                if (endBlock < numOffsets) {
+                    endLine = endBlock * BLOCK_LINES;
+                    endOffset = offsets[endBlock];
+                }
+            }
+        }
+
+        if (startLine >= endLine || startBlock >= numOffsets) {
+            return endLine;
+        }
+
+        RandomAccessFile randomFile = null;
+
+        try {
+            randomFile = new RandomAccessFile(this.file, "r");
+            FileChannel channel = randomFile.getChannel();
+
+            int block = startBlock;
+            while (block < numOffsets && offsets[block] < endOffset) {
+                // segments are aligned to blocks, so that no line is split.
+                long position = offsets[block];
+                int nextBlock = block + 1;
+                while ((nextBlock + 1) < numOffsets && (offsets[nextBlock + 1] - position) <= SEGMENT_SIZE) {
+                    nextBlock++;
+                }
+
+                long limit = nextBlock < numOffsets ? Math.min(offsets[nextBlock], endOffset) : endOffset;
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, limit - position);
+                int lineIndex = block * BLOCK_LINES;
+                if (!this.searchSegment(buffer, pattern, lineIndex, startLine, onSearched)) {
+                    return -1;
+                }
+
+                block = nextBlock;
+            }
+
+        } finally {
+            if (randomFile != null) {
+                randomFile.close();
+            }
+        }
+
+        return endLine;
+    }
+
+    private boolean searchSegment(ByteBuffer buffer, byte[] pattern, int lineIndex, int startLine, FileLineSearched onSearched) {
+        int length = buffer.limit();
+        int lineStart = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+
+            if (lineIndex >= startLine && this.matches(buffer, lineStart, i, pattern)) {
+                if (!onSearched.onLineSearched(lineIndex, this.decodeLine(buffer, lineStart, i))) {
+                    return false;
+                }
+            }
+
+            lineIndex++;
+            lineStart = i + 1;
+        }
+
+        return true;
+    }
+
+    private String decodeLine(ByteBuffer buffer, int start, int end) {
+        int end2 = end;
+        if (end2 > start && buffer.get(end2 - 1) == '\r') {
+            end2--;
+        }
+
+        int length = Math.min(end2 - start, MAX_LINE_LENGTH);
+        byte[] lineBytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            lineBytes[i] = buffer.get(start + i);
+        }
+
+        return new String(lineBytes, this.charset);
+    }
+
+    private boolean matches(ByteBuffer buffer, int start, int end, byte[] pattern) {
+        int last = end - pattern.length;
+
+        for (int i = start; i <= last; i++) {
+            boolean matched = true;
+            for (int j = 0; j < pattern.length; j++) {
+                byte b = buffer.get(i + j);
+                if ('a' <= b && b <= 'z') {
+                    b = (byte) (b - 'a' + 'A');
+                }
+
+                if (b != pattern[j]) {
+                    matched = false;
+                    break;
+                }
+            }
+
+            if (matched) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.app.project.viewer.result.log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+/*
+ * Virtual list of lines, whose items are read from FileLineIndex only when cells require them.
+ * Lines are read by blocks on a worker thread (see loadRequestedBlocks), and empty lines are shown until loaded.
+ * This list should be modified on the FX thread.
+ */
+public class FileLineList extends ObservableListBase<FileLine> {
+
+    private static final int MAX_CACHED_LINES = 1024;
+
+    private static final int MAX_CACHED_BLOCKS = 64;
+
+    private FileLineIndex index;
+
+    private int size;
+
+    private Map<Integer, String> cachedLines;
+
+    private Map<Integer, String[]> cachedBlocks;
+
+    private Set<Integer> requestedBlocks;
+
+    private int generation;
+
+    private Runnable onBlockRequested;
+
+    private Runnable onBlockLoaded;
+
+    private int[] searchedLines;
+
+    private int numSearchedLines;
+
+    public FileLineList(FileLineIndex index) {
+        if (index == null) {
+            throw new IllegalArgumentException("index is null.");
+        }
+
+        this.index = index;
+        this.size = 0;
+
+        this.cachedLines = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return this.size() > MAX_CACHED_LINES;
+            }
+        };
+
+        this.cachedBlocks = new LinkedHashMap<Integer, String[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+                return this.size() > MAX_CACHED_BLOCKS;
+            }
+        };
+
+        this.requestedBlocks = new LinkedHashSet<Integer>();
+        this.generation = 0;
+        this.onBlockRequested = null;
+        this.onBlockLoaded = null;
+
+        this.searchedLines = new int[64];
+        this.numSearchedLines = 0;
+    }
+
+    public void setOnBlockRequested(Runnable onBlockRequested) {
+        this.onBlockRequested = onBlockRequested;
+    }
+
+    public void setOnBlockLoaded(Runnable onBlockLoaded) {
+        this.onBlockLoaded = onBlockLoaded;
+    }
+
+    @Override
+    public FileLine get(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException("index = " + i);
+        }
+
+        int block = i / FileLineIndex.BLOCK_LINES;
+        String[] lines = this.cachedBlocks.get(block);
+
+        String line = null;
+        if (lines != null) {
+            int j = i % FileLineIndex.BLOCK_LINES;
+            line = j < lines.length ? lines[j] : null;
+        }
+
+        if (line == null) {
+            line = this.cachedLines.get(i);
+        }
+
+        if (line == null) {
+            this.requestBlock(block);
+            line = "";
+        }
+
+        return new FileLine(i + 1, line, this.isSearched(i));
+    }
+
+    private void requestBlock(int block) {
+        boolean requested = false;
+        synchronized (this.requestedBlocks) {
+            requested = this.requestedBlocks.add(block);
+        }
+
+        if (requested && this.onBlockRequested != null) {
+            this.onBlockRequested.run();
+        }
+    }
+
+    /*
+     * reads requested blocks, which is called on a worker thread.
+     */
+    public void loadRequestedBlocks() {
+        List<Integer> blocks = null;
+        int generation = 0;
+
+        synchronized (this.requestedBlocks) {
+            if (this.requestedBlocks.isEmpty()) {
+                return;
+            }
+
+            // only recently requested blocks are read, since the others may be scrolled out.
+            blocks = new ArrayList<Integer>(this.requestedBlocks);
+            if (blocks.size() > MAX_CACHED_BLOCKS) {
+                blocks = blocks.subList(blocks.size() - MAX_CACHED_BLOCKS, blocks.size());
+            }
+
+            this.requestedBlocks.clear();
+            generation = this.generation;
+        }
+
+        Map<Integer, String[]> loadedBlocks = new LinkedHashMap<Integer, String[]>();
+        for (Integer block : blocks) {
+            String[] lines = null;
+            try {
+                lines = this.index.getBlockLines(block);
+            } catch (IOException e) {
+                e.printStackTrace();
+                lines = null;
+            }
+
+            if (lines != null) {
+                loadedBlocks.put(block, lines);
+            }
+        }
+
+        if (loadedBlocks.isEmpty()) {
+            return;
+        }
+
+        final int generation_ = generation;
+        Platform.runLater(() -> {
+            synchronized (this.requestedBlocks) {
+                if (generation_ != this.generation) {
+                    return;
+                }
+            }
+
+            this.cachedBlocks.putAll(loadedBlocks);
+
+            if (this.onBlockLoaded != null) {
+                this.onBlockLoaded.run();
+            }
+        });
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    public void setSize(int size) {
+        int size2 = Math.max(0, size);
+        if (size2 == this.size) {
+            return;
+        }
+
+        // the last line may be incomplete.
+        if (this.size > 0) {
+            this.cachedLines.remove(this.size - 1);
+            this.cachedBlocks.remove((this.size - 1) / FileLineIndex.BLOCK_LINES);
+        }
+
+        this.beginChange();
+
+        if (size2 > this.size) {
+            this.nextAdd(this.size, size2);
+
+        } else {
+            this.nextRemove(size2, Collections.nCopies(this.size - size2, (FileLine) null));
+        }
+
+        this.size = size2;
+
+        this.endChange();
+    }
+
+    public void resetLines() {
+        synchronized (this.requestedBlocks) {
+            this.requestedBlocks.clear();
+            this.generation++;
+        }
+
+        this.cachedLines.clear();
+        this.cachedBlocks.clear();
+        this.clearSearched();
+        this.setSize(0);
+    }
+
+    public void cacheLine(int i, String line) {
+        if (line != null && i < (this.size - 1)) {
+            this.cachedLines.put(i, line);
+        }
+    }
+
+    public void clearSearched() {
+        this.numSearchedLines = 0;
+    }
+
+    public boolean hasSearched() {
+        return this.numSearchedLines > 0;
+    }
+
+    public void addSearched(int i) {
+        if (this.numSearchedLines > 0 && this.searchedLines[this.numSearchedLines - 1] >= i) {
+            return;
+        }
+
+        if (this.numSearchedLines >= this.searchedLines.length) {
+            this.searchedLines = Arrays.copyOf(this.searchedLines, 2 * this.searchedLines.length);
+        }
+
+        this.searchedLines[this.numSearchedLines] = i;
+        this.numSearchedLines++;
+    }
+
+    public boolean isSearched(int i) {
+        return Arrays.binarySearch(this.searchedLines, 0, this.numSearchedLines, i) >= 0;
+    }
+
+    /*
+     * returns the searched line next to i (or previous to i), or -1 if not exists.
+     */
+    public int nextSearched(int i, boolean direction) {
+        int index2 = Arrays.binarySearch(this.searchedLines, 0, this.numSearchedLines, i);
+
+        int index3 = 0;
+        if (index2 >= 0) {
+            index3 = direction ? (index2 + 1) : (index2 - 1);
+        } else {
+            int index4 = -(index2 + 1);
+            index3 = direction ? index4 : (index4 - 1);
+        }
+
+        if (0 <= index3 && index3 < this.numSearchedLines) {
+            return this.searchedLines[index3];
+        }
+
+        return -1;
+    }
+}
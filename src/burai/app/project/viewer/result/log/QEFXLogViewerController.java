@@ -16,26 +16,27 @@
 
 package burai.app.project.viewer.result.log;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.ResourceBundle;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
 import javafx.scene.control.MultipleSelectionModel;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Tooltip;
 import javafx.scene.layout.BorderPane;
 import burai.app.project.QEFXProjectController;
 import burai.app.project.viewer.result.QEFXResultViewerController;
+import burai.com.file.FileChanged;
+import burai.com.file.FileWatcher;
 import burai.com.graphic.svg.SVGLibrary;
 import burai.com.graphic.svg.SVGLibrary.SVGData;
 
@@ -46,11 +47,34 @@ public class QEFXLogViewerController extends QEFXResultViewerController {
 
     private static final String PLACEHOLDER_STYLE = "-fx-background-color: lightgray";
 
+    private static final int SEARCHED_BATCH = 256;
+    private static final long SEARCHED_INTERVAL = 200L;
+
+    private static final int SEARCHED_LINES = 65536;
+
     private File file;
 
+    private FileLineIndex lineIndex;
+
+    private FileLineList lineList;
+
     private String searchingText;
 
-    private List<FileLine> searchedList;
+    private FileLineSearched onSearched;
+
+    private String searchedText;
+
+    private int searchGeneration;
+
+    private int numSearchedLines;
+
+    private boolean updating;
+
+    private boolean updateRequested;
+
+    private boolean loadingRequested;
+
+    private FileChanged onFileChanged;
 
     @FXML
     private TextField nameField;
@@ -73,8 +97,26 @@ public class QEFXLogViewerController extends QEFXResultViewerController {
 
         this.file = file;
 
+        this.lineIndex = new FileLineIndex(this.file);
+        this.lineList = new FileLineList(this.lineIndex);
+        this.lineList.setOnBlockRequested(() -> this.requestLoading());
+        this.lineList.setOnBlockLoaded(() -> {
+            if (this.listView != null) {
+                this.listView.refresh();
+            }
+        });
+
         this.searchingText = null;
-        this.searchedList = new ArrayList<FileLine>();
+        this.onSearched = null;
+        this.searchedText = "";
+        this.searchGeneration = 0;
+        this.numSearchedLines = 0;
+
+        this.updating = false;
+        this.updateRequested = false;
+        this.loadingRequested = false;
+
+        this.onFileChanged = null;
     }
 
     @Override
@@ -87,15 +129,42 @@ public class QEFXLogViewerController extends QEFXResultViewerController {
 
     @Override
     public void reload() {
-        if (this.listView != null) {
-            this.listView.getItems().clear();
+        this.startWatching();
+
+        String text = this.searchingText == null ? "" : this.searchingText.trim();
+
+        synchronized (this) {
+            if (!text.equals(this.searchedText)) {
+                this.searchedText = text;
+                this.searchGeneration++;
+                this.numSearchedLines = 0;
+
+                this.lineList.clearSearched();
+                if (this.listView != null) {
+                    this.listView.refresh();
+                }
+            }
         }
 
-        this.searchedList.clear();
+        this.updateSearchButtons();
 
-        this.readFile();
+        this.requestUpdate();
+    }
+
+    public void searchText(String text, FileLineSearched onSearched) {
+        this.searchingText = text == null ? null : text.trim();
+        this.onSearched = onSearched;
 
-        boolean emptySearched = this.searchedList.isEmpty();
+        synchronized (this) {
+            // searched lines are streamed again, even if the text is not changed
+            this.searchedText = null;
+        }
+
+        this.reload();
+    }
+
+    private void updateSearchButtons() {
+        boolean emptySearched = !this.lineList.hasSearched();
         if (this.nextButton != null) {
             this.nextButton.setDisable(emptySearched);
         }
@@ -104,20 +173,254 @@ public class QEFXLogViewerController extends QEFXResultViewerController {
         }
     }
 
-    public List<String> searchText(String text) {
-        this.searchingText = text == null ? null : text.trim();
+    private void startWatching() {
+        if (this.onFileChanged != null) {
+            return;
+        }
+
+        this.onFileChanged = file -> this.requestUpdate();
+        FileWatcher.getInstance().addListener(this.file, this.onFileChanged);
+    }
+
+    private void stopWatching() {
+        if (this.onFileChanged == null) {
+            return;
+        }
+
+        FileWatcher.getInstance().removeListener(this.onFileChanged);
+        this.onFileChanged = null;
+    }
+
+    private void requestUpdate() {
+        synchronized (this) {
+            this.updateRequested = true;
+        }
+
+        this.startUpdating();
+    }
+
+    private void requestLoading() {
+        synchronized (this) {
+            this.loadingRequested = true;
+        }
+
+        this.startUpdating();
+    }
+
+    private void startUpdating() {
+        synchronized (this) {
+            if (this.updating) {
+                return;
+            }
+
+            this.updating = true;
+        }
+
+        Thread thread = new Thread(() -> {
+            while (true) {
+                boolean toUpdate = false;
+                boolean toLoad = false;
+
+                synchronized (this) {
+                    if (!(this.updateRequested || this.loadingRequested)) {
+                        this.updating = false;
+                        break;
+                    }
+
+                    toUpdate = this.updateRequested;
+                    toLoad = this.loadingRequested;
+                    this.updateRequested = false;
+                    this.loadingRequested = false;
+                }
+
+                try {
+                    if (toLoad) {
+                        this.lineList.loadRequestedBlocks();
+                    }
+
+                    if (toUpdate) {
+                        this.updateLines();
+                        this.searchLines();
+                    }
+
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+
+        thread.start();
+    }
+
+    private void loadBlocks() {
+        synchronized (this) {
+            if (!this.loadingRequested) {
+                return;
+            }
+
+            this.loadingRequested = false;
+        }
+
+        this.lineList.loadRequestedBlocks();
+    }
+
+    private void updateLines() throws Exception {
+        // only appended bytes are indexed, unless the file is rewritten.
+        boolean appended = this.lineIndex.update();
+        int numLines = this.lineIndex.numLines();
+
+        if (!appended) {
+            synchronized (this) {
+                this.numSearchedLines = 0;
+            }
+        }
+
+        Platform.runLater(() -> {
+            if (!appended) {
+                this.lineList.resetLines();
+                this.updateSearchButtons();
+            }
+
+            boolean following = this.lineList.size() > 0 && this.isShowingTail();
+
+            this.lineList.setSize(numLines);
+
+            if (following && this.listView != null && numLines > 0) {
+                this.listView.scrollTo(numLines - 1);
+            }
+        });
+    }
+
+    private boolean isShowingTail() {
+        if (this.listView == null) {
+            return false;
+        }
+
+        for (Node node : this.listView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar) {
+                ScrollBar scrollBar = (ScrollBar) node;
+                if (Orientation.VERTICAL.equals(scrollBar.getOrientation()) && scrollBar.isVisible()) {
+                    return scrollBar.getValue() >= scrollBar.getMax();
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void searchLines() throws Exception {
+        String text = null;
+        int generation = 0;
+        int startLine = 0;
+
+        synchronized (this) {
+            text = this.searchedText;
+            generation = this.searchGeneration;
+            startLine = this.numSearchedLines;
+        }
+
+        if (text == null || text.isEmpty()) {
+            return;
+        }
 
-        this.reloadSafely();
+        LineSearcher searcher = new LineSearcher(generation);
 
-        List<String> lineList = new ArrayList<String>();
-        for (FileLine fileLine : this.searchedList) {
-            String line = fileLine == null ? null : fileLine.getLine();
-            if (line != null) {
-                lineList.add(line);
+        while (true) {
+            int endLine = this.lineIndex.search(text, startLine, SEARCHED_LINES, searcher);
+            searcher.flush();
+
+            synchronized (this) {
+                if (endLine < 0 || generation != this.searchGeneration) {
+                    break;
+                }
+
+                this.numSearchedLines = endLine;
             }
+
+            if (endLine <= startLine) {
+                break;
+            }
+
+            startLine = endLine;
+
+            // cells are not kept waiting for a long search
+            this.loadBlocks();
         }
+    }
 
-        return lineList;
+    private synchronized boolean isSearchGeneration(int generation) {
+        return generation == this.searchGeneration;
+    }
+
+    private class LineSearcher implements FileLineSearched {
+
+        private int generation;
+
+        private List<Integer> indexes;
+
+        private List<String> lines;
+
+        private long time;
+
+        public LineSearcher(int generation) {
+            this.generation = generation;
+            this.indexes = new ArrayList<Integer>();
+            this.lines = new ArrayList<String>();
+            this.time = System.currentTimeMillis();
+        }
+
+        @Override
+        public boolean onLineSearched(int index, String line) {
+            if (!isSearchGeneration(this.generation)) {
+                return false;
+            }
+
+            this.indexes.add(index);
+            this.lines.add(line);
+
+            if (this.indexes.size() >= SEARCHED_BATCH || (System.currentTimeMillis() - this.time) >= SEARCHED_INTERVAL) {
+                this.flush();
+            }
+
+            return true;
+        }
+
+        public void flush() {
+            this.time = System.currentTimeMillis();
+
+            if (this.indexes.isEmpty()) {
+                return;
+            }
+
+            List<Integer> indexes_ = this.indexes;
+            List<String> lines_ = this.lines;
+            this.indexes = new ArrayList<Integer>();
+            this.lines = new ArrayList<String>();
+
+            Platform.runLater(() -> {
+                if (!isSearchGeneration(this.generation)) {
+                    return;
+                }
+
+                for (int i = 0; i < indexes_.size(); i++) {
+                    int index = indexes_.get(i);
+                    String line = lines_.get(i);
+
+                    lineList.cacheLine(index, line);
+                    lineList.addSearched(index);
+
+                    if (onSearched != null) {
+                        onSearched.onLineSearched(index, line);
+                    }
+                }
+
+                if (listView != null) {
+                    listView.refresh();
+                }
+
+                updateSearchButtons();
+            });
+        }
     }
 
     private void setupNameField() {
@@ -176,6 +479,8 @@ public class QEFXLogViewerController extends QEFXResultViewerController {
             return;
         }
 
+        this.listView.setItems(this.lineList);
+
         this.listView.setCellFactory(listView_ -> {
             return new FileLineCell();
         });
@@ -189,57 +494,12 @@ public class QEFXLogViewerController extends QEFXResultViewerController {
         borderPane.setStyle(PLACEHOLDER_STYLE);
 
         this.listView.setPlaceholder(borderPane);
-    }
-
-    private void readFile() {
-        if (this.listView == null) {
-            return;
-        }
-
-        String text = null;
-        if (this.searchingText != null) {
-            text = this.searchingText.trim().toUpperCase();
-        }
-
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(new FileReader(this.file));
-
-            int index = 0;
-            String line = null;
-
-            while ((line = reader.readLine()) != null) {
-                index++;
-
-                boolean enhanced = false;
-                if (text != null && (!text.isEmpty())) {
-                    enhanced = (line.toUpperCase().indexOf(text) > -1);
-                }
-
-                FileLine fileLien = new FileLine(index, line, enhanced);
-                this.listView.getItems().add(fileLien);
 
-                if (enhanced) {
-                    this.searchedList.add(fileLien);
-                }
+        this.listView.sceneProperty().addListener(o -> {
+            if (this.listView.getScene() == null) {
+                this.stopWatching();
             }
-
-        } catch (FileNotFoundException e1) {
-            e1.printStackTrace();
-
-        } catch (IOException e2) {
-            e2.printStackTrace();
-
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e3) {
-                    e3.printStackTrace();
-                }
-            }
-        }
+        });
     }
 
     private void selectSearchedLine(boolean direction) {
@@ -247,7 +507,7 @@ public class QEFXLogViewerController extends QEFXResultViewerController {
             return;
         }
 
-        if (this.searchedList.isEmpty()) {
+        if (!this.lineList.hasSearched()) {
             return;
         }
 
@@ -256,41 +516,16 @@ public class QEFXLogViewerController extends QEFXResultViewerController {
             return;
         }
 
-        int selectedIndex = -1;
-
-        FileLine fileLine = selectionModel.getSelectedItem();
-        if (fileLine == null) {
-            fileLine = new FileLine(1, "", false);
-        }
-
-        while (true) {
-            int index = Collections.binarySearch(this.searchedList, fileLine);
-
-            if (index < 0) {
-                int index2 = -(index + 1);
-                if (direction) {
-                    selectedIndex = index2;
-                } else {
-                    selectedIndex = index2 - 1;
-                }
-                break;
-            }
-
-            if (direction) {
-                fileLine = new FileLine(fileLine.getIndex() + 1, "", false);
-            } else {
-                fileLine = new FileLine(fileLine.getIndex() - 1, "", false);
-            }
+        int index = selectionModel.getSelectedIndex();
+        if (index < 0) {
+            index = direction ? -1 : this.lineList.size();
         }
 
-        FileLine selectedLine = null;
-        if (0 <= selectedIndex && selectedIndex < this.searchedList.size()) {
-            selectedLine = this.searchedList.get(selectedIndex);
-        }
+        int selectedIndex = this.lineList.nextSearched(index, direction);
 
-        if (selectedLine != null) {
-            this.listView.scrollTo(selectedLine);
-            selectionModel.select(selectedLine);
+        if (selectedIndex >= 0) {
+            this.listView.scrollTo(selectedIndex);
+            selectionModel.select(selectedIndex);
         }
     }
 }
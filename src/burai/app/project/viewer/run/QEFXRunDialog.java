@@ -27,6 +27,7 @@ import javafx.fxml.Initializable;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.DialogPane;
@@ -39,7 +40,12 @@ import burai.com.env.Environments;
 import burai.com.path.QEPath;
 import burai.project.FilePathChanged;
 import burai.project.Project;
+import burai.run.RunningCache;
+import burai.run.RunningEstimate;
+import burai.run.RunningLayout;
+import burai.run.RunningManager;
 import burai.run.RunningNode;
+import burai.run.RunningResume;
 import burai.run.RunningType;
 import burai.ssh.SSHJob;
 import burai.ssh.SSHServer;
@@ -49,6 +55,8 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
 
     private static final String PROP_KEY_MPI = "number_of_processes";
     private static final String PROP_KEY_OPENMP = "number_of_threads";
+    private static final String PROP_KEY_POOL = "number_of_pools";
+    private static final String PROP_KEY_AUTO_LAYOUT = "auto_layout";
     private static final String PROP_KEY_HOST = "host_name";
 
     private static final String ERROR_STYLE = ConstantStyles.ERROR_COLOR;
@@ -64,12 +72,30 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
     @FXML
     private ComboBox<RunningType> jobCombo;
 
+    @FXML
+    private CheckBox resumeCheck;
+
+    @FXML
+    private CheckBox cacheCheck;
+
     @FXML
     private TextField mpiField;
 
     @FXML
     private TextField ompField;
 
+    @FXML
+    private TextField poolField;
+
+    @FXML
+    private Button layoutButton;
+
+    @FXML
+    private CheckBox autoLayoutCheck;
+
+    @FXML
+    private Label estimateLabel;
+
     @FXML
     private ComboBox<String> hostCombo;
 
@@ -155,7 +181,7 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
     }
 
     private void resetButtonTypes() {
-        this.setupButtonTypes(this.isCorrectMPI() && this.isCorrectOpenMP() && this.isProjectSaved());
+        this.setupButtonTypes(this.isCorrectMPI() && this.isCorrectOpenMP() && this.isCorrectPool() && this.isProjectSaved());
     }
 
     private boolean isCorrectMPI() {
@@ -190,6 +216,22 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
         return true;
     }
 
+    private boolean isCorrectPool() {
+        if (this.poolField != null) {
+            try {
+                int numPool = Integer.parseInt(this.poolField.getText());
+                if (numPool < 1 || numPool > this.textFiledToInteger(this.mpiField, 1)) {
+                    return false;
+                }
+
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     private boolean isProjectSaved() {
         String dirPath = this.project.getDirectoryPath();
         if (dirPath == null || dirPath.isEmpty()) {
@@ -235,6 +277,17 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
         Environments.setProperty(PROP_KEY_MPI, numMPI);
         Environments.setProperty(PROP_KEY_OPENMP, numOMP);
 
+        int numPool = this.textFiledToInteger(this.poolField, 1);
+        Environments.setProperty(PROP_KEY_POOL, numPool);
+
+        if (this.autoLayoutCheck != null) {
+            Environments.setProperty(PROP_KEY_AUTO_LAYOUT, this.autoLayoutCheck.isSelected());
+        }
+
+        if (this.cacheCheck != null) {
+            RunningCache.getInstance().setEnabled(this.cacheCheck.isSelected());
+        }
+
         String hostName = this.hostCombo == null ? null : this.hostCombo.getValue();
         hostName = hostName == null ? null : hostName.trim();
         if (hostName == null || hostName.isEmpty()) {
@@ -263,11 +316,15 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
 
         int numMPI = this.textFiledToInteger(this.mpiField, 1);
         int numOMP = this.textFiledToInteger(this.ompField, 1);
+        int numPool = this.textFiledToInteger(this.poolField, 1);
 
         RunningNode runningNode = new RunningNode(this.project);
         runningNode.setType(runningType);
         runningNode.setNumProcesses(numMPI);
         runningNode.setNumThreads(numOMP);
+        runningNode.setNumPools(numPool);
+        runningNode.setResume(this.resumeCheck != null && this.resumeCheck.isSelected() && !this.resumeCheck.isDisabled());
+        runningNode.setEstimate(this.getEstimate());
         return runningNode;
     }
 
@@ -308,10 +365,15 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         this.setupJobCombo();
+        this.setupResumeCheck();
+        this.setupCacheCheck();
         this.setupMPIField();
         this.setupOpenMPField();
+        this.setupPoolField();
         this.setupHostCombo();
         this.setupSaveButton();
+        this.setupLayoutButton();
+        this.setupEstimateLabel();
         this.resetButtonTypes();
     }
 
@@ -334,6 +396,38 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
         }
     }
 
+    private void setupResumeCheck() {
+        if (this.resumeCheck == null) {
+            return;
+        }
+
+        this.updateResumeCheck();
+
+        if (this.jobCombo != null) {
+            this.jobCombo.valueProperty().addListener(o -> this.updateResumeCheck());
+        }
+    }
+
+    private void setupCacheCheck() {
+        if (this.cacheCheck == null) {
+            return;
+        }
+
+        this.cacheCheck.setSelected(RunningCache.getInstance().isEnabled());
+    }
+
+    private void updateResumeCheck() {
+        if (this.resumeCheck == null) {
+            return;
+        }
+
+        RunningType runningType = this.jobCombo == null ? null : this.jobCombo.getValue();
+        boolean resumable = runningType != null && RunningResume.isResumable(this.project, runningType);
+
+        this.resumeCheck.setDisable(!resumable);
+        this.resumeCheck.setSelected(resumable);
+    }
+
     private boolean canMPIParallel() {
         String mpiPath = QEPath.getMPIPath();
         if (mpiPath == null || mpiPath.trim().isEmpty()) {
@@ -436,6 +530,110 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
         });
     }
 
+    private void setupPoolField() {
+        if (this.poolField == null) {
+            return;
+        }
+
+        int numPool = 1;
+        if (Environments.hasProperty(PROP_KEY_POOL)) {
+            numPool = Math.max(1, Environments.getIntProperty(PROP_KEY_POOL));
+        }
+
+        String strPool = Integer.toString(numPool);
+        this.poolField.setText(strPool);
+
+        if (this.isCorrectPool()) {
+            this.poolField.setStyle("");
+        } else {
+            this.poolField.setStyle(ERROR_STYLE);
+        }
+
+        this.poolField.textProperty().addListener(o -> {
+            if (this.isCorrectPool()) {
+                this.poolField.setStyle("");
+            } else {
+                this.poolField.setStyle(ERROR_STYLE);
+            }
+
+            this.resetButtonTypes();
+            this.poolField.requestFocus();
+        });
+
+        if (this.mpiField != null) {
+            this.mpiField.textProperty().addListener(o -> {
+                if (this.isCorrectPool()) {
+                    this.poolField.setStyle("");
+                } else {
+                    this.poolField.setStyle(ERROR_STYLE);
+                }
+            });
+        }
+    }
+
+    private void setupLayoutButton() {
+        if (this.layoutButton != null) {
+            this.layoutButton.setOnAction(event -> this.applyBestLayout());
+        }
+
+        if (this.autoLayoutCheck == null) {
+            return;
+        }
+
+        boolean autoLayout = false;
+        if (Environments.hasProperty(PROP_KEY_AUTO_LAYOUT)) {
+            autoLayout = Environments.getBoolProperty(PROP_KEY_AUTO_LAYOUT);
+        }
+
+        this.autoLayoutCheck.setSelected(autoLayout);
+        if (autoLayout) {
+            this.applyBestLayout();
+        }
+
+        this.autoLayoutCheck.selectedProperty().addListener(o -> {
+            if (this.autoLayoutCheck.isSelected()) {
+                this.applyBestLayout();
+            }
+        });
+
+        if (this.jobCombo != null) {
+            this.jobCombo.valueProperty().addListener(o -> {
+                if (this.autoLayoutCheck.isSelected()) {
+                    this.applyBestLayout();
+                }
+            });
+        }
+    }
+
+    /*
+     * the fastest layout of MPI processes, OpenMP threads and pools, which uses all cores of this machine.
+     */
+    private void applyBestLayout() {
+        RunningType runningType = this.jobCombo == null ? null : this.jobCombo.getValue();
+        if (runningType == null) {
+            runningType = RunningType.SCF;
+        }
+
+        RunningEstimate estimate = RunningEstimate.getEstimate(this.project, runningType, 1, 1);
+        int numCores = RunningManager.getInstance().getNumCores();
+        RunningLayout layout = RunningLayout.getBestLayout(estimate, numCores, this.canMPIParallel());
+        if (layout == null) {
+            return;
+        }
+
+        if (this.mpiField != null) {
+            this.mpiField.setText(Integer.toString(layout.getNumProcesses()));
+        }
+
+        if (this.ompField != null) {
+            this.ompField.setText(Integer.toString(layout.getNumThreads()));
+        }
+
+        if (this.poolField != null) {
+            this.poolField.setText(Integer.toString(layout.getNumPools()));
+        }
+    }
+
     private void setupHostCombo() {
         if (this.hostCombo == null) {
             return;
@@ -497,6 +695,74 @@ public class QEFXRunDialog extends Dialog<RunEvent> implements Initializable {
         this.project.addOnFilePathChanged(this.pathChanged);
     }
 
+    private RunningEstimate getEstimate() {
+        if (!(this.isCorrectMPI() && this.isCorrectOpenMP() && this.isCorrectPool())) {
+            return null;
+        }
+
+        RunningType runningType = this.jobCombo == null ? null : this.jobCombo.getValue();
+        if (runningType == null) {
+            runningType = RunningType.SCF;
+        }
+
+        int numMPI = this.textFiledToInteger(this.mpiField, 1);
+        int numOMP = this.textFiledToInteger(this.ompField, 1);
+        int numPool = this.textFiledToInteger(this.poolField, 1);
+
+        RunningEstimate estimate = RunningEstimate.getEstimate(this.project, runningType, numMPI, numOMP);
+        if (estimate != null && numPool > 1) {
+            estimate = estimate.withLayout(numMPI, numOMP, numPool);
+        }
+
+        return estimate;
+    }
+
+    private void setupEstimateLabel() {
+        if (this.estimateLabel == null) {
+            return;
+        }
+
+        this.updateEstimateLabel();
+
+        if (this.jobCombo != null) {
+            this.jobCombo.valueProperty().addListener(o -> this.updateEstimateLabel());
+        }
+
+        if (this.mpiField != null) {
+            this.mpiField.textProperty().addListener(o -> this.updateEstimateLabel());
+        }
+
+        if (this.ompField != null) {
+            this.ompField.textProperty().addListener(o -> this.updateEstimateLabel());
+        }
+
+        if (this.poolField != null) {
+            this.poolField.textProperty().addListener(o -> this.updateEstimateLabel());
+        }
+    }
+
+    private void updateEstimateLabel() {
+        if (this.estimateLabel == null) {
+            return;
+        }
+
+        RunningEstimate estimate = this.getEstimate();
+        if (estimate == null) {
+            this.estimateLabel.setText("unknown");
+            this.estimateLabel.setStyle("");
+            return;
+        }
+
+        this.estimateLabel.setText(estimate.toString());
+
+        double maxMemory = RunningManager.getInstance().getMaxMemory();
+        if (maxMemory > 0.0 && estimate.getMemory() > maxMemory) {
+            this.estimateLabel.setStyle(ERROR_STYLE);
+        } else {
+            this.estimateLabel.setStyle("");
+        }
+    }
+
     @Override
     public int hashCode() {
         String str = this.project.toString();
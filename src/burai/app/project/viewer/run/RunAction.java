@@ -16,14 +16,23 @@
 
 package burai.app.project.viewer.run;
 
+import java.io.IOException;
+
 import burai.app.QEFXMainController;
 import burai.app.project.QEFXProjectController;
+import burai.project.Project;
 import burai.run.RunningManager;
 import burai.run.RunningNode;
+import burai.run.daemon.DaemonClient;
+import burai.run.daemon.DaemonJob;
 import burai.ssh.SSHJob;
+import burai.ssh.SSHMonitor;
+import javafx.application.Platform;
 
 public class RunAction {
 
+    private static final long DAEMON_POLLING = 3000L;
+
     private QEFXProjectController controller;
 
     public RunAction(QEFXProjectController controller) {
@@ -52,6 +61,12 @@ public class RunAction {
             return;
         }
 
+        Project project = runningNode.getProject();
+        if (DaemonClient.isEnabled() && project != null && project.getDirectoryPath() != null) {
+            this.runOnDaemon(runningNode);
+            return;
+        }
+
         RunningManager.getInstance().addNode(runningNode);
 
         QEFXMainController mainController = this.controller.getMainController();
@@ -68,11 +83,114 @@ public class RunAction {
         mainController.showHome();
     }
 
+    private void runOnDaemon(RunningNode runningNode) {
+        Project project = runningNode.getProject();
+        project.saveQEInputs();
+
+        DaemonJob job = new DaemonJob(project.getDirectoryPath(), runningNode.getType());
+        job.setNumProcesses(runningNode.getNumProcesses());
+        job.setNumThreads(runningNode.getNumThreads());
+        job.setNumPools(runningNode.getNumPools());
+        job.setResume(runningNode.isResume());
+
+        Thread thread = new Thread(() -> {
+            DaemonClient client = DaemonClient.startDaemon();
+
+            if (client == null) {
+                // the daemon is not available, so the job runs in this process
+                Platform.runLater(() -> {
+                    RunningManager.getInstance().addNode(runningNode);
+                });
+                return;
+            }
+
+            DaemonJob job2 = null;
+            try {
+                job2 = client.submit(job);
+
+            } catch (IOException e1) {
+                e1.printStackTrace();
+
+                // the job may have been queued, even if the response is lost (e.g. timeout).
+                try {
+                    job2 = findJob(client, job);
+                } catch (IOException e2) {
+                    System.err.println("Cannot confirm the job on the daemon: " + project.getDirectoryPath());
+                    e2.printStackTrace();
+                    return;
+                }
+
+                if (job2 == null) {
+                    // the daemon has not accepted the job, so the job runs in this process
+                    Platform.runLater(() -> {
+                        RunningManager.getInstance().addNode(runningNode);
+                    });
+                    return;
+                }
+            }
+
+            waitForDaemon(client, job2.getId(), project);
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * the unfinished job of the same directory and type, which is on the daemon.
+     */
+    private static DaemonJob findJob(DaemonClient client, DaemonJob job) throws IOException {
+        for (DaemonJob job2 : client.list().getJobs()) {
+            if (job2 == null || job2.isFinished()) {
+                continue;
+            }
+
+            if (job.getPath().equals(job2.getPath()) && job.getType() == job2.getType()) {
+                return job2;
+            }
+        }
+
+        return null;
+    }
+
+    private static void waitForDaemon(DaemonClient client, long id, Project project) {
+        while (true) {
+            try {
+                Thread.sleep(DAEMON_POLLING);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            DaemonJob job = null;
+            try {
+                job = client.getJob(id);
+            } catch (IOException e) {
+                // the daemon has been stopped
+                return;
+            }
+
+            if (job == null || job.isFinished()) {
+                break;
+            }
+        }
+
+        if (project.getProperty() != null) {
+            project.getProperty().reloadResults();
+        }
+    }
+
     private void runOnSSHServer(SSHJob sshJob) {
         if (sshJob == null) {
             return;
         }
 
-        sshJob.postJobToServer();
+        if (!sshJob.postJobToServer()) {
+            return;
+        }
+
+        SSHMonitor monitor = sshJob.createMonitor();
+        if (monitor != null) {
+            monitor.startMonitoring();
+        }
     }
 }
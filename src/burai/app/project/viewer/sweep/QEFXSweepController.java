@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.app.project.viewer.sweep;
+
+import java.net.URL;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.fxml.FXML;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Group;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.StackPane;
+import burai.app.QEFXAppController;
+import burai.app.project.QEFXProjectController;
+import burai.com.graphic.svg.SVGLibrary;
+import burai.com.graphic.svg.SVGLibrary.SVGData;
+import burai.run.sweep.Sweep;
+import burai.run.sweep.SweepChanged;
+import burai.run.sweep.SweepParameter;
+import burai.run.sweep.SweepPoint;
+
+public class QEFXSweepController extends QEFXAppController {
+
+    private static final double INSETS_SIZE = 2.0;
+
+    private static final double GRAPHIC_SIZE = 18.0;
+    private static final String GRAPHIC_CLASS = "piclight-button";
+
+    private QEFXProjectController projectController;
+
+    private Sweep sweep;
+
+    private SweepChanged onSweepChanged;
+
+    private boolean refreshing;
+
+    @FXML
+    private Group baseGroup;
+
+    @FXML
+    private Button closeButton;
+
+    @FXML
+    private Button stopButton;
+
+    @FXML
+    private Label titleLabel;
+
+    @FXML
+    private LineChart<Number, Number> energyChart;
+
+    @FXML
+    private TableView<SweepPoint> pointTable;
+
+    public QEFXSweepController(QEFXProjectController projectController, Sweep sweep) {
+        super(projectController == null ? null : projectController.getMainController());
+
+        if (projectController == null) {
+            throw new IllegalArgumentException("projectController is null.");
+        }
+
+        if (sweep == null) {
+            throw new IllegalArgumentException("sweep is null.");
+        }
+
+        this.projectController = projectController;
+        this.sweep = sweep;
+        this.refreshing = false;
+
+        this.onSweepChanged = point -> {
+            synchronized (this) {
+                if (this.refreshing) {
+                    return;
+                }
+
+                this.refreshing = true;
+            }
+
+            Platform.runLater(() -> {
+                synchronized (this) {
+                    this.refreshing = false;
+                }
+
+                this.refresh();
+            });
+        };
+
+        this.sweep.addOnSweepChanged(this.onSweepChanged);
+    }
+
+    @Override
+    public void initialize(URL location, ResourceBundle resources) {
+        this.setupBaseGroup();
+        this.setupCloseButton();
+        this.setupStopButton();
+        this.setupTitleLabel();
+        this.setupEnergyChart();
+        this.setupPointTable();
+        this.refresh();
+    }
+
+    public void close() {
+        EventHandler<ActionEvent> handler = null;
+        if (this.closeButton != null) {
+            handler = this.closeButton.getOnAction();
+        }
+
+        if (handler != null) {
+            handler.handle(new ActionEvent());
+        }
+    }
+
+    private void setupBaseGroup() {
+        if (this.baseGroup == null) {
+            return;
+        }
+
+        StackPane.setMargin(this.baseGroup, new Insets(INSETS_SIZE));
+        StackPane.setAlignment(this.baseGroup, Pos.BOTTOM_LEFT);
+    }
+
+    private void setupCloseButton() {
+        if (this.closeButton == null) {
+            return;
+        }
+
+        this.closeButton.setText("");
+        this.closeButton.setGraphic(
+                SVGLibrary.getGraphic(SVGData.CLOSE, GRAPHIC_SIZE, null, GRAPHIC_CLASS));
+
+        this.closeButton.setTooltip(new Tooltip("close"));
+
+        this.closeButton.setOnAction(event -> {
+            // the sweep keeps running, without this viewer
+            this.sweep.removeOnSweepChanged(this.onSweepChanged);
+            this.projectController.clearStackedsOnViewerPane();
+        });
+    }
+
+    private void setupStopButton() {
+        if (this.stopButton == null) {
+            return;
+        }
+
+        this.stopButton.setText("");
+        this.stopButton.setGraphic(
+                SVGLibrary.getGraphic(SVGData.STOP, GRAPHIC_SIZE, null, GRAPHIC_CLASS));
+
+        this.stopButton.setTooltip(new Tooltip("stop"));
+
+        this.stopButton.setOnAction(event -> {
+            this.sweep.stop();
+        });
+    }
+
+    private void setupTitleLabel() {
+        if (this.titleLabel == null) {
+            return;
+        }
+
+        StringBuilder title = new StringBuilder("Sweep:");
+        for (SweepParameter parameter : this.sweep.getParameters()) {
+            title.append(' ').append(parameter.getLabel());
+        }
+
+        this.titleLabel.setText(title.toString());
+    }
+
+    private void setupEnergyChart() {
+        if (this.energyChart == null) {
+            return;
+        }
+
+        List<SweepParameter> parameters = this.sweep.getParameters();
+        if (!parameters.isEmpty()) {
+            this.energyChart.getXAxis().setLabel(parameters.get(parameters.size() - 1).getLabel());
+        }
+
+        this.energyChart.setLegendVisible(parameters.size() > 1);
+    }
+
+    private void setupPointTable() {
+        if (this.pointTable == null) {
+            return;
+        }
+
+        this.pointTable.getColumns().add(this.createColumn("#", point -> Integer.toString(point.getIndex() + 1)));
+
+        List<SweepParameter> parameters = this.sweep.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            final int index = i;
+            this.pointTable.getColumns().add(this.createColumn(parameters.get(i).getLabel(), point -> point.getValue(index)));
+        }
+
+        this.pointTable.getColumns().add(this.createColumn("Energy (Ry)", point -> format("%.8f", point.getEnergy())));
+        this.pointTable.getColumns().add(this.createColumn("dE/atom (Ry)", point -> format("%.2e", point.getDeltaEnergy())));
+        this.pointTable.getColumns().add(this.createColumn("Time (s)", point -> format("%.1f", point.getWallTime())));
+        this.pointTable.getColumns().add(this.createColumn("Memory (MB)", point -> format("%.1f", point.getMemory())));
+        this.pointTable.getColumns().add(this.createColumn("Status", point -> {
+            String message = point.getMessage();
+            return point.getState().toString() + (message == null ? "" : (": " + message));
+        }));
+    }
+
+    private static String format(String form, double value) {
+        return Double.isNaN(value) ? "" : String.format(form, value);
+    }
+
+    @FunctionalInterface
+    private static interface PointText {
+        public abstract String textOf(SweepPoint point);
+    }
+
+    private TableColumn<SweepPoint, String> createColumn(String title, PointText pointText) {
+        TableColumn<SweepPoint, String> column = new TableColumn<SweepPoint, String>(title);
+        column.setSortable(false);
+        column.setCellValueFactory(param -> {
+            SweepPoint point = param == null ? null : param.getValue();
+            return new ReadOnlyStringWrapper(point == null ? "" : pointText.textOf(point));
+        });
+
+        return column;
+    }
+
+    private void refresh() {
+        List<SweepPoint> points = this.sweep.getPoints();
+
+        if (this.pointTable != null) {
+            this.pointTable.getItems().setAll(points);
+            this.pointTable.refresh();
+        }
+
+        if (this.energyChart != null) {
+            this.refreshEnergyChart(points);
+        }
+
+        if (this.stopButton != null) {
+            this.stopButton.setDisable(this.sweep.isFinished());
+        }
+    }
+
+    private void refreshEnergyChart(List<SweepPoint> points) {
+        List<SweepParameter> parameters = this.sweep.getParameters();
+        if (parameters.isEmpty()) {
+            return;
+        }
+
+        SweepParameter lastParameter = parameters.get(parameters.size() - 1);
+
+        this.energyChart.getData().clear();
+
+        XYChart.Series<Number, Number> series = null;
+        int group = -1;
+
+        for (SweepPoint point : points) {
+            if (point.getGroup() != group || series == null) {
+                group = point.getGroup();
+                series = new XYChart.Series<Number, Number>();
+
+                StringBuilder name = new StringBuilder();
+                for (int i = 0; i < (point.numValues() - 1); i++) {
+                    name.append(i > 0 ? ", " : "").append(parameters.get(i).getLabel()).append(" = ").append(point.getValue(i));
+                }
+
+                series.setName(name.toString());
+                this.energyChart.getData().add(series);
+            }
+
+            double energy = point.getEnergy();
+            if (Double.isNaN(energy)) {
+                continue;
+            }
+
+            double x = lastParameter.toNumber(point.getValue(point.numValues() - 1));
+            if (Double.isNaN(x)) {
+                x = (double) (point.getStep() + 1);
+            }
+
+            series.getData().add(new XYChart.Data<Number, Number>(x, energy));
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.app.project.viewer.sweep;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ResourceBundle;
+
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.fxml.Initializable;
+import javafx.scene.Node;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.DialogPane;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import burai.app.QEFXMain;
+import burai.com.consts.ConstantStyles;
+import burai.com.env.Environments;
+import burai.input.QEInput;
+import burai.project.Project;
+import burai.run.RunningType;
+import burai.run.sweep.Sweep;
+import burai.run.sweep.SweepParameter;
+
+public class QEFXSweepDialog extends Dialog<Sweep> implements Initializable {
+
+    private static final String PROP_KEY_MPI = "number_of_processes";
+    private static final String PROP_KEY_OPENMP = "number_of_threads";
+    private static final String PROP_KEY_THRESHOLD = "sweep_threshold";
+
+    private static final String ERROR_STYLE = ConstantStyles.ERROR_COLOR;
+
+    private static final String PARAM_NONE = "(none)";
+    private static final String PARAM_ECUTWFC = "ecutwfc";
+    private static final String PARAM_ECUTRHO = "ecutrho";
+    private static final String PARAM_DEGAUSS = "degauss";
+    private static final String PARAM_KPOINTS = "K-points";
+    private static final String PARAM_LATTICE = "Lattice scale";
+
+    private static final String[] PARAM_NAMES = {
+            PARAM_ECUTWFC, PARAM_ECUTRHO, PARAM_DEGAUSS, PARAM_KPOINTS, PARAM_LATTICE
+    };
+
+    private static final String DEFAULT_THRESHOLD = "1.0e-3";
+
+    private Project project;
+
+    @FXML
+    private ComboBox<RunningType> jobCombo;
+
+    @FXML
+    private ComboBox<String> paramCombo1;
+
+    @FXML
+    private TextField valueField1;
+
+    @FXML
+    private ComboBox<String> paramCombo2;
+
+    @FXML
+    private TextField valueField2;
+
+    @FXML
+    private TextField thresholdField;
+
+    @FXML
+    private TextField mpiField;
+
+    @FXML
+    private TextField ompField;
+
+    public QEFXSweepDialog(Project project) {
+        super();
+
+        if (project == null) {
+            throw new IllegalArgumentException("project is null.");
+        }
+
+        this.project = project;
+
+        DialogPane dialogPane = this.getDialogPane();
+        QEFXMain.initializeStyleSheets(dialogPane.getStylesheets());
+        QEFXMain.initializeDialogOwner(this);
+
+        this.setResizable(false);
+        this.setTitle("Sweep parameters");
+        this.setHeaderText("Values are separated by commas, e.g. \"30, 40, 50\" or \"4 4 4, 6 6 6\".");
+        this.setupButtonTypes(false);
+
+        Node node = null;
+        try {
+            node = this.createContent();
+        } catch (Exception e) {
+            node = new Label("ERROR: cannot show QEFXSweepDialog.");
+            e.printStackTrace();
+        }
+
+        dialogPane.setContent(node);
+
+        this.setResultConverter(buttonType -> {
+            if (ButtonType.OK.equals(buttonType)) {
+                Sweep sweep = this.createSweep();
+                if (sweep != null) {
+                    this.saveEnvProperties();
+                    return sweep;
+                }
+            }
+
+            return null;
+        });
+    }
+
+    private Node createContent() throws IOException {
+        FXMLLoader fxmlLoader = new FXMLLoader(this.getClass().getResource("QEFXSweepDialog.fxml"));
+        fxmlLoader.setController(this);
+        return fxmlLoader.load();
+    }
+
+    private void setupButtonTypes(boolean withOK) {
+        DialogPane dialogPane = this.getDialogPane();
+        if (dialogPane == null) {
+            return;
+        }
+
+        dialogPane.getButtonTypes().clear();
+        if (withOK) {
+            dialogPane.getButtonTypes().add(ButtonType.OK);
+        }
+        dialogPane.getButtonTypes().add(ButtonType.CANCEL);
+    }
+
+    private void resetButtonTypes() {
+        boolean status = true;
+        status = status && this.createParameter(this.paramCombo1, this.valueField1, false) != null;
+        status = status && this.isCorrectOuterParameter();
+        status = status && this.isCorrectThreshold();
+        status = status && this.textFieldToInteger(this.mpiField, 0) > 0;
+        status = status && this.textFieldToInteger(this.ompField, 0) > 0;
+        this.setupButtonTypes(status);
+    }
+
+    private boolean isCorrectOuterParameter() {
+        String name = this.paramCombo2 == null ? null : this.paramCombo2.getValue();
+        if (name == null || PARAM_NONE.equals(name)) {
+            return true;
+        }
+
+        return this.createParameter(this.paramCombo2, this.valueField2, false) != null;
+    }
+
+    private boolean isCorrectThreshold() {
+        String text = this.thresholdField == null ? null : this.thresholdField.getText();
+        if (text == null || text.trim().isEmpty()) {
+            return true;
+        }
+
+        try {
+            Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private double getThreshold() {
+        String text = this.thresholdField == null ? null : this.thresholdField.getText();
+        if (text == null || text.trim().isEmpty()) {
+            return -1.0;
+        }
+
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            return -1.0;
+        }
+    }
+
+    /*
+     * returns null, if the name or any of values is not correct.
+     */
+    private SweepParameter createParameter(ComboBox<String> paramCombo, TextField valueField, boolean showError) {
+        String name = paramCombo == null ? null : paramCombo.getValue();
+        if (name == null || PARAM_NONE.equals(name)) {
+            return null;
+        }
+
+        SweepParameter parameter = null;
+        if (PARAM_KPOINTS.equals(name)) {
+            parameter = SweepParameter.getKGridParameter();
+        } else if (PARAM_LATTICE.equals(name)) {
+            parameter = SweepParameter.getLatticeParameter();
+        } else {
+            parameter = SweepParameter.getNamelistParameter(QEInput.NAMELIST_SYSTEM, name);
+        }
+
+        String text = valueField == null ? null : valueField.getText();
+        String[] values = text == null ? null : text.split("[,;]");
+
+        boolean status = values != null && values.length > 0;
+        if (status) {
+            for (String value : values) {
+                if (!parameter.addValue(value)) {
+                    status = false;
+                    break;
+                }
+            }
+        }
+
+        if (valueField != null && showError) {
+            valueField.setStyle(status ? "" : ERROR_STYLE);
+        }
+
+        return status ? parameter : null;
+    }
+
+    private int textFieldToInteger(TextField field, int value) {
+        String text = field == null ? null : field.getText();
+        if (text == null || text.trim().isEmpty()) {
+            return value;
+        }
+
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private void saveEnvProperties() {
+        Environments.setProperty(PROP_KEY_MPI, this.textFieldToInteger(this.mpiField, 1));
+        Environments.setProperty(PROP_KEY_OPENMP, this.textFieldToInteger(this.ompField, 1));
+
+        String threshold = this.thresholdField == null ? null : this.thresholdField.getText();
+        Environments.setProperty(PROP_KEY_THRESHOLD, threshold == null ? "" : threshold.trim());
+    }
+
+    private Sweep createSweep() {
+        SweepParameter innerParameter = this.createParameter(this.paramCombo1, this.valueField1, false);
+        if (innerParameter == null) {
+            return null;
+        }
+
+        SweepParameter outerParameter = this.createParameter(this.paramCombo2, this.valueField2, false);
+
+        RunningType runningType = this.jobCombo == null ? null : this.jobCombo.getValue();
+        if (runningType == null) {
+            runningType = RunningType.SCF;
+        }
+
+        Sweep sweep = new Sweep(this.project, runningType);
+        sweep.setNumProcesses(Math.max(1, this.textFieldToInteger(this.mpiField, 1)));
+        sweep.setNumThreads(Math.max(1, this.textFieldToInteger(this.ompField, 1)));
+        sweep.setThreshold(this.getThreshold());
+
+        // the last parameter is converged
+        sweep.addParameter(outerParameter);
+        sweep.addParameter(innerParameter);
+        return sweep;
+    }
+
+    @Override
+    public void initialize(URL location, ResourceBundle resources) {
+        this.setupJobCombo();
+        this.setupParamCombo(this.paramCombo1, this.valueField1, false);
+        this.setupParamCombo(this.paramCombo2, this.valueField2, true);
+        this.setupThresholdField();
+        this.setupIntegerField(this.mpiField, PROP_KEY_MPI);
+        this.setupIntegerField(this.ompField, PROP_KEY_OPENMP);
+        this.resetButtonTypes();
+    }
+
+    private void setupJobCombo() {
+        if (this.jobCombo == null) {
+            return;
+        }
+
+        this.jobCombo.getItems().add(RunningType.SCF);
+        this.jobCombo.getItems().add(RunningType.OPTIMIZ);
+        this.jobCombo.getItems().add(RunningType.MD);
+
+        RunningType runningType = RunningType.getRunningType(this.project);
+        if (this.jobCombo.getItems().contains(runningType)) {
+            this.jobCombo.setValue(runningType);
+        } else {
+            this.jobCombo.setValue(RunningType.SCF);
+        }
+    }
+
+    private void setupParamCombo(ComboBox<String> paramCombo, TextField valueField, boolean optional) {
+        if (paramCombo == null || valueField == null) {
+            return;
+        }
+
+        if (optional) {
+            paramCombo.getItems().add(PARAM_NONE);
+        }
+
+        paramCombo.getItems().addAll(PARAM_NAMES);
+        paramCombo.setValue(optional ? PARAM_NONE : PARAM_ECUTWFC);
+
+        valueField.setDisable(optional);
+        if (!optional) {
+            valueField.setText("30, 40, 50, 60");
+        }
+
+        paramCombo.valueProperty().addListener(o -> {
+            valueField.setDisable(PARAM_NONE.equals(paramCombo.getValue()));
+            this.createParameter(paramCombo, valueField, true);
+            this.resetButtonTypes();
+        });
+
+        valueField.textProperty().addListener(o -> {
+            this.createParameter(paramCombo, valueField, true);
+            this.resetButtonTypes();
+            valueField.requestFocus();
+        });
+    }
+
+    private void setupThresholdField() {
+        if (this.thresholdField == null) {
+            return;
+        }
+
+        String threshold = Environments.getProperty(PROP_KEY_THRESHOLD);
+        this.thresholdField.setText(threshold == null ? DEFAULT_THRESHOLD : threshold);
+
+        this.thresholdField.textProperty().addListener(o -> {
+            this.thresholdField.setStyle(this.isCorrectThreshold() ? "" : ERROR_STYLE);
+            this.resetButtonTypes();
+            this.thresholdField.requestFocus();
+        });
+    }
+
+    private void setupIntegerField(TextField field, String key) {
+        if (field == null) {
+            return;
+        }
+
+        int value = 1;
+        if (Environments.hasProperty(key)) {
+            value = Math.max(1, Environments.getIntProperty(key));
+        }
+
+        field.setText(Integer.toString(value));
+
+        field.textProperty().addListener(o -> {
+            field.setStyle(this.textFieldToInteger(field, 0) > 0 ? "" : ERROR_STYLE);
+            this.resetButtonTypes();
+            field.requestFocus();
+        });
+    }
+}
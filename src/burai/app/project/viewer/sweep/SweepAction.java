@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.app.project.viewer.sweep;
+
+import java.util.Optional;
+
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
+import burai.app.QEFXMain;
+import burai.app.project.QEFXProjectController;
+import burai.project.Project;
+import burai.run.sweep.Sweep;
+
+public class SweepAction {
+
+    private Project project;
+
+    private QEFXProjectController controller;
+
+    private Sweep sweep;
+
+    public SweepAction(Project project, QEFXProjectController controller) {
+        if (project == null) {
+            throw new IllegalArgumentException("project is null.");
+        }
+
+        if (controller == null) {
+            throw new IllegalArgumentException("controller is null.");
+        }
+
+        this.project = project;
+        this.controller = controller;
+        this.sweep = null;
+    }
+
+    public QEFXProjectController getController() {
+        return this.controller;
+    }
+
+    public void showSweep() {
+        if (this.sweep == null || this.sweep.isFinished()) {
+            QEFXSweepDialog dialog = new QEFXSweepDialog(this.project);
+            Optional<Sweep> optSweep = dialog.showAndWait();
+            if (optSweep == null || !optSweep.isPresent()) {
+                return;
+            }
+
+            Sweep sweep = optSweep.get();
+            if (sweep == null) {
+                return;
+            }
+
+            if (!sweep.start()) {
+                Alert alert = new Alert(AlertType.ERROR);
+                QEFXMain.initializeDialogOwner(alert);
+                alert.setHeaderText("Cannot start the sweep of " + this.project.getDirectoryName());
+                alert.showAndWait();
+                return;
+            }
+
+            this.sweep = sweep;
+        }
+
+        try {
+            QEFXSweep qefxSweep = new QEFXSweep(this.controller, this.sweep);
+            this.controller.clearStackedsOnViewerPane();
+            this.controller.stackOnViewerPane(qefxSweep.getNode());
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -30,6 +30,7 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.DialogPane;
@@ -92,6 +93,18 @@ public class QEFXSSHDialog extends Dialog<ButtonType> implements Initializable {
     @FXML
     private TextField postField;
 
+    @FXML
+    private TextField monitorField;
+
+    @FXML
+    private TextField arrayField;
+
+    @FXML
+    private CheckBox bundleCheck;
+
+    @FXML
+    private CheckBox saveCheck;
+
     @FXML
     private TextArea scriptArea;
 
@@ -429,6 +442,46 @@ public class QEFXSSHDialog extends Dialog<ButtonType> implements Initializable {
             });
         }
 
+        if (this.monitorField != null) {
+            this.monitorField.textProperty().addListener(o -> {
+                SSHServer sshServer_ = this.getSSHServer();
+                if (sshServer_ != null) {
+                    sshServer_.setMonitorInterval(this.getMonitorInterval());
+                }
+            });
+        }
+
+        if (this.arrayField != null) {
+            this.arrayField.textProperty().addListener(o -> {
+                SSHServer sshServer_ = this.getSSHServer();
+                if (sshServer_ != null) {
+                    sshServer_.setArrayOption(this.getArrayOption());
+                }
+            });
+        }
+
+        if (this.bundleCheck != null) {
+            this.bundleCheck.selectedProperty().addListener(o -> {
+                SSHServer sshServer_ = this.getSSHServer();
+                if (sshServer_ != null) {
+                    sshServer_.setBundledTransfer(this.bundleCheck.isSelected());
+                }
+
+                if (this.saveCheck != null) {
+                    this.saveCheck.setDisable(sshServer_ == null || !this.bundleCheck.isSelected());
+                }
+            });
+        }
+
+        if (this.saveCheck != null) {
+            this.saveCheck.selectedProperty().addListener(o -> {
+                SSHServer sshServer_ = this.getSSHServer();
+                if (sshServer_ != null) {
+                    sshServer_.setSaveRetrieved(this.saveCheck.isSelected());
+                }
+            });
+        }
+
         if (this.scriptArea != null) {
             this.scriptArea.textProperty().addListener(o -> {
                 SSHServer sshServer_ = this.getSSHServer();
@@ -458,6 +511,28 @@ public class QEFXSSHDialog extends Dialog<ButtonType> implements Initializable {
             this.portField.setDisable(sshServer == null);
         }
 
+        if (this.monitorField != null) {
+            String monitorInterval = sshServer == null ? null : sshServer.getMonitorInterval();
+            this.monitorField.setText(monitorInterval == null ? "" : monitorInterval.trim());
+            this.monitorField.setDisable(sshServer == null);
+        }
+
+        if (this.arrayField != null) {
+            String arrayOption = sshServer == null ? null : sshServer.getArrayOption();
+            this.arrayField.setText(arrayOption == null ? "" : arrayOption.trim());
+            this.arrayField.setDisable(sshServer == null);
+        }
+
+        if (this.bundleCheck != null) {
+            this.bundleCheck.setSelected(sshServer == null ? false : sshServer.isBundledTransfer());
+            this.bundleCheck.setDisable(sshServer == null);
+        }
+
+        if (this.saveCheck != null) {
+            this.saveCheck.setSelected(sshServer == null ? false : sshServer.isSaveRetrieved());
+            this.saveCheck.setDisable(sshServer == null || !sshServer.isBundledTransfer());
+        }
+
         if (this.scriptArea != null) {
             String scriptText = sshServer == null ? null : sshServer.getJobScript();
             this.scriptArea.setText(scriptText == null ? "" : scriptText);
@@ -541,6 +616,24 @@ public class QEFXSSHDialog extends Dialog<ButtonType> implements Initializable {
         return value == null ? null : value.trim();
     }
 
+    private String getMonitorInterval() {
+        if (this.monitorField == null) {
+            return null;
+        }
+
+        String value = this.monitorField.getText();
+        return value == null ? null : value.trim();
+    }
+
+    private String getArrayOption() {
+        if (this.arrayField == null) {
+            return null;
+        }
+
+        String value = this.arrayField.getText();
+        return value == null ? null : value.trim();
+    }
+
     private String getScriptText() {
         if (this.scriptArea == null) {
             return null;
@@ -27,6 +27,7 @@ import burai.app.QEFXMain;
 import burai.app.QEFXMainController;
 import burai.app.project.QEFXProjectController;
 import burai.project.Project;
+import burai.project.property.ProjectProperty;
 import burai.run.RunningManager;
 import burai.run.RunningNode;
 
@@ -77,6 +78,11 @@ public class QEFXProjectTab extends QEFXTab<Project> {
             if (this.projectController != null) {
                 this.projectController.detach();
             }
+
+            ProjectProperty projectProperty = this.body == null ? null : this.body.getProperty();
+            if (projectProperty != null) {
+                projectProperty.releaseResults();
+            }
         });
     }
 
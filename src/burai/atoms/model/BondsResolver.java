@@ -82,7 +82,7 @@ public class BondsResolver implements AtomEventListener, CellEventListener {
 
     protected void resolve() {
         int natom = this.cell.numAtoms();
-        if (natom <= NUM_ATOMS_TO_ASYNC) {
+        if (natom <= NUM_ATOMS_TO_ASYNC || Environments.isHeadless()) {
             this.resolveAll();
 
         } else {
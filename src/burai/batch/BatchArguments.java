@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import burai.run.RunningType;
+
+public class BatchArguments {
+
+    private static final String USAGE =
+            "Usage: burai batch <command> [options] <project|job ID>..." + System.lineSeparator()
+                    + System.lineSeparator()
+                    + "Commands:" + System.lineSeparator()
+                    + "  run      run projects, queued by the number of cores" + System.lineSeparator()
+                    + "  export   export results of projects" + System.lineSeparator()
+                    + "  submit   submit projects to the job daemon, which is started if needed" + System.lineSeparator()
+                    + "  jobs     show jobs of the job daemon" + System.lineSeparator()
+                    + "  cancel   cancel jobs of the job daemon, by their IDs" + System.lineSeparator()
+                    + "  shutdown stop the job daemon, whose running jobs are run again at the next start"
+                    + System.lineSeparator()
+                    + "  help     show this message" + System.lineSeparator()
+                    + System.lineSeparator()
+                    + "Options:" + System.lineSeparator()
+                    + "  -t,  --type <SCF|OPTIMIZ|MD|DOS|BAND>  type of the job" + System.lineSeparator()
+                    + "  -np, --processes <n>                   number of MPI processes" + System.lineSeparator()
+                    + "  -nt, --threads <n>                     number of OpenMP threads" + System.lineSeparator()
+                    + "  -nk, --pools <n>                       number of k-point pools" + System.lineSeparator()
+                    + "  -s,  --set <key>=<value>               override of inputs, where key is" + System.lineSeparator()
+                    + "                                         <namelist>.<name>, kgrid or scale (needs --dir)"
+                    + System.lineSeparator()
+                    + "  -r,  --resume                          resume interrupted optimizations or MD" + System.lineSeparator()
+                    + "  -d,  --dir <directory>                 directory to save the project" + System.lineSeparator()
+                    + "  -S,  --ssh <server>                    run projects on the SSH server, as one array job"
+                    + System.lineSeparator()
+                    + "  -f,  --format <json|csv>               format of results (default: json)" + System.lineSeparator()
+                    + "  -o,  --output <file>                   file of results (default: stdout)";
+
+    private BatchCommand command;
+
+    private List<String> projectPaths;
+
+    private RunningType type;
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    private int numPools;
+
+    private List<String[]> overrides;
+
+    private boolean resume;
+
+    private String directoryPath;
+
+    private String sshServer;
+
+    private BatchFormat format;
+
+    private String outputPath;
+
+    private BatchArguments() {
+        this.command = BatchCommand.HELP;
+        this.projectPaths = new ArrayList<String>();
+        this.type = null;
+        this.numProcesses = 0;
+        this.numThreads = 0;
+        this.numPools = 0;
+        this.overrides = new ArrayList<String[]>();
+        this.resume = false;
+        this.directoryPath = null;
+        this.sshServer = null;
+        this.format = BatchFormat.JSON;
+        this.outputPath = null;
+    }
+
+    public static String getUsage() {
+        return USAGE;
+    }
+
+    public static BatchArguments parse(String[] args) throws IllegalArgumentException {
+        BatchArguments arguments = new BatchArguments();
+        if (args == null || args.length < 1) {
+            return arguments;
+        }
+
+        arguments.command = BatchCommand.getBatchCommand(args[0]);
+        if (arguments.command == null) {
+            throw new IllegalArgumentException("unknown command: " + args[0]);
+        }
+
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i] == null ? null : args[i].trim();
+            if (arg == null || arg.isEmpty()) {
+                continue;
+            }
+
+            if (!arg.startsWith("-")) {
+                arguments.projectPaths.add(arg);
+                continue;
+            }
+
+            if ("-r".equals(arg) || "--resume".equals(arg)) {
+                arguments.resume = true;
+                continue;
+            }
+
+            if ((i + 1) >= args.length) {
+                throw new IllegalArgumentException("no value of " + arg);
+            }
+
+            String value = args[++i] == null ? "" : args[i].trim();
+
+            if ("-t".equals(arg) || "--type".equals(arg)) {
+                arguments.type = parseType(value);
+
+            } else if ("-np".equals(arg) || "--processes".equals(arg)) {
+                arguments.numProcesses = parsePositive(arg, value);
+
+            } else if ("-nt".equals(arg) || "--threads".equals(arg)) {
+                arguments.numThreads = parsePositive(arg, value);
+
+            } else if ("-nk".equals(arg) || "--pools".equals(arg)) {
+                arguments.numPools = parsePositive(arg, value);
+
+            } else if ("-s".equals(arg) || "--set".equals(arg)) {
+                int index = value.indexOf('=');
+                if (index < 1 || index >= (value.length() - 1)) {
+                    throw new IllegalArgumentException("incorrect override: " + value);
+                }
+
+                arguments.overrides.add(new String[] {
+                        value.substring(0, index).trim(), value.substring(index + 1).trim() });
+
+            } else if ("-d".equals(arg) || "--dir".equals(arg)) {
+                arguments.directoryPath = value;
+
+            } else if ("-S".equals(arg) || "--ssh".equals(arg)) {
+                arguments.sshServer = value;
+
+            } else if ("-f".equals(arg) || "--format".equals(arg)) {
+                arguments.format = BatchFormat.getBatchFormat(value);
+                if (arguments.format == null) {
+                    throw new IllegalArgumentException("unknown format: " + value);
+                }
+
+            } else if ("-o".equals(arg) || "--output".equals(arg)) {
+                arguments.outputPath = value;
+
+            } else {
+                throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+
+        if (arguments.command == BatchCommand.CANCEL) {
+            for (String id : arguments.projectPaths) {
+                parsePositive("job ID", id.startsWith("#") ? id.substring(1) : id);
+            }
+        }
+
+        if (arguments.needsProjects() && arguments.projectPaths.isEmpty()) {
+            throw new IllegalArgumentException(arguments.command == BatchCommand.CANCEL ? "no job ID." : "no project.");
+        }
+
+        if (arguments.sshServer != null && arguments.command != BatchCommand.RUN) {
+            throw new IllegalArgumentException("--ssh is available for only run.");
+        }
+
+        if (arguments.directoryPath != null && arguments.projectPaths.size() > 1) {
+            throw new IllegalArgumentException("--dir is available for only one project.");
+        }
+
+        // the overridden inputs are saved in another directory, not to edit the project.
+        if (!arguments.overrides.isEmpty() && arguments.directoryPath == null) {
+            throw new IllegalArgumentException("--set needs --dir, where the overridden project is saved.");
+        }
+
+        return arguments;
+    }
+
+    private boolean needsProjects() {
+        switch (this.command) {
+        case RUN:
+        case EXPORT:
+        case SUBMIT:
+        case CANCEL:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static RunningType parseType(String value) {
+        for (RunningType type : RunningType.values()) {
+            if (type.name().equalsIgnoreCase(value) || type.toString().equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException("unknown type: " + value);
+    }
+
+    private static int parsePositive(String arg, String value) {
+        int i = 0;
+        try {
+            i = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            i = 0;
+        }
+
+        if (i < 1) {
+            throw new IllegalArgumentException("incorrect value of " + arg + ": " + value);
+        }
+
+        return i;
+    }
+
+    public BatchCommand getCommand() {
+        return this.command;
+    }
+
+    public List<String> getProjectPaths() {
+        return this.projectPaths;
+    }
+
+    /*
+     * IDs of jobs to cancel.
+     */
+    public List<Long> getJobIds() {
+        List<Long> ids = new ArrayList<Long>();
+        for (String id : this.projectPaths) {
+            ids.add(Long.parseLong(id.startsWith("#") ? id.substring(1) : id));
+        }
+
+        return ids;
+    }
+
+    /*
+     * null, if the type of each project is used.
+     */
+    public RunningType getType() {
+        return this.type;
+    }
+
+    /*
+     * 0, if not specified.
+     */
+    public int getNumProcesses() {
+        return this.numProcesses;
+    }
+
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    public int getNumPools() {
+        return this.numPools;
+    }
+
+    /*
+     * pairs of key and value.
+     */
+    public List<String[]> getOverrides() {
+        return this.overrides;
+    }
+
+    public boolean isResume() {
+        return this.resume;
+    }
+
+    public String getDirectoryPath() {
+        return this.directoryPath;
+    }
+
+    /*
+     * title of the SSH server, or null if projects are run on this machine.
+     */
+    public String getSSHServer() {
+        return this.sshServer;
+    }
+
+    public BatchFormat getFormat() {
+        return this.format;
+    }
+
+    public String getOutputPath() {
+        return this.outputPath;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.batch;
+
+public enum BatchCommand {
+    RUN("run"),
+    EXPORT("export"),
+    SUBMIT("submit"),
+    JOBS("jobs"),
+    CANCEL("cancel"),
+    SHUTDOWN("shutdown"),
+    HELP("help");
+
+    private String label;
+
+    private BatchCommand(String label) {
+        this.label = label;
+    }
+
+    public static BatchCommand getBatchCommand(String label) {
+        String label2 = label == null ? null : label.trim();
+        if (label2 == null || label2.isEmpty()) {
+            return null;
+        }
+
+        for (BatchCommand command : BatchCommand.values()) {
+            if (command.label.equalsIgnoreCase(label2)) {
+                return command;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return this.label;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.batch;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class BatchExporter {
+
+    private BatchFormat format;
+
+    public BatchExporter(BatchFormat format) {
+        if (format == null) {
+            throw new IllegalArgumentException("format is null.");
+        }
+
+        this.format = format;
+    }
+
+    /*
+     * results are written to stdout, if filePath is null.
+     */
+    public void export(List<BatchResult> results, String filePath) throws IOException {
+        if (results == null) {
+            return;
+        }
+
+        Writer writer = null;
+
+        try {
+            if (filePath == null || filePath.trim().isEmpty()) {
+                writer = new OutputStreamWriter(System.out);
+            } else {
+                writer = new BufferedWriter(new FileWriter(filePath.trim()));
+            }
+
+            if (this.format == BatchFormat.CSV) {
+                this.writeCSV(results, writer);
+            } else {
+                this.writeJSON(results, writer);
+            }
+
+        } finally {
+            if (writer != null) {
+                if (filePath == null || filePath.trim().isEmpty()) {
+                    // stdout is not closed
+                    writer.flush();
+                } else {
+                    writer.close();
+                }
+            }
+        }
+    }
+
+    private void writeJSON(List<BatchResult> results, Writer writer) throws IOException {
+        Gson gson = new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .setPrettyPrinting()
+                .create();
+
+        gson.toJson(results, writer);
+        writer.write(System.lineSeparator());
+    }
+
+    private void writeCSV(List<BatchResult> results, Writer writer) throws IOException {
+        this.writeCSVLine(BatchResult.getColumnNames(), writer);
+
+        for (BatchResult result : results) {
+            if (result != null) {
+                this.writeCSVLine(result.getColumnValues(), writer);
+            }
+        }
+    }
+
+    private void writeCSVLine(Object[] values, Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder();
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+
+            String value = values[i] == null ? "" : values[i].toString();
+            if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+                value = "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+
+            line.append(value);
+        }
+
+        writer.write(line.toString());
+        writer.write(System.lineSeparator());
+    }
+}
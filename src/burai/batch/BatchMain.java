@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import burai.com.env.Environments;
+import burai.com.life.Life;
+import burai.project.Project;
+import burai.run.RunningType;
+import burai.run.daemon.DaemonClient;
+import burai.run.daemon.DaemonJob;
+import burai.run.daemon.DaemonResponse;
+import burai.ssh.SSHServer;
+import burai.ssh.SSHServerList;
+
+/*
+ * entry point of batch mode, which runs without JavaFX, e.g. on compute nodes without display.
+ */
+public final class BatchMain {
+
+    private static final int EXIT_SUCCESS = 0;
+    private static final int EXIT_FAILURE = 1;
+    private static final int EXIT_USAGE = 2;
+
+    private BatchMain() {
+        // NOP
+    }
+
+    public static void main(String[] args) {
+        Environments.setHeadless(true);
+        Locale.setDefault(Locale.ENGLISH);
+
+        BatchArguments arguments = null;
+        try {
+            arguments = BatchArguments.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println(BatchArguments.getUsage());
+            System.exit(EXIT_USAGE);
+            return;
+        }
+
+        int status = EXIT_FAILURE;
+        try {
+            status = execute(arguments);
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = EXIT_FAILURE;
+        }
+
+        Life.getInstance().toBeDead();
+        System.exit(status);
+    }
+
+    private static int execute(BatchArguments arguments) throws Exception {
+        List<BatchResult> results = null;
+
+        switch (arguments.getCommand()) {
+        case RUN:
+            if (arguments.getSSHServer() != null) {
+                SSHServer sshServer = SSHServerList.getInstance().getSSHServer(arguments.getSSHServer());
+                if (sshServer == null) {
+                    System.err.println("ERROR: no SSH server: " + arguments.getSSHServer());
+                    return EXIT_FAILURE;
+                }
+
+                results = new BatchRunner(arguments).runOnSSHServer(sshServer);
+
+            } else {
+                results = new BatchRunner(arguments).run();
+            }
+            break;
+
+        case EXPORT:
+            results = exportResults(arguments);
+            break;
+
+        case SUBMIT:
+            DaemonClient client = DaemonClient.startDaemon();
+            if (client == null) {
+                System.err.println("ERROR: cannot start the job daemon.");
+                return EXIT_FAILURE;
+            }
+
+            results = new BatchRunner(arguments).submit(client);
+            break;
+
+        case JOBS:
+        case CANCEL:
+        case SHUTDOWN:
+            return controlDaemon(arguments);
+
+        default:
+            System.out.println(BatchArguments.getUsage());
+            return EXIT_SUCCESS;
+        }
+
+        BatchExporter exporter = new BatchExporter(arguments.getFormat());
+        exporter.export(results, arguments.getOutputPath());
+
+        for (BatchResult result : results) {
+            if (result == null || !(result.isDone() || result.isQueued())) {
+                return EXIT_FAILURE;
+            }
+        }
+
+        return EXIT_SUCCESS;
+    }
+
+    private static int controlDaemon(BatchArguments arguments) throws Exception {
+        DaemonClient client = DaemonClient.getClient();
+        if (client == null) {
+            System.err.println("the job daemon is not running.");
+            return arguments.getCommand() == BatchCommand.SHUTDOWN ? EXIT_SUCCESS : EXIT_FAILURE;
+        }
+
+        int status = EXIT_SUCCESS;
+
+        switch (arguments.getCommand()) {
+        case JOBS:
+            DaemonResponse response = client.list();
+            System.out.println("cores: " + response.getNumUsedCores() + " / " + response.getNumCores());
+            for (DaemonJob job : response.getJobs()) {
+                if (job != null) {
+                    System.out.println(job.toString() + "  " + job.getPath());
+                }
+            }
+            break;
+
+        case CANCEL:
+            for (Long id : arguments.getJobIds()) {
+                DaemonResponse response2 = client.cancel(id);
+                if (!response2.isSuccess()) {
+                    System.err.println("ERROR: " + response2.getMessage());
+                    status = EXIT_FAILURE;
+                }
+            }
+            break;
+
+        case SHUTDOWN:
+            client.shutdown();
+            break;
+
+        default:
+            break;
+        }
+
+        return status;
+    }
+
+    private static List<BatchResult> exportResults(BatchArguments arguments) {
+        List<BatchResult> results = new ArrayList<BatchResult>();
+
+        for (String projectPath : arguments.getProjectPaths()) {
+            BatchResult result = new BatchResult(projectPath);
+            results.add(result);
+
+            File file = new File(projectPath);
+            if (!Project.isProjectDirectory(file.getPath())) {
+                result.setError("not a project directory.");
+                continue;
+            }
+
+            Project project = Project.getInstance(file.getAbsolutePath());
+            if (project == null || !project.isValid()) {
+                result.setError("cannot open the project.");
+                continue;
+            }
+
+            RunningType type = arguments.getType();
+            if (type == null) {
+                type = RunningType.getRunningType(project);
+            }
+
+            result.setStatus(BatchResult.STATUS_DONE);
+            result.readResults(project, type == null ? RunningType.SCF : type);
+        }
+
+        return results;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.batch;
+
+import java.io.File;
+import java.util.List;
+
+import burai.project.Project;
+import burai.project.property.ProjectEnergies;
+import burai.project.property.ProjectGeometry;
+import burai.project.property.ProjectGeometryList;
+import burai.project.property.ProjectProperty;
+import burai.run.RunningType;
+import burai.run.parser.LogSummary;
+
+/*
+ * results of a project, which are serialized to JSON by Gson.
+ * Units are Ry for total energy, eV for Fermi energy, Ry/Bohr for force, sec for time and MB for memory.
+ * Values are null, if not available.
+ */
+public class BatchResult {
+
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_ERROR = "error";
+
+    private static final String[] COLUMN_NAMES = {
+            "project", "type", "status", "message", "processes", "threads", "pools",
+            "total_energy", "converged", "scf_steps", "fermi_energy",
+            "geometries", "total_force", "wall_time", "memory"
+    };
+
+    private String project;
+
+    private String type;
+
+    private String status;
+
+    private String message;
+
+    private Integer processes;
+
+    private Integer threads;
+
+    private Integer pools;
+
+    private Double totalEnergy;
+
+    private Boolean converged;
+
+    private Integer scfSteps;
+
+    private Double fermiEnergy;
+
+    private Integer geometries;
+
+    private Double totalForce;
+
+    private Double wallTime;
+
+    private Double memory;
+
+    public BatchResult(String projectPath) {
+        this.project = projectPath;
+        this.type = null;
+        this.status = null;
+        this.message = null;
+        this.processes = null;
+        this.threads = null;
+        this.pools = null;
+        this.totalEnergy = null;
+        this.converged = null;
+        this.scfSteps = null;
+        this.fermiEnergy = null;
+        this.geometries = null;
+        this.totalForce = null;
+        this.wallTime = null;
+        this.memory = null;
+    }
+
+    public String getProject() {
+        return this.project;
+    }
+
+    public String getStatus() {
+        return this.status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public void setError(String message) {
+        this.status = STATUS_ERROR;
+        this.message = message;
+    }
+
+    public boolean isDone() {
+        return STATUS_DONE.equals(this.status);
+    }
+
+    public boolean isQueued() {
+        return STATUS_QUEUED.equals(this.status);
+    }
+
+    public void setLayout(int numProcesses, int numThreads, int numPools) {
+        this.processes = numProcesses;
+        this.threads = numThreads;
+        this.pools = numPools;
+    }
+
+    public void readResults(Project project, RunningType type) {
+        if (project == null) {
+            return;
+        }
+
+        if (project.getDirectoryPath() != null) {
+            this.project = project.getDirectoryPath();
+        }
+
+        if (type != null) {
+            this.type = type.name();
+        }
+
+        ProjectProperty property = project.getProperty();
+        if (property != null) {
+            this.readProperty(property, type);
+        }
+
+        String dirPath = project.getDirectoryPath();
+        List<String> logNames = type == null ? null : type.getLogNameList(project);
+        String logName = (logNames == null || logNames.isEmpty()) ? null : logNames.get(0);
+        if (dirPath != null && logName != null) {
+            this.readLog(new File(dirPath, logName));
+        }
+    }
+
+    private void readProperty(ProjectProperty property, RunningType type) {
+        ProjectEnergies scfEnergies = property.getScfEnergies();
+        if (scfEnergies != null && scfEnergies.numEnergies() > 0) {
+            this.totalEnergy = toDouble(scfEnergies.getEnergy(scfEnergies.numEnergies() - 1));
+            this.converged = scfEnergies.isConverged();
+            this.scfSteps = scfEnergies.numEnergies();
+        }
+
+        ProjectEnergies fermiEnergies = property.getFermiEnergies();
+        if (fermiEnergies != null && fermiEnergies.numEnergies() > 0) {
+            this.fermiEnergy = toDouble(fermiEnergies.getEnergy(fermiEnergies.numEnergies() - 1));
+        }
+
+        ProjectGeometryList geometryList = null;
+        if (type == RunningType.OPTIMIZ) {
+            geometryList = property.getOptList();
+        } else if (type == RunningType.MD) {
+            geometryList = property.getMdList();
+        }
+
+        if (geometryList != null && geometryList.numGeometries() > 0) {
+            this.geometries = geometryList.numGeometries();
+            this.converged = geometryList.isConverged();
+
+            // the last geometry can be still without energy
+            for (int i = geometryList.numGeometries() - 1; i >= 0; i--) {
+                ProjectGeometry geometry = geometryList.getGeometry(i);
+                if (geometry != null && geometry.getEnergy() != 0.0) {
+                    this.totalEnergy = toDouble(geometry.getEnergy());
+                    this.totalForce = toDouble(geometry.getTotalForce());
+                    break;
+                }
+            }
+        }
+    }
+
+    private void readLog(File logFile) {
+        if (!logFile.isFile()) {
+            return;
+        }
+
+        LogSummary summary = new LogSummary();
+
+        try {
+            summary.read(logFile);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+
+        if (this.totalEnergy == null) {
+            this.totalEnergy = toDouble(summary.getEnergy());
+        }
+
+        this.wallTime = toDouble(summary.getWallTime());
+        this.memory = toDouble(summary.getMemory());
+    }
+
+    private static Double toDouble(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? null : value;
+    }
+
+    public static String[] getColumnNames() {
+        return COLUMN_NAMES;
+    }
+
+    public Object[] getColumnValues() {
+        return new Object[] {
+                this.project, this.type, this.status, this.message, this.processes, this.threads, this.pools,
+                this.totalEnergy, this.converged, this.scfSteps, this.fermiEnergy,
+                this.geometries, this.totalForce, this.wallTime, this.memory
+        };
+    }
+}
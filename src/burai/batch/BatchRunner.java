@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import burai.com.path.QEPath;
+import burai.input.QEInput;
+import burai.project.Project;
+import burai.run.RunningEstimate;
+import burai.run.RunningLayout;
+import burai.run.RunningManager;
+import burai.run.RunningManagerListener;
+import burai.run.RunningNode;
+import burai.run.RunningStatus;
+import burai.run.RunningType;
+import burai.run.daemon.DaemonClient;
+import burai.run.daemon.DaemonJob;
+import burai.run.sweep.SweepParameter;
+import burai.ssh.SSHArrayJob;
+import burai.ssh.SSHJob;
+import burai.ssh.SSHMonitor;
+import burai.ssh.SSHServer;
+
+/*
+ * projects are run by RunningManager, as well as in GUI, and this waits for all of them.
+ */
+public class BatchRunner implements RunningManagerListener {
+
+    private static final String KEY_KGRID = "kgrid";
+    private static final String KEY_SCALE = "scale";
+
+    private BatchArguments arguments;
+
+    private Map<RunningNode, Project> waitingNodes;
+
+    public BatchRunner(BatchArguments arguments) {
+        if (arguments == null) {
+            throw new IllegalArgumentException("arguments is null.");
+        }
+
+        this.arguments = arguments;
+        this.waitingNodes = new HashMap<RunningNode, Project>();
+    }
+
+    public List<BatchResult> run() {
+        List<BatchResult> results = new ArrayList<BatchResult>();
+        Map<RunningNode, BatchResult> nodeResults = new HashMap<RunningNode, BatchResult>();
+
+        RunningManager.getInstance().addListener(this);
+
+        for (String projectPath : this.arguments.getProjectPaths()) {
+            BatchResult result = new BatchResult(projectPath);
+            results.add(result);
+
+            Project project = this.openProject(projectPath, result);
+            if (project == null) {
+                continue;
+            }
+
+            RunningNode node = this.createNode(project, result);
+
+            synchronized (this) {
+                this.waitingNodes.put(node, project);
+            }
+
+            if (!RunningManager.getInstance().addNode(node)) {
+                synchronized (this) {
+                    this.waitingNodes.remove(node);
+                }
+
+                result.setError("cannot queue the project.");
+                continue;
+            }
+
+            nodeResults.put(node, result);
+            System.err.println("[queued] " + project.getDirectoryPath());
+        }
+
+        this.waitNodes();
+
+        RunningManager.getInstance().removeListener(this);
+
+        for (Map.Entry<RunningNode, BatchResult> entry : nodeResults.entrySet()) {
+            RunningNode node = entry.getKey();
+            BatchResult result = entry.getValue();
+
+            boolean done = node.getStatus() == RunningStatus.DONE && (!node.isFailed());
+            result.setStatus(done ? BatchResult.STATUS_DONE : BatchResult.STATUS_FAILED);
+            result.readResults(node.getProject(), node.getType());
+        }
+
+        return results;
+    }
+
+    /*
+     * projects are posted to the daemon, and this does not wait for them.
+     */
+    public List<BatchResult> submit(DaemonClient client) {
+        if (client == null) {
+            throw new IllegalArgumentException("client is null.");
+        }
+
+        List<BatchResult> results = new ArrayList<BatchResult>();
+
+        for (String projectPath : this.arguments.getProjectPaths()) {
+            BatchResult result = new BatchResult(projectPath);
+            results.add(result);
+
+            Project project = this.openProject(projectPath, result);
+            if (project == null) {
+                continue;
+            }
+
+            RunningNode node = this.createNode(project, result);
+
+            DaemonJob job = new DaemonJob(project.getDirectoryPath(), node.getType());
+            job.setNumProcesses(node.getNumProcesses());
+            job.setNumThreads(node.getNumThreads());
+            job.setNumPools(node.getNumPools());
+            job.setResume(node.isResume());
+
+            try {
+                job = client.submit(job);
+            } catch (Exception e) {
+                result.setError(e.getMessage());
+                continue;
+            }
+
+            result.setStatus(BatchResult.STATUS_QUEUED);
+            result.setMessage("job #" + job.getId());
+        }
+
+        return results;
+    }
+
+    /*
+     * projects are posted to the SSH server as one array job, and this waits for all of its tasks.
+     */
+    public List<BatchResult> runOnSSHServer(SSHServer sshServer) {
+        if (sshServer == null) {
+            throw new IllegalArgumentException("sshServer is null.");
+        }
+
+        List<BatchResult> results = new ArrayList<BatchResult>();
+        Map<SSHJob, BatchResult> jobResults = new LinkedHashMap<SSHJob, BatchResult>();
+
+        SSHArrayJob arrayJob = new SSHArrayJob(sshServer, "burai-array-" + System.currentTimeMillis() + ".sh");
+
+        // the layout of this machine is not for the server
+        int numProcesses = Math.max(1, this.arguments.getNumProcesses());
+        int numThreads = Math.max(1, this.arguments.getNumThreads());
+
+        for (String projectPath : this.arguments.getProjectPaths()) {
+            BatchResult result = new BatchResult(projectPath);
+            results.add(result);
+
+            Project project = this.openProject(projectPath, result);
+            if (project == null) {
+                continue;
+            }
+
+            RunningType type = this.arguments.getType();
+            if (type == null) {
+                type = RunningType.getRunningType(project);
+            }
+
+            SSHJob job = new SSHJob(project, sshServer);
+            job.setType(type == null ? RunningType.SCF : type);
+            job.setNumProcesses(numProcesses);
+            job.setNumThreads(numThreads);
+            arrayJob.addJob(job);
+
+            result.setLayout(numProcesses, numThreads, 1);
+            jobResults.put(job, result);
+        }
+
+        if (jobResults.isEmpty()) {
+            return results;
+        }
+
+        if (!arrayJob.postJobsToServer()) {
+            for (BatchResult result : jobResults.values()) {
+                result.setError("cannot post the array job to " + sshServer.getTitle());
+            }
+
+            return results;
+        }
+
+        for (Map.Entry<SSHJob, BatchResult> entry : jobResults.entrySet()) {
+            SSHJob job = entry.getKey();
+            BatchResult result = entry.getValue();
+
+            SSHMonitor monitor = arrayJob.getMonitor(job);
+            if (monitor == null) {
+                result.setError("the project is not posted.");
+                continue;
+            }
+
+            System.err.println("[queued] " + job.getProject().getDirectoryPath() + " (" + arrayJob.getTaskId(job) + ")");
+        }
+
+        for (Map.Entry<SSHJob, BatchResult> entry : jobResults.entrySet()) {
+            SSHJob job = entry.getKey();
+            BatchResult result = entry.getValue();
+
+            SSHMonitor monitor = arrayJob.getMonitor(job);
+            if (monitor == null) {
+                continue;
+            }
+
+            monitor.waitToEnd();
+
+            String projectPath = job.getProject().getDirectoryPath();
+            System.err.println((monitor.isDone() ? "[done] " : "[failed] ") + projectPath);
+
+            result.setStatus(monitor.isDone() ? BatchResult.STATUS_DONE : BatchResult.STATUS_FAILED);
+            result.setMessage("task " + arrayJob.getTaskId(job) + " on " + sshServer.getTitle());
+            result.readResults(job.getProject(), job.getType());
+        }
+
+        return results;
+    }
+
+    private Project openProject(String projectPath, BatchResult result) {
+        File file = new File(projectPath);
+        if (!file.exists()) {
+            result.setError("not found.");
+            return null;
+        }
+
+        Project project = Project.getInstance(file.getAbsolutePath());
+        if (project == null || !project.isValid()) {
+            result.setError("cannot open the project.");
+            return null;
+        }
+
+        for (String[] override : this.arguments.getOverrides()) {
+            SweepParameter parameter = createParameter(override[0]);
+            if (parameter == null || !parameter.applyValue(project, override[1])) {
+                result.setError("cannot apply " + override[0] + " = " + override[1]);
+                return null;
+            }
+        }
+
+        String dirPath = this.arguments.getDirectoryPath();
+        if (dirPath != null && !dirPath.isEmpty()) {
+            project.saveQEInputs(new File(dirPath).getAbsolutePath());
+
+        } else if (project.getDirectoryPath() == null) {
+            result.setError("no directory of the project, which is set by --dir.");
+            return null;
+        }
+
+        String dirPath2 = project.getDirectoryPath();
+        if (dirPath2 == null || !(new File(dirPath2).isDirectory())) {
+            result.setError("cannot save the project.");
+            return null;
+        }
+
+        return project;
+    }
+
+    /*
+     * key is <namelist>.<name>, kgrid or scale.
+     */
+    private static SweepParameter createParameter(String key) {
+        if (KEY_KGRID.equalsIgnoreCase(key)) {
+            return SweepParameter.getKGridParameter();
+        }
+
+        if (KEY_SCALE.equalsIgnoreCase(key)) {
+            return SweepParameter.getLatticeParameter();
+        }
+
+        int index = key.indexOf('.');
+        if (index < 1 || index >= (key.length() - 1)) {
+            return SweepParameter.getNamelistParameter(QEInput.NAMELIST_SYSTEM, key);
+        }
+
+        String namelist = key.substring(0, index).trim().toUpperCase();
+        if (namelist.startsWith("&")) {
+            namelist = namelist.substring(1);
+        }
+
+        return SweepParameter.getNamelistParameter(namelist, key.substring(index + 1));
+    }
+
+    private RunningNode createNode(Project project, BatchResult result) {
+        RunningType type = this.arguments.getType();
+        if (type == null) {
+            type = RunningType.getRunningType(project);
+        }
+        if (type == null) {
+            type = RunningType.SCF;
+        }
+
+        int numProcesses = this.arguments.getNumProcesses();
+        int numThreads = this.arguments.getNumThreads();
+        int numPools = this.arguments.getNumPools();
+
+        if (numProcesses < 1 && numThreads < 1) {
+            // the fastest layout for cores of this machine
+            RunningEstimate estimate = RunningEstimate.getEstimate(project, type, 1, 1);
+            int numCores = RunningManager.getInstance().getNumCores();
+            RunningLayout layout = RunningLayout.getBestLayout(estimate, numCores, this.canMPIParallel());
+            if (layout != null) {
+                numProcesses = layout.getNumProcesses();
+                numThreads = layout.getNumThreads();
+                numPools = numPools < 1 ? layout.getNumPools() : numPools;
+            }
+        }
+
+        numProcesses = Math.max(1, numProcesses);
+        numThreads = Math.max(1, numThreads);
+        numPools = Math.max(1, Math.min(numPools, numProcesses));
+
+        RunningNode node = new RunningNode(project);
+        node.setType(type);
+        node.setNumProcesses(numProcesses);
+        node.setNumThreads(numThreads);
+        node.setNumPools(numPools);
+        node.setResume(this.arguments.isResume());
+
+        node.addOnStatusChanged(status -> {
+            if (status == RunningStatus.RUNNING) {
+                System.err.println("[running] " + project.getDirectoryPath());
+            }
+        });
+
+        result.setLayout(numProcesses, numThreads, numPools);
+        return node;
+    }
+
+    private boolean canMPIParallel() {
+        String mpiPath = QEPath.getMPIPath();
+        return mpiPath != null && !(mpiPath.trim().isEmpty());
+    }
+
+    private synchronized void waitNodes() {
+        while (!this.waitingNodes.isEmpty()) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void onNodeAdded(RunningNode node) {
+        // NOP
+    }
+
+    @Override
+    public void onNodeRemoved(RunningNode node) {
+        // RunningManager is locked, while listeners are called, so that RunningManager is not called here.
+        synchronized (this) {
+            Project project = this.waitingNodes.remove(node);
+            if (project != null) {
+                System.err.println((node.isFailed() ? "[failed] " : "[done] ") + project.getDirectoryPath());
+            }
+
+            this.notifyAll();
+        }
+    }
+}
@@ -38,8 +38,11 @@ public abstract class CPUInfo {
 
     private int numCPUs;
 
+    private CPUTopology topology;
+
     protected CPUInfo() {
         this.numCPUs = this.countNumCPUs();
+        this.topology = null;
     }
 
     public final int getNumCPUs() {
@@ -48,4 +51,21 @@ public abstract class CPUInfo {
 
     protected abstract int countNumCPUs();
 
+    public final synchronized CPUTopology getTopology() {
+        if (this.topology == null) {
+            this.topology = this.createTopology();
+        }
+
+        if (this.topology == null || this.topology.numCPUs() < 1) {
+            this.topology = CPUTopology.getFlatTopology(this.numCPUs);
+        }
+
+        return this.topology;
+    }
+
+    protected CPUTopology createTopology() {
+        // this method shall be overrided.
+        return null;
+    }
+
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.com.env;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * logical CPUs grouped into physical cores, and cores into sockets.
+ */
+public class CPUTopology {
+
+    // socket -> core -> logical CPUs (hyper-threads)
+    private Map<Integer, Map<Integer, List<Integer>>> sockets;
+
+    public CPUTopology() {
+        this.sockets = new TreeMap<Integer, Map<Integer, List<Integer>>>();
+    }
+
+    /*
+     * every logical CPU is a core of a socket, if the topology is unknown.
+     */
+    public static CPUTopology getFlatTopology(int numCPUs) {
+        CPUTopology topology = new CPUTopology();
+        for (int i = 0; i < Math.max(1, numCPUs); i++) {
+            topology.addCPU(i, 0, i);
+        }
+
+        return topology;
+    }
+
+    public void addCPU(int cpuID, int socketID, int coreID) {
+        Map<Integer, List<Integer>> cores = this.sockets.get(socketID);
+        if (cores == null) {
+            cores = new TreeMap<Integer, List<Integer>>();
+            this.sockets.put(socketID, cores);
+        }
+
+        List<Integer> cpus = cores.get(coreID);
+        if (cpus == null) {
+            cpus = new ArrayList<Integer>();
+            cores.put(coreID, cpus);
+        }
+
+        cpus.add(cpuID);
+    }
+
+    public int numSockets() {
+        return this.sockets.size();
+    }
+
+    public int numCores() {
+        int numCores = 0;
+        for (Map<Integer, List<Integer>> cores : this.sockets.values()) {
+            numCores += cores.size();
+        }
+
+        return numCores;
+    }
+
+    public int numCPUs() {
+        int numCPUs = 0;
+        for (Map<Integer, List<Integer>> cores : this.sockets.values()) {
+            for (List<Integer> cpus : cores.values()) {
+                numCPUs += cpus.size();
+            }
+        }
+
+        return numCPUs;
+    }
+
+    /*
+     * cores of each socket, where a core is a list of logical CPUs.
+     */
+    public List<List<List<Integer>>> listSockets() {
+        List<List<List<Integer>>> socketList = new ArrayList<List<List<Integer>>>();
+        for (Map<Integer, List<Integer>> cores : this.sockets.values()) {
+            List<List<Integer>> coreList = new ArrayList<List<Integer>>();
+            for (List<Integer> cpus : cores.values()) {
+                coreList.add(new ArrayList<Integer>(cpus));
+            }
+
+            socketList.add(coreList);
+        }
+
+        return socketList;
+    }
+
+    @Override
+    public String toString() {
+        return this.numSockets() + " socket(s), " + this.numCores() + " core(s), " + this.numCPUs() + " thread(s)";
+    }
+}
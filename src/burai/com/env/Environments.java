@@ -17,6 +17,9 @@
 package burai.com.env;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -34,12 +37,20 @@ public final class Environments {
 
     private static final String PSEUDOLIST_NAME = ".pseudolist";
 
+    private static final String CACHES_NAME = ".calccache";
+
     private static final String MATERIALSAPI_NAME = ".materialsapi";
 
     private static final String SSHDATA_NAME = ".ssh";
 
     private static final String RECENTS_NAME = ".recent";
 
+    private static final String HISTORY_NAME = ".runhistory";
+
+    private static final String DAEMON_NAME = ".daemon";
+
+    private static final String JOURNAL_NAME = ".daemonjobs";
+
     private static final String WEBDATA_NAME = ".webdata";
 
     private static final String WEBSITES_NAME = ".websites";
@@ -48,6 +59,8 @@ public final class Environments {
 
     private static String osName = null;
 
+    private static boolean headless = false;
+
     private static EnvFile recentsEnvFile = null;
 
     private static EnvFile websitesEnvFile = null;
@@ -101,11 +114,61 @@ public final class Environments {
         return osName.startsWith("linux");
     }
 
+    /*
+     * true, if BURAI runs without JavaFX (batch mode).
+     */
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    public static void setHeadless(boolean headless) {
+        Environments.headless = headless;
+    }
+
     public static int getNumCUPs() {
         CPUInfo cpuInfo = CPUInfo.getInstance();
         return cpuInfo == null ? 1 : cpuInfo.getNumCPUs();
     }
 
+    public static CPUTopology getCPUTopology() {
+        CPUInfo cpuInfo = CPUInfo.getInstance();
+        return cpuInfo == null ? CPUTopology.getFlatTopology(1) : cpuInfo.getTopology();
+    }
+
+    /*
+     * physical memory in MB, or 0 if unknown
+     */
+    public static double getMemorySize() {
+        // getTotalPhysicalMemorySize is deprecated since Java 14, by getTotalMemorySize.
+        String[] methodNames = { "getTotalMemorySize", "getTotalPhysicalMemorySize" };
+
+        try {
+            OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+            if (!(osBean instanceof com.sun.management.OperatingSystemMXBean)) {
+                return 0.0;
+            }
+
+            for (String methodName : methodNames) {
+                Method method = null;
+                try {
+                    method = com.sun.management.OperatingSystemMXBean.class.getMethod(methodName);
+                } catch (NoSuchMethodException e) {
+                    continue;
+                }
+
+                Object size = method.invoke(osBean);
+                if (size instanceof Long) {
+                    return Math.max(0.0, ((Long) size).doubleValue() / 1024.0 / 1024.0);
+                }
+            }
+
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+
+        return 0.0;
+    }
+
     public static String getHomePath() {
         String homeProp = System.getProperty("user.home", null);
         if (homeProp != null) {
@@ -253,6 +316,30 @@ public final class Environments {
         return pseudosFile.getPath();
     }
 
+    public static String getCachesName() {
+        return CACHES_NAME;
+    }
+
+    public static String getCachesPath() {
+        File cachesFile = null;
+        String projPath = getProjectsPath();
+        if (projPath == null) {
+            cachesFile = new File(CACHES_NAME);
+        } else {
+            cachesFile = new File(projPath, CACHES_NAME);
+        }
+
+        try {
+            if (!cachesFile.isDirectory()) {
+                cachesFile.mkdirs();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return cachesFile.getPath();
+    }
+
     public static String getPseudoListName() {
         return PSEUDOLIST_NAME;
     }
@@ -334,6 +421,54 @@ public final class Environments {
         return recentsFile.getPath();
     }
 
+    public static String getHistoryName() {
+        return HISTORY_NAME;
+    }
+
+    public static String getHistoryPath() {
+        File historyFile = null;
+        String projPath = getProjectsPath();
+        if (projPath == null) {
+            historyFile = new File(HISTORY_NAME);
+        } else {
+            historyFile = new File(projPath, HISTORY_NAME);
+        }
+
+        return historyFile.getPath();
+    }
+
+    public static String getDaemonName() {
+        return DAEMON_NAME;
+    }
+
+    public static String getDaemonPath() {
+        File daemonFile = null;
+        String projPath = getProjectsPath();
+        if (projPath == null) {
+            daemonFile = new File(DAEMON_NAME);
+        } else {
+            daemonFile = new File(projPath, DAEMON_NAME);
+        }
+
+        return daemonFile.getPath();
+    }
+
+    public static String getJournalName() {
+        return JOURNAL_NAME;
+    }
+
+    public static String getJournalPath() {
+        File journalFile = null;
+        String projPath = getProjectsPath();
+        if (projPath == null) {
+            journalFile = new File(JOURNAL_NAME);
+        } else {
+            journalFile = new File(projPath, JOURNAL_NAME);
+        }
+
+        return journalFile.getPath();
+    }
+
     private static EnvFile getRecentsEnvFile() {
         if (recentsEnvFile == null) {
             String filePath = getRecentsPath();
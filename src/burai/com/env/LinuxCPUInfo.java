@@ -27,6 +27,10 @@ public class LinuxCPUInfo extends CPUInfo {
 
     private static final String PROC_WORD = "processor";
 
+    private static final String SOCKET_WORD = "physical id";
+
+    private static final String CORE_WORD = "core id";
+
     public LinuxCPUInfo() {
         super();
     }
@@ -43,6 +47,82 @@ public class LinuxCPUInfo extends CPUInfo {
         return 1;
     }
 
+    @Override
+    protected CPUTopology createTopology() {
+        try {
+            return this.parseTopology();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /*
+     * a block of /proc/cpuinfo, which is separated by an empty line, is a logical CPU.
+     */
+    private CPUTopology parseTopology() throws IOException {
+        CPUTopology topology = new CPUTopology();
+        BufferedReader reader = null;
+
+        try {
+            reader = new BufferedReader(new FileReader(CPUINFO_PATH));
+
+            int cpuID = -1;
+            int socketID = 0;
+            int coreID = -1;
+
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                if (line.isEmpty()) {
+                    if (cpuID >= 0) {
+                        topology.addCPU(cpuID, socketID, coreID < 0 ? cpuID : coreID);
+                    }
+
+                    cpuID = -1;
+                    socketID = 0;
+                    coreID = -1;
+                    continue;
+                }
+
+                int index = line.indexOf(':');
+                if (index < 0) {
+                    continue;
+                }
+
+                String key = line.substring(0, index).trim();
+                String value = line.substring(index + 1).trim();
+
+                try {
+                    if (PROC_WORD.equals(key)) {
+                        cpuID = Integer.parseInt(value);
+                    } else if (SOCKET_WORD.equals(key)) {
+                        socketID = Integer.parseInt(value);
+                    } else if (CORE_WORD.equals(key)) {
+                        coreID = Integer.parseInt(value);
+                    }
+
+                } catch (NumberFormatException e) {
+                    // NOP
+                }
+            }
+
+            if (cpuID >= 0) {
+                topology.addCPU(cpuID, socketID, coreID < 0 ? cpuID : coreID);
+            }
+
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+
+        return topology;
+    }
+
     private int parseCpuinfo() throws IOException {
         int numCPUs = 0;
         BufferedReader reader = null;
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.com.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * gzip'd tar (ustar, with GNU long names) which is written and read as streams,
+ * so that many files are sent through a single stream of `tar czf -` or `tar xzf -`.
+ */
+public final class FileTar {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int BYTE_BUFFER = 65536;
+
+    private static final int NAME_LENGTH = 100;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private static final String LONG_NAME = "././@LongLink";
+
+    private static final byte TYPE_FILE = '0';
+    private static final byte TYPE_FILE_OLD = 0;
+    private static final byte TYPE_DIRECTORY = '5';
+    private static final byte TYPE_LONG_NAME = 'L';
+    private static final byte TYPE_PAX_HEADER = 'x';
+
+    private FileTar() {
+        // NOP
+    }
+
+    /*
+     * entries are pairs of names in the archive and local files (or directories, which are added recursively).
+     */
+    public static void writeTarGz(OutputStream output, Map<String, File> entries) throws IOException {
+        if (output == null) {
+            throw new IllegalArgumentException("output is null.");
+        }
+
+        GZIPOutputStream gzipOutput = new GZIPOutputStream(new BufferedOutputStream(output, BYTE_BUFFER), BYTE_BUFFER);
+
+        if (entries != null) {
+            for (Map.Entry<String, File> entry : entries.entrySet()) {
+                writeEntry(gzipOutput, entry.getKey(), entry.getValue());
+            }
+        }
+
+        // end of archive
+        gzipOutput.write(new byte[2 * BLOCK_SIZE]);
+        gzipOutput.finish();
+        gzipOutput.flush();
+    }
+
+    private static void writeEntry(OutputStream output, String name, File file) throws IOException {
+        if (name == null || name.isEmpty() || file == null) {
+            return;
+        }
+
+        if (file.isDirectory()) {
+            writeHeader(output, name.endsWith("/") ? name : (name + "/"), 0L, TYPE_DIRECTORY, file.lastModified());
+
+            File[] children = file.listFiles();
+            if (children != null) {
+                String dirName = name.endsWith("/") ? name : (name + "/");
+                for (File child : children) {
+                    writeEntry(output, dirName + child.getName(), child);
+                }
+            }
+
+            return;
+        }
+
+        if (!file.isFile()) {
+            return;
+        }
+
+        long size = file.length();
+        writeHeader(output, name, size, TYPE_FILE, file.lastModified());
+
+        long written = 0L;
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] buffer = new byte[BYTE_BUFFER];
+            int nbyte = 0;
+            while (written < size && (nbyte = input.read(buffer, 0, (int) Math.min(buffer.length, size - written))) >= 0) {
+                output.write(buffer, 0, nbyte);
+                written += nbyte;
+            }
+        }
+
+        if (written < size) {
+            throw new IOException("file has been truncated: " + file.getPath());
+        }
+
+        writePadding(output, size);
+    }
+
+    private static void writeHeader(OutputStream output, String name, long size, byte type, long lastModified)
+            throws IOException {
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > NAME_LENGTH) {
+            byte[] longBytes = new byte[nameBytes.length + 1];
+            System.arraycopy(nameBytes, 0, longBytes, 0, nameBytes.length);
+            writeHeader(output, LONG_NAME, longBytes.length, TYPE_LONG_NAME, 0L);
+            output.write(longBytes);
+            writePadding(output, longBytes.length);
+        }
+
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(NAME_LENGTH, nameBytes.length));
+        putOctal(header, 100, 8, type == TYPE_DIRECTORY ? 0755 : 0644);
+        putOctal(header, 108, 8, 0L);
+        putOctal(header, 116, 8, 0L);
+        putSize(header, size);
+        putOctal(header, 136, 12, Math.max(0L, lastModified / 1000L));
+        header[156] = type;
+        putString(header, 257, "ustar");
+        putString(header, 263, "00");
+
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+
+        long checksum = 0L;
+        for (byte value : header) {
+            checksum += (value & 0xff);
+        }
+
+        putOctal(header, 148, 7, checksum);
+        output.write(header);
+    }
+
+    private static void putString(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String str = Long.toOctalString(value);
+        while (str.length() < (length - 1)) {
+            str = "0" + str;
+        }
+
+        putString(header, offset, str);
+        header[offset + length - 1] = 0;
+    }
+
+    private static void putSize(byte[] header, long size) {
+        if (size <= MAX_OCTAL_SIZE) {
+            putOctal(header, 124, 12, size);
+            return;
+        }
+
+        // base-256 encoding for large files
+        header[124] = (byte) 0x80;
+        for (int i = 0; i < 8; i++) {
+            header[135 - i] = (byte) (size >>> (8 * i));
+        }
+    }
+
+    private static void writePadding(OutputStream output, long size) throws IOException {
+        int rest = (int) (size % BLOCK_SIZE);
+        if (rest > 0) {
+            output.write(new byte[BLOCK_SIZE - rest]);
+        }
+    }
+
+    /*
+     * regular files and directories are extracted into the directory.
+     * names which escape the directory are ignored.
+     */
+    public static List<File> readTarGz(InputStream input, File directory) throws IOException {
+        if (input == null) {
+            throw new IllegalArgumentException("input is null.");
+        }
+
+        if (directory == null) {
+            throw new IllegalArgumentException("directory is null.");
+        }
+
+        List<File> files = new ArrayList<File>();
+
+        InputStream gzipInput = new GZIPInputStream(new BufferedInputStream(input, BYTE_BUFFER), BYTE_BUFFER);
+
+        String longName = null;
+        byte[] header = new byte[BLOCK_SIZE];
+
+        while (true) {
+            if (!readFully(gzipInput, header)) {
+                break;
+            }
+
+            if (isZeroBlock(header)) {
+                break;
+            }
+
+            String name = longName != null ? longName : getName(header);
+            longName = null;
+
+            long size = getSize(header);
+            byte type = header[156];
+
+            if (type == TYPE_LONG_NAME || type == TYPE_PAX_HEADER) {
+                byte[] data = readData(gzipInput, size);
+                if (type == TYPE_LONG_NAME) {
+                    longName = getString(data, 0, data.length);
+                } else {
+                    longName = getPaxPath(data);
+                }
+
+                continue;
+            }
+
+            File file = getSafeFile(directory, name);
+
+            if (file != null && type == TYPE_DIRECTORY) {
+                file.mkdirs();
+                skipData(gzipInput, size);
+
+            } else if (file != null && (type == TYPE_FILE || type == TYPE_FILE_OLD)) {
+                File parent = file.getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+
+                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file), BYTE_BUFFER)) {
+                    copyData(gzipInput, output, size);
+                }
+
+                skipPadding(gzipInput, size);
+                files.add(file);
+
+            } else {
+                // links and special files are not extracted.
+                skipData(gzipInput, size);
+            }
+        }
+
+        return files;
+    }
+
+    private static boolean readFully(InputStream input, byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int nbyte = input.read(bytes, offset, bytes.length - offset);
+            if (nbyte < 0) {
+                if (offset == 0) {
+                    return false;
+                }
+                throw new EOFException("tar archive has been truncated.");
+            }
+            offset += nbyte;
+        }
+
+        return true;
+    }
+
+    private static boolean isZeroBlock(byte[] header) {
+        for (byte value : header) {
+            if (value != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String getString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < (offset + length) && bytes[end] != 0) {
+            end++;
+        }
+
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String getName(byte[] header) {
+        String name = getString(header, 0, NAME_LENGTH);
+
+        // ustar prefix
+        String prefix = getString(header, 345, 155);
+        if ("ustar".equals(getString(header, 257, 6).trim()) && (!prefix.isEmpty())) {
+            name = prefix + "/" + name;
+        }
+
+        return name;
+    }
+
+    private static long getSize(byte[] header) throws IOException {
+        if ((header[124] & 0x80) != 0) {
+            long size = 0L;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (header[i] & 0xff);
+            }
+            return size;
+        }
+
+        String str = getString(header, 124, 12).trim();
+        if (str.isEmpty()) {
+            return 0L;
+        }
+
+        try {
+            return Long.parseLong(str, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("tar header is broken.");
+        }
+    }
+
+    private static String getPaxPath(byte[] data) {
+        // records are "<length> <key>=<value>\n"
+        String str = new String(data, StandardCharsets.UTF_8);
+        for (String record : str.split("\n")) {
+            int index = record.indexOf(' ');
+            String keyValue = index < 0 ? record : record.substring(index + 1);
+            if (keyValue.startsWith("path=")) {
+                return keyValue.substring("path=".length());
+            }
+        }
+
+        return null;
+    }
+
+    private static File getSafeFile(File directory, String name) {
+        if (name == null || name.isEmpty() || name.startsWith("/")) {
+            return null;
+        }
+
+        File file = directory;
+        for (String element : name.split("/")) {
+            if (element.isEmpty() || ".".equals(element)) {
+                continue;
+            }
+            if ("..".equals(element)) {
+                return null;
+            }
+            file = new File(file, element);
+        }
+
+        return file == directory ? null : file;
+    }
+
+    private static byte[] readData(InputStream input, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("tar header is too large.");
+        }
+
+        byte[] data = new byte[(int) size];
+        if (size > 0L && (!readFully(input, data))) {
+            throw new EOFException("tar archive has been truncated.");
+        }
+
+        skipPadding(input, size);
+        return data;
+    }
+
+    private static void copyData(InputStream input, OutputStream output, long size) throws IOException {
+        byte[] buffer = new byte[BYTE_BUFFER];
+        long rest = size;
+        while (rest > 0L) {
+            int nbyte = input.read(buffer, 0, (int) Math.min(buffer.length, rest));
+            if (nbyte < 0) {
+                throw new EOFException("tar archive has been truncated.");
+            }
+
+            if (output != null) {
+                output.write(buffer, 0, nbyte);
+            }
+
+            rest -= nbyte;
+        }
+    }
+
+    private static void skipPadding(InputStream input, long size) throws IOException {
+        int rest = (int) (size % BLOCK_SIZE);
+        if (rest > 0) {
+            copyData(input, null, BLOCK_SIZE - rest);
+        }
+    }
+
+    private static void skipData(InputStream input, long size) throws IOException {
+        copyData(input, null, size);
+        skipPadding(input, size);
+    }
+}
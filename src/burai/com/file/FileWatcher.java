@@ -0,0 +1,424 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.com.file;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import burai.com.life.Life;
+
+/*
+ * Shared watcher of directories, which replaces fixed-interval polling of files.
+ * Events are debounced, and directories which cannot be watched by WatchService
+ * (e.g. not existing yet) are polled as a fallback.
+ */
+public class FileWatcher {
+
+    private static final long DEBOUNCE_TIME = 200L;
+
+    private static final long MAX_DEBOUNCE_TIME = 1000L;
+
+    private static final long POLLING_TIME = 2500L;
+
+    private static FileWatcher instance = null;
+
+    public static synchronized FileWatcher getInstance() {
+        if (instance == null) {
+            instance = new FileWatcher();
+        }
+
+        return instance;
+    }
+
+    private boolean alive;
+
+    private WatchService watchService;
+
+    private Map<Path, WatchKey> watchKeys;
+
+    private Map<Path, List<Subscription>> subscriptions;
+
+    private Map<Path, Map<String, Long>> pollingDirs;
+
+    private boolean polling;
+
+    private FileWatcher() {
+        this.alive = true;
+
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            e.printStackTrace();
+            this.watchService = null;
+        }
+
+        this.watchKeys = new HashMap<Path, WatchKey>();
+        this.subscriptions = new HashMap<Path, List<Subscription>>();
+        this.pollingDirs = new HashMap<Path, Map<String, Long>>();
+        this.polling = false;
+
+        if (this.watchService != null) {
+            Thread thread = new Thread(() -> this.watchKernel());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Life.getInstance().addOnDead(() -> this.stop());
+    }
+
+    private synchronized boolean isAlive() {
+        return this.alive;
+    }
+
+    public synchronized void stop() {
+        this.alive = false;
+
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        this.notifyAll();
+    }
+
+    public void addListener(File file, FileChanged listener) {
+        if (file == null) {
+            return;
+        }
+
+        File dirFile = file.getAbsoluteFile().getParentFile();
+        if (dirFile == null) {
+            return;
+        }
+
+        String fileName = file.getName();
+        this.addListener(dirFile, (dir, name) -> fileName.equals(name), listener);
+    }
+
+    public synchronized void addListener(File directory, FilenameFilter filter, FileChanged listener) {
+        if (directory == null || listener == null) {
+            return;
+        }
+
+        Path path = directory.getAbsoluteFile().toPath().normalize();
+
+        List<Subscription> subscriptionList = this.subscriptions.get(path);
+        if (subscriptionList == null) {
+            subscriptionList = new ArrayList<Subscription>();
+            this.subscriptions.put(path, subscriptionList);
+        }
+
+        subscriptionList.add(new Subscription(directory, filter, listener));
+
+        if (!this.watchKeys.containsKey(path)) {
+            this.registerPath(path);
+        }
+    }
+
+    public synchronized void removeListener(FileChanged listener) {
+        if (listener == null) {
+            return;
+        }
+
+        List<Path> emptyPaths = null;
+
+        for (Entry<Path, List<Subscription>> entry : this.subscriptions.entrySet()) {
+            List<Subscription> subscriptionList = entry.getValue();
+            if (subscriptionList == null) {
+                continue;
+            }
+
+            subscriptionList.removeIf(subscription -> subscription.listener == listener);
+
+            if (subscriptionList.isEmpty()) {
+                if (emptyPaths == null) {
+                    emptyPaths = new ArrayList<Path>();
+                }
+                emptyPaths.add(entry.getKey());
+            }
+        }
+
+        if (emptyPaths != null) {
+            for (Path path : emptyPaths) {
+                this.subscriptions.remove(path);
+                this.pollingDirs.remove(path);
+
+                WatchKey watchKey = this.watchKeys.remove(path);
+                if (watchKey != null) {
+                    watchKey.cancel();
+                }
+            }
+        }
+    }
+
+    private void registerPath(Path path) {
+        WatchKey watchKey = null;
+
+        if (this.watchService != null && path.toFile().isDirectory()) {
+            try {
+                watchKey = path.register(this.watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+
+            } catch (Exception e) {
+                watchKey = null;
+            }
+        }
+
+        if (watchKey != null) {
+            this.watchKeys.put(path, watchKey);
+            this.pollingDirs.remove(path);
+
+        } else {
+            this.pollingDirs.put(path, this.listTimeStamps(path));
+            this.startPolling();
+        }
+    }
+
+    private void watchKernel() {
+        while (this.isAlive()) {
+            Map<Path, Set<String>> changes = new LinkedHashMap<Path, Set<String>>();
+
+            try {
+                WatchKey watchKey = this.watchService.take();
+                long startTime = System.currentTimeMillis();
+
+                while (watchKey != null) {
+                    this.collectChanges(watchKey, changes);
+
+                    if ((System.currentTimeMillis() - startTime) >= MAX_DEBOUNCE_TIME) {
+                        break;
+                    }
+
+                    watchKey = this.watchService.poll(DEBOUNCE_TIME, TimeUnit.MILLISECONDS);
+                }
+
+            } catch (ClosedWatchServiceException e1) {
+                break;
+
+            } catch (InterruptedException e2) {
+                e2.printStackTrace();
+            }
+
+            this.fireChanges(changes);
+        }
+    }
+
+    private void collectChanges(WatchKey watchKey, Map<Path, Set<String>> changes) {
+        Object watchable = watchKey.watchable();
+        Path path = (watchable instanceof Path) ? ((Path) watchable) : null;
+
+        Set<String> names = null;
+        if (path != null) {
+            names = changes.get(path);
+            if (names == null) {
+                names = new LinkedHashSet<String>();
+                changes.put(path, names);
+            }
+        }
+
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+            Object context = event == null ? null : event.context();
+            if (names != null && context instanceof Path) {
+                names.add(((Path) context).toString());
+            } else if (names != null) {
+                // overflow: all files in the directory can be changed.
+                names.add("");
+            }
+        }
+
+        if (!watchKey.reset()) {
+            synchronized (this) {
+                if (path != null && this.watchKeys.remove(path) != null && this.subscriptions.containsKey(path)) {
+                    this.pollingDirs.put(path, this.listTimeStamps(path));
+                    this.startPolling();
+                }
+            }
+        }
+    }
+
+    private void fireChanges(Map<Path, Set<String>> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return;
+        }
+
+        for (Entry<Path, Set<String>> entry : changes.entrySet()) {
+            List<Subscription> subscriptionList = null;
+            synchronized (this) {
+                List<Subscription> subscriptionList2 = this.subscriptions.get(entry.getKey());
+                if (subscriptionList2 != null) {
+                    subscriptionList = new ArrayList<Subscription>(subscriptionList2);
+                }
+            }
+
+            if (subscriptionList == null) {
+                continue;
+            }
+
+            for (String name : entry.getValue()) {
+                for (Subscription subscription : subscriptionList) {
+                    subscription.fire(name);
+                }
+            }
+        }
+    }
+
+    private synchronized void startPolling() {
+        if (this.polling) {
+            return;
+        }
+
+        this.polling = true;
+
+        Thread thread = new Thread(() -> {
+            while (true) {
+                Map<Path, Set<String>> changes = new LinkedHashMap<Path, Set<String>>();
+
+                synchronized (this) {
+                    if ((!this.alive) || this.pollingDirs.isEmpty()) {
+                        this.polling = false;
+                        break;
+                    }
+
+                    try {
+                        this.wait(POLLING_TIME);
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+
+                    this.pollChanges(changes);
+                }
+
+                this.fireChanges(changes);
+            }
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void pollChanges(Map<Path, Set<String>> changes) {
+        List<Path> paths = new ArrayList<Path>(this.pollingDirs.keySet());
+
+        for (Path path : paths) {
+            Map<String, Long> timeStamps1 = this.pollingDirs.get(path);
+            Map<String, Long> timeStamps2 = this.listTimeStamps(path);
+
+            Set<String> names = new LinkedHashSet<String>();
+            for (Entry<String, Long> entry : timeStamps2.entrySet()) {
+                Long timeStamp1 = timeStamps1 == null ? null : timeStamps1.get(entry.getKey());
+                if (timeStamp1 == null || !timeStamp1.equals(entry.getValue())) {
+                    names.add(entry.getKey());
+                }
+            }
+
+            if (timeStamps1 != null) {
+                for (String name : timeStamps1.keySet()) {
+                    if (!timeStamps2.containsKey(name)) {
+                        names.add(name);
+                    }
+                }
+            }
+
+            if (!names.isEmpty()) {
+                changes.put(path, names);
+            }
+
+            this.pollingDirs.put(path, timeStamps2);
+
+            // the directory may become watchable.
+            if (this.watchService != null && path.toFile().isDirectory()) {
+                this.registerPath(path);
+            }
+        }
+    }
+
+    private Map<String, Long> listTimeStamps(Path path) {
+        Map<String, Long> timeStamps = new HashMap<String, Long>();
+
+        File[] files = null;
+        try {
+            files = path.toFile().listFiles();
+        } catch (Exception e) {
+            files = null;
+        }
+
+        if (files != null) {
+            for (File file : files) {
+                if (file != null) {
+                    // mix length into the stamp, for coarse-grained lastModified
+                    timeStamps.put(file.getName(), 31L * file.lastModified() + file.length());
+                }
+            }
+        }
+
+        return timeStamps;
+    }
+
+    private static class Subscription {
+
+        private File directory;
+
+        private FilenameFilter filter;
+
+        private FileChanged listener;
+
+        public Subscription(File directory, FilenameFilter filter, FileChanged listener) {
+            this.directory = directory;
+            this.filter = filter;
+            this.listener = listener;
+        }
+
+        public void fire(String name) {
+            if (name == null) {
+                return;
+            }
+
+            boolean all = name.isEmpty();
+            if ((!all) && this.filter != null && !this.filter.accept(this.directory, name)) {
+                return;
+            }
+
+            try {
+                this.listener.onFileChanged(all ? this.directory : new File(this.directory, name));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
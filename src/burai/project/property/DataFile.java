@@ -0,0 +1,526 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.project.property;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/*
+ * Streaming reader of data-file-schema.xml (or <prefix>.xml) written by pw.x.
+ * Only the requested sections are read, and no DOM is built.
+ * Units are as in the XML file: Hartree atomic units.
+ */
+public class DataFile {
+
+    public static final int SECTION_ENERGY = 0x01;
+    public static final int SECTION_GEOMETRY = 0x02;
+    public static final int SECTION_FORCE = 0x04;
+    public static final int SECTION_ALL = SECTION_ENERGY | SECTION_GEOMETRY | SECTION_FORCE;
+
+    private static final long INIT_TIME_STAMP = 0L;
+
+    private File file;
+
+    private int sections;
+
+    private long timeStamp;
+
+    private boolean converged;
+
+    private double[] stepEnergies;
+
+    private int numSteps;
+
+    private double totalEnergy;
+
+    private double fermiEnergy;
+
+    private boolean hasFermi;
+
+    private double[][] cell;
+
+    private String[] atomNames;
+
+    private double[][] positions;
+
+    private double[] forces;
+
+    public DataFile(File file) {
+        this(file, SECTION_ALL);
+    }
+
+    public DataFile(File file, int sections) {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null.");
+        }
+
+        this.file = file;
+        this.sections = sections;
+        this.timeStamp = INIT_TIME_STAMP;
+        this.clearData();
+        this.reload();
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    private void clearData() {
+        this.converged = false;
+        this.stepEnergies = null;
+        this.numSteps = 0;
+        this.totalEnergy = 0.0;
+        this.fermiEnergy = 0.0;
+        this.hasFermi = false;
+        this.cell = null;
+        this.atomNames = null;
+        this.positions = null;
+        this.forces = null;
+    }
+
+    public synchronized boolean isConverged() {
+        return this.converged;
+    }
+
+    public synchronized int numSteps() {
+        return this.numSteps;
+    }
+
+    public synchronized double getStepEnergy(int i) throws IndexOutOfBoundsException {
+        if (this.stepEnergies == null || i < 0 || i >= this.numSteps) {
+            throw new IndexOutOfBoundsException("incorrect index of steps: " + i + ".");
+        }
+
+        return this.stepEnergies[i];
+    }
+
+    public synchronized double getTotalEnergy() {
+        return this.totalEnergy;
+    }
+
+    public synchronized boolean hasFermiEnergy() {
+        return this.hasFermi;
+    }
+
+    public synchronized double getFermiEnergy() {
+        return this.fermiEnergy;
+    }
+
+    public synchronized double[][] getCell() {
+        return this.cell;
+    }
+
+    public synchronized int numAtoms() {
+        return this.atomNames == null ? 0 : this.atomNames.length;
+    }
+
+    public synchronized String getAtomName(int i) throws IndexOutOfBoundsException {
+        if (this.atomNames == null || i < 0 || i >= this.atomNames.length) {
+            throw new IndexOutOfBoundsException("incorrect index of atoms: " + i + ".");
+        }
+
+        return this.atomNames[i];
+    }
+
+    public synchronized double[] getPosition(int i) throws IndexOutOfBoundsException {
+        if (this.positions == null || i < 0 || i >= this.positions.length) {
+            throw new IndexOutOfBoundsException("incorrect index of atoms: " + i + ".");
+        }
+
+        return this.positions[i];
+    }
+
+    public synchronized boolean hasForces() {
+        return this.forces != null && this.atomNames != null && this.forces.length >= 3 * this.atomNames.length;
+    }
+
+    public synchronized double[] getForce(int i) throws IndexOutOfBoundsException {
+        if (this.forces == null || i < 0 || (3 * i + 2) >= this.forces.length) {
+            throw new IndexOutOfBoundsException("incorrect index of atoms: " + i + ".");
+        }
+
+        return new double[] { this.forces[3 * i], this.forces[3 * i + 1], this.forces[3 * i + 2] };
+    }
+
+    private boolean reloadTimeStamp() {
+        long timeStamp2 = INIT_TIME_STAMP;
+
+        try {
+            if (this.file.exists()) {
+                timeStamp2 = this.file.lastModified();
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        if (this.timeStamp != INIT_TIME_STAMP && this.timeStamp == timeStamp2) {
+            return false;
+        }
+
+        this.timeStamp = timeStamp2;
+        return true;
+    }
+
+    public synchronized boolean reload() {
+        if (!this.reloadTimeStamp()) {
+            return false;
+        }
+
+        this.clearData();
+
+        try {
+            this.reloadKernel();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            this.clearData();
+            return false;
+        }
+
+        return true;
+    }
+
+    private void reloadKernel() throws IOException {
+        if (!this.file.isFile()) {
+            return;
+        }
+
+        InputStream stream = null;
+        XMLStreamReader reader = null;
+
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+            stream = new BufferedInputStream(new FileInputStream(this.file));
+            reader = factory.createXMLStreamReader(stream);
+
+            this.readDocument(reader);
+
+        } catch (XMLStreamException e1) {
+            throw new IOException(e1);
+
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e2) {
+                    // NOP
+                }
+            }
+
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+
+    private boolean hasSection(int section) {
+        return (this.sections & section) != 0;
+    }
+
+    private void readDocument(XMLStreamReader reader) throws XMLStreamException {
+        Deque<String> tags = new ArrayDeque<String>();
+
+        boolean inOutput = false;
+        int iAtom = 0;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                tags.pollLast();
+
+                if ("output".equals(name)) {
+                    break;
+                }
+
+                continue;
+            }
+
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            String name = reader.getLocalName();
+            String parent = tags.peekLast();
+
+            if (tags.isEmpty()) {
+                tags.offerLast(name);
+                continue;
+            }
+
+            if (tags.size() == 1) {
+                if ("output".equals(name)) {
+                    inOutput = true;
+
+                } else if ("step".equals(name) && this.hasSection(SECTION_ENERGY)) {
+                    // NOP, read total energies of steps
+
+                } else {
+                    this.skipElement(reader);
+                    continue;
+                }
+
+                tags.offerLast(name);
+                continue;
+            }
+
+            if (!inOutput) {
+                if ("total_energy".equals(parent) && "etot".equals(name)) {
+                    this.addStepEnergy(this.readDouble(reader));
+                } else if ("step".equals(parent) && (!"total_energy".equals(name))) {
+                    this.skipElement(reader);
+                } else {
+                    tags.offerLast(name);
+                }
+
+                continue;
+            }
+
+            if ("output".equals(parent)) {
+                boolean toRead = false;
+                if ("convergence_info".equals(name) || "total_energy".equals(name)) {
+                    toRead = this.hasSection(SECTION_ENERGY);
+                } else if ("atomic_structure".equals(name)) {
+                    toRead = this.hasSection(SECTION_GEOMETRY) || this.hasSection(SECTION_FORCE);
+                } else if ("band_structure".equals(name)) {
+                    toRead = this.hasSection(SECTION_ENERGY);
+                } else if ("forces".equals(name)) {
+                    toRead = this.hasSection(SECTION_FORCE);
+                }
+
+                if (!toRead) {
+                    this.skipElement(reader);
+                    continue;
+                }
+
+                if ("atomic_structure".equals(name)) {
+                    int nat = this.getIntAttribute(reader, "nat");
+                    if (nat > 0) {
+                        this.atomNames = new String[nat];
+                        this.positions = new double[nat][];
+                        iAtom = 0;
+                    }
+
+                } else if ("forces".equals(name)) {
+                    this.forces = this.readDoubles(reader, null);
+                    continue;
+                }
+
+                tags.offerLast(name);
+                continue;
+            }
+
+            if ("scf_conv".equals(parent) && "convergence_achieved".equals(name)) {
+                this.converged = "true".equalsIgnoreCase(reader.getElementText().trim());
+
+            } else if ("total_energy".equals(parent) && "etot".equals(name)) {
+                this.totalEnergy = this.readDouble(reader);
+
+            } else if ("atomic_positions".equals(parent) && "atom".equals(name)) {
+                String atomName = reader.getAttributeValue(null, "name");
+                double[] position = this.readDoubles(reader, new double[3]);
+                if (this.atomNames != null && iAtom < this.atomNames.length) {
+                    this.atomNames[iAtom] = atomName;
+                    this.positions[iAtom] = position;
+                    iAtom++;
+                }
+
+            } else if ("cell".equals(parent) && ("a1".equals(name) || "a2".equals(name) || "a3".equals(name))) {
+                if (this.cell == null) {
+                    this.cell = new double[3][];
+                }
+                this.cell[name.charAt(1) - '1'] = this.readDoubles(reader, new double[3]);
+
+            } else if ("band_structure".equals(parent)) {
+                if ("fermi_energy".equals(name) || "highestOccupiedLevel".equals(name)) {
+                    this.fermiEnergy = this.readDouble(reader);
+                    this.hasFermi = true;
+
+                } else if ("two_fermi_energies".equals(name)) {
+                    this.fermiEnergy = this.readDoubles(reader, new double[2])[0];
+                    this.hasFermi = true;
+
+                } else {
+                    this.skipElement(reader);
+                }
+
+            } else if ("atomic_structure".equals(parent) || "atomic_positions".equals(parent)
+                    || "convergence_info".equals(parent) || "cell".equals(parent) || "total_energy".equals(parent)) {
+                if ("atomic_positions".equals(name) || "cell".equals(name) || "scf_conv".equals(name)) {
+                    tags.offerLast(name);
+                } else {
+                    this.skipElement(reader);
+                }
+
+            } else {
+                this.skipElement(reader);
+            }
+        }
+
+        if (this.atomNames != null) {
+            for (int i = 0; i < this.atomNames.length; i++) {
+                if (this.atomNames[i] == null || this.positions[i] == null) {
+                    this.atomNames = null;
+                    this.positions = null;
+                    break;
+                }
+            }
+        }
+
+        if (this.cell != null && (this.cell[0] == null || this.cell[1] == null || this.cell[2] == null)) {
+            this.cell = null;
+        }
+    }
+
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private void addStepEnergy(double energy) {
+        if (this.stepEnergies == null) {
+            this.stepEnergies = new double[16];
+        } else if (this.numSteps >= this.stepEnergies.length) {
+            double[] stepEnergies2 = new double[2 * this.stepEnergies.length];
+            System.arraycopy(this.stepEnergies, 0, stepEnergies2, 0, this.numSteps);
+            this.stepEnergies = stepEnergies2;
+        }
+
+        this.stepEnergies[this.numSteps] = energy;
+        this.numSteps++;
+    }
+
+    private int getIntAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private double readDouble(XMLStreamReader reader) throws XMLStreamException {
+        double[] values = this.readDoubles(reader, new double[1]);
+        return values[0];
+    }
+
+    private double[] readDoubles(XMLStreamReader reader, double[] values) throws XMLStreamException {
+        String text = reader.getElementText();
+
+        double[] values2 = values;
+        if (values2 == null) {
+            values2 = new double[16];
+        }
+
+        int num = 0;
+        int length = text.length();
+        int pos = 0;
+
+        while (pos < length) {
+            while (pos < length && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+
+            int start = pos;
+            while (pos < length && !Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+
+            if (start >= pos) {
+                break;
+            }
+
+            if (num >= values2.length) {
+                if (values != null) {
+                    break;
+                }
+
+                double[] values3 = new double[2 * values2.length];
+                System.arraycopy(values2, 0, values3, 0, num);
+                values2 = values3;
+            }
+
+            try {
+                values2[num] = Double.parseDouble(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                values2[num] = 0.0;
+            }
+
+            num++;
+        }
+
+        if (values == null && num < values2.length) {
+            double[] values3 = new double[num];
+            System.arraycopy(values2, 0, values3, 0, num);
+            values2 = values3;
+        }
+
+        return values2;
+    }
+
+    @Override
+    public String toString() {
+        return this.file.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return this.file.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (this.getClass() != obj.getClass()) {
+            return false;
+        }
+
+        return this.file.equals(((DataFile) obj).file);
+    }
+}
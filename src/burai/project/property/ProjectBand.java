@@ -18,6 +18,9 @@ package burai.project.property;
 
 import java.io.File;
 
+import burai.com.file.FileChanged;
+import burai.com.file.FileWatcher;
+
 public class ProjectBand {
 
     private String path;
@@ -26,6 +29,10 @@ public class ProjectBand {
 
     private BandData[] bandDatas;
 
+    private boolean modified;
+
+    private FileChanged onFileChanged;
+
     public ProjectBand(String path, String prefix) {
         if (path == null || path.isEmpty()) {
             throw new IllegalArgumentException("path is empty.");
@@ -39,9 +46,44 @@ public class ProjectBand {
         this.prefix = prefix;
 
         this.bandDatas = new BandData[2];
+
+        this.modified = true;
+        this.onFileChanged = null;
+
         this.reload();
     }
 
+    private synchronized void setModified() {
+        this.modified = true;
+    }
+
+    private synchronized boolean pollModified() {
+        boolean modified = this.modified;
+        this.modified = false;
+        return modified;
+    }
+
+    protected synchronized void watch() {
+        if (this.onFileChanged != null) {
+            return;
+        }
+
+        this.onFileChanged = file -> this.setModified();
+        FileWatcher.getInstance().addListener(new File(this.path), (dir, name) -> {
+            return (this.prefix + ".band1.gnu").equals(name) || (this.prefix + ".band2.gnu").equals(name);
+        }, this.onFileChanged);
+
+        // files may be changed before watching
+        this.modified = true;
+    }
+
+    public synchronized void release() {
+        if (this.onFileChanged != null) {
+            FileWatcher.getInstance().removeListener(this.onFileChanged);
+            this.onFileChanged = null;
+        }
+    }
+
     public String getPath() {
         return this.path;
     }
@@ -67,6 +109,10 @@ public class ProjectBand {
                 return false;
             }
 
+            if (!this.pollModified()) {
+                return false;
+            }
+
             File file1 = new File(dirFile, this.prefix + ".band1.gnu");
             File file2 = new File(dirFile, this.prefix + ".band2.gnu");
             File[] files = { file1, file2 };
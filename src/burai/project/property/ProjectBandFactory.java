@@ -37,15 +37,29 @@ public class ProjectBandFactory {
 
     public ProjectBand getProjectBand() {
         if (this.path == null || this.path.isEmpty() || this.prefix == null || this.prefix.isEmpty()) {
+            this.releaseBand();
             this.band = null;
 
         } else if (this.band != null && this.path.equals(this.band.getPath()) && this.prefix.equals(this.band.getPrefix())) {
             this.band.reload();
 
         } else {
+            this.releaseBand();
             this.band = new ProjectBand(this.path, this.prefix);
+            this.band.watch();
         }
 
         return this.band;
     }
+
+    public void release() {
+        this.releaseBand();
+        this.band = null;
+    }
+
+    private void releaseBand() {
+        if (this.band != null) {
+            this.band.release();
+        }
+    }
 }
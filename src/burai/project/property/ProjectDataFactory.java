@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.project.property;
+
+import java.io.File;
+
+public class ProjectDataFactory {
+
+    private static final String SAVE_DIR_SUFFIX = ".save";
+
+    private static final String SCHEMA_FILE_NAME = "data-file-schema.xml";
+
+    private static final String XML_FILE_SUFFIX = ".xml";
+
+    private static final int DATA_SECTIONS = DataFile.SECTION_ALL;
+
+    private String path;
+
+    private String prefix;
+
+    private DataFile dataFile;
+
+    public ProjectDataFactory() {
+        this.path = null;
+        this.prefix = null;
+        this.dataFile = null;
+    }
+
+    protected void setPath(String path, String prefix) {
+        this.path = path;
+        this.prefix = prefix;
+    }
+
+    public DataFile getDataFile() {
+        File file = this.findFile();
+
+        if (file == null) {
+            this.dataFile = null;
+
+        } else if (this.dataFile != null && file.equals(this.dataFile.getFile())) {
+            this.dataFile.reload();
+
+        } else {
+            this.dataFile = new DataFile(file, DATA_SECTIONS);
+        }
+
+        return this.dataFile;
+    }
+
+    private File findFile() {
+        if (this.path == null || this.path.isEmpty() || this.prefix == null || this.prefix.isEmpty()) {
+            return null;
+        }
+
+        try {
+            File schemaFile = new File(new File(this.path, this.prefix + SAVE_DIR_SUFFIX), SCHEMA_FILE_NAME);
+            if (schemaFile.isFile()) {
+                return schemaFile;
+            }
+
+            File xmlFile = new File(this.path, this.prefix + XML_FILE_SUFFIX);
+            if (xmlFile.isFile()) {
+                return xmlFile;
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+}
@@ -24,6 +24,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import burai.com.file.FileChanged;
+import burai.com.file.FileWatcher;
+
 public class ProjectDos {
 
     private String path;
@@ -32,6 +35,10 @@ public class ProjectDos {
 
     private Map<File, DosData> dosDataMap;
 
+    private boolean modified;
+
+    private FileChanged onFileChanged;
+
     public ProjectDos(String path, String prefix) {
         if (path == null || path.isEmpty()) {
             throw new IllegalArgumentException("path is empty.");
@@ -45,9 +52,57 @@ public class ProjectDos {
         this.prefix = prefix;
 
         this.dosDataMap = null;
+
+        this.modified = true;
+        this.onFileChanged = null;
+
         this.reload();
     }
 
+    private synchronized void setModified() {
+        this.modified = true;
+    }
+
+    private synchronized boolean pollModified() {
+        boolean modified = this.modified;
+        this.modified = false;
+        return modified;
+    }
+
+    protected synchronized void watch() {
+        if (this.onFileChanged != null) {
+            return;
+        }
+
+        this.onFileChanged = file -> this.setModified();
+        FileWatcher.getInstance().addListener(new File(this.path), (dir, name) -> this.isDosFile(name), this.onFileChanged);
+
+        // files may be changed before watching
+        this.modified = true;
+    }
+
+    public synchronized void release() {
+        if (this.onFileChanged != null) {
+            FileWatcher.getInstance().removeListener(this.onFileChanged);
+            this.onFileChanged = null;
+        }
+    }
+
+    private boolean isDosFile(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+
+        } else if (name.equals(this.prefix + ".dos")) {
+            return true;
+
+        } else if (name.startsWith(this.prefix + ".pdos_atm")) {
+            return true;
+
+        } else {
+            return false;
+        }
+    }
+
     public String getPath() {
         return this.path;
     }
@@ -86,20 +141,11 @@ public class ProjectDos {
                 return false;
             }
 
-            File[] files = dirFile.listFiles((dir, name) -> {
-                if (name == null || name.isEmpty()) {
-                    return false;
-
-                } else if (name.equals(this.prefix + ".dos")) {
-                    return true;
-
-                } else if (name.startsWith(this.prefix + ".pdos_atm")) {
-                    return true;
+            if (!this.pollModified()) {
+                return false;
+            }
 
-                } else {
-                    return false;
-                }
-            });
+            File[] files = dirFile.listFiles((dir, name) -> this.isDosFile(name));
 
             if (files == null) {
                 return false;
@@ -37,15 +37,29 @@ public class ProjectDosFactory {
 
     public ProjectDos getProjectDos() {
         if (this.path == null || this.path.isEmpty() || this.prefix == null || this.prefix.isEmpty()) {
+            this.releaseDos();
             this.dos = null;
 
         } else if (this.dos != null && this.path.equals(this.dos.getPath()) && this.prefix.equals(this.dos.getPrefix())) {
             this.dos.reload();
 
         } else {
+            this.releaseDos();
             this.dos = new ProjectDos(this.path, this.prefix);
+            this.dos.watch();
         }
 
         return this.dos;
     }
+
+    public void release() {
+        this.releaseDos();
+        this.dos = null;
+    }
+
+    private void releaseDos() {
+        if (this.dos != null) {
+            this.dos.release();
+        }
+    }
 }
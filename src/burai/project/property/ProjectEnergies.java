@@ -21,13 +21,26 @@ import java.util.List;
 
 public class ProjectEnergies {
 
+    private static final double DEFAULT_CONV_THR = 1.0e-6;
+
+    private static final int NUM_FITTED_ITERATIONS = 6;
+
     private boolean converged;
 
+    private double convThreshold;
+
     private List<Double> energies;
 
+    private List<Double> times;
+
+    private List<Double> accuracies;
+
     public ProjectEnergies() {
         this.converged = false;
+        this.convThreshold = DEFAULT_CONV_THR;
         this.energies = null;
+        this.times = null;
+        this.accuracies = null;
     }
 
     public synchronized boolean isConverged() {
@@ -38,12 +51,28 @@ public class ProjectEnergies {
         this.converged = converged;
     }
 
+    public synchronized double getConvThreshold() {
+        return this.convThreshold > 0.0 ? this.convThreshold : DEFAULT_CONV_THR;
+    }
+
+    public synchronized void setConvThreshold(double convThreshold) {
+        this.convThreshold = convThreshold;
+    }
+
     public synchronized void clearEnergies() {
         this.converged = false;
 
         if (this.energies != null) {
             this.energies.clear();
         }
+
+        if (this.times != null) {
+            this.times.clear();
+        }
+
+        if (this.accuracies != null) {
+            this.accuracies.clear();
+        }
     }
 
     public synchronized int numEnergies() {
@@ -64,20 +93,207 @@ public class ProjectEnergies {
         }
 
         this.energies.remove(i);
+
+        if (this.times != null && i < this.times.size()) {
+            this.times.remove(i);
+        }
+
+        if (this.accuracies != null && i < this.accuracies.size()) {
+            this.accuracies.remove(i);
+        }
     }
 
     public synchronized void addEnergy(double energy) {
+        this.addEnergy(energy, -1.0, -1.0);
+    }
+
+    /*
+     * time: total CPU time (sec) spent up to this iteration, or negative if unknown.
+     * accuracy: estimated SCF accuracy (Ry), or negative if unknown.
+     */
+    public synchronized void addEnergy(double energy, double time, double accuracy) {
         if (this.energies == null) {
             this.energies = new ArrayList<Double>();
         }
 
+        int index = this.energies.size();
         this.energies.add(energy);
+
+        if (time >= 0.0 || this.times != null) {
+            this.times = this.addMetric(this.times, index, time);
+        }
+
+        if (accuracy >= 0.0 || this.accuracies != null) {
+            this.accuracies = this.addMetric(this.accuracies, index, accuracy);
+        }
+    }
+
+    private List<Double> addMetric(List<Double> metrics, int index, double value) {
+        List<Double> metrics2 = metrics;
+        if (metrics2 == null) {
+            metrics2 = new ArrayList<Double>();
+        }
+
+        while (metrics2.size() < index) {
+            metrics2.add(-1.0);
+        }
+
+        metrics2.add(value);
+        return metrics2;
+    }
+
+    public synchronized double getTime(int i) throws IndexOutOfBoundsException {
+        if (this.energies == null || i < 0 || i >= this.energies.size()) {
+            throw new IndexOutOfBoundsException("incorrect index of energies: " + i + ".");
+        }
+
+        if (this.times == null || i >= this.times.size()) {
+            return -1.0;
+        }
+
+        Double time = this.times.get(i);
+        return time == null ? -1.0 : time.doubleValue();
+    }
+
+    public synchronized double getAccuracy(int i) throws IndexOutOfBoundsException {
+        if (this.energies == null || i < 0 || i >= this.energies.size()) {
+            throw new IndexOutOfBoundsException("incorrect index of energies: " + i + ".");
+        }
+
+        if (this.accuracies == null || i >= this.accuracies.size()) {
+            return -1.0;
+        }
+
+        Double accuracy = this.accuracies.get(i);
+        return accuracy == null ? -1.0 : accuracy.doubleValue();
+    }
+
+    /*
+     * mean CPU time (sec) of one SCF iteration, or negative if unknown.
+     */
+    public synchronized double getTimePerIteration() {
+        int num = this.numEnergies();
+
+        int iFirst = -1;
+        int iLast = -1;
+        for (int i = 0; i < num; i++) {
+            if (this.getTime(i) >= 0.0) {
+                iFirst = iFirst < 0 ? i : iFirst;
+                iLast = i;
+            }
+        }
+
+        if (iLast < 0) {
+            return -1.0;
+        }
+
+        if (iFirst == iLast) {
+            return this.getTime(iLast) / ((double) (iLast + 1));
+        }
+
+        return (this.getTime(iLast) - this.getTime(iFirst)) / ((double) (iLast - iFirst));
+    }
+
+    /*
+     * slope of ln(accuracy) per iteration, fitted over the latest iterations.
+     * a negative value means that SCF is converging.
+     */
+    public synchronized double getConvergenceRate() {
+        double[] fitting = this.fitConvergence();
+        return fitting == null ? 0.0 : fitting[0];
+    }
+
+    /*
+     * @return { slope, intercept } of ln(accuracy) = slope * (index + 1) + intercept
+     */
+    public synchronized double[] fitConvergence() {
+        int num = this.numEnergies();
+
+        int numData = 0;
+        double sumX = 0.0;
+        double sumY = 0.0;
+        double sumXX = 0.0;
+        double sumXY = 0.0;
+
+        for (int i = num - 1; i >= 0 && numData < NUM_FITTED_ITERATIONS; i--) {
+            double accuracy = this.getAccuracy(i);
+            if (accuracy <= 0.0) {
+                continue;
+            }
+
+            double x = (double) (i + 1);
+            double y = Math.log(accuracy);
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+            numData++;
+        }
+
+        if (numData < 2) {
+            return null;
+        }
+
+        double denom = numData * sumXX - sumX * sumX;
+        if (Math.abs(denom) < 1.0e-12) {
+            return null;
+        }
+
+        double slope = (numData * sumXY - sumX * sumY) / denom;
+        double intercept = (sumY - slope * sumX) / numData;
+        return new double[] { slope, intercept };
+    }
+
+    /*
+     * number of SCF iterations to be still done, or negative if unpredictable.
+     */
+    public synchronized int predictIterations() {
+        if (this.converged) {
+            return 0;
+        }
+
+        int num = this.numEnergies();
+        double accuracy = num > 0 ? this.getAccuracy(num - 1) : -1.0;
+        if (accuracy <= 0.0) {
+            return -1;
+        }
+
+        double convThr = this.getConvThreshold();
+        if (accuracy < convThr) {
+            return 0;
+        }
+
+        double rate = this.getConvergenceRate();
+        if (rate >= 0.0) {
+            return -1;
+        }
+
+        double iterations = (Math.log(convThr) - Math.log(accuracy)) / rate;
+        return Math.max(1, (int) Math.ceil(iterations));
+    }
+
+    /*
+     * CPU time (sec) to complete SCF, or negative if unpredictable.
+     */
+    public synchronized double predictTime() {
+        int iterations = this.predictIterations();
+        if (iterations < 0) {
+            return -1.0;
+        }
+
+        double timePerIteration = this.getTimePerIteration();
+        if (timePerIteration < 0.0) {
+            return -1.0;
+        }
+
+        return iterations * timePerIteration;
     }
 
     public synchronized ProjectEnergies copyEnergies() {
         ProjectEnergies other = new ProjectEnergies();
 
         other.converged = this.converged;
+        other.convThreshold = this.convThreshold;
 
         if (this.energies == null) {
             other.energies = null;
@@ -86,6 +302,20 @@ public class ProjectEnergies {
             other.energies = new ArrayList<Double>(this.energies);
         }
 
+        if (this.times == null) {
+            other.times = null;
+
+        } else {
+            other.times = new ArrayList<Double>(this.times);
+        }
+
+        if (this.accuracies == null) {
+            other.accuracies = null;
+
+        } else {
+            other.accuracies = new ArrayList<Double>(this.accuracies);
+        }
+
         return other;
     }
 }
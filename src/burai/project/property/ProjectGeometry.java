@@ -33,6 +33,8 @@ public class ProjectGeometry {
 
     private double temperature;
 
+    private double cpuTime;
+
     private List<Double> cell;
 
     private List<Double> stress;
@@ -47,6 +49,7 @@ public class ProjectGeometry {
         this.totalForce = 0.0;
         this.kinetic = 0.0;
         this.temperature = 0.0;
+        this.cpuTime = -1.0;
 
         this.cell = null;
         this.stress = null;
@@ -101,6 +104,14 @@ public class ProjectGeometry {
         this.kinetic = kinetic;
     }
 
+    public synchronized double getCpuTime() {
+        return this.cpuTime;
+    }
+
+    public synchronized void setCpuTime(double cpuTime) {
+        this.cpuTime = cpuTime;
+    }
+
     private double convertDouble(Double obj) {
         return obj == null ? 0.0 : obj.doubleValue();
     }
@@ -298,6 +309,35 @@ public class ProjectGeometry {
         }
     }
 
+    public synchronized ProjectGeometry copyGeometry() {
+        ProjectGeometry other = new ProjectGeometry();
+
+        other.converged = this.converged;
+
+        other.time = this.time;
+        other.energy = this.energy;
+        other.totalForce = this.totalForce;
+        other.kinetic = this.kinetic;
+        other.temperature = this.temperature;
+        other.cpuTime = this.cpuTime;
+
+        other.cell = this.cell == null ? null : new ArrayList<Double>(this.cell);
+        other.stress = this.stress == null ? null : new ArrayList<Double>(this.stress);
+
+        if (this.atoms != null) {
+            other.atoms = new ArrayList<Atom>();
+            for (Atom atom : this.atoms) {
+                Atom atom2 = new Atom(atom.name, atom.x, atom.y, atom.z);
+                atom2.fx = atom.fx;
+                atom2.fy = atom.fy;
+                atom2.fz = atom.fz;
+                other.atoms.add(atom2);
+            }
+        }
+
+        return other;
+    }
+
     private static class Atom {
 
         private static final double MIN_R = 1.0e-8;
@@ -29,12 +29,19 @@ public class ProjectGeometryList {
 
     private List<ProjectGeometry> geometries;
 
+    private int numResumed;
+
+    private double resumedTime;
+
     public ProjectGeometryList() {
         this.cellAxis = null;
         this.molecule = false;
 
         this.converged = false;
         this.geometries = null;
+
+        this.numResumed = 0;
+        this.resumedTime = 0.0;
     }
 
     public synchronized String getCellAxis() {
@@ -65,7 +72,62 @@ public class ProjectGeometryList {
         this.converged = false;
 
         if (this.geometries != null) {
-            this.geometries.clear();
+            // geometries of the interrupted run are kept
+            int numKept = Math.min(Math.max(0, this.numResumed), this.geometries.size());
+            this.geometries.subList(numKept, this.geometries.size()).clear();
+        }
+    }
+
+    /*
+     * geometries of the interrupted run are kept, except the last one,
+     * which is the starting geometry of the resumed run and is parsed again.
+     */
+    public synchronized boolean resumeGeometries() {
+        int numGeoms = this.geometries == null ? 0 : this.geometries.size();
+        if (numGeoms < 2) {
+            this.discardResumed();
+            return false;
+        }
+
+        // the last geometry has no time yet, which is extrapolated from the previous ones.
+        ProjectGeometry geometry1 = this.geometries.get(numGeoms - 2);
+        ProjectGeometry geometry0 = numGeoms > 2 ? this.geometries.get(numGeoms - 3) : null;
+        double time1 = geometry1 == null ? 0.0 : geometry1.getTime();
+        double time0 = geometry0 == null ? 0.0 : geometry0.getTime();
+
+        this.geometries.remove(numGeoms - 1);
+        this.resumedTime = 2.0 * time1 - time0;
+        this.numResumed = numGeoms - 1;
+        this.converged = false;
+        return true;
+    }
+
+    public synchronized void discardResumed() {
+        this.numResumed = 0;
+        this.resumedTime = 0.0;
+    }
+
+    public synchronized int numResumedGeometries() {
+        return this.numResumed;
+    }
+
+    /*
+     * times of the resumed run are shifted to follow the interrupted run.
+     * firstTime is the parsed time of the first geometry of the resumed run,
+     * and geometries from index start have parsed times, which are not shifted yet.
+     */
+    public synchronized void alignResumedTimes(double firstTime, int start) {
+        if (this.numResumed < 1 || this.geometries == null || this.geometries.size() <= this.numResumed) {
+            return;
+        }
+
+        double offset = this.resumedTime - firstTime;
+
+        for (int i = Math.max(this.numResumed, start); i < this.geometries.size(); i++) {
+            ProjectGeometry geometry = this.geometries.get(i);
+            if (geometry != null) {
+                geometry.setTime(geometry.getTime() + offset);
+            }
         }
     }
 
@@ -89,6 +151,14 @@ public class ProjectGeometryList {
         this.geometries.remove(i);
     }
 
+    public synchronized void truncateGeometries(int numKept) {
+        if (this.geometries == null || numKept < 0 || numKept >= this.geometries.size()) {
+            return;
+        }
+
+        this.geometries.subList(numKept, this.geometries.size()).clear();
+    }
+
     public synchronized void addGeometry(ProjectGeometry geometry) {
         if (geometry == null) {
             throw new IllegalArgumentException("geometry is null.");
@@ -137,6 +207,9 @@ public class ProjectGeometryList {
 
         other.converged = this.converged;
 
+        other.numResumed = this.numResumed;
+        other.resumedTime = this.resumedTime;
+
         if (this.geometries == null) {
             other.geometries = null;
 
@@ -37,6 +37,16 @@ public class ProjectProperty {
     private static final String FILE_NAME_MD = ".burai.md";
     private static final String FILE_NAME_PATH = ".burai.path";
 
+    public static String[] listResultFileNames() {
+        return new String[] {
+                FILE_NAME_SCF,
+                FILE_NAME_FERMI,
+                FILE_NAME_OPT,
+                FILE_NAME_MD,
+                FILE_NAME_PATH
+        };
+    }
+
     public static boolean hasStatus(String directoryPath) {
         if (directoryPath == null || directoryPath.isEmpty()) {
             return false;
@@ -74,6 +84,8 @@ public class ProjectProperty {
 
     private ProjectBandFactory bandFactory;
 
+    private ProjectDataFactory dataFactory;
+
     public ProjectProperty(String directoryPath, String prefixName) {
         if (directoryPath == null) {
             throw new IllegalArgumentException("directoryPath is null.");
@@ -96,6 +108,8 @@ public class ProjectProperty {
         this.bandPaths = null;
         this.bandFactory = new ProjectBandFactory();
         this.bandFactory.setPath(this.directoryPath, this.prefixName);
+        this.dataFactory = new ProjectDataFactory();
+        this.dataFactory.setPath(this.directoryPath, this.prefixName);
     }
 
     public synchronized void copyProperty(ProjectProperty property) {
@@ -113,6 +127,17 @@ public class ProjectProperty {
         this.bandPaths = property.getBandPaths();
         this.bandFactory = property.getBandFactory();
         this.bandFactory.setPath(this.directoryPath, this.prefixName);
+        this.dataFactory = property.getDataFactory();
+        this.dataFactory.setPath(this.directoryPath, this.prefixName);
+    }
+
+    public synchronized void reloadResults() {
+        // results are read from files again, when they are required.
+        this.scfEnergies = null;
+        this.fermiEnergies = null;
+        this.optList = null;
+        this.mdList = null;
+        this.bandPaths = null;
     }
 
     public void saveProperty() {
@@ -188,6 +213,27 @@ public class ProjectProperty {
         return this.bandFactory == null ? null : this.bandFactory.getProjectBand();
     }
 
+    /*
+     * files of DOS and bands are not watched after the project is closed.
+     */
+    public synchronized void releaseResults() {
+        if (this.dosFactory != null) {
+            this.dosFactory.release();
+        }
+
+        if (this.bandFactory != null) {
+            this.bandFactory.release();
+        }
+    }
+
+    public synchronized ProjectDataFactory getDataFactory() {
+        return this.dataFactory;
+    }
+
+    public synchronized DataFile getDataFile() {
+        return this.dataFactory == null ? null : this.dataFactory.getDataFile();
+    }
+
     private void createStatus() {
         try {
             this.status = this.<ProjectStatus> readFile(FILE_NAME_STATUS, ProjectStatus.class);
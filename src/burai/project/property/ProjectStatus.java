@@ -17,6 +17,8 @@
 package burai.project.property;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ProjectStatus {
 
@@ -31,6 +33,8 @@ public class ProjectStatus {
     private int dosCount;
     private int bandCount;
 
+    private Map<String, String> productHashes;
+
     public ProjectStatus() {
         this.updateDate();
 
@@ -42,6 +46,8 @@ public class ProjectStatus {
         this.mdCount = 0;
         this.dosCount = 0;
         this.bandCount = 0;
+
+        this.productHashes = null;
     }
 
     private void updateDate() {
@@ -133,4 +139,24 @@ public class ProjectStatus {
         this.updateDate();
         this.bandCount++;
     }
+
+    public synchronized String getProductHash(String key) {
+        if (key == null || this.productHashes == null) {
+            return null;
+        }
+
+        return this.productHashes.get(key);
+    }
+
+    public synchronized void setProductHash(String key, String hash) {
+        if (key == null) {
+            return;
+        }
+
+        if (this.productHashes == null) {
+            this.productHashes = new HashMap<String, String>();
+        }
+
+        this.productHashes.put(key, hash);
+    }
 }
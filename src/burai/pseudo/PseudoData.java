@@ -47,6 +47,10 @@ public class PseudoData {
 
     private long upfTimeStamp;
 
+    private long upfSize;
+
+    private String upfDigest;
+
     private int upfVersion;
 
     private String generated;
@@ -103,6 +107,8 @@ public class PseudoData {
 
     public PseudoData() {
         this.upfTimeStamp = INIT_TIME_STAMP;
+        this.upfSize = 0L;
+        this.upfDigest = null;
         this.upfVersion = UPF_VERSION_UNKNOWN;
         this.generated = null;
         this.author = null;
@@ -146,23 +152,45 @@ public class PseudoData {
         }
 
         long upfTimeStamp2 = INIT_TIME_STAMP;
+        long upfSize2 = 0L;
 
         try {
             upfTimeStamp2 = upfFile.lastModified();
+            upfSize2 = upfFile.length();
 
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
 
-        if (this.upfTimeStamp != INIT_TIME_STAMP && this.upfTimeStamp == upfTimeStamp2) {
+        // size is 0, if read from the list of an older version
+        if (this.upfTimeStamp != INIT_TIME_STAMP && this.upfTimeStamp == upfTimeStamp2
+                && (this.upfSize == 0L || this.upfSize == upfSize2)) {
+            this.upfSize = upfSize2;
             return false;
         }
 
         this.upfTimeStamp = upfTimeStamp2;
+        this.upfSize = upfSize2;
+        this.upfDigest = null;
         return true;
     }
 
+    public long getUpfSize() {
+        return this.upfSize;
+    }
+
+    /*
+     * SHA-256 of the UPF file, or null if not computed yet.
+     */
+    public String getUpfDigest() {
+        return this.upfDigest;
+    }
+
+    protected void setUpfDigest(String upfDigest) {
+        this.upfDigest = upfDigest;
+    }
+
     protected void initUpfTimeStamp() {
         this.upfTimeStamp = INIT_TIME_STAMP;
     }
@@ -27,15 +27,18 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import burai.com.env.Environments;
+import burai.com.file.FileWatcher;
 import burai.com.life.Life;
 import burai.com.parallel.Parallel;
 
@@ -50,8 +53,6 @@ public class PseudoLibrary {
     private static final int DEFAULT_NUM_WFC = 1000;
     private static final int DEFAULT_NUM_PRJ = 1000;
 
-    private static final long SLEEPING_TIME = 2500L;
-
     private static final int NUM_LOADING_THREADS =
             Math.min(Math.max(1, (int) (0.5 * Environments.getNumCUPs())), Environments.getNumCUPs() - 1);
 
@@ -65,19 +66,45 @@ public class PseudoLibrary {
         return instance;
     }
 
+    /*
+     * an immutable snapshot of pseudo potentials, with secondary indexes.
+     */
+    private static class PseudoIndex {
+
+        private Map<File, PseudoPotential> pseudoPots;
+
+        // keyed by element, pseudo type and functional (UNKNOWN matches any)
+        private Map<String, PseudoPotential[]> listMap;
+
+        // keyed by element, the recommended one (e.g. lower cutoffs)
+        private Map<String, PseudoPotential> bestMap;
+    }
+
     private boolean alive;
 
+    private boolean rescanning;
+
+    private Set<File> changedFiles;
+
+    private boolean digested;
+
     private boolean loaded;
 
     private Object loadedLock;
 
-    private Map<File, PseudoPotential> pseudoPots;
+    private Object scanningLock;
+
+    private PseudoIndex pseudoIndex;
 
     private PseudoLibrary() {
         this.alive = true;
+        this.rescanning = false;
+        this.changedFiles = new HashSet<File>();
+        this.digested = false;
         this.loaded = false;
         this.loadedLock = new Object();
-        this.pseudoPots = null;
+        this.scanningLock = new Object();
+        this.pseudoIndex = this.createIndex(new HashMap<File, PseudoPotential>());
 
         this.runReloadingThread();
 
@@ -126,21 +153,57 @@ public class PseudoLibrary {
         }
     }
 
+    private synchronized PseudoIndex getIndex() {
+        return this.pseudoIndex;
+    }
+
+    private void setIndex(Map<File, PseudoPotential> pseudoPots) {
+        PseudoIndex pseudoIndex = this.createIndex(pseudoPots);
+
+        synchronized (this) {
+            this.pseudoIndex = pseudoIndex;
+        }
+    }
+
     private void runReloadingThread() {
+        String pseudosPath = Environments.getPseudosPath();
+        if (pseudosPath != null && (!pseudosPath.isEmpty())) {
+            FileWatcher.getInstance().addListener(new File(pseudosPath),
+                    (dir, name) -> this.isUPF(new File(dir, name)), file -> this.notifyChanged(file));
+        }
+
         Thread thread = new Thread(() -> {
-            while (this.isAlive()) {
-                this.reload();
+            // the list of the last session is available at once, then verified with the directory.
+            this.loadPseudoList();
+            this.reload();
 
-                if (!this.isAlive()) {
-                    break;
-                }
+            while (this.isAlive()) {
+                boolean rescanning = false;
+                Set<File> files = null;
 
                 synchronized (this) {
                     try {
-                        this.wait(SLEEPING_TIME);
+                        while (this.alive && (!this.rescanning) && this.changedFiles.isEmpty()) {
+                            this.wait();
+                        }
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
+
+                    if (!this.alive) {
+                        break;
+                    }
+
+                    rescanning = this.rescanning;
+                    files = new HashSet<File>(this.changedFiles);
+                    this.rescanning = false;
+                    this.changedFiles.clear();
+                }
+
+                if (rescanning) {
+                    this.reload();
+                } else {
+                    this.reloadFiles(files);
                 }
             }
         });
@@ -148,16 +211,70 @@ public class PseudoLibrary {
         thread.start();
     }
 
+    private synchronized void notifyChanged(File file) {
+        if (file == null || file.isDirectory()) {
+            // events may have been lost
+            this.rescanning = true;
+        } else {
+            this.changedFiles.add(file);
+        }
+
+        this.notifyAll();
+    }
+
     public void touch() {
         // NOP
     }
 
-    public synchronized void stop() {
-        this.alive = false;
-        this.notifyAll();
+    public void stop() {
+        boolean digested = false;
+
+        synchronized (this) {
+            this.alive = false;
+            digested = this.digested;
+            this.digested = false;
+            this.notifyAll();
+        }
+
+        if (digested) {
+            synchronized (this.scanningLock) {
+                try {
+                    this.writePseudoList();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
     }
 
-    public synchronized void reload() {
+    private void loadPseudoList() {
+        synchronized (this.scanningLock) {
+            Map<File, PseudoPotential> pseudoPots = null;
+
+            try {
+                pseudoPots = this.readPseudoList();
+            } catch (IOException e) {
+                e.printStackTrace();
+                pseudoPots = null;
+            }
+
+            if (pseudoPots != null && (!pseudoPots.isEmpty())) {
+                this.setIndex(pseudoPots);
+                this.setLoaded();
+            }
+        }
+    }
+
+    /*
+     * scans whole of the directory, where only new or modified files are parsed.
+     */
+    public void reload() {
+        synchronized (this.scanningLock) {
+            this.reloadKernel();
+        }
+    }
+
+    private void reloadKernel() {
         try {
             File pseudosDir = null;
             String pseudosPath = Environments.getPseudosPath();
@@ -166,17 +283,11 @@ public class PseudoLibrary {
             }
 
             if (pseudosDir == null || (!pseudosDir.isDirectory())) {
-                if (this.pseudoPots != null) {
-                    this.pseudoPots.clear();
-                }
+                this.setIndex(new HashMap<File, PseudoPotential>());
                 return;
             }
 
-            try {
-                this.readPseudoList();
-            } catch (IOException e1) {
-                e1.printStackTrace();
-            }
+            Map<File, PseudoPotential> pseudoPots1 = this.getIndex().pseudoPots;
 
             int numReloaded = 0;
             Map<File, PseudoPotential> pseudoPots2 = new HashMap<File, PseudoPotential>();
@@ -195,8 +306,8 @@ public class PseudoLibrary {
                     boolean reloaded = false;
                     PseudoPotential pseudoPot = null;
 
-                    if (this.pseudoPots != null && this.pseudoPots.containsKey(pseudoFile)) {
-                        pseudoPot = this.pseudoPots.get(pseudoFile);
+                    if (pseudoPots1.containsKey(pseudoFile)) {
+                        pseudoPot = pseudoPots1.get(pseudoFile);
                         if (pseudoPot != null) {
                             reloaded = pseudoPot.reload();
                         }
@@ -216,11 +327,9 @@ public class PseudoLibrary {
                 });
             }
 
-            int numPseudos1 = this.pseudoPots == null ? 0 : this.pseudoPots.size();
-            int numPseudos2 = pseudoPots2.size();
-            this.pseudoPots = pseudoPots2;
+            this.setIndex(pseudoPots2);
 
-            if (numReloaded > 0 || numPseudos1 != numPseudos2) {
+            if (numReloaded > 0 || pseudoPots1.size() != pseudoPots2.size() || this.isDigested()) {
                 try {
                     this.writePseudoList();
                 } catch (IOException e2) {
@@ -230,15 +339,68 @@ public class PseudoLibrary {
 
         } catch (Exception e3) {
             e3.printStackTrace();
-            if (this.pseudoPots != null) {
-                this.pseudoPots.clear();
-            }
+            this.setIndex(new HashMap<File, PseudoPotential>());
 
         } finally {
             this.setLoaded();
         }
     }
 
+    /*
+     * updates only the files notified by FileWatcher.
+     */
+    private void reloadFiles(Set<File> files) {
+        if (files == null || files.isEmpty()) {
+            return;
+        }
+
+        synchronized (this.scanningLock) {
+            Map<File, PseudoPotential> pseudoPots = new HashMap<File, PseudoPotential>(this.getIndex().pseudoPots);
+
+            boolean changed = false;
+
+            for (File file : files) {
+                PseudoPotential pseudoPot = pseudoPots.get(file);
+
+                if (!file.isFile()) {
+                    changed = changed || pseudoPots.remove(file) != null;
+                    continue;
+                }
+
+                if (pseudoPot == null) {
+                    pseudoPot = new PseudoPotential(file);
+                    changed = true;
+                } else if (pseudoPot.reload()) {
+                    changed = true;
+                }
+
+                if (pseudoPot.isAvairable()) {
+                    pseudoPots.put(file, pseudoPot);
+                } else {
+                    changed = changed || pseudoPots.remove(file) != null;
+                }
+            }
+
+            if (!changed) {
+                return;
+            }
+
+            this.setIndex(pseudoPots);
+
+            try {
+                this.writePseudoList();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized boolean isDigested() {
+        boolean digested = this.digested;
+        this.digested = false;
+        return digested;
+    }
+
     private boolean isUPF(File file) {
         if (file == null) {
             return false;
@@ -258,19 +420,15 @@ public class PseudoLibrary {
         return ".upf".equalsIgnoreCase(ext);
     }
 
-    private void readPseudoList() throws IOException {
-        if (this.pseudoPots != null) {
-            return;
-        }
-
+    private Map<File, PseudoPotential> readPseudoList() throws IOException {
         String pseudoPath = Environments.getPseudosPath();
         if (pseudoPath == null || pseudoPath.isEmpty()) {
-            return;
+            return null;
         }
 
         String listPath = Environments.getPseudoListPath();
         if (listPath == null || listPath.isEmpty()) {
-            return;
+            return null;
         }
 
         Reader reader = null;
@@ -279,7 +437,7 @@ public class PseudoLibrary {
         try {
             File file = new File(listPath);
             if (!file.isFile()) {
-                return;
+                return null;
             }
 
             reader = new BufferedReader(new FileReader(file));
@@ -304,7 +462,7 @@ public class PseudoLibrary {
         }
 
         if (pseudoMap == null) {
-            return;
+            return null;
         }
 
         Map<File, PseudoPotential> pseudoPots2 = new HashMap<File, PseudoPotential>();
@@ -332,11 +490,12 @@ public class PseudoLibrary {
             }
         }
 
-        this.pseudoPots = pseudoPots2;
+        return pseudoPots2;
     }
 
     private void writePseudoList() throws IOException {
-        if (this.pseudoPots == null) {
+        Map<File, PseudoPotential> pseudoPots = this.getIndex().pseudoPots;
+        if (pseudoPots == null) {
             return;
         }
 
@@ -347,7 +506,7 @@ public class PseudoLibrary {
 
         Map<String, PseudoData> pseudoMap = new PseudoDataMap();
 
-        Set<Entry<File, PseudoPotential>> pseudoEntries = this.pseudoPots.entrySet();
+        Set<Entry<File, PseudoPotential>> pseudoEntries = pseudoPots.entrySet();
         if (pseudoEntries != null) {
             for (Entry<File, PseudoPotential> pseudoEntry : pseudoEntries) {
                 if (pseudoEntry == null) {
@@ -414,19 +573,110 @@ public class PseudoLibrary {
         return this.peekPseudoPotential(pseudoFile);
     }
 
-    public synchronized PseudoPotential peekPseudoPotential(File pseudoFile) {
+    public PseudoPotential peekPseudoPotential(File pseudoFile) {
         if (pseudoFile == null) {
             return null;
         }
 
-        if (this.pseudoPots != null && this.pseudoPots.containsKey(pseudoFile)) {
-            return this.pseudoPots.get(pseudoFile);
+        return this.getIndex().pseudoPots.get(pseudoFile);
+    }
+
+    /**
+     * SHA-256 of the pseudo potential in this library, which is kept in the list of pseudo potentials.
+     *
+     * @param pseudoFile The UPF file
+     * @return the digest in hex, or null if the file is not in this library
+     */
+    public String getDigest(File pseudoFile) {
+        PseudoPotential pseudoPot = this.peekPseudoPotential(pseudoFile);
+        if (pseudoPot == null) {
+            return null;
+        }
+
+        boolean hasDigest = pseudoPot.getData().getUpfDigest() != null;
+        String digest = pseudoPot.getDigest();
+
+        if (digest != null && (!hasDigest)) {
+            synchronized (this) {
+                this.digested = true;
+            }
         }
 
-        return null;
+        return digest;
     }
 
     public PseudoPotential getPseudoPotential(String element) {
+        if (!this.isLoaded()) {
+            return null;
+        }
+
+        String elementKey = getElementKey(element);
+        if (elementKey == null) {
+            return null;
+        }
+
+        return this.getIndex().bestMap.get(elementKey);
+    }
+
+    private static String getElementKey(String element) {
+        String elementTrim = element == null ? null : element.trim();
+        if (elementTrim == null || elementTrim.isEmpty()) {
+            return null;
+        }
+
+        return elementTrim.toLowerCase(Locale.ROOT);
+    }
+
+    private static String getListKey(String elementKey, int pseudoType, int functional) {
+        return elementKey + "/" + pseudoType + "/" + functional;
+    }
+
+    private PseudoIndex createIndex(Map<File, PseudoPotential> pseudoPots) {
+        Map<String, List<PseudoPotential>> pseudoLists = new HashMap<String, List<PseudoPotential>>();
+
+        for (PseudoPotential pseudoPot : pseudoPots.values()) {
+            String elementKey = pseudoPot == null ? null : getElementKey(pseudoPot.getData().getElement());
+            if (elementKey == null) {
+                continue;
+            }
+
+            int pseudoType = pseudoPot.getData().getPseudoType();
+            int functional = pseudoPot.getData().getFunctional();
+
+            Set<String> listKeys = new LinkedHashSet<String>();
+            listKeys.add(getListKey(elementKey, PseudoData.PSEUDO_TYPE_UNKNOWN, PseudoData.FUNCTIONAL_UNKNOWN));
+            listKeys.add(getListKey(elementKey, pseudoType, PseudoData.FUNCTIONAL_UNKNOWN));
+            listKeys.add(getListKey(elementKey, PseudoData.PSEUDO_TYPE_UNKNOWN, functional));
+            listKeys.add(getListKey(elementKey, pseudoType, functional));
+
+            for (String listKey : listKeys) {
+                List<PseudoPotential> pseudoList = pseudoLists.get(listKey);
+                if (pseudoList == null) {
+                    pseudoList = new ArrayList<PseudoPotential>();
+                    pseudoLists.put(listKey, pseudoList);
+                }
+
+                pseudoList.add(pseudoPot);
+            }
+        }
+
+        PseudoIndex pseudoIndex = new PseudoIndex();
+        pseudoIndex.pseudoPots = pseudoPots;
+        pseudoIndex.listMap = new HashMap<String, PseudoPotential[]>();
+        pseudoIndex.bestMap = new HashMap<String, PseudoPotential>();
+
+        Set<String> elementKeys = new HashSet<String>();
+
+        for (Entry<String, List<PseudoPotential>> pseudoEntry : pseudoLists.entrySet()) {
+            List<PseudoPotential> pseudoList = pseudoEntry.getValue();
+            if (pseudoList.size() > 1) {
+                Collections.sort(pseudoList);
+            }
+
+            pseudoIndex.listMap.put(pseudoEntry.getKey(), pseudoList.toArray(new PseudoPotential[pseudoList.size()]));
+            elementKeys.add(getElementKey(pseudoList.get(0).getData().getElement()));
+        }
+
         final int[] functionals = {
                 PseudoData.FUNCTIONAL_PBE,
                 PseudoData.FUNCTIONAL_PZ,
@@ -438,21 +688,33 @@ public class PseudoLibrary {
                 PseudoData.PSEUDO_TYPE_PAW,
                 PseudoData.PSEUDO_TYPE_UNKNOWN };
 
-        for (int functional : functionals) {
-            for (int pseudoType : pseudoTypes) {
-                PseudoPotential[] pseudoPots = this.listPseudoPotentials(element, pseudoType, functional);
-                if (pseudoPots != null) {
-                    if (pseudoPots.length > 1) {
-                        this.sortPseudoPotentials(pseudoPots);
-                    }
-                    if (pseudoPots.length > 0) {
-                        return pseudoPots[0];
+        for (String elementKey : elementKeys) {
+            PseudoPotential bestPot = null;
+
+            for (int functional : functionals) {
+                for (int pseudoType : pseudoTypes) {
+                    PseudoPotential[] pseudoPots2 = pseudoIndex.listMap.get(getListKey(elementKey, pseudoType, functional));
+                    if (pseudoPots2 != null && pseudoPots2.length > 0) {
+                        pseudoPots2 = pseudoPots2.clone();
+                        if (pseudoPots2.length > 1) {
+                            this.sortPseudoPotentials(pseudoPots2);
+                        }
+                        bestPot = pseudoPots2[0];
+                        break;
                     }
                 }
+
+                if (bestPot != null) {
+                    break;
+                }
+            }
+
+            if (bestPot != null) {
+                pseudoIndex.bestMap.put(elementKey, bestPot);
             }
         }
 
-        return null;
+        return pseudoIndex;
     }
 
     private void sortPseudoPotentials(PseudoPotential[] pseudoPots) {
@@ -545,58 +807,12 @@ public class PseudoLibrary {
             return null;
         }
 
-        if (element == null) {
-            return null;
-        }
-
-        String elementTrim = element.trim();
-        if (elementTrim == null || elementTrim.isEmpty()) {
+        String elementKey = getElementKey(element);
+        if (elementKey == null) {
             return null;
         }
 
-        List<PseudoPotential> pseudoList = null;
-
-        synchronized (this) {
-            if (this.pseudoPots != null && (!this.pseudoPots.isEmpty())) {
-                pseudoList = new ArrayList<PseudoPotential>();
-                Collection<PseudoPotential> pseudoColl = this.pseudoPots.values();
-
-                for (PseudoPotential pseudoPot : pseudoColl) {
-                    String element2 = pseudoPot.getData().getElement();
-                    if (element2 == null) {
-                        continue;
-                    }
-
-                    String elementTrim2 = element2.trim();
-                    if (elementTrim2 == null || elementTrim2.isEmpty()) {
-                        continue;
-                    }
-
-                    if (elementTrim.equalsIgnoreCase(elementTrim2)) {
-                        int pseudoType2 = pseudoPot.getData().getPseudoType();
-                        boolean okPseudoType =
-                                (pseudoType == PseudoData.PSEUDO_TYPE_UNKNOWN || pseudoType == pseudoType2);
-
-                        int functional2 = pseudoPot.getData().getFunctional();
-                        boolean okFunctional =
-                                (functional == PseudoData.FUNCTIONAL_UNKNOWN || functional == functional2);
-
-                        if (okPseudoType && okFunctional) {
-                            pseudoList.add(pseudoPot);
-                        }
-                    }
-                }
-            }
-        }
-
-        if (pseudoList == null || pseudoList.isEmpty()) {
-            return null;
-        }
-
-        if (pseudoList.size() > 1) {
-            Collections.sort(pseudoList);
-        }
-
-        return pseudoList.toArray(new PseudoPotential[pseudoList.size()]);
+        PseudoPotential[] pseudoPots = this.getIndex().listMap.get(getListKey(elementKey, pseudoType, functional));
+        return pseudoPots == null ? null : pseudoPots.clone();
     }
 }
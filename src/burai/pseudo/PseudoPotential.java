@@ -17,21 +17,16 @@
 package burai.pseudo;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
 
 import burai.input.namelist.QEValue;
 import burai.input.namelist.QEValueBase;
@@ -121,7 +116,44 @@ public class PseudoPotential implements Comparable<PseudoPotential> {
         return name1 == null ? 1 : name1.compareTo(name2);
     }
 
-    public boolean reload() {
+    /**
+     * SHA-256 of the UPF file, which is computed only once for each modification.
+     *
+     * @return the digest in hex, or null if the file cannot be read
+     */
+    public synchronized String getDigest() {
+        this.reload();
+
+        String digest = this.data.getUpfDigest();
+        if (digest != null) {
+            return digest;
+        }
+
+        try (InputStream stream = new FileInputStream(this.upfFile)) {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[65536];
+            int size = 0;
+            while ((size = stream.read(buffer)) >= 0) {
+                messageDigest.update(buffer, 0, size);
+            }
+
+            StringBuilder builder = new StringBuilder();
+            for (byte value : messageDigest.digest()) {
+                builder.append(String.format("%02x", value & 0xff));
+            }
+
+            digest = builder.toString();
+
+        } catch (IOException | NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        this.data.setUpfDigest(digest);
+        return digest;
+    }
+
+    public synchronized boolean reload() {
         if (this.data.setUpfTimeStamp(this.upfFile)) {
             try {
                 this.available = true;
@@ -139,185 +171,23 @@ public class PseudoPotential implements Comparable<PseudoPotential> {
     }
 
     private void readUpfFile() throws IOException {
+        // only PP_INFO and PP_HEADER are needed, so the file is scanned until the end of PP_HEADER.
+        try (Reader reader = new FileReader(this.upfFile)) {
+            UpfHeaderReader headerReader = new UpfHeaderReader(reader);
+            headerReader.read();
 
-        InputStream inputStream = null;
-
-        try {
-            inputStream = this.getUpfInputStream();
-            if (inputStream == null) {
-                throw new IOException("cannot create InputStream.");
-            }
-
-            DocumentBuilderFactory documentFactory = DocumentBuilderFactory.newInstance();
-
-            DocumentBuilder documentBuilder = null;
-            if (documentFactory != null) {
-                documentBuilder = documentFactory.newDocumentBuilder();
-            }
-
-            Document document = null;
-            if (documentBuilder != null) {
-                document = documentBuilder.parse(inputStream);
-            }
-
-            Node rootNode = null;
-            if (document != null) {
-                rootNode = document.getDocumentElement();
-            }
-
-            if (rootNode == null) {
-                throw new IOException("cannot create DocumentElement.");
-            }
-
-            Node firstNode = null;
-            if (rootNode.hasChildNodes()) {
-                NodeList nodeList = rootNode.getChildNodes();
-                if (nodeList != null) {
-                    for (int i = 0; i < nodeList.getLength(); i++) {
-                        Node node = nodeList.item(i);
-                        if (node.getNodeType() == Node.ELEMENT_NODE) {
-                            firstNode = node;
-                            break;
-                        }
-                    }
-                }
-            }
-
-            if (firstNode == null) {
-                throw new IOException("DocumentElement does not have ChildNodes.");
-            }
-
-            String firstName = firstNode.getNodeName();
-            if (!"UPF".equals(firstName)) {
+            if (!headerReader.isUpfV2()) {
                 this.data.setUpfVersion(PseudoData.UPF_VERSION_1);
-                this.parseUpf(false, rootNode);
+                this.parseUpfV1PPHeader(headerReader.getHeaderText());
 
             } else {
                 this.data.setUpfVersion(PseudoData.UPF_VERSION_2);
-                this.parseUpf(true, firstNode);
-            }
-
-        } catch (IOException e1) {
-            throw e1;
-
-        } catch (Exception e2) {
-            throw new IOException(e2);
-
-        } finally {
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e3) {
-                    throw e3;
-                }
-            }
-        }
-    }
-
-    private InputStream getUpfInputStream() throws IOException {
-        InputStream inputStream = null;
-
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(new FileReader(this.upfFile));
-
-            StringBuilder strBuilder = new StringBuilder("<root>");
-
-            String line = null;
-            while ((line = reader.readLine()) != null) {
-                line = line.replace('&', '#');
-                strBuilder.append(line);
-                strBuilder.append(System.lineSeparator());
-            }
-
-            strBuilder.append("</root>");
-
-            String str = strBuilder.toString();
-            if (str != null) {
-                byte[] strBytes = str.getBytes();
-                if (strBytes != null && strBytes.length > 0) {
-                    inputStream = new ByteArrayInputStream(strBytes);
-                }
-            }
-
-        } catch (FileNotFoundException e1) {
-            throw e1;
-
-        } catch (IOException e2) {
-            throw e2;
-
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e3) {
-                    throw e3;
-                }
-            }
-        }
-
-        return inputStream;
-    }
-
-    private void parseUpf(boolean isUPFv2, Node rootNode) {
-        if (rootNode == null || !rootNode.hasChildNodes()) {
-            throw new IllegalArgumentException("rootNode is incorrect.");
-        }
-
-        NodeList nodeList = rootNode.getChildNodes();
-        if (nodeList == null) {
-            return;
-        }
-
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node node = nodeList.item(i);
-            if (node == null) {
-                continue;
-            }
-
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                String name = node.getNodeName();
-                if ("PP_INFO".equals(name)) {
-                    if (!isUPFv2) {
-                        this.parseUpfV1PPInfo(node);
-                    } else {
-                        this.parseUpfV2PPInfo(node);
-                    }
-
-                } else if ("PP_HEADER".equals(name)) {
-                    if (!isUPFv2) {
-                        this.parseUpfV1PPHeader(node);
-                    } else {
-                        this.parseUpfV2PPHeader(node);
-                    }
-                }
+                this.parseUpfV2PPHeader(headerReader.getHeaderAttributes());
             }
         }
     }
 
-    private void parseUpfV1PPInfo(Node node) {
-        if (node == null) {
-            return;
-        }
-
-        // NOP
-    }
-
-    private void parseUpfV2PPInfo(Node node) {
-        if (node == null) {
-            return;
-        }
-
-        // NOP
-    }
-
-    private void parseUpfV1PPHeader(Node node) {
-        if (node == null) {
-            return;
-        }
-
-        String content = node.getTextContent();
+    private void parseUpfV1PPHeader(String content) {
         if (content == null || content.isEmpty()) {
             return;
         }
@@ -463,194 +333,192 @@ public class PseudoPotential implements Comparable<PseudoPotential> {
         }
     }
 
-    private void parseUpfV2PPHeader(Node node) {
-        if (node == null || !node.hasAttributes()) {
+    private void parseUpfV2PPHeader(Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
             return;
         }
 
-        Node attNode = null;
-        NamedNodeMap attributes = node.getAttributes();
+        String attValue = null;
 
-        attNode = attributes.getNamedItem("generated");
-        if (attNode != null) {
-            this.data.setGenerated(attNode.getNodeValue());
+        attValue = attributes.get("generated");
+        if (attValue != null) {
+            this.data.setGenerated(attValue);
         }
 
-        attNode = attributes.getNamedItem("author");
-        if (attNode != null) {
-            this.data.setAuthor(attNode.getNodeValue());
+        attValue = attributes.get("author");
+        if (attValue != null) {
+            this.data.setAuthor(attValue);
         }
 
-        attNode = attributes.getNamedItem("date");
-        if (attNode != null) {
-            this.data.setDate(attNode.getNodeValue());
+        attValue = attributes.get("date");
+        if (attValue != null) {
+            this.data.setDate(attValue);
         }
 
-        attNode = attributes.getNamedItem("comment");
-        if (attNode != null) {
-            this.data.setComment(attNode.getNodeValue());
+        attValue = attributes.get("comment");
+        if (attValue != null) {
+            this.data.setComment(attValue);
         }
 
-        attNode = attributes.getNamedItem("element");
-        if (attNode != null) {
-            String element = attNode.getNodeValue();
-            this.data.setElement(element == null ? element : element.trim());
+        attValue = attributes.get("element");
+        if (attValue != null) {
+            this.data.setElement(attValue.trim());
         }
 
-        attNode = attributes.getNamedItem("pseudo_type");
-        if (attNode != null) {
-            this.data.setPseudoType(attNode.getNodeValue());
+        attValue = attributes.get("pseudo_type");
+        if (attValue != null) {
+            this.data.setPseudoType(attValue);
         }
 
-        attNode = attributes.getNamedItem("relativistic");
-        if (attNode != null) {
-            this.data.setRelativistic(attNode.getNodeValue());
+        attValue = attributes.get("relativistic");
+        if (attValue != null) {
+            this.data.setRelativistic(attValue);
         }
 
-        attNode = attributes.getNamedItem("is_ultrasoft");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("is_ultrasoft");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setUltrasoft(value.getLogicalValue());
             }
         }
 
-        attNode = attributes.getNamedItem("is_paw");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("is_paw");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setPaw(value.getLogicalValue());
             }
         }
 
-        attNode = attributes.getNamedItem("is_coulomb");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("is_coulomb");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setCoulomb(value.getLogicalValue());
             }
         }
 
-        attNode = attributes.getNamedItem("has_so");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("has_so");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setWithSo(value.getLogicalValue());
             }
         }
 
-        attNode = attributes.getNamedItem("has_wfc");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("has_wfc");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setWithWfc(value.getLogicalValue());
             }
         }
 
-        attNode = attributes.getNamedItem("has_gipaw");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("has_gipaw");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setWithGipaw(value.getLogicalValue());
             }
         }
 
-        attNode = attributes.getNamedItem("paw_as_gipaw");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("paw_as_gipaw");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setPawAsGipaw(value.getLogicalValue());
             }
         }
 
-        attNode = attributes.getNamedItem("core_correction");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("core_correction");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setCoreCorrection(value.getLogicalValue());
             }
         }
 
-        attNode = attributes.getNamedItem("functional");
-        if (attNode != null) {
-            this.data.setFunctional(attNode.getNodeValue());
+        attValue = attributes.get("functional");
+        if (attValue != null) {
+            this.data.setFunctional(attValue);
         }
 
-        attNode = attributes.getNamedItem("z_valence");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("z_valence");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setZValence(value.getRealValue());
             }
         }
 
-        attNode = attributes.getNamedItem("total_psenergy");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("total_psenergy");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setTotalPsenergy(value.getRealValue());
             }
         }
 
-        attNode = attributes.getNamedItem("wfc_cutoff");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("wfc_cutoff");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setWfcCutoff(value.getRealValue());
             }
         }
 
-        attNode = attributes.getNamedItem("rho_cutoff");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("rho_cutoff");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setRhoCutoff(value.getRealValue());
             }
         }
 
-        attNode = attributes.getNamedItem("l_max");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("l_max");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setLMax(value.getIntegerValue());
             }
         }
 
-        attNode = attributes.getNamedItem("l_max_rho");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("l_max_rho");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setLMaxRho(value.getIntegerValue());
             }
         }
 
-        attNode = attributes.getNamedItem("l_local");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("l_local");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setLLocal(value.getIntegerValue());
             }
         }
 
-        attNode = attributes.getNamedItem("mesh_size");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("mesh_size");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setMeshSize(value.getIntegerValue());
             }
         }
 
-        attNode = attributes.getNamedItem("number_of_wfc");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("number_of_wfc");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setNumberOfWfc(value.getIntegerValue());
             }
         }
 
-        attNode = attributes.getNamedItem("number_of_proj");
-        if (attNode != null) {
-            QEValue value = QEValueBase.getInstance("x", attNode.getNodeValue());
+        attValue = attributes.get("number_of_proj");
+        if (attValue != null) {
+            QEValue value = QEValueBase.getInstance("x", attValue);
             if (value != null) {
                 this.data.setNumberOfProj(value.getIntegerValue());
             }
@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.pseudo;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * a streaming scanner of UPF files, which stops at the end of PP_HEADER.
+ * UPF v1 is not a well-formed XML (e.g. '&' of namelists in PP_INFO),
+ * so that the tags are scanned by hand, without buffering whole of the file.
+ */
+class UpfHeaderReader {
+
+    private static final String TAG_UPF = "UPF";
+    private static final String TAG_HEADER = "PP_HEADER";
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_HEADER_LENGTH = 65536;
+
+    private Reader reader;
+
+    private char[] buffer;
+    private int bufferSize;
+    private int bufferPos;
+
+    private int pushedChar;
+
+    private boolean upfV2;
+
+    private String headerText;
+
+    private Map<String, String> headerAttributes;
+
+    private String tagName;
+    private boolean tagClosing;
+    private boolean tagEmpty;
+    private Map<String, String> tagAttributes;
+
+    public UpfHeaderReader(Reader reader) {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null.");
+        }
+
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.bufferSize = 0;
+        this.bufferPos = 0;
+        this.pushedChar = -1;
+
+        this.upfV2 = false;
+        this.headerText = null;
+        this.headerAttributes = null;
+    }
+
+    /*
+     * the first element is UPF (v2), or not (v1).
+     */
+    public boolean isUpfV2() {
+        return this.upfV2;
+    }
+
+    /*
+     * text content of PP_HEADER (v1), or null.
+     */
+    public String getHeaderText() {
+        return this.headerText;
+    }
+
+    /*
+     * attributes of PP_HEADER (v2), or null.
+     */
+    public Map<String, String> getHeaderAttributes() {
+        return this.headerAttributes;
+    }
+
+    public void read() throws IOException {
+        String firstName = null;
+
+        while (this.skipToTag()) {
+            if (!this.readTag()) {
+                continue;
+            }
+
+            if (firstName == null) {
+                if (this.tagClosing) {
+                    continue;
+                }
+
+                firstName = this.tagName;
+                this.upfV2 = TAG_UPF.equals(firstName);
+            }
+
+            if (this.tagClosing || !TAG_HEADER.equals(this.tagName)) {
+                continue;
+            }
+
+            if (this.upfV2) {
+                this.headerAttributes = this.tagAttributes;
+            } else {
+                this.headerText = this.tagEmpty ? "" : this.readText(TAG_HEADER);
+            }
+
+            break;
+        }
+
+        if (firstName == null) {
+            throw new IOException("UPF file does not have elements.");
+        }
+    }
+
+    private int readChar() throws IOException {
+        if (this.pushedChar >= 0) {
+            int c = this.pushedChar;
+            this.pushedChar = -1;
+            return c;
+        }
+
+        if (this.bufferPos >= this.bufferSize) {
+            this.bufferSize = this.reader.read(this.buffer, 0, this.buffer.length);
+            this.bufferPos = 0;
+            if (this.bufferSize <= 0) {
+                this.bufferSize = 0;
+                return -1;
+            }
+        }
+
+        return this.buffer[this.bufferPos++];
+    }
+
+    private void unreadChar(int c) {
+        this.pushedChar = c;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean isNameStart(int c) {
+        return Character.isLetter(c) || c == '_' || c == ':';
+    }
+
+    private static boolean isNameChar(int c) {
+        return isNameStart(c) || Character.isDigit(c) || c == '-' || c == '.';
+    }
+
+    private boolean skipToTag() throws IOException {
+        int c = 0;
+        while ((c = this.readChar()) >= 0) {
+            if (c == '<') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void skipUntil(String end) throws IOException {
+        int matched = 0;
+        int c = 0;
+        while ((c = this.readChar()) >= 0) {
+            if (c == end.charAt(matched)) {
+                matched++;
+                if (matched >= end.length()) {
+                    return;
+                }
+            } else {
+                matched = c == end.charAt(0) ? 1 : 0;
+            }
+        }
+    }
+
+    /*
+     * reads a tag after '<', returns false if it is not an element (comment, PI, or a bare '<').
+     */
+    private boolean readTag() throws IOException {
+        this.tagName = null;
+        this.tagClosing = false;
+        this.tagEmpty = false;
+        this.tagAttributes = null;
+
+        int c = this.readChar();
+        if (c == '!') {
+            c = this.readChar();
+            if (c == '-') {
+                this.skipUntil("-->");
+            } else if (c == '[') {
+                this.skipUntil("]]>");
+            } else {
+                this.skipUntil(">");
+            }
+            return false;
+
+        } else if (c == '?') {
+            this.skipUntil("?>");
+            return false;
+
+        } else if (c == '/') {
+            this.tagClosing = true;
+            c = this.readChar();
+        }
+
+        if (!isNameStart(c)) {
+            this.unreadChar(c);
+            return false;
+        }
+
+        StringBuilder name = new StringBuilder();
+        while (isNameChar(c)) {
+            name.append((char) c);
+            c = this.readChar();
+        }
+
+        this.tagName = name.toString();
+
+        boolean header = TAG_HEADER.equals(this.tagName);
+        if (header) {
+            this.tagAttributes = new LinkedHashMap<String, String>();
+        }
+
+        // attributes are kept only for PP_HEADER
+        while (c >= 0 && c != '>') {
+            if (c == '/') {
+                this.tagEmpty = true;
+                c = this.readChar();
+                continue;
+            }
+
+            if (isSpace(c)) {
+                c = this.readChar();
+                continue;
+            }
+
+            this.tagEmpty = false;
+
+            StringBuilder attName = new StringBuilder();
+            while (c >= 0 && !isSpace(c) && c != '=' && c != '>' && c != '/') {
+                attName.append((char) c);
+                c = this.readChar();
+            }
+
+            while (isSpace(c)) {
+                c = this.readChar();
+            }
+
+            if (c != '=') {
+                continue;
+            }
+
+            c = this.readChar();
+            while (isSpace(c)) {
+                c = this.readChar();
+            }
+
+            StringBuilder attValue = header ? new StringBuilder() : null;
+            if (c == '"' || c == '\'') {
+                int quote = c;
+                while ((c = this.readChar()) >= 0 && c != quote) {
+                    if (attValue != null) {
+                        attValue.append((char) c);
+                    }
+                }
+                c = this.readChar();
+
+            } else {
+                while (c >= 0 && !isSpace(c) && c != '>') {
+                    if (attValue != null) {
+                        attValue.append((char) c);
+                    }
+                    c = this.readChar();
+                }
+            }
+
+            if (header && !this.tagAttributes.containsKey(attName.toString())) {
+                String value = decodeEntities(attValue.toString());
+                this.tagAttributes.put(attName.toString(), value.replaceAll("[\\t\\n\\r]", " "));
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * reads text until the closing tag, skipping inner tags.
+     */
+    private String readText(String name) throws IOException {
+        StringBuilder text = new StringBuilder();
+
+        int c = 0;
+        while ((c = this.readChar()) >= 0) {
+            if (c != '<') {
+                if (text.length() < MAX_HEADER_LENGTH) {
+                    text.append((char) c);
+                }
+                continue;
+            }
+
+            if (this.readTag() && this.tagClosing && name.equals(this.tagName)) {
+                break;
+            }
+        }
+
+        return decodeEntities(text.toString());
+    }
+
+    /*
+     * predefined and numeric entities are decoded, and a bare '&' is kept as it is.
+     */
+    private static String decodeEntities(String str) {
+        if (str.indexOf('&') < 0) {
+            return str;
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        int index = 0;
+        while (index < str.length()) {
+            char c = str.charAt(index);
+            int end = c == '&' ? str.indexOf(';', index) : -1;
+            if (end < 0 || end - index > 10) {
+                builder.append(c);
+                index++;
+                continue;
+            }
+
+            String entity = str.substring(index + 1, end);
+            String decoded = null;
+            if ("amp".equals(entity)) {
+                decoded = "&";
+            } else if ("lt".equals(entity)) {
+                decoded = "<";
+            } else if ("gt".equals(entity)) {
+                decoded = ">";
+            } else if ("quot".equals(entity)) {
+                decoded = "\"";
+            } else if ("apos".equals(entity)) {
+                decoded = "'";
+            } else if (entity.startsWith("#")) {
+                try {
+                    int code = entity.startsWith("#x") ?
+                            Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+                    decoded = new String(Character.toChars(code));
+                } catch (IllegalArgumentException e) {
+                    decoded = null;
+                }
+            }
+
+            if (decoded == null) {
+                builder.append(c);
+                index++;
+            } else {
+                builder.append(decoded);
+                index = end + 1;
+            }
+        }
+
+        return builder.toString();
+    }
+}
@@ -17,6 +17,7 @@
 package burai.run;
 
 import javafx.application.Platform;
+import burai.com.env.Environments;
 import burai.input.QEInput;
 import burai.project.Project;
 
@@ -43,6 +44,12 @@ public class FXQEInputFactory {
             return null;
         }
 
+        if (Environments.isHeadless()) {
+            // no FX thread in batch mode
+            project.resolveQEInputs();
+            return this.type.getQEInput(project);
+        }
+
         this.hasQEInput = false;
 
         Platform.runLater(() -> {
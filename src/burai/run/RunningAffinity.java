@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import burai.com.env.CPUTopology;
+import burai.com.env.Environments;
+
+/*
+ * assigns disjoint CPUs to concurrent jobs on Linux.
+ * whole physical cores are reserved, and a socket which just fits to a job is preferred,
+ * so that jobs do not share caches and memory of NUMA nodes.
+ */
+public class RunningAffinity {
+
+    private static final String PROP_KEY_BINDING = "cpu_binding";
+
+    private static RunningAffinity instance = null;
+
+    public static RunningAffinity getInstance() {
+        if (instance == null) {
+            instance = new RunningAffinity();
+        }
+
+        return instance;
+    }
+
+    private CPUTopology topology;
+
+    private Set<Integer> usedCPUs;
+
+    // CPUs which are reserved by each binding, including siblings of cores
+    private Map<RunningBinding, List<Integer>> reservedCPUs;
+
+    private RunningAffinity() {
+        this.topology = null;
+        this.usedCPUs = new HashSet<Integer>();
+        this.reservedCPUs = new HashMap<RunningBinding, List<Integer>>();
+    }
+
+    public boolean isEnabled() {
+        if (!Environments.getBoolProperty(PROP_KEY_BINDING, true)) {
+            return false;
+        }
+
+        return Environments.isLinux() && RunningBinding.getTaskset() != null;
+    }
+
+    /*
+     * returns null, if binding is disabled or CPUs are not enough.
+     */
+    public synchronized RunningBinding allocate(int numProcesses, int numThreads) {
+        if (!this.isEnabled()) {
+            return null;
+        }
+
+        if (this.topology == null) {
+            this.topology = Environments.getCPUTopology();
+        }
+
+        int numCPUs = Math.max(1, numProcesses) * Math.max(1, numThreads);
+
+        List<Integer> reserved = new ArrayList<Integer>();
+        List<Integer> cpus = this.allocateCores(numCPUs, reserved);
+        if (cpus == null) {
+            cpus = this.allocateThreads(numCPUs, reserved);
+        }
+
+        if (cpus == null) {
+            return null;
+        }
+
+        RunningBinding binding = new RunningBinding(cpus, numProcesses, numThreads);
+        this.usedCPUs.addAll(reserved);
+        this.reservedCPUs.put(binding, reserved);
+        return binding;
+    }
+
+    public synchronized void release(RunningBinding binding) {
+        if (binding == null) {
+            return;
+        }
+
+        List<Integer> reserved = this.reservedCPUs.remove(binding);
+        if (reserved != null) {
+            this.usedCPUs.removeAll(reserved);
+        }
+    }
+
+    private boolean isFreeCore(List<Integer> core) {
+        for (Integer cpu : core) {
+            if (this.usedCPUs.contains(cpu)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * one CPU of each free physical core, from the socket of the least free cores which are enough.
+     */
+    private List<Integer> allocateCores(int numCPUs, List<Integer> reserved) {
+        List<List<List<Integer>>> freeSockets = new ArrayList<List<List<Integer>>>();
+        int numFreeCores = 0;
+
+        for (List<List<Integer>> cores : this.topology.listSockets()) {
+            List<List<Integer>> freeCores = new ArrayList<List<Integer>>();
+            for (List<Integer> core : cores) {
+                if (this.isFreeCore(core)) {
+                    freeCores.add(core);
+                }
+            }
+
+            freeSockets.add(freeCores);
+            numFreeCores += freeCores.size();
+        }
+
+        if (numFreeCores < numCPUs) {
+            return null;
+        }
+
+        List<List<Integer>> bestCores = null;
+        for (List<List<Integer>> freeCores : freeSockets) {
+            if (freeCores.size() >= numCPUs && (bestCores == null || freeCores.size() < bestCores.size())) {
+                bestCores = freeCores;
+            }
+        }
+
+        // spread over sockets, from ones of more free cores
+        if (bestCores == null) {
+            freeSockets.sort((cores1, cores2) -> Integer.compare(cores2.size(), cores1.size()));
+            bestCores = new ArrayList<List<Integer>>();
+            for (List<List<Integer>> freeCores : freeSockets) {
+                bestCores.addAll(freeCores);
+            }
+        }
+
+        List<Integer> cpus = new ArrayList<Integer>();
+        for (int i = 0; i < numCPUs; i++) {
+            List<Integer> core = bestCores.get(i);
+            reserved.addAll(core);
+            cpus.add(core.get(0));
+        }
+
+        return cpus;
+    }
+
+    /*
+     * free logical CPUs, which may share physical cores (hyper-threading).
+     */
+    private List<Integer> allocateThreads(int numCPUs, List<Integer> reserved) {
+        List<List<Integer>> allCores = new ArrayList<List<Integer>>();
+        int numSiblings = 0;
+        for (List<List<Integer>> cores : this.topology.listSockets()) {
+            for (List<Integer> core : cores) {
+                allCores.add(core);
+                numSiblings = Math.max(numSiblings, core.size());
+            }
+        }
+
+        // the first sibling of each core, and then the second, ...
+        List<Integer> cpus = new ArrayList<Integer>();
+        for (int i = 0; i < numSiblings; i++) {
+            for (List<Integer> core : allCores) {
+                Integer cpu = i < core.size() ? core.get(i) : null;
+                if (cpu != null && cpus.size() < numCPUs && !this.usedCPUs.contains(cpu)) {
+                    cpus.add(cpu);
+                }
+            }
+        }
+
+        if (cpus.size() < numCPUs) {
+            return null;
+        }
+
+        reserved.addAll(cpus);
+        return cpus;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * logical CPUs which are reserved for a job.
+ * the i-th process (MPI rank) is bound to CPUs of [i * numThreads, (i + 1) * numThreads),
+ * and each thread of OpenMP to one of them.
+ */
+public class RunningBinding {
+
+    private static final String[] TASKSET_PATHS = { "/usr/bin/taskset", "/bin/taskset" };
+
+    private static final String VAR_CPUS = "BURAI_CPUS";
+
+    private static final String VAR_PLACES = "BURAI_PLACES";
+
+    // a rank picks its own CPUs, and replaces itself by taskset
+    private static final String RANK_SCRIPT = ""
+            + "r=${OMPI_COMM_WORLD_LOCAL_RANK:-${MPI_LOCALRANKID:-${PMI_RANK:-${PMIX_RANK:-0}}}}; "
+            + "c=$(echo \"$" + VAR_CPUS + "\" | cut -d'|' -f$((r + 1))); "
+            + "p=$(echo \"$" + VAR_PLACES + "\" | cut -d'|' -f$((r + 1))); "
+            + "if [ -n \"$c\" ]; then export OMP_PLACES=\"$p\"; exec %s -c \"$c\" \"$@\"; fi; "
+            + "exec \"$@\"";
+
+    private int[] cpus;
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    protected RunningBinding(List<Integer> cpus, int numProcesses, int numThreads) {
+        if (cpus == null || cpus.isEmpty()) {
+            throw new IllegalArgumentException("cpus is empty.");
+        }
+
+        this.cpus = new int[cpus.size()];
+        for (int i = 0; i < this.cpus.length; i++) {
+            this.cpus[i] = cpus.get(i);
+        }
+
+        this.numProcesses = Math.max(1, numProcesses);
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    protected static String getTaskset() {
+        for (String path : TASKSET_PATHS) {
+            try {
+                if (new File(path).isFile()) {
+                    return path;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
+    public int[] getCPUs() {
+        return this.cpus.clone();
+    }
+
+    private String getCPUList(int iProc) {
+        StringBuilder builder = new StringBuilder();
+        int start = Math.min(this.cpus.length, iProc * this.numThreads);
+        int end = Math.min(this.cpus.length, start + this.numThreads);
+        for (int i = start; i < end; i++) {
+            builder.append(i > start ? "," : "").append(this.cpus[i]);
+        }
+
+        return builder.toString();
+    }
+
+    private String getPlaces(int iProc) {
+        String cpuList = this.getCPUList(iProc);
+        return cpuList.isEmpty() ? "" : ("{" + cpuList.replace(",", "},{") + "}");
+    }
+
+    /*
+     * the prefix of the main command (e.g. pw.x), which follows mpirun.
+     */
+    public String[] getPrefix(int numProc) {
+        String taskset = getTaskset();
+        if (taskset == null) {
+            return null;
+        }
+
+        if (numProc <= 1) {
+            return new String[] { taskset, "-c", this.getCPUList(0) };
+        }
+
+        return new String[] { "sh", "-c", String.format(RANK_SCRIPT, taskset), "sh" };
+    }
+
+    public void setEnvironment(Map<String, String> environment) {
+        if (environment == null) {
+            return;
+        }
+
+        StringBuilder cpuLists = new StringBuilder();
+        StringBuilder placesList = new StringBuilder();
+        for (int i = 0; i < this.numProcesses; i++) {
+            cpuLists.append(i > 0 ? "|" : "").append(this.getCPUList(i));
+            placesList.append(i > 0 ? "|" : "").append(this.getPlaces(i));
+        }
+
+        environment.put(VAR_CPUS, cpuLists.toString());
+        environment.put(VAR_PLACES, placesList.toString());
+        environment.put("OMP_PLACES", this.getPlaces(0));
+        environment.put("OMP_PROC_BIND", "close");
+    }
+
+    @Override
+    public String toString() {
+        return this.getCPUList(0) + (this.numProcesses > 1 ? ", ..." : "");
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import burai.com.env.Environments;
+import burai.com.file.FileTools;
+import burai.project.Project;
+import burai.project.property.ProjectProperty;
+
+/*
+ * Local store of results of calculations, which are keyed by RunningHash.
+ * Wave functions are not stored, so that restored results are used for viewing and as charge densities.
+ */
+public class RunningCache {
+
+    private static final String PROP_KEY_CACHE = "calculation_cache";
+
+    private static final String PROP_KEY_CACHE_SIZE = "calculation_cache_mbytes";
+
+    private static final long DEFAULT_CACHE_SIZE = 2048L;
+
+    private static final String COMPLETED_NAME = ".completed";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final String[] EXCLUDED_NAMES = { "wfc", "mix", "igk", "hub", "restart" };
+
+    private static RunningCache instance = null;
+
+    public static synchronized RunningCache getInstance() {
+        if (instance == null) {
+            instance = new RunningCache();
+        }
+
+        return instance;
+    }
+
+    private RunningCache() {
+        // NOP
+    }
+
+    /*
+     * the cache is opt-in, because it copies charge densities out of projects.
+     */
+    public boolean isEnabled() {
+        return Environments.getBoolProperty(PROP_KEY_CACHE, false);
+    }
+
+    public void setEnabled(boolean enabled) {
+        Environments.setProperty(PROP_KEY_CACHE, enabled);
+    }
+
+    private File getCacheDirectory(String hash) {
+        if (hash == null || hash.isEmpty()) {
+            return null;
+        }
+
+        String cachesPath = Environments.getCachesPath();
+        if (cachesPath == null || cachesPath.isEmpty()) {
+            return null;
+        }
+
+        return new File(cachesPath, hash);
+    }
+
+    public synchronized boolean hasResults(String hash) {
+        File cacheDir = this.getCacheDirectory(hash);
+        if (cacheDir == null) {
+            return false;
+        }
+
+        try {
+            return new File(cacheDir, COMPLETED_NAME).isFile();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /*
+     * copy results of the project to the store. returns true if stored.
+     */
+    public synchronized boolean storeResults(String hash, Project project, RunningType type, long startTime) {
+        File cacheDir = this.getCacheDirectory(hash);
+        if (cacheDir == null || project == null || type == null) {
+            return false;
+        }
+
+        File projectDir = this.getProjectDirectory(project);
+        if (projectDir == null) {
+            return false;
+        }
+
+        File tempDir = new File(cacheDir.getPath() + TEMPORARY_SUFFIX);
+
+        try {
+            if (tempDir.exists()) {
+                FileTools.deleteAllFiles(tempDir, false);
+            }
+
+            if (!tempDir.mkdirs()) {
+                return false;
+            }
+
+            boolean status = true;
+            for (File file : this.listResultFiles(projectDir, project, type, startTime)) {
+                status = status && this.copyResultFile(file, new File(tempDir, file.getName()));
+            }
+
+            status = status && new File(tempDir, COMPLETED_NAME).createNewFile();
+
+            if (status && cacheDir.exists()) {
+                FileTools.deleteAllFiles(cacheDir, false);
+            }
+
+            status = status && tempDir.renameTo(cacheDir);
+
+            if (!status) {
+                FileTools.deleteAllFiles(tempDir, false);
+                return false;
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        this.limitCacheSize();
+
+        return true;
+    }
+
+    /*
+     * copy stored results to the project. returns true if restored.
+     */
+    public synchronized boolean restoreResults(String hash, Project project) {
+        if (!this.hasResults(hash)) {
+            return false;
+        }
+
+        File cacheDir = this.getCacheDirectory(hash);
+        File projectDir = this.getProjectDirectory(project);
+        if (cacheDir == null || projectDir == null) {
+            return false;
+        }
+
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return false;
+        }
+
+        boolean status = true;
+
+        for (File file : files) {
+            String name = file == null ? null : file.getName();
+            if (name == null || name.isEmpty() || COMPLETED_NAME.equals(name)) {
+                continue;
+            }
+
+            File dstFile = new File(projectDir, name);
+            if (file.isDirectory() && dstFile.exists()) {
+                FileTools.deleteAllFiles(dstFile, false);
+            }
+
+            status = status && FileTools.copyAllFiles(file, dstFile, false);
+        }
+
+        if (!status) {
+            return false;
+        }
+
+        // least recently used results are deleted at first
+        new File(cacheDir, COMPLETED_NAME).setLastModified(System.currentTimeMillis());
+
+        ProjectProperty projectProperty = project.getProperty();
+        if (projectProperty != null) {
+            projectProperty.reloadResults();
+        }
+
+        return true;
+    }
+
+    private File getProjectDirectory(Project project) {
+        String dirPath = project == null ? null : project.getDirectoryPath();
+        if (dirPath == null || dirPath.isEmpty()) {
+            return null;
+        }
+
+        File dirFile = new File(dirPath);
+        try {
+            if (!dirFile.isDirectory()) {
+                return null;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        return dirFile;
+    }
+
+    private List<File> listResultFiles(File projectDir, Project project, RunningType type, long startTime) {
+        List<String> names = new ArrayList<String>();
+        this.addNames(names, type.getInpNameList(project));
+        this.addNames(names, type.getLogNameList(project));
+        this.addNames(names, type.getErrNameList(project));
+
+        // results of ProjectProperty, which have been updated by this calculation
+        List<String> propNames = Arrays.asList(ProjectProperty.listResultFileNames());
+
+        String prefix = project.getPrefixName();
+        prefix = prefix == null ? null : prefix.trim();
+
+        List<File> files = new ArrayList<File>();
+
+        File[] projectFiles = projectDir.listFiles();
+        if (projectFiles == null) {
+            return files;
+        }
+
+        for (File file : projectFiles) {
+            String name = file == null ? null : file.getName();
+            if (name == null || name.isEmpty()) {
+                continue;
+            }
+
+            boolean result = names.contains(name);
+            if ((!result) && propNames.contains(name)) {
+                result = file.lastModified() >= startTime;
+            }
+            if ((!result) && prefix != null && (!prefix.isEmpty()) && name.startsWith(prefix + ".")) {
+                result = !this.isExcluded(name.substring(prefix.length() + 1));
+            }
+
+            if (result) {
+                files.add(file);
+            }
+        }
+
+        return files;
+    }
+
+    private void addNames(List<String> names, List<String> names2) {
+        if (names2 == null) {
+            return;
+        }
+
+        for (String name : names2) {
+            String name2 = name == null ? null : name.trim();
+            if (name2 != null && (!name2.isEmpty())) {
+                names.add(name2);
+            }
+        }
+    }
+
+    private boolean isExcluded(String name) {
+        for (String excludedName : EXCLUDED_NAMES) {
+            if (name.startsWith(excludedName)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean copyResultFile(File srcFile, File dstFile) {
+        if (!srcFile.isDirectory()) {
+            return FileTools.copyFile(srcFile, dstFile, false);
+        }
+
+        if (!dstFile.isDirectory() && !dstFile.mkdir()) {
+            return false;
+        }
+
+        File[] files = srcFile.listFiles();
+        if (files == null) {
+            return true;
+        }
+
+        boolean status = true;
+        for (File file : files) {
+            String name = file == null ? null : file.getName();
+            if (name == null || name.isEmpty() || this.isExcluded(name)) {
+                continue;
+            }
+
+            status = status && this.copyResultFile(file, new File(dstFile, name));
+        }
+
+        return status;
+    }
+
+    private void limitCacheSize() {
+        long maxSize = 1024L * 1024L * Environments.getIntProperty(PROP_KEY_CACHE_SIZE, (int) DEFAULT_CACHE_SIZE);
+
+        String cachesPath = Environments.getCachesPath();
+        File[] cacheDirs = cachesPath == null ? null : new File(cachesPath).listFiles();
+        if (cacheDirs == null) {
+            return;
+        }
+
+        long[] times = new long[cacheDirs.length];
+        long[] sizes = new long[cacheDirs.length];
+        long totalSize = 0L;
+
+        for (int i = 0; i < cacheDirs.length; i++) {
+            times[i] = new File(cacheDirs[i], COMPLETED_NAME).lastModified();
+            sizes[i] = this.sizeOf(cacheDirs[i]);
+            totalSize += sizes[i];
+        }
+
+        while (totalSize > maxSize) {
+            int oldest = -1;
+            for (int i = 0; i < cacheDirs.length; i++) {
+                if (cacheDirs[i] != null && (oldest < 0 || times[i] < times[oldest])) {
+                    oldest = i;
+                }
+            }
+
+            if (oldest < 0) {
+                break;
+            }
+
+            FileTools.deleteAllFiles(cacheDirs[oldest], false);
+            totalSize -= sizes[oldest];
+            cacheDirs[oldest] = null;
+        }
+    }
+
+    private long sizeOf(File file) {
+        if (file == null) {
+            return 0L;
+        }
+
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+
+        long size = 0L;
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File file2 : files) {
+                size += this.sizeOf(file2);
+            }
+        }
+
+        return size;
+    }
+}
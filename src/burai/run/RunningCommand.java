@@ -61,10 +61,15 @@ public class RunningCommand {
     private static final String VAR_KPARA = "\\$NK";
     private static final String VAR_INPUT = "\\$IN";
 
+    private static final String VAR_KPARA_TEXT = "$NK";
+    private static final String OPT_KPARA = "-nk";
+
     private String process;
     private String kParallel;
     private String input;
 
+    private RunningBinding binding;
+
     private RunningCommandType commandType;
 
     public RunningCommand(RunningCommandType commandType) {
@@ -75,6 +80,7 @@ public class RunningCommand {
         this.process = null;
         this.kParallel = null;
         this.input = null;
+        this.binding = null;
 
         this.commandType = commandType;
     }
@@ -99,6 +105,10 @@ public class RunningCommand {
         this.input = input == null ? null : input.trim();
     }
 
+    public void setBinding(RunningBinding binding) {
+        this.binding = binding;
+    }
+
     public String[] getCommand() {
         return this.getCommand(false);
     }
@@ -152,10 +162,26 @@ public class RunningCommand {
             commandList.addAll(mpiCommandList);
         }
 
+        // pools of k-points, if the command of pw.x does not have $NK
+        if (mainCommandList != null && this.commandType == RunningCommandType.PWSCF && iKpara > 1) {
+            if (!mainCommand.contains(VAR_KPARA_TEXT)) {
+                mainCommandList.add(OPT_KPARA);
+                mainCommandList.add(Integer.toString(iKpara));
+            }
+        }
+
         if (mainCommandList != null && !(mainCommandList.isEmpty())) {
             if (commandList == null) {
                 commandList = new ArrayList<String>();
             }
+
+            String[] prefix = (this.binding == null || unixServer) ? null : this.binding.getPrefix(iProc);
+            if (prefix != null) {
+                for (String prefix_ : prefix) {
+                    commandList.add(prefix_);
+                }
+            }
+
             commandList.addAll(mainCommandList);
         }
 
@@ -0,0 +1,501 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.util.List;
+
+import burai.atoms.model.Atom;
+import burai.com.consts.Constants;
+import burai.com.env.Environments;
+import burai.com.math.Matrix3D;
+import burai.input.QEInput;
+import burai.input.card.QEAtomicSpecies;
+import burai.input.card.QEKPoints;
+import burai.input.namelist.QENamelist;
+import burai.input.namelist.QEValue;
+import burai.project.Project;
+import burai.pseudo.PseudoData;
+import burai.pseudo.PseudoPotential;
+import burai.run.parser.LogSummary;
+
+/*
+ * Cost model of pw.x, which estimates memory and time from plane waves, FFT grids, k-points and bands.
+ * The model is calibrated by logs of previous runs on this machine.
+ */
+public class RunningEstimate {
+
+    private static final String PROP_KEY_TIME_FACTOR = "estimate_time_factor";
+    private static final String PROP_KEY_MEMORY_FACTOR = "estimate_memory_factor";
+
+    // weight of the latest run, for the moving average of factors
+    private static final double CALIBRATION_WEIGHT = 0.3;
+
+    private static final double FLOPS_PER_CORE = 1.0e9;
+
+    private static final double MBYTES_PER_PROCESS = 64.0;
+
+    private static final double DEFAULT_ZVALENCE = 4.0;
+
+    private static final int NUM_DAVIDSON = 4;
+
+    private static final int NUM_SCF_ITERATIONS = 12;
+
+    private static final int NUM_NSCF_ITERATIONS = 4;
+
+    private static final int NUM_IONIC_ITERATIONS = 6;
+
+    private static final int DEFAULT_NSTEP = 50;
+
+    // cost of communications for an additional process, in units of plane waves
+    private static final double PW_OVERHEAD = 50.0;
+
+    private static final double OMP_EXPONENT = 0.8;
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    private int numPools;
+
+    private int numPlaneWaves;
+
+    private int[] denseGrid;
+
+    private int[] smoothGrid;
+
+    private int numKPoints;
+
+    private double numElectrons;
+
+    private int numBands;
+
+    // values of the model, before calibration
+    private double mbytesOfModel;
+
+    private double flopsOfModel;
+
+    private int numIterations;
+
+    private RunningEstimate nscfEstimate;
+
+    private RunningEstimate(int numProcesses, int numThreads) {
+        this.numProcesses = Math.max(1, numProcesses);
+        this.numThreads = Math.max(1, numThreads);
+        this.numPools = 1;
+        this.numPlaneWaves = 0;
+        this.denseGrid = null;
+        this.smoothGrid = null;
+        this.numKPoints = 0;
+        this.numElectrons = 0.0;
+        this.numBands = 0;
+        this.mbytesOfModel = 0.0;
+        this.flopsOfModel = 0.0;
+        this.numIterations = NUM_SCF_ITERATIONS;
+        this.nscfEstimate = null;
+    }
+
+    /*
+     * the same system, which is run by other numbers of processes, threads and pools (-nk).
+     */
+    public RunningEstimate withLayout(int numProcesses, int numThreads, int numPools) {
+        RunningEstimate estimate = new RunningEstimate(numProcesses, numThreads);
+        estimate.numPools = Math.max(1, Math.min(numPools, estimate.numProcesses));
+        estimate.numPlaneWaves = this.numPlaneWaves;
+        estimate.denseGrid = this.denseGrid;
+        estimate.smoothGrid = this.smoothGrid;
+        estimate.numKPoints = this.numKPoints;
+        estimate.numElectrons = this.numElectrons;
+        estimate.numBands = this.numBands;
+        estimate.mbytesOfModel = this.mbytesOfModel;
+        estimate.flopsOfModel = this.flopsOfModel;
+        estimate.numIterations = this.numIterations;
+        if (this.nscfEstimate != null) {
+            estimate.nscfEstimate = this.nscfEstimate.withLayout(numProcesses, numThreads, numPools);
+        }
+
+        return estimate;
+    }
+
+    public static RunningEstimate getEstimate(Project project, RunningType type, int numProcesses, int numThreads) {
+        if (project == null || type == null) {
+            return null;
+        }
+
+        try {
+            QEInput input = type.getQEInput(project);
+
+            if (type == RunningType.DOS || type == RunningType.BAND) {
+                QEInput scfInput = project.getQEInputScf();
+                RunningEstimate estimate = getEstimate(scfInput == null ? null : scfInput.copy(), numProcesses, numThreads);
+                if (estimate != null) {
+                    estimate.nscfEstimate = getEstimate(input, numProcesses, numThreads);
+                    if (estimate.nscfEstimate != null) {
+                        estimate.nscfEstimate.numIterations = NUM_NSCF_ITERATIONS;
+                    }
+                }
+
+                return estimate;
+            }
+
+            RunningEstimate estimate = getEstimate(input, numProcesses, numThreads);
+            if (estimate != null && (type == RunningType.OPTIMIZ || type == RunningType.MD)) {
+                QENamelist nmlControl = input.getNamelist(QEInput.NAMELIST_CONTROL);
+                QEValue nstepValue = nmlControl == null ? null : nmlControl.getValue("nstep");
+                int nstep = nstepValue == null ? DEFAULT_NSTEP : Math.max(1, nstepValue.getIntegerValue());
+                int numIonic = type == RunningType.OPTIMIZ ? NUM_IONIC_ITERATIONS : (NUM_IONIC_ITERATIONS / 2);
+                estimate.numIterations = NUM_SCF_ITERATIONS + numIonic * nstep;
+            }
+
+            return estimate;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+     * estimate of a SCF (or NSCF) calculation of pw.x
+     */
+    public static RunningEstimate getEstimate(QEInput input, int numProcesses, int numThreads) {
+        if (input == null) {
+            return null;
+        }
+
+        QENamelist nmlSystem = input.getNamelist(QEInput.NAMELIST_SYSTEM);
+        if (nmlSystem == null) {
+            return null;
+        }
+
+        double[][] lattice = input.getLattice();
+        List<Atom> atoms = input.getAtoms();
+        if (lattice == null || lattice.length < 3 || atoms == null || atoms.isEmpty()) {
+            return null;
+        }
+
+        double[][] bohrLattice = Matrix3D.mult(1.0 / Constants.BOHR_RADIUS_ANGS, lattice);
+        double volume = Math.abs(Matrix3D.determinant(bohrLattice));
+        if (volume <= 0.0) {
+            return null;
+        }
+
+        double ecutwfc = getRealValue(nmlSystem, "ecutwfc", 0.0);
+        double ecutrho = getRealValue(nmlSystem, "ecutrho", 4.0 * ecutwfc);
+        if (ecutwfc <= 0.0 || ecutrho <= 0.0) {
+            return null;
+        }
+
+        RunningEstimate estimate = new RunningEstimate(numProcesses, numThreads);
+
+        // N_pw = V k^3 / (6 pi^2), where k^2 = Ecut in Rydberg atomic units
+        estimate.numPlaneWaves = (int) Math.ceil(volume * Math.pow(ecutwfc, 1.5) / (6.0 * Math.PI * Math.PI));
+        estimate.denseGrid = getFFTGrid(bohrLattice, ecutrho);
+        estimate.smoothGrid = getFFTGrid(bohrLattice, Math.min(ecutrho, 4.0 * ecutwfc));
+
+        int nspin = getIntValue(nmlSystem, "nspin", 1);
+        boolean noncolin = getLogicalValue(nmlSystem, "noncolin");
+        int npol = noncolin ? 2 : 1;
+
+        estimate.numKPoints = countKPoints(input, lattice, atoms, nmlSystem) * (nspin == 2 ? 2 : 1);
+
+        int numProjectors = 0;
+        double numElectrons = -getRealValue(nmlSystem, "tot_charge", 0.0);
+        QEAtomicSpecies atomicSpecies = input.getCard(QEAtomicSpecies.class);
+        for (Atom atom : atoms) {
+            int index = (atom == null || atomicSpecies == null) ? -1 : atomicSpecies.indexOfSpecies(atom.getName());
+            PseudoPotential pseudoPot = index < 0 ? null : atomicSpecies.getPseudoPotential(index);
+            PseudoData pseudoData = pseudoPot == null ? null : pseudoPot.getData();
+            double zValence = pseudoData == null ? 0.0 : pseudoData.getZValence();
+            int lMax = pseudoData == null ? 2 : Math.max(0, pseudoData.getLMax());
+
+            numElectrons += zValence > 0.0 ? zValence : DEFAULT_ZVALENCE;
+            numProjectors += 2 * (lMax + 1) * (lMax + 1);
+        }
+
+        estimate.numElectrons = Math.max(1.0, numElectrons);
+        estimate.numBands = getIntValue(nmlSystem, "nbnd", 0);
+        if (estimate.numBands < 1) {
+            QEValue occupValue = nmlSystem.getValue("occupations");
+            String occupations = occupValue == null ? null : occupValue.getCharacterValue();
+            boolean smearing = occupations != null && occupations.trim().toLowerCase().startsWith("smearing");
+
+            int numOccupied = (int) Math.ceil(0.5 * estimate.numElectrons);
+            if (smearing) {
+                estimate.numBands = Math.max((int) Math.round(1.2 * numOccupied), numOccupied + 4);
+            } else {
+                estimate.numBands = numOccupied;
+            }
+
+            estimate.numBands *= npol;
+        }
+
+        double npw = (double) estimate.numPlaneWaves * npol;
+        double nbnd = (double) estimate.numBands;
+        double nks = (double) estimate.numKPoints;
+        double nkb = (double) numProjectors;
+        double nrDense = (double) product(estimate.denseGrid);
+        double nrSmooth = (double) product(estimate.smoothGrid);
+        double fftDense = 5.0 * nrDense * log2(nrDense);
+        double fftSmooth = 5.0 * nrSmooth * log2(nrSmooth);
+
+        // wave functions of all k-points, Davidson's work space, projectors, and arrays on grids.
+        double bytes = 0.0;
+        bytes += 16.0 * npw * nbnd * nks;
+        bytes += 16.0 * npw * (2.0 * nbnd) * 3.0;
+        bytes += 16.0 * (2.0 * nbnd) * (2.0 * nbnd) * 3.0;
+        bytes += 16.0 * npw * nkb;
+        bytes += 8.0 * nrDense * nspin * 24.0 + 16.0 * nrDense * 4.0;
+        bytes += 16.0 * nrSmooth * npol * 4.0;
+        estimate.mbytesOfModel = bytes / 1024.0 / 1024.0;
+
+        // H|psi> by FFTs and projectors, subspace diagonalization, and density on grids, for each iteration.
+        double flops = 0.0;
+        flops += nks * NUM_DAVIDSON * nbnd * (2.0 * fftSmooth + 16.0 * npw * nkb);
+        flops += nks * 96.0 * npw * nbnd * nbnd;
+        flops += nks * nbnd * fftSmooth + 50.0 * fftDense;
+        estimate.flopsOfModel = flops;
+
+        return estimate;
+    }
+
+    private static int countKPoints(QEInput input, double[][] lattice, List<Atom> atoms, QENamelist nmlSystem) {
+        QEKPoints kpoints = input.getCard(QEKPoints.class);
+        if (kpoints == null || kpoints.isGamma()) {
+            return 1;
+        }
+
+        if (!kpoints.isAutomatic()) {
+            return Math.max(1, kpoints.numKPoints());
+        }
+
+        boolean nosym = getLogicalValue(nmlSystem, "nosym") || getLogicalValue(nmlSystem, "nosym_evc");
+        boolean noinv = getLogicalValue(nmlSystem, "noinv");
+
+        RunningSymmetry symmetry = nosym ? new RunningSymmetry(null, null) : new RunningSymmetry(lattice, atoms);
+
+        return symmetry.countKPoints(kpoints.getKGrid(), kpoints.getKOffset(), !noinv);
+    }
+
+    /*
+     * n_i = 2 G_max |a_i| / (2 pi) + 1, which is rounded up to a product of 2, 3 and 5.
+     */
+    private static int[] getFFTGrid(double[][] bohrLattice, double ecut) {
+        int[] grid = new int[3];
+        for (int i = 0; i < 3; i++) {
+            double norm = Matrix3D.norm(bohrLattice[i]);
+            int n = ((int) (Math.sqrt(ecut) * norm / Math.PI)) + 1;
+            while (!isGoodFFTOrder(n)) {
+                n++;
+            }
+
+            grid[i] = n;
+        }
+
+        return grid;
+    }
+
+    private static boolean isGoodFFTOrder(int n) {
+        int n2 = n;
+        for (int factor : new int[] { 2, 3, 5 }) {
+            while (n2 > 1 && (n2 % factor) == 0) {
+                n2 /= factor;
+            }
+        }
+
+        return n2 == 1;
+    }
+
+    private static long product(int[] grid) {
+        return grid == null ? 0L : ((long) grid[0]) * grid[1] * grid[2];
+    }
+
+    private static double log2(double x) {
+        return x > 1.0 ? (Math.log(x) / Math.log(2.0)) : 0.0;
+    }
+
+    private static double getRealValue(QENamelist namelist, String name, double def) {
+        QEValue value = namelist.getValue(name);
+        return value == null ? def : value.getRealValue();
+    }
+
+    private static int getIntValue(QENamelist namelist, String name, int def) {
+        QEValue value = namelist.getValue(name);
+        return value == null ? def : value.getIntegerValue();
+    }
+
+    private static boolean getLogicalValue(QENamelist namelist, String name) {
+        QEValue value = namelist.getValue(name);
+        return value == null ? false : value.getLogicalValue();
+    }
+
+    private static double getTimeFactor() {
+        return Environments.getDoubleProperty(PROP_KEY_TIME_FACTOR, 1.0);
+    }
+
+    private static double getMemoryFactor() {
+        return Environments.getDoubleProperty(PROP_KEY_MEMORY_FACTOR, 1.0);
+    }
+
+    public int getNumProcesses() {
+        return this.numProcesses;
+    }
+
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    public int getNumPools() {
+        return this.numPools;
+    }
+
+    public int getNumPlaneWaves() {
+        return this.numPlaneWaves;
+    }
+
+    public int[] getFFTGrid() {
+        return this.denseGrid == null ? null : this.denseGrid.clone();
+    }
+
+    public int getNumKPoints() {
+        return this.numKPoints;
+    }
+
+    public double getNumElectrons() {
+        return this.numElectrons;
+    }
+
+    public int getNumBands() {
+        return this.numBands;
+    }
+
+    /*
+     * total memory of all processes in MB
+     */
+    public double getMemory() {
+        double memory = this.mbytesOfModel * getMemoryFactor() + MBYTES_PER_PROCESS * this.numProcesses;
+        if (this.nscfEstimate != null) {
+            memory = Math.max(memory, this.nscfEstimate.getMemory());
+        }
+
+        return memory;
+    }
+
+    /*
+     * wall time of a SCF iteration in sec
+     */
+    public double getTimePerIteration() {
+        return this.getModelTime() * getTimeFactor();
+    }
+
+    /*
+     * wall time of a SCF iteration in sec, before calibration
+     */
+    protected double getModelTime() {
+        return this.flopsOfModel / (FLOPS_PER_CORE * this.getSpeedUp());
+    }
+
+    /*
+     * k-points are shared by pools, and plane waves by processes of a pool.
+     * OpenMP threads are assumed to be less efficient than MPI processes.
+     */
+    private double getSpeedUp() {
+        int numKPoints = Math.max(1, this.numKPoints);
+        int numPools = Math.max(1, Math.min(this.numPools, numKPoints));
+        int numKPerPool = (numKPoints + numPools - 1) / numPools;
+        double poolSpeedUp = ((double) numKPoints) / numKPerPool;
+
+        int numProcPerPool = Math.max(1, this.numProcesses / numPools);
+        double numPWPerProc = ((double) Math.max(1, this.numPlaneWaves)) / numProcPerPool;
+        double pwSpeedUp = numProcPerPool * numPWPerProc / (numPWPerProc + PW_OVERHEAD * (numProcPerPool - 1));
+
+        // FFT is distributed by planes along the third axis
+        int numPlanes = this.smoothGrid == null ? numProcPerPool : this.smoothGrid[2];
+        if (numProcPerPool > numPlanes) {
+            pwSpeedUp *= ((double) numPlanes) / numProcPerPool;
+        }
+
+        return poolSpeedUp * pwSpeedUp * Math.pow(this.numThreads, OMP_EXPONENT);
+    }
+
+    /*
+     * wall time of the whole job in sec
+     */
+    public double getTime() {
+        double time = this.getTimePerIteration() * this.numIterations;
+        if (this.nscfEstimate != null) {
+            time += this.nscfEstimate.getTime();
+        }
+
+        return time;
+    }
+
+    /*
+     * factors of the model are updated by the log of a run, which has been estimated by this.
+     */
+    public void calibrate(LogSummary summary) {
+        if (summary == null) {
+            return;
+        }
+
+        double memory = summary.getMemory();
+        if (memory > 0.0 && this.mbytesOfModel > 0.0) {
+            double factor = updateFactor(getMemoryFactor(), memory / this.mbytesOfModel);
+            Environments.setProperty(PROP_KEY_MEMORY_FACTOR, factor);
+        }
+
+        double wallTime = summary.getWallTime();
+        int numIterations = summary.getNumIterations();
+        if (wallTime > 0.0 && numIterations > 0 && this.flopsOfModel > 0.0) {
+            double factor = updateFactor(getTimeFactor(), (wallTime / numIterations) / this.getModelTime());
+            Environments.setProperty(PROP_KEY_TIME_FACTOR, factor);
+        }
+    }
+
+    private static double updateFactor(double oldFactor, double ratio) {
+        if (Double.isNaN(ratio) || ratio <= 0.0) {
+            return oldFactor;
+        }
+
+        double ratio2 = Math.min(Math.max(ratio, 1.0e-3), 1.0e3);
+        double oldFactor2 = oldFactor > 0.0 ? oldFactor : 1.0;
+        return Math.exp((1.0 - CALIBRATION_WEIGHT) * Math.log(oldFactor2) + CALIBRATION_WEIGHT * Math.log(ratio2));
+    }
+
+    @Override
+    public String toString() {
+        return formatMemory(this.getMemory()) + ", " + formatTime(this.getTime());
+    }
+
+    public static String formatMemory(double memory) {
+        if (memory >= 1024.0) {
+            return String.format("%.1f GB", memory / 1024.0);
+        }
+
+        return String.format("%.0f MB", memory);
+    }
+
+    public static String formatTime(double time) {
+        if (time >= 86400.0) {
+            return String.format("%.1f days", time / 86400.0);
+        } else if (time >= 3600.0) {
+            return String.format("%.1f hours", time / 3600.0);
+        } else if (time >= 60.0) {
+            return String.format("%.0f min", time / 60.0);
+        }
+
+        return String.format("%.0f sec", Math.max(1.0, time));
+    }
+}
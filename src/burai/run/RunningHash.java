@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import burai.com.env.Environments;
+import burai.input.QEInput;
+import burai.input.card.QEAtomicSpecies;
+import burai.input.card.QECard;
+import burai.input.card.QECellParameters;
+import burai.input.namelist.QECharacter;
+import burai.input.namelist.QEInteger;
+import burai.input.namelist.QELogical;
+import burai.input.namelist.QENamelist;
+import burai.input.namelist.QEReal;
+import burai.input.namelist.QEValue;
+
+public final class RunningHash {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final Pattern NUMBER_PATTERN =
+            Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eEdD][+-]?\\d+)?");
+
+    // values which do not affect results
+    private static final String[] IGNORED_VALUES = { "title", "verbosity", "startingpot", "startingwfc" };
+
+    // digests of files, which are keyed by path, and valid while length and lastModified are not changed
+    private static final Map<String, String[]> FILE_DIGESTS = new HashMap<String, String[]>();
+
+    private RunningHash() {
+        // NOP
+    }
+
+    /*
+     * hash of a whole calculation, from the type, inputs of all steps and pseudopotentials.
+     */
+    public static String getHash(RunningType type, List<QEInput> inputs) {
+        if (type == null || inputs == null) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("#TYPE ").append(type.name()).append('\n');
+
+        for (QEInput input : inputs) {
+            builder.append("#INPUT").append('\n');
+            if (input == null) {
+                continue;
+            }
+
+            builder.append(normalizeInput(input));
+
+            QEAtomicSpecies atomicSpecies = input.getCard(QEAtomicSpecies.class);
+            int numSpecies = atomicSpecies == null ? 0 : atomicSpecies.numSpecies();
+            for (int i = 0; i < numSpecies; i++) {
+                String pseudoName = atomicSpecies.getPseudoName(i);
+                pseudoName = pseudoName == null ? null : pseudoName.trim();
+                if (pseudoName == null || pseudoName.isEmpty()) {
+                    continue;
+                }
+
+                String digest = getFileDigest(new File(Environments.getPseudosPath(), pseudoName));
+                if (digest == null) {
+                    // pseudopotential is not available
+                    return null;
+                }
+
+                builder.append("#UPF ").append(pseudoName).append(' ').append(digest).append('\n');
+            }
+        }
+
+        return getHash(builder.toString());
+    }
+
+    public static String getFileDigest(File file) {
+        if (file == null) {
+            return null;
+        }
+
+        String path = file.getAbsolutePath();
+        String stamp = null;
+
+        try {
+            if (!file.isFile()) {
+                return null;
+            }
+
+            stamp = file.length() + ":" + file.lastModified();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        synchronized (FILE_DIGESTS) {
+            String[] digest = FILE_DIGESTS.get(path);
+            if (digest != null && stamp.equals(digest[0])) {
+                return digest[1];
+            }
+        }
+
+        String digest = null;
+        InputStream input = null;
+
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+
+            input = new FileInputStream(file);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int size = 0;
+            while ((size = input.read(buffer)) >= 0) {
+                messageDigest.update(buffer, 0, size);
+            }
+
+            digest = toHexString(messageDigest.digest());
+
+        } catch (NoSuchAlgorithmException | IOException e) {
+            e.printStackTrace();
+            digest = null;
+
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        if (digest != null) {
+            synchronized (FILE_DIGESTS) {
+                FILE_DIGESTS.put(path, new String[] { stamp, digest });
+            }
+        }
+
+        return digest;
+    }
+
+    public static String getHash(QEInput input) {
+        if (input == null) {
+            return null;
+        }
+
+        return getHash(normalizeInput(input));
+    }
+
+    public static String getHash(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        return toHexString(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String toHexString(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0x0f, 16));
+            builder.append(Character.forDigit(b & 0x0f, 16));
+        }
+
+        return builder.toString();
+    }
+
+    /*
+     * canonical text of input, where namelists and values are sorted, and numbers are formatted uniquely.
+     */
+    public static String normalizeInput(QEInput input) {
+        if (input == null) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        for (String keyNamelist : QEInput.listNamelistKeys()) {
+            QENamelist namelist = input.getNamelist(keyNamelist);
+            if (namelist == null) {
+                continue;
+            }
+
+            builder.append('&').append(keyNamelist.toUpperCase()).append('\n');
+
+            QEValue[] values = namelist.listQEValues();
+            String[] lines = new String[values == null ? 0 : values.length];
+            int numLines = 0;
+
+            for (int i = 0; i < lines.length; i++) {
+                String line = normalizeValue(values[i]);
+                if (line != null) {
+                    lines[numLines] = line;
+                    numLines++;
+                }
+            }
+
+            Arrays.sort(lines, 0, numLines);
+            for (int i = 0; i < numLines; i++) {
+                builder.append(lines[i]).append('\n');
+            }
+
+            builder.append('/').append('\n');
+        }
+
+        for (String keyCard : QEInput.listCardKeys()) {
+            QECard card = input.getCard(keyCard);
+            if (card == null) {
+                continue;
+            }
+
+            if (card instanceof QECellParameters) {
+                QENamelist nmlSystem = input.getNamelist(QEInput.NAMELIST_SYSTEM);
+                QEValue value = nmlSystem == null ? null : nmlSystem.getValue("ibrav");
+                if (value == null || value.getIntegerValue() != 0) {
+                    continue;
+                }
+            }
+
+            String strCard = card.toString();
+            if (strCard == null) {
+                continue;
+            }
+
+            for (String line : strCard.split("\\r?\\n")) {
+                String line2 = normalizeLine(line);
+                if (!line2.isEmpty()) {
+                    builder.append(line2).append('\n');
+                }
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static String normalizeValue(QEValue value) {
+        String name = value == null ? null : value.getName();
+        name = name == null ? null : name.trim().toLowerCase();
+        if (name == null || name.isEmpty() || name.startsWith("!")) {
+            return null;
+        }
+
+        for (String ignoredValue : IGNORED_VALUES) {
+            if (ignoredValue.equals(name)) {
+                return null;
+            }
+        }
+
+        String strValue = null;
+        if (value instanceof QEReal) {
+            strValue = formatReal(value.getRealValue());
+        } else if (value instanceof QEInteger) {
+            strValue = Integer.toString(value.getIntegerValue());
+        } else if (value instanceof QELogical) {
+            strValue = value.getLogicalValue() ? ".TRUE." : ".FALSE.";
+        } else if (value instanceof QECharacter) {
+            strValue = "'" + value.getCharacterValue().trim() + "'";
+        } else {
+            strValue = normalizeLine(value.getCharacterValue());
+        }
+
+        return name + "=" + strValue;
+    }
+
+    private static String formatReal(double x) {
+        return Double.toString(x == 0.0 ? 0.0 : x);
+    }
+
+    private static String normalizeLine(String line) {
+        String line2 = line == null ? null : line.trim();
+        if (line2 == null || line2.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (String token : line2.split("\\s+")) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+
+            if (NUMBER_PATTERN.matcher(token).matches()) {
+                try {
+                    token = formatReal(Double.parseDouble(token.replace('d', 'e').replace('D', 'e')));
+                } catch (NumberFormatException e) {
+                    // NOP
+                }
+            }
+
+            builder.append(token);
+        }
+
+        return builder.toString();
+    }
+}
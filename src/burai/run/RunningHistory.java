@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import burai.com.env.Environments;
+
+import com.google.gson.Gson;
+
+/*
+ * timings of calculations which have been done on this machine.
+ */
+public class RunningHistory {
+
+    private static final int MAX_RECORDS = 1000;
+
+    // records of sizes within this distance are similar
+    private static final double MAX_DISTANCE = Math.log(2.0);
+
+    private static RunningHistory instance = null;
+
+    public static synchronized RunningHistory getInstance() {
+        if (instance == null) {
+            String path = Environments.getHistoryPath();
+
+            if (path != null && !path.isEmpty()) {
+                try {
+                    instance = readFile(path);
+
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    instance = null;
+                }
+            }
+        }
+
+        if (instance == null) {
+            instance = new RunningHistory();
+        }
+
+        if (instance.records == null) {
+            instance.records = new ArrayList<RunningRecord>();
+        }
+
+        return instance;
+    }
+
+    private static RunningHistory readFile(String path) throws IOException {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+
+        Reader reader = null;
+        RunningHistory history = null;
+
+        try {
+            File file = new File(path);
+            if (!file.isFile()) {
+                return null;
+            }
+
+            reader = new BufferedReader(new FileReader(file));
+
+            Gson gson = new Gson();
+            history = gson.fromJson(reader, RunningHistory.class);
+
+        } catch (FileNotFoundException e1) {
+            throw e1;
+
+        } catch (Exception e2) {
+            throw new IOException(e2);
+
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e3) {
+                    throw e3;
+                }
+            }
+        }
+
+        return history;
+    }
+
+    private static void writeFile(String path, RunningHistory history) throws IOException {
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+
+        if (history == null) {
+            return;
+        }
+
+        Writer writer = null;
+
+        try {
+            File file = new File(path);
+            writer = new BufferedWriter(new FileWriter(file));
+
+            Gson gson = new Gson();
+            gson.toJson(history, writer);
+
+        } catch (IOException e1) {
+            throw e1;
+
+        } catch (Exception e2) {
+            throw new IOException(e2);
+
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e3) {
+                    throw e3;
+                }
+            }
+        }
+    }
+
+    private List<RunningRecord> records;
+
+    private RunningHistory() {
+        this.records = new ArrayList<RunningRecord>();
+    }
+
+    public synchronized void addRecord(RunningRecord record) {
+        if (record == null) {
+            return;
+        }
+
+        this.records.add(record);
+        while (this.records.size() > MAX_RECORDS) {
+            this.records.remove(0);
+        }
+
+        this.saveToFile();
+    }
+
+    public synchronized int numRecords() {
+        return this.records.size();
+    }
+
+    /*
+     * ratio of measured time to the model for the layout of estimate, from records of similar sizes.
+     * returns a negative value, if no record is found.
+     */
+    public synchronized double getTimeRatio(RunningEstimate estimate) {
+        if (estimate == null) {
+            return -1.0;
+        }
+
+        double sumWeight = 0.0;
+        double sumLogRatio = 0.0;
+        for (RunningRecord record : this.records) {
+            if (record == null || !record.hasLayout(estimate)) {
+                continue;
+            }
+
+            if (record.getModelTime() <= 0.0 || record.getTimePerIteration() <= 0.0) {
+                continue;
+            }
+
+            double dist = record.getDistance(estimate);
+            if (dist > MAX_DISTANCE) {
+                continue;
+            }
+
+            double weight = 1.0 - dist / MAX_DISTANCE + 1.0e-3;
+            sumWeight += weight;
+            sumLogRatio += weight * Math.log(record.getTimePerIteration() / record.getModelTime());
+        }
+
+        return sumWeight > 0.0 ? Math.exp(sumLogRatio / sumWeight) : -1.0;
+    }
+
+    private void saveToFile() {
+        String path = Environments.getHistoryPath();
+
+        if (path != null && !path.isEmpty()) {
+            try {
+                writeFile(path, this);
+
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * numbers of MPI processes, OpenMP threads and k-point pools, with the predicted time of an iteration.
+ */
+public class RunningLayout {
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    private int numPools;
+
+    private double time;
+
+    private boolean measured;
+
+    private RunningLayout(RunningEstimate estimate) {
+        this.numProcesses = estimate.getNumProcesses();
+        this.numThreads = estimate.getNumThreads();
+        this.numPools = estimate.getNumPools();
+
+        double ratio = RunningHistory.getInstance().getTimeRatio(estimate);
+        this.measured = ratio > 0.0;
+        this.time = this.measured ? (estimate.getModelTime() * ratio) : estimate.getTimePerIteration();
+    }
+
+    /*
+     * layouts which use numCores, from the fastest one.
+     */
+    public static List<RunningLayout> listLayouts(RunningEstimate estimate, int numCores, boolean mpiParallel) {
+        List<RunningLayout> layouts = new ArrayList<RunningLayout>();
+        if (estimate == null || numCores < 1) {
+            return layouts;
+        }
+
+        int numKPoints = Math.max(1, estimate.getNumKPoints());
+
+        for (int numProcesses = 1; numProcesses <= (mpiParallel ? numCores : 1); numProcesses++) {
+            if ((numCores % numProcesses) != 0) {
+                continue;
+            }
+
+            int numThreads = numCores / numProcesses;
+            for (int numPools = 1; numPools <= Math.min(numProcesses, numKPoints); numPools++) {
+                if ((numProcesses % numPools) == 0) {
+                    layouts.add(new RunningLayout(estimate.withLayout(numProcesses, numThreads, numPools)));
+                }
+            }
+        }
+
+        layouts.sort((layout1, layout2) -> Double.compare(layout1.time, layout2.time));
+        return layouts;
+    }
+
+    public static RunningLayout getBestLayout(RunningEstimate estimate, int numCores, boolean mpiParallel) {
+        List<RunningLayout> layouts = listLayouts(estimate, numCores, mpiParallel);
+        return layouts.isEmpty() ? null : layouts.get(0);
+    }
+
+    public int getNumProcesses() {
+        return this.numProcesses;
+    }
+
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    public int getNumPools() {
+        return this.numPools;
+    }
+
+    /*
+     * time of an iteration in sec
+     */
+    public double getTime() {
+        return this.time;
+    }
+
+    /*
+     * true, if the time is predicted from records of similar calculations.
+     */
+    public boolean isMeasured() {
+        return this.measured;
+    }
+
+    @Override
+    public String toString() {
+        String str = this.numProcesses + " MPI x " + this.numThreads + " OpenMP";
+        if (this.numPools > 1) {
+            str = str + ", -nk " + this.numPools;
+        }
+
+        return str;
+    }
+}
@@ -17,15 +17,25 @@
 package burai.run;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
+import burai.com.env.Environments;
 import burai.com.life.Life;
 import burai.project.Project;
 
 public class RunningManager implements Runnable {
 
+    private static final String PROP_KEY_CORES = "number_of_cores";
+
+    private static final String PROP_KEY_MEMORY = "memory_mbytes";
+
+    private static final double MEMORY_RATE = 0.9;
+
     private static RunningManager instance = null;
 
     public static RunningManager getInstance() {
@@ -38,7 +48,13 @@ public class RunningManager implements Runnable {
 
     private boolean alive;
 
-    private RunningNode currentNode;
+    private int numCores;
+
+    private double maxMemory;
+
+    private List<RunningNode> runningNodes;
+
+    private Map<RunningNode, Long> startTimes;
 
     private Queue<RunningNode> nodes;
 
@@ -47,7 +63,19 @@ public class RunningManager implements Runnable {
     private RunningManager() {
         this.alive = true;
 
-        this.currentNode = null;
+        this.numCores = Environments.getIntProperty(PROP_KEY_CORES, Environments.getNumCUPs());
+        if (this.numCores < 1) {
+            this.numCores = Math.max(1, Environments.getNumCUPs());
+        }
+
+        // 0 means that memory is not limited
+        this.maxMemory = Environments.getDoubleProperty(PROP_KEY_MEMORY, MEMORY_RATE * Environments.getMemorySize());
+        if (this.maxMemory < 0.0) {
+            this.maxMemory = 0.0;
+        }
+
+        this.runningNodes = new ArrayList<RunningNode>();
+        this.startTimes = new HashMap<RunningNode, Long>();
         this.nodes = new LinkedList<RunningNode>();
 
         this.listeners = null;
@@ -65,14 +93,100 @@ public class RunningManager implements Runnable {
     public synchronized void stop() {
         this.alive = false;
 
-        if (this.currentNode != null) {
-            this.currentNode.stop();
+        for (RunningNode runningNode : this.runningNodes) {
+            if (runningNode != null) {
+                runningNode.stop();
+            }
         }
 
         this.notifyAll();
     }
 
-    public synchronized boolean addNode(RunningNode node) {
+    public synchronized int getNumCores() {
+        return this.numCores;
+    }
+
+    public synchronized void setNumCores(int numCores) {
+        if (numCores < 1) {
+            return;
+        }
+
+        this.numCores = numCores;
+        Environments.setProperty(PROP_KEY_CORES, numCores);
+
+        this.notifyAll();
+    }
+
+    public synchronized double getMaxMemory() {
+        return this.maxMemory;
+    }
+
+    public synchronized void setMaxMemory(double maxMemory) {
+        if (maxMemory < 0.0) {
+            return;
+        }
+
+        this.maxMemory = maxMemory;
+        Environments.setProperty(PROP_KEY_MEMORY, maxMemory);
+
+        this.notifyAll();
+    }
+
+    public synchronized double getUsedMemory() {
+        double usedMemory = 0.0;
+        for (RunningNode runningNode : this.runningNodes) {
+            usedMemory += memoryOf(runningNode);
+        }
+
+        return usedMemory;
+    }
+
+    public synchronized int getNumUsedCores() {
+        int numUsedCores = 0;
+        for (RunningNode runningNode : this.runningNodes) {
+            numUsedCores += numCoresOf(runningNode);
+        }
+
+        return numUsedCores;
+    }
+
+    private static int numCoresOf(RunningNode node) {
+        if (node == null) {
+            return 0;
+        }
+
+        return Math.max(1, node.getNumProcesses()) * Math.max(1, node.getNumThreads());
+    }
+
+    private static double memoryOf(RunningNode node) {
+        RunningEstimate estimate = node == null ? null : node.getEstimate();
+        return estimate == null ? 0.0 : estimate.getMemory();
+    }
+
+    private static long timeOf(RunningNode node) {
+        RunningEstimate estimate = node == null ? null : node.getEstimate();
+        return estimate == null ? -1L : (long) (1000.0 * estimate.getTime());
+    }
+
+    public boolean addNode(RunningNode node) {
+        if (node != null && node.getEstimate() == null) {
+            // estimated out of the lock, because symmetry of a large cell takes some time
+            RunningType type = node.getType();
+            RunningEstimate estimate = RunningEstimate.getEstimate(node.getProject(),
+                    type == null ? RunningType.SCF : type, node.getNumProcesses(), node.getNumThreads());
+            if (estimate != null && node.getNumPools() > 1) {
+                estimate = estimate.withLayout(node.getNumProcesses(), node.getNumThreads(), node.getNumPools());
+            }
+
+            node.setEstimate(estimate);
+        }
+
+        synchronized (this) {
+            return this.addNodeKernel(node);
+        }
+    }
+
+    private boolean addNodeKernel(RunningNode node) {
         if (node != null) {
             boolean status = this.nodes.offer(node);
 
@@ -98,8 +212,9 @@ public class RunningManager implements Runnable {
 
     public synchronized boolean removeNode(RunningNode node) {
         if (node != null) {
-            if (node == this.currentNode) {
-                this.currentNode.stop();
+            if (this.runningNodes.contains(node)) {
+                // only this node is stopped, and others keep running.
+                node.stop();
                 return true;
             }
 
@@ -123,6 +238,24 @@ public class RunningManager implements Runnable {
         return false;
     }
 
+    /*
+     * a queued node is moved to the index of the queue, where 0 is the first to be admitted.
+     */
+    public synchronized boolean moveNode(RunningNode node, int index) {
+        if (node == null || !this.nodes.remove(node)) {
+            return false;
+        }
+
+        List<RunningNode> nodes2 = new ArrayList<RunningNode>(this.nodes);
+        nodes2.add(Math.max(0, Math.min(index, nodes2.size())), node);
+
+        this.nodes.clear();
+        this.nodes.addAll(nodes2);
+        this.notifyAll();
+
+        return true;
+    }
+
     public synchronized void addListener(RunningManagerListener listener) {
         if (listener == null) {
             return;
@@ -150,11 +283,12 @@ public class RunningManager implements Runnable {
     @Override
     public void run() {
         while (this.isAlive()) {
+            List<RunningNode> admittedNodes = null;
 
             synchronized (this) {
                 while (this.alive) {
-                    this.currentNode = this.nodes.poll();
-                    if (this.currentNode != null) {
+                    admittedNodes = this.admitNodes();
+                    if (admittedNodes != null && !admittedNodes.isEmpty()) {
                         break;
                     }
 
@@ -166,32 +300,188 @@ public class RunningManager implements Runnable {
                 }
             }
 
-            if (this.currentNode != null && this.isAlive()) {
-                this.currentNode.setStatus(RunningStatus.RUNNING);
+            if (admittedNodes != null && this.isAlive()) {
+                for (RunningNode admittedNode : admittedNodes) {
+                    this.startNode(admittedNode);
+                }
+            }
+        }
+    }
 
-                this.currentNode.run();
+    /*
+     * nodes are admitted in order, while the sum of cores fits to numCores, and the sum of memory fits to maxMemory.
+     * a node of the same project as a running one has to wait, and does not block following nodes.
+     * if the first node is blocked, it is reserved at the time when enough nodes will have finished,
+     * and following nodes can be admitted only if they are estimated to finish before the reservation (backfill).
+     */
+    private List<RunningNode> admitNodes() {
+        List<RunningNode> admittedNodes = null;
+
+        int numUsedCores = this.getNumUsedCores();
+        double usedMemory = this.getUsedMemory();
+
+        long currentTime = System.currentTimeMillis();
+        long shadowTime = -1L;
+
+        Iterator<RunningNode> iterator = this.nodes.iterator();
+        while (iterator.hasNext()) {
+            RunningNode node = iterator.next();
+            if (node == null) {
+                iterator.remove();
+                continue;
+            }
 
-                this.currentNode.setStatus(RunningStatus.DONE);
+            if (this.isProjectRunning(node.getProject())) {
+                continue;
+            }
 
-                synchronized (this) {
-                    if (this.listeners != null) {
-                        for (RunningManagerListener listener : this.listeners) {
-                            if (listener != null) {
-                                listener.onNodeRemoved(this.currentNode);
-                            }
-                        }
+            int numCores = numCoresOf(node);
+            double memory = memoryOf(node);
+            if (!this.runningNodes.isEmpty() && !this.isFitting(numUsedCores + numCores, usedMemory + memory)) {
+                if (shadowTime < 0L) {
+                    shadowTime = this.getShadowTime(numCores, memory, currentTime);
+                    if (shadowTime < 0L) {
+                        break;
                     }
+                }
 
-                    this.currentNode = null;
+                continue;
+            }
+
+            if (shadowTime >= 0L) {
+                long time = timeOf(node);
+                if (time < 0L || (currentTime + time) > shadowTime) {
+                    continue;
                 }
             }
+
+            iterator.remove();
+            this.runningNodes.add(node);
+            this.startTimes.put(node, currentTime);
+            numUsedCores += numCores;
+            usedMemory += memory;
+
+            if (admittedNodes == null) {
+                admittedNodes = new ArrayList<RunningNode>();
+            }
+
+            admittedNodes.add(node);
         }
+
+        return admittedNodes;
+    }
+
+    private boolean isFitting(int numCores, double memory) {
+        if (numCores > this.numCores) {
+            return false;
+        }
+
+        return this.maxMemory <= 0.0 || memory <= this.maxMemory;
+    }
+
+    /*
+     * the time when a node of numCores and memory will fit, or -1 if unknown.
+     */
+    private long getShadowTime(int numCores, double memory, long currentTime) {
+        Map<RunningNode, Long> endTimes = new HashMap<RunningNode, Long>();
+        for (RunningNode runningNode : this.runningNodes) {
+            long time = timeOf(runningNode);
+            if (time < 0L) {
+                return -1L;
+            }
+
+            Long startTime = this.startTimes.get(runningNode);
+            long endTime = (startTime == null ? currentTime : startTime.longValue()) + time;
+            endTimes.put(runningNode, Math.max(currentTime, endTime));
+        }
+
+        List<RunningNode> finishingNodes = new ArrayList<RunningNode>(this.runningNodes);
+        finishingNodes.sort((node1, node2) -> Long.compare(endTimes.get(node1), endTimes.get(node2)));
+
+        long shadowTime = -1L;
+        int numUsedCores = this.getNumUsedCores();
+        double usedMemory = this.getUsedMemory();
+        for (RunningNode finishingNode : finishingNodes) {
+            shadowTime = endTimes.get(finishingNode);
+            numUsedCores -= numCoresOf(finishingNode);
+            usedMemory -= memoryOf(finishingNode);
+            if (this.isFitting(numUsedCores + numCores, usedMemory + memory)) {
+                break;
+            }
+        }
+
+        // if the node never fits, it will be admitted after all running nodes
+        return shadowTime;
+    }
+
+    private boolean isProjectRunning(Project project) {
+        if (project == null) {
+            return false;
+        }
+
+        for (RunningNode runningNode : this.runningNodes) {
+            Project project2 = runningNode == null ? null : runningNode.getProject();
+            if (project2 != null && project2.isSameAs(project)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void startNode(RunningNode node) {
+        if (node == null) {
+            return;
+        }
+
+        node.setStatus(RunningStatus.RUNNING);
+
+        Thread thread = new Thread(() -> {
+            RunningBinding binding = RunningAffinity.getInstance().allocate(node.getNumProcesses(), node.getNumThreads());
+            node.setBinding(binding);
+
+            try {
+                node.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            node.setBinding(null);
+            RunningAffinity.getInstance().release(binding);
+
+            node.setStatus(RunningStatus.DONE);
+
+            synchronized (this) {
+                this.runningNodes.remove(node);
+                this.startTimes.remove(node);
+
+                if (this.listeners != null) {
+                    for (RunningManagerListener listener : this.listeners) {
+                        if (listener != null) {
+                            listener.onNodeRemoved(node);
+                        }
+                    }
+                }
+
+                this.notifyAll();
+            }
+        });
+
+        thread.start();
+    }
+
+    public synchronized List<RunningNode> getRunningNodes() {
+        return new ArrayList<RunningNode>(this.runningNodes);
+    }
+
+    public synchronized List<RunningNode> getQueuedNodes() {
+        return new ArrayList<RunningNode>(this.nodes);
     }
 
     public synchronized RunningQueue getQueue() {
         Queue<RunningNode> nodes2 = new LinkedList<RunningNode>();
-        if (this.currentNode != null) {
-            nodes2.add(this.currentNode);
+        if (!this.runningNodes.isEmpty()) {
+            nodes2.addAll(this.runningNodes);
         }
         if (!this.nodes.isEmpty()) {
             nodes2.addAll(this.nodes);
@@ -209,9 +499,11 @@ public class RunningManager implements Runnable {
     }
 
     public synchronized RunningNode getNode(String path) {
-        Project currentProject = this.currentNode == null ? null : this.currentNode.getProject();
-        if (currentProject != null && currentProject.isRelatedFile(path)) {
-            return this.currentNode;
+        for (RunningNode runningNode : this.runningNodes) {
+            Project project = runningNode == null ? null : runningNode.getProject();
+            if (project != null && project.isRelatedFile(path)) {
+                return runningNode;
+            }
         }
 
         for (RunningNode node : this.nodes) {
@@ -225,9 +517,11 @@ public class RunningManager implements Runnable {
     }
 
     public synchronized RunningNode getNode(Project project) {
-        Project currentProject = this.currentNode == null ? null : this.currentNode.getProject();
-        if (currentProject != null && currentProject.isSameAs(project)) {
-            return this.currentNode;
+        for (RunningNode runningNode : this.runningNodes) {
+            Project project2 = runningNode == null ? null : runningNode.getProject();
+            if (project2 != null && project2.isSameAs(project)) {
+                return runningNode;
+            }
         }
 
         for (RunningNode node : this.nodes) {
@@ -241,6 +535,6 @@ public class RunningManager implements Runnable {
     }
 
     public synchronized boolean isEmpty() {
-        return this.currentNode == null && this.nodes.isEmpty();
+        return this.runningNodes.isEmpty() && this.nodes.isEmpty();
     }
 }
@@ -28,18 +28,27 @@ import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import burai.app.QEFXMain;
+import burai.com.env.Environments;
 import burai.com.file.FileTools;
 import burai.com.path.QEPath;
 import burai.input.QEInput;
 import burai.project.Project;
 import burai.run.parser.LogParser;
+import burai.run.parser.LogStreamer;
+import burai.run.parser.LogSummary;
+import burai.run.telemetry.TelemetryManager;
+import burai.run.telemetry.TelemetrySampler;
 
 public class RunningNode implements Runnable {
 
     private static final RunningType DEFAULT_TYPE = RunningType.SCF;
 
+    private static final String PROP_KEY_STREAMING = "streaming_log";
+
     private boolean alive;
 
+    private boolean failed;
+
     private Project project;
 
     private RunningStatus status;
@@ -52,6 +61,14 @@ public class RunningNode implements Runnable {
 
     private int numThreads;
 
+    private int numPools;
+
+    private boolean resume;
+
+    private RunningEstimate estimate;
+
+    private RunningBinding binding;
+
     private Process objProcess;
 
     public RunningNode(Project project) {
@@ -60,6 +77,7 @@ public class RunningNode implements Runnable {
         }
 
         this.alive = true;
+        this.failed = false;
 
         this.project = project;
 
@@ -69,6 +87,10 @@ public class RunningNode implements Runnable {
         this.type = null;
         this.numProcesses = 1;
         this.numThreads = 1;
+        this.numPools = 1;
+        this.resume = false;
+        this.estimate = null;
+        this.binding = null;
 
         this.objProcess = null;
     }
@@ -115,6 +137,13 @@ public class RunningNode implements Runnable {
         }
     }
 
+    /*
+     * true, if the last run has stopped by an error.
+     */
+    public synchronized boolean isFailed() {
+        return this.failed;
+    }
+
     public synchronized RunningType getType() {
         return this.type;
     }
@@ -139,6 +168,41 @@ public class RunningNode implements Runnable {
         this.numThreads = numThreads;
     }
 
+    public synchronized int getNumPools() {
+        return this.numPools;
+    }
+
+    public synchronized void setNumPools(int numPools) {
+        this.numPools = numPools;
+    }
+
+    public synchronized boolean isResume() {
+        return this.resume;
+    }
+
+    /*
+     * an interrupted optimization or MD is resumed, if possible.
+     */
+    public synchronized void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public synchronized RunningEstimate getEstimate() {
+        return this.estimate;
+    }
+
+    public synchronized void setEstimate(RunningEstimate estimate) {
+        this.estimate = estimate;
+    }
+
+    public synchronized RunningBinding getBinding() {
+        return this.binding;
+    }
+
+    protected synchronized void setBinding(RunningBinding binding) {
+        this.binding = binding;
+    }
+
     public synchronized void stop() {
         this.alive = false;
 
@@ -153,21 +217,30 @@ public class RunningNode implements Runnable {
             if (!this.alive) {
                 return;
             }
+
+            this.failed = false;
         }
 
         File directory = this.getDirectory();
         if (directory == null) {
+            this.setFailed();
             return;
         }
 
         RunningType type2 = null;
         int numProcesses2 = -1;
         int numThreads2 = -1;
+        int numPools2 = -1;
+        boolean resume2 = false;
+        RunningBinding binding2 = null;
 
         synchronized (this) {
             type2 = this.type;
             numProcesses2 = this.numProcesses;
             numThreads2 = this.numThreads;
+            numPools2 = this.numPools;
+            resume2 = this.resume;
+            binding2 = this.binding;
         }
 
         if (type2 == null) {
@@ -179,9 +252,13 @@ public class RunningNode implements Runnable {
         if (numThreads2 < 1) {
             numThreads2 = 1;
         }
+        if (numPools2 < 1) {
+            numPools2 = 1;
+        }
 
         QEInput input = new FXQEInputFactory(type2).getQEInput(this.project);
         if (input == null) {
+            this.setFailed();
             return;
         }
 
@@ -189,46 +266,96 @@ public class RunningNode implements Runnable {
         inpName = inpName == null ? null : inpName.trim();
         File inpFile = (inpName == null || inpName.isEmpty()) ? null : new File(directory, inpName);
         if (inpFile == null) {
+            this.setFailed();
             return;
         }
 
-        List<String[]> commandList = type2.getCommandList(inpName, numProcesses2);
+        List<String[]> commandList = type2.getCommandList(inpName, numProcesses2, numPools2, binding2);
         if (commandList == null || commandList.isEmpty()) {
+            this.setFailed();
             return;
         }
 
         List<RunningCondition> conditionList = type2.getConditionList();
         if (conditionList == null || conditionList.size() < commandList.size()) {
+            this.setFailed();
             return;
         }
 
         List<InputEditor> inputEditorList = type2.getInputEditorList(this.project);
         if (inputEditorList == null || inputEditorList.size() < commandList.size()) {
+            this.setFailed();
             return;
         }
 
         List<String> logNameList = type2.getLogNameList(this.project);
         if (logNameList == null || logNameList.size() < commandList.size()) {
+            this.setFailed();
             return;
         }
 
         List<String> errNameList = type2.getErrNameList(this.project);
         if (errNameList == null || errNameList.size() < commandList.size()) {
+            this.setFailed();
             return;
         }
 
         List<LogParser> parserList = type2.getParserList(this.project);
         if (parserList == null || parserList.size() < commandList.size()) {
+            this.setFailed();
             return;
         }
 
         List<PostOperation> postList = type2.getPostList();
         if (postList == null || postList.size() < commandList.size()) {
+            this.setFailed();
             return;
         }
 
+        List<RunningProduct> productList = type2.getProductList();
+        if (productList == null || productList.size() < commandList.size()) {
+            this.setFailed();
+            return;
+        }
+
+        List<RunningProduct> consumptionList = type2.getConsumptionList();
+        if (consumptionList == null || consumptionList.size() < commandList.size()) {
+            this.setFailed();
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        RunningResume resume = resume2 ? RunningResume.getResume(this.project, type2) : null;
+
+        // results of a resumed run are not cached, because they depend on the interrupted run.
+        String cacheHash = null;
+        if (resume == null && RunningCache.getInstance().isEnabled()) {
+            List<QEInput> inputList = new ArrayList<QEInput>();
+            for (int i = 0; i < commandList.size(); i++) {
+                InputEditor inputEditor = inputEditorList.get(i);
+                inputList.add(inputEditor == null ? null : inputEditor.editInput(input));
+            }
+
+            cacheHash = RunningHash.getHash(type2, inputList);
+
+            if (this.restoreResults(cacheHash, type2, inputList, productList)) {
+                return;
+            }
+        }
+
         this.deleteExitFile(directory);
 
+        if (resume != null) {
+            resume.prepare();
+        } else {
+            RunningResume.discard(this.project, type2);
+        }
+
+        TelemetryManager.getInstance().resetSeries(this.project, numProcesses2 * numThreads2);
+
+        boolean streaming = Environments.getBoolProperty(PROP_KEY_STREAMING, true);
+
         ProcessBuilder builder = null;
         boolean errOccurred = false;
 
@@ -277,6 +404,9 @@ public class RunningNode implements Runnable {
             }
 
             QEInput input2 = inputEditor.editInput(input);
+            if (input2 != null && resume != null && i == 0) {
+                input2 = resume.editInput(input2);
+            }
             if (input2 == null) {
                 continue;
             }
@@ -285,6 +415,21 @@ public class RunningNode implements Runnable {
                 continue;
             }
 
+            RunningProduct consumption = consumptionList.get(i);
+            if (consumption != null && (!consumption.isAvailable(this.project))) {
+                errOccurred = true;
+                break;
+            }
+
+            RunningProduct product = productList.get(i);
+            if (product != null) {
+                product.invalidate(this.project);
+            }
+
+            if (product == RunningProduct.CHARGE_DENSITY) {
+                input2 = RunningWarmStart.editInput(this.project, input2);
+            }
+
             boolean inpStatus = this.writeQEInput(input2, inpFile);
             if (!inpStatus) {
                 continue;
@@ -297,17 +442,32 @@ public class RunningNode implements Runnable {
             builder = new ProcessBuilder();
             builder.directory(directory);
             builder.command(command);
-            builder.redirectOutput(logFile);
+            if (!streaming) {
+                builder.redirectOutput(logFile);
+            }
             builder.redirectError(errFile);
             builder.environment().put("OMP_NUM_THREADS", Integer.toString(numThreads2));
+            if (binding2 != null) {
+                binding2.setEnvironment(builder.environment());
+            }
             this.setPathToBuilder(builder);
 
+            LogStreamer streamer = null;
+            TelemetrySampler sampler = null;
+
             try {
                 synchronized (this) {
                     this.objProcess = builder.start();
                 }
 
-                parser.startParsing(logFile);
+                sampler = TelemetryManager.getInstance().startSampling(this.project, this.objProcess);
+
+                parser.startParsing(logFile, streaming);
+
+                if (streaming) {
+                    streamer = new LogStreamer(this.objProcess.getInputStream(), logFile, parser);
+                    streamer.startStreaming();
+                }
 
                 if (this.objProcess != null) {
                     if (this.objProcess.waitFor() != 0) {
@@ -326,10 +486,31 @@ public class RunningNode implements Runnable {
                     this.objProcess = null;
                 }
 
+                if (sampler != null) {
+                    sampler.stop();
+                }
+
+                if (streamer != null) {
+                    streamer.waitToEnd();
+                }
+
                 parser.endParsing();
+
+                if (product == RunningProduct.CHARGE_DENSITY) {
+                    RunningWarmStart.endRun(this.project, !errOccurred);
+                }
             }
 
             if (!errOccurred) {
+                if (product != null) {
+                    product.stamp(this.project, input2);
+                }
+
+                if (product == RunningProduct.CHARGE_DENSITY) {
+                    RunningWarmStart.storeData(this.project, input2);
+                    this.calibrateEstimate(input2, logFile, numProcesses2, numThreads2, numPools2);
+                }
+
                 post.operate(this.project);
             }
         }
@@ -337,11 +518,68 @@ public class RunningNode implements Runnable {
         if (!errOccurred) {
             type2.setProjectStatus(this.project);
 
+            if (cacheHash != null) {
+                RunningCache.getInstance().storeResults(cacheHash, this.project, type2, startTime);
+            }
+
         } else {
+            this.setFailed();
             this.showErrorDialog(builder);
         }
     }
 
+    /*
+     * the run is failed also when it cannot be started (e.g. the input is not built),
+     * not to be reported as done.
+     */
+    private synchronized void setFailed() {
+        this.failed = true;
+    }
+
+    private void calibrateEstimate(QEInput input, File logFile, int numProcesses, int numThreads, int numPools) {
+        try {
+            RunningEstimate estimate = RunningEstimate.getEstimate(input, numProcesses, numThreads);
+            if (estimate != null) {
+                estimate = estimate.withLayout(numProcesses, numThreads, numPools);
+
+                LogSummary summary = new LogSummary();
+                summary.read(logFile);
+                estimate.calibrate(summary);
+
+                if (summary.getWallTime() > 0.0 && summary.getNumIterations() > 0) {
+                    double timePerIteration = summary.getWallTime() / summary.getNumIterations();
+                    RunningHistory.getInstance().addRecord(new RunningRecord(estimate, timePerIteration));
+                }
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean restoreResults(String cacheHash, RunningType type, List<QEInput> inputList, List<RunningProduct> productList) {
+        if (cacheHash == null || type == null || inputList == null || productList == null) {
+            return false;
+        }
+
+        // the same calculation has been completed, so that pw.x is not called.
+        if (!RunningCache.getInstance().restoreResults(cacheHash, this.project)) {
+            return false;
+        }
+
+        for (int i = 0; i < inputList.size() && i < productList.size(); i++) {
+            RunningProduct product = productList.get(i);
+            QEInput input = inputList.get(i);
+            if (product != null && input != null) {
+                product.stamp(this.project, input);
+            }
+        }
+
+        type.setProjectStatus(this.project);
+
+        return true;
+    }
+
     private File getDirectory() {
         String dirPath = this.project.getDirectoryPath();
         if (dirPath == null) {
@@ -510,6 +748,12 @@ public class RunningNode implements Runnable {
             message2 = "COMMAND: " + cmdStr;
         }
 
+        if (Environments.isHeadless()) {
+            System.err.println(message1);
+            System.err.println(message2);
+            return;
+        }
+
         Platform.runLater(() -> {
             Alert alert = new Alert(AlertType.ERROR);
             QEFXMain.initializeDialogOwner(alert);
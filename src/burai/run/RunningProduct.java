@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.io.File;
+
+import burai.input.QEInput;
+import burai.project.Project;
+import burai.project.property.ProjectProperty;
+import burai.project.property.ProjectStatus;
+
+/*
+ * Outputs of a step, which can be consumed by following steps of other calculations.
+ * A product is stamped with the hash of the input which has produced it.
+ */
+public enum RunningProduct {
+    CHARGE_DENSITY("charge_density", "charge-density.dat", "charge-density.hdf5");
+
+    private String key;
+
+    private String[] fileNames;
+
+    private RunningProduct(String key, String... fileNames) {
+        this.key = key;
+        this.fileNames = fileNames;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public boolean isAvailable(Project project) {
+        String dirPath = project == null ? null : project.getDirectoryPath();
+        String prefix = project == null ? null : project.getPrefixName();
+        if (dirPath == null || prefix == null || prefix.trim().isEmpty()) {
+            return false;
+        }
+
+        return this.isAvailable(new File(dirPath, prefix.trim() + ".save"));
+    }
+
+    public boolean isAvailable(File saveDir) {
+        if (saveDir == null) {
+            return false;
+        }
+
+        try {
+            for (String fileName : this.fileNames) {
+                if (new File(saveDir, fileName).isFile()) {
+                    return true;
+                }
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    public String getStamp(Project project) {
+        ProjectStatus projectStatus = getProjectStatus(project);
+        return projectStatus == null ? null : projectStatus.getProductHash(this.key);
+    }
+
+    /*
+     * the product exists, and has been produced by the same input.
+     */
+    public boolean isUpToDate(Project project, QEInput input) {
+        String stamp = this.getStamp(project);
+        if (stamp == null || stamp.isEmpty()) {
+            return false;
+        }
+
+        return stamp.equals(RunningHash.getHash(input)) && this.isAvailable(project);
+    }
+
+    public void stamp(Project project, QEInput input) {
+        this.setStamp(project, RunningHash.getHash(input));
+    }
+
+    public void invalidate(Project project) {
+        // the product is going to be overwritten
+        this.setStamp(project, "");
+    }
+
+    private void setStamp(Project project, String hash) {
+        ProjectProperty projectProperty = project == null ? null : project.getProperty();
+        ProjectStatus projectStatus = projectProperty == null ? null : projectProperty.getStatus();
+        if (projectStatus == null) {
+            return;
+        }
+
+        projectStatus.setProductHash(this.key, hash);
+        projectProperty.saveStatus();
+    }
+
+    private static ProjectStatus getProjectStatus(Project project) {
+        ProjectProperty projectProperty = project == null ? null : project.getProperty();
+        return projectProperty == null ? null : projectProperty.getStatus();
+    }
+}
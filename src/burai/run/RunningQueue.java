@@ -47,10 +47,14 @@ public class RunningQueue implements RunningManagerListener {
         }
     }
 
-    public synchronized void stopQueue() {
-        this.alive = false;
+    public void stopQueue() {
+        synchronized (this) {
+            this.alive = false;
+            this.notifyAll();
+        }
+
+        // the manager's lock must not be taken in this lock, because the manager calls this in its lock.
         this.manager.removeListener(this);
-        this.notifyAll();
     }
 
     public synchronized RunningNode pollNode() {
@@ -102,7 +106,11 @@ public class RunningQueue implements RunningManagerListener {
 
     @Override
     public synchronized void onNodeAdded(RunningNode node) {
-        if (node != null) {
+        if (!this.alive) {
+            return;
+        }
+
+        if (node != null && !this.bufferingNodes.contains(node)) {
             boolean status = this.bufferingNodes.add(node);
             if (status) {
                 this.notifyAll();
@@ -116,6 +124,10 @@ public class RunningQueue implements RunningManagerListener {
 
     @Override
     public synchronized void onNodeRemoved(RunningNode node) {
+        if (!this.alive) {
+            return;
+        }
+
         if (node != null) {
             this.bufferingNodes.remove(node);
         }
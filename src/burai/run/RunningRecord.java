@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+/*
+ * a SCF calculation which has been done, with its size, layout of parallelization and timing.
+ */
+public class RunningRecord {
+
+    private int numPlaneWaves;
+
+    private int numKPoints;
+
+    private int numBands;
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    private int numPools;
+
+    // model's time of an iteration, before calibration
+    private double modelTime;
+
+    private double timePerIteration;
+
+    private long date;
+
+    public RunningRecord(RunningEstimate estimate, double timePerIteration) {
+        if (estimate == null) {
+            throw new IllegalArgumentException("estimate is null.");
+        }
+
+        this.numPlaneWaves = estimate.getNumPlaneWaves();
+        this.numKPoints = estimate.getNumKPoints();
+        this.numBands = estimate.getNumBands();
+        this.numProcesses = estimate.getNumProcesses();
+        this.numThreads = estimate.getNumThreads();
+        this.numPools = estimate.getNumPools();
+        this.modelTime = estimate.getModelTime();
+        this.timePerIteration = timePerIteration;
+        this.date = System.currentTimeMillis();
+    }
+
+    public int getNumPlaneWaves() {
+        return this.numPlaneWaves;
+    }
+
+    public int getNumKPoints() {
+        return this.numKPoints;
+    }
+
+    public int getNumBands() {
+        return this.numBands;
+    }
+
+    public int getNumProcesses() {
+        return this.numProcesses;
+    }
+
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    public int getNumPools() {
+        return this.numPools;
+    }
+
+    public double getModelTime() {
+        return this.modelTime;
+    }
+
+    public double getTimePerIteration() {
+        return this.timePerIteration;
+    }
+
+    public long getDate() {
+        return this.date;
+    }
+
+    public boolean hasLayout(RunningEstimate estimate) {
+        if (estimate == null) {
+            return false;
+        }
+
+        return this.numProcesses == estimate.getNumProcesses()
+                && this.numThreads == estimate.getNumThreads()
+                && this.numPools == estimate.getNumPools();
+    }
+
+    /*
+     * distance of sizes in log scale, which is 0 for the same size.
+     */
+    public double getDistance(RunningEstimate estimate) {
+        if (estimate == null) {
+            return Double.MAX_VALUE;
+        }
+
+        double dist = 0.0;
+        dist += logRatio(this.numPlaneWaves, estimate.getNumPlaneWaves());
+        dist += logRatio(this.numKPoints, estimate.getNumKPoints());
+        dist += logRatio(this.numBands, estimate.getNumBands());
+        return dist;
+    }
+
+    private static double logRatio(int value1, int value2) {
+        return Math.abs(Math.log(Math.max(1, value1)) - Math.log(Math.max(1, value2)));
+    }
+}
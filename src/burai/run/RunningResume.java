@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run;
+
+import java.io.File;
+
+import burai.com.consts.Constants;
+import burai.input.QEInput;
+import burai.input.card.QEAtomicPositions;
+import burai.input.card.QECellParameters;
+import burai.input.namelist.QENamelist;
+import burai.input.namelist.QEValue;
+import burai.project.Project;
+import burai.project.property.ProjectGeometry;
+import burai.project.property.ProjectGeometryList;
+import burai.project.property.ProjectProperty;
+
+/*
+ * An interrupted optimization or MD is resumed from the last geometry parsed from its log,
+ * and geometries of the resumed run are appended to the previous ones.
+ * Restart files of pw.x (BFGS history, or velocities of MD) are kept in the project, and read by pw.x.
+ * MD is resumed only with its restart file.
+ */
+public class RunningResume implements InputEditor {
+
+    private static final int DEFAULT_NSTEP = 50;
+
+    private static final double SAME_LATTICE = 1.0e-6;
+
+    private Project project;
+
+    private boolean mdMode;
+
+    private ProjectGeometryList geometryList;
+
+    private ProjectGeometry geometry;
+
+    private int numSteps;
+
+    private boolean restartFile;
+
+    private RunningResume(Project project, boolean mdMode, ProjectGeometryList geometryList) {
+        this.project = project;
+        this.mdMode = mdMode;
+        this.geometryList = geometryList;
+
+        int numGeoms = geometryList.numGeometries();
+        this.geometry = geometryList.getGeometry(numGeoms - 1);
+        this.numSteps = numGeoms - 1;
+
+        File file = getRestartFile(project, mdMode);
+        this.restartFile = file != null && file.isFile();
+    }
+
+    public static boolean isResumable(Project project, RunningType type) {
+        return getResume(project, type) != null;
+    }
+
+    /*
+     * returns null, if the project has no interrupted run of the type.
+     */
+    public static RunningResume getResume(Project project, RunningType type) {
+        if (type != RunningType.OPTIMIZ && type != RunningType.MD) {
+            return null;
+        }
+
+        boolean mdMode = type == RunningType.MD;
+        ProjectGeometryList geometryList = getGeometryList(project, mdMode);
+        if (geometryList == null || geometryList.numGeometries() < 2) {
+            return null;
+        }
+
+        QEInput input = mdMode ? project.getQEInputMd() : project.getQEInputOptimiz();
+        QEAtomicPositions positions = input == null ? null : input.getCard(QEAtomicPositions.class);
+        if (positions == null) {
+            return null;
+        }
+
+        RunningResume resume = null;
+        try {
+            resume = new RunningResume(project, mdMode, geometryList);
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+
+        if (resume.geometry == null || resume.geometry.numAtoms() != positions.numPositions()) {
+            return null;
+        }
+
+        if (resume.restartFile) {
+            return resume;
+        }
+
+        // MD without its restart file would start over with no velocities, which cannot continue the trajectory.
+        if (mdMode) {
+            return null;
+        }
+
+        return geometryList.isConverged() ? null : resume;
+    }
+
+    /*
+     * a run, which is not resumed, starts over the geometries.
+     */
+    public static void discard(Project project, RunningType type) {
+        if (type != RunningType.OPTIMIZ && type != RunningType.MD) {
+            return;
+        }
+
+        ProjectGeometryList geometryList = getGeometryList(project, type == RunningType.MD);
+        if (geometryList != null && geometryList.numResumedGeometries() > 0) {
+            geometryList.discardResumed();
+            saveGeometryList(project, type == RunningType.MD);
+        }
+    }
+
+    /*
+     * called just before the resumed run.
+     */
+    public void prepare() {
+        this.geometryList.resumeGeometries();
+        saveGeometryList(this.project, this.mdMode);
+    }
+
+    @Override
+    public QEInput editInput(QEInput input) {
+        if (input == null) {
+            return null;
+        }
+
+        QEInput input2 = input.copy();
+
+        boolean sameLattice = this.isSameLattice(input2.getLattice());
+
+        if (!this.injectCell(input2)) {
+            return input;
+        }
+
+        if (!this.injectPositions(input2)) {
+            return input;
+        }
+
+        QENamelist nmlControl = input2.getNamelist(QEInput.NAMELIST_CONTROL);
+        if (nmlControl != null && !(this.mdMode && this.restartFile)) {
+            // the number of steps is counted over in pw.x, except for MD with its restart file.
+            int numSteps = Math.max(1, getNumSteps(input2) - this.numSteps);
+            nmlControl.setValue("nstep = " + numSteps);
+        }
+
+        QENamelist nmlElectrons = input2.getNamelist(QEInput.NAMELIST_ELECTRONS);
+        if (nmlElectrons != null && sameLattice && RunningProduct.CHARGE_DENSITY.isAvailable(this.project)) {
+            nmlElectrons.setValue("startingpot = 'file'");
+        }
+
+        return input2;
+    }
+
+    private boolean injectCell(QEInput input) {
+        double[][] cell = this.geometry.getCell();
+        if (cell == null) {
+            return false;
+        }
+
+        QENamelist nmlSystem = input.getNamelist(QEInput.NAMELIST_SYSTEM);
+        QECellParameters cellParam = input.getCard(QECellParameters.class);
+        if (nmlSystem == null || cellParam == null) {
+            return false;
+        }
+
+        nmlSystem.setValue("ibrav = 0");
+        nmlSystem.removeValue("a");
+        nmlSystem.removeValue("b");
+        nmlSystem.removeValue("c");
+        nmlSystem.removeValue("cosab");
+        nmlSystem.removeValue("cosac");
+        nmlSystem.removeValue("cosbc");
+        for (int i = 1; i <= 6; i++) {
+            nmlSystem.removeValue("celldm(" + i + ")");
+        }
+
+        cellParam.setBohr();
+        for (int i = 0; i < 3; i++) {
+            cellParam.setVector(i + 1, cell[i]);
+        }
+
+        return true;
+    }
+
+    private boolean injectPositions(QEInput input) {
+        QEAtomicPositions positions = input.getCard(QEAtomicPositions.class);
+        int numAtoms = this.geometry.numAtoms();
+        if (positions == null || positions.numPositions() != numAtoms) {
+            return false;
+        }
+
+        positions.setBohr();
+        for (int i = 0; i < numAtoms; i++) {
+            double[] position = { this.geometry.getX(i), this.geometry.getY(i), this.geometry.getZ(i) };
+            positions.setPosition(i, position);
+        }
+
+        return true;
+    }
+
+    private boolean isSameLattice(double[][] lattice) {
+        double[][] cell = this.geometry.getCell();
+        if (lattice == null || cell == null || lattice.length < 3) {
+            return false;
+        }
+
+        for (int i = 0; i < 3; i++) {
+            if (lattice[i] == null || lattice[i].length < 3) {
+                return false;
+            }
+
+            for (int j = 0; j < 3; j++) {
+                double value = cell[i][j] * Constants.BOHR_RADIUS_ANGS;
+                if (Math.abs(value - lattice[i][j]) > SAME_LATTICE * Math.max(1.0, Math.abs(value))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static int getNumSteps(QEInput input) {
+        QENamelist nmlControl = input == null ? null : input.getNamelist(QEInput.NAMELIST_CONTROL);
+        QEValue value = nmlControl == null ? null : nmlControl.getValue("nstep");
+        return value == null ? DEFAULT_NSTEP : value.getIntegerValue();
+    }
+
+    /*
+     * pw.x writes prefix.bfgs or prefix.md in outdir during the run, and deletes it at the end.
+     */
+    private static File getRestartFile(Project project, boolean mdMode) {
+        String dirPath = project == null ? null : project.getDirectoryPath();
+        String prefix = project == null ? null : project.getPrefixName();
+        prefix = prefix == null ? null : prefix.trim();
+        if (dirPath == null || prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+
+        return new File(dirPath, prefix + (mdMode ? ".md" : ".bfgs"));
+    }
+
+    private static ProjectGeometryList getGeometryList(Project project, boolean mdMode) {
+        ProjectProperty projectProperty = project == null ? null : project.getProperty();
+        if (projectProperty == null) {
+            return null;
+        }
+
+        return mdMode ? projectProperty.getMdList() : projectProperty.getOptList();
+    }
+
+    private static void saveGeometryList(Project project, boolean mdMode) {
+        ProjectProperty projectProperty = project == null ? null : project.getProperty();
+        if (projectProperty == null) {
+            return;
+        }
+
+        if (mdMode) {
+            projectProperty.saveMdList();
+        } else {
+            projectProperty.saveOptList();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import burai.atoms.model.Atom;
+import burai.com.math.Matrix3D;
+
+/*
+ * Operations of the space group, which are searched roughly to count irreducible k-points.
+ */
+public class RunningSymmetry {
+
+    private static final double THR_METRIC = 1.0e-4;
+
+    private static final double THR_POSITION = 1.0e-3;
+
+    private static final int MAX_ATOMS = 1024;
+
+    // rotations W in crystal coordinates, as f' = f W + t
+    private List<int[][]> rotations;
+
+    public RunningSymmetry(double[][] lattice, List<Atom> atoms) {
+        this.rotations = new ArrayList<int[][]>();
+
+        if (lattice == null || lattice.length < 3) {
+            return;
+        }
+
+        double[][] metric = Matrix3D.mult(lattice, Matrix3D.trans(lattice));
+        double[][] inverse = Matrix3D.inverse(lattice);
+        if (metric == null || inverse == null) {
+            return;
+        }
+
+        double[][] positions = null;
+        String[] names = null;
+        if (atoms != null && !atoms.isEmpty() && atoms.size() <= MAX_ATOMS) {
+            positions = new double[atoms.size()][];
+            names = new String[atoms.size()];
+            for (int i = 0; i < atoms.size(); i++) {
+                Atom atom = atoms.get(i);
+                if (atom == null) {
+                    return;
+                }
+
+                double[] position = { atom.getX(), atom.getY(), atom.getZ() };
+                positions[i] = Matrix3D.mult(position, inverse);
+                names[i] = atom.getName();
+            }
+        }
+
+        int[][] rotation = new int[3][3];
+        for (int code = 0; code < 19683; code++) {
+            int code2 = code;
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    rotation[i][j] = (code2 % 3) - 1;
+                    code2 /= 3;
+                }
+            }
+
+            if (!keepsMetric(rotation, metric)) {
+                continue;
+            }
+
+            if (positions != null && !keepsAtoms(rotation, positions, names)) {
+                continue;
+            }
+
+            this.rotations.add(new int[][] { rotation[0].clone(), rotation[1].clone(), rotation[2].clone() });
+        }
+    }
+
+    public int numOperations() {
+        return Math.max(1, this.rotations.size());
+    }
+
+    private static boolean keepsMetric(int[][] rotation, double[][] metric) {
+        // W G W^T = G
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                double value = 0.0;
+                for (int k = 0; k < 3; k++) {
+                    for (int l = 0; l < 3; l++) {
+                        value += rotation[i][k] * metric[k][l] * rotation[j][l];
+                    }
+                }
+
+                double scale = Math.sqrt(Math.abs(metric[i][i] * metric[j][j]));
+                if (Math.abs(value - metric[i][j]) > THR_METRIC * scale) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean keepsAtoms(int[][] rotation, double[][] positions, String[] names) {
+        double[] position0 = rotate(positions[0], rotation);
+
+        // candidates of the fractional translation
+        for (int i = 0; i < positions.length; i++) {
+            if (!equalsName(names[0], names[i])) {
+                continue;
+            }
+
+            double[] trans = new double[3];
+            for (int k = 0; k < 3; k++) {
+                trans[k] = positions[i][k] - position0[k];
+            }
+
+            if (keepsAtoms(rotation, trans, positions, names)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean keepsAtoms(int[][] rotation, double[] trans, double[][] positions, String[] names) {
+        for (int i = 0; i < positions.length; i++) {
+            double[] position = rotate(positions[i], rotation);
+
+            boolean found = false;
+            for (int j = 0; j < positions.length; j++) {
+                if (!equalsName(names[i], names[j])) {
+                    continue;
+                }
+
+                boolean same = true;
+                for (int k = 0; k < 3; k++) {
+                    double dx = position[k] + trans[k] - positions[j][k];
+                    if (Math.abs(dx - Math.rint(dx)) > THR_POSITION) {
+                        same = false;
+                        break;
+                    }
+                }
+
+                if (same) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean equalsName(String name1, String name2) {
+        return name1 == null ? name2 == null : name1.equals(name2);
+    }
+
+    private static double[] rotate(double[] position, int[][] rotation) {
+        double[] position2 = new double[3];
+        for (int j = 0; j < 3; j++) {
+            for (int k = 0; k < 3; k++) {
+                position2[j] += position[k] * rotation[k][j];
+            }
+        }
+
+        return position2;
+    }
+
+    /*
+     * number of irreducible points of Monkhorst-Pack grid, as k' = k W^T (and -k with time reversal).
+     */
+    public int countKPoints(int[] kGrid, int[] kOffset, boolean timeReversal) {
+        if (kGrid == null || kGrid.length < 3 || kGrid[0] < 1 || kGrid[1] < 1 || kGrid[2] < 1) {
+            return 1;
+        }
+
+        int[] kOffset2 = new int[3];
+        for (int i = 0; i < 3; i++) {
+            kOffset2[i] = (kOffset == null || kOffset.length < 3 || kOffset[i] == 0) ? 0 : 1;
+        }
+
+        int n1 = kGrid[0];
+        int n2 = kGrid[1];
+        int n3 = kGrid[2];
+        int numPoints = n1 * n2 * n3;
+        boolean[] visited = new boolean[numPoints];
+
+        List<int[][]> rotations2 = this.rotations;
+        if (rotations2.isEmpty()) {
+            rotations2 = new ArrayList<int[][]>();
+            rotations2.add(new int[][] { { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 } });
+        }
+
+        // points are in units of 1 / (2 n), to keep offsets integral
+        int[] n = { n1, n2, n3 };
+        int[] m = new int[3];
+        int[] m2 = new int[3];
+
+        int numIrreducible = 0;
+        for (int index = 0; index < numPoints; index++) {
+            if (visited[index]) {
+                continue;
+            }
+
+            numIrreducible++;
+            visited[index] = true;
+
+            m[0] = 2 * (index / (n2 * n3)) + kOffset2[0];
+            m[1] = 2 * ((index / n3) % n2) + kOffset2[1];
+            m[2] = 2 * (index % n3) + kOffset2[2];
+
+            for (int[][] rotation : rotations2) {
+                for (int sign = 1; sign >= (timeReversal ? -1 : 1); sign -= 2) {
+                    // m'_j = sign * sum_k m_k W_jk n_j / n_k, which has to be integral
+                    boolean onGrid = true;
+                    for (int j = 0; j < 3; j++) {
+                        long numer = 0L;
+                        for (int k = 0; k < 3; k++) {
+                            numer += ((long) sign) * m[k] * rotation[j][k] * n[j] * (numPoints / n[k]);
+                        }
+
+                        if (numer % numPoints != 0L) {
+                            onGrid = false;
+                            break;
+                        }
+
+                        int m2j = (int) (numer / numPoints) - kOffset2[j];
+                        if ((m2j % 2) != 0) {
+                            onGrid = false;
+                            break;
+                        }
+
+                        m2[j] = Math.floorMod(m2j / 2, n[j]);
+                    }
+
+                    if (onGrid) {
+                        visited[(m2[0] * n2 + m2[1]) * n3 + m2[2]] = true;
+                    }
+                }
+            }
+        }
+
+        return numIrreducible;
+    }
+}
@@ -21,6 +21,7 @@ import java.util.List;
 
 import burai.atoms.model.Cell;
 import burai.atoms.model.property.CellProperty;
+import burai.com.consts.Constants;
 import burai.com.env.Environments;
 import burai.input.QEInput;
 import burai.input.card.QECellParameters;
@@ -29,7 +30,11 @@ import burai.input.card.QEKPoints;
 import burai.input.namelist.QENamelist;
 import burai.input.namelist.QEValue;
 import burai.project.Project;
+import burai.project.property.DataFile;
 import burai.project.property.ProjectBandPaths;
+import burai.project.property.ProjectEnergies;
+import burai.project.property.ProjectGeometry;
+import burai.project.property.ProjectGeometryList;
 import burai.project.property.ProjectProperty;
 import burai.project.property.ProjectStatus;
 import burai.run.RunningCommand.RunningCommandType;
@@ -233,7 +238,11 @@ public enum RunningType {
     }
 
     public List<String[]> getCommandList(String fileName, int numProc) {
-        return this.getCommandList(fileName, numProc, false);
+        return this.getCommandList(fileName, numProc, 1, false, null);
+    }
+
+    public List<String[]> getCommandList(String fileName, int numProc, int numPools, RunningBinding binding) {
+        return this.getCommandList(fileName, numProc, numPools, false, binding);
     }
 
     public List<String[]> getUnixCommandList(String fileName) {
@@ -241,16 +250,18 @@ public enum RunningType {
     }
 
     public List<String[]> getUnixCommandList(String fileName, int numProc) {
-        return this.getCommandList(fileName, numProc, true);
+        return this.getCommandList(fileName, numProc, 1, true, null);
     }
 
-    private List<String[]> getCommandList(String fileName, int numProc, boolean unixServer) {
+    private List<String[]> getCommandList(String fileName, int numProc, int numPools,
+            boolean unixServer, RunningBinding binding) {
         String fileName2 = fileName == null ? null : fileName.trim();
         if (fileName2 == null || fileName2.isEmpty()) {
             return null;
         }
 
         int numProc2 = Math.max(1, numProc);
+        int numPools2 = Math.max(1, Math.min(numPools, numProc2));
 
         String[] command = null;
         List<String[]> commandList = new ArrayList<String[]>();
@@ -260,7 +271,7 @@ public enum RunningType {
         case Project.INPUT_MODE_OPTIMIZ:
         case Project.INPUT_MODE_MD:
             // pw.x
-            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
@@ -269,25 +280,25 @@ public enum RunningType {
 
         case Project.INPUT_MODE_DOS:
             // pw.x (scf)
-            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
 
             // pw.x (nscf)
-            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
 
             // dos.x
-            command = this.createCommand(RunningCommandType.DOS, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.DOS, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
 
             // projwfc.x
-            command = this.createCommand(RunningCommandType.PROJWFC, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.PROJWFC, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
@@ -296,25 +307,25 @@ public enum RunningType {
 
         case Project.INPUT_MODE_BAND:
             // pw.x (scf)
-            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
 
             // pw.x (bands)
-            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.PWSCF, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
 
             // bands.x (up spin)
-            command = this.createCommand(RunningCommandType.BAND, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.BAND, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
 
             // bands.x (down spin)
-            command = this.createCommand(RunningCommandType.BAND, fileName2, numProc2, unixServer);
+            command = this.createCommand(RunningCommandType.BAND, fileName2, numProc2, numPools2, unixServer, binding);
             if (command != null && command.length > 0) {
                 commandList.add(command);
             }
@@ -329,7 +340,8 @@ public enum RunningType {
         return commandList;
     }
 
-    private String[] createCommand(RunningCommandType commandType, String fileName, int numProc, boolean unixServer) {
+    private String[] createCommand(RunningCommandType commandType, String fileName, int numProc, int numPools,
+            boolean unixServer, RunningBinding binding) {
         if (commandType == null) {
             return null;
         }
@@ -345,6 +357,8 @@ public enum RunningType {
         RunningCommand command = new RunningCommand(commandType);
         command.setInput(fileName);
         command.setProcess(numProc);
+        command.setKParallel(numPools);
+        command.setBinding(binding);
         return command.getCommand(unixServer);
     }
 
@@ -365,23 +379,7 @@ public enum RunningType {
             break;
 
         case Project.INPUT_MODE_DOS:
-            conditionList.add((project, input) -> {
-                ProjectProperty projectProperty = project == null ? null : project.getProperty();
-                if (projectProperty == null) {
-                    return true;
-                }
-
-                ProjectStatus projectStatus = projectProperty.getStatus();
-                if (projectStatus == null) {
-                    return true;
-                }
-
-                if (projectStatus.isScfDone() || projectStatus.isOptDone()) {
-                    return false;
-                } else {
-                    return true;
-                }
-            });
+            conditionList.add((project, input) -> this.isScfRequired(project, input));
 
             conditionList.add((project, input) -> true);
             conditionList.add((project, input) -> true);
@@ -400,23 +398,7 @@ public enum RunningType {
             break;
 
         case Project.INPUT_MODE_BAND:
-            conditionList.add((project, input) -> {
-                ProjectProperty projectProperty = project == null ? null : project.getProperty();
-                if (projectProperty == null) {
-                    return true;
-                }
-
-                ProjectStatus projectStatus = projectProperty.getStatus();
-                if (projectStatus == null) {
-                    return true;
-                }
-
-                if (projectStatus.isScfDone() || projectStatus.isOptDone()) {
-                    return false;
-                } else {
-                    return true;
-                }
-            });
+            conditionList.add((project, input) -> this.isScfRequired(project, input));
 
             conditionList.add((project, input) -> true);
             conditionList.add((project, input) -> true);
@@ -442,6 +424,31 @@ public enum RunningType {
         return conditionList;
     }
 
+    private boolean isScfRequired(Project project, QEInput input) {
+        // SCF is skipped, if its charge density has been produced from the same input.
+        String stamp = RunningProduct.CHARGE_DENSITY.getStamp(project);
+        if (stamp != null) {
+            return !RunningProduct.CHARGE_DENSITY.isUpToDate(project, input);
+        }
+
+        // the project has been calculated without stamps
+        ProjectProperty projectProperty = project == null ? null : project.getProperty();
+        if (projectProperty == null) {
+            return true;
+        }
+
+        ProjectStatus projectStatus = projectProperty.getStatus();
+        if (projectStatus == null) {
+            return true;
+        }
+
+        if (projectStatus.isScfDone() || projectStatus.isOptDone()) {
+            return !RunningProduct.CHARGE_DENSITY.isAvailable(project);
+        } else {
+            return true;
+        }
+    }
+
     public List<InputEditor> getInputEditorList(Project project) {
         if (project == null) {
             return null;
@@ -699,24 +706,85 @@ public enum RunningType {
         return parserList;
     }
 
+    public List<RunningProduct> getProductList() {
+        List<RunningProduct> productList = new ArrayList<RunningProduct>();
+
+        switch (this.inputMode) {
+        case Project.INPUT_MODE_SCF:
+        case Project.INPUT_MODE_OPTIMIZ:
+        case Project.INPUT_MODE_MD:
+            productList.add(RunningProduct.CHARGE_DENSITY);
+            break;
+
+        case Project.INPUT_MODE_DOS:
+        case Project.INPUT_MODE_BAND:
+            productList.add(RunningProduct.CHARGE_DENSITY);
+            productList.add(null);
+            productList.add(null);
+            productList.add(null);
+            break;
+
+        default:
+            // NOP
+            break;
+        }
+
+        return productList;
+    }
+
+    public List<RunningProduct> getConsumptionList() {
+        List<RunningProduct> consumptionList = new ArrayList<RunningProduct>();
+
+        switch (this.inputMode) {
+        case Project.INPUT_MODE_SCF:
+        case Project.INPUT_MODE_OPTIMIZ:
+        case Project.INPUT_MODE_MD:
+            consumptionList.add(null);
+            break;
+
+        case Project.INPUT_MODE_DOS:
+        case Project.INPUT_MODE_BAND:
+            consumptionList.add(null);
+            consumptionList.add(RunningProduct.CHARGE_DENSITY);
+            consumptionList.add(null);
+            consumptionList.add(null);
+            break;
+
+        default:
+            // NOP
+            break;
+        }
+
+        return consumptionList;
+    }
+
     public List<PostOperation> getPostList() {
         List<PostOperation> postList = new ArrayList<PostOperation>();
 
         switch (this.inputMode) {
         case Project.INPUT_MODE_SCF:
             postList.add((project) -> {
+                if (project != null) {
+                    this.loadDataFile(project, Project.INPUT_MODE_SCF);
+                }
                 return;
             });
             break;
 
         case Project.INPUT_MODE_OPTIMIZ:
             postList.add((project) -> {
+                if (project != null) {
+                    this.loadDataFile(project, Project.INPUT_MODE_OPTIMIZ);
+                }
                 return;
             });
             break;
 
         case Project.INPUT_MODE_MD:
             postList.add((project) -> {
+                if (project != null) {
+                    this.loadDataFile(project, Project.INPUT_MODE_MD);
+                }
                 return;
             });
             break;
@@ -724,11 +792,15 @@ public enum RunningType {
         case Project.INPUT_MODE_DOS:
             postList.add((project) -> {
                 if (project != null) {
+                    this.loadDataFile(project, Project.INPUT_MODE_SCF);
                     this.setProjectStatus(project, Project.INPUT_MODE_SCF);
                 }
                 return;
             });
             postList.add((project) -> {
+                if (project != null) {
+                    this.loadDataFile(project, Project.INPUT_MODE_DOS);
+                }
                 return;
             });
             postList.add((project) -> {
@@ -742,6 +814,7 @@ public enum RunningType {
         case Project.INPUT_MODE_BAND:
             postList.add((project) -> {
                 if (project != null) {
+                    this.loadDataFile(project, Project.INPUT_MODE_SCF);
                     this.setProjectStatus(project, Project.INPUT_MODE_SCF);
                 }
                 return;
@@ -768,6 +841,98 @@ public enum RunningType {
         return postList;
     }
 
+    private void loadDataFile(Project project, int inputMode) {
+        // results from the log files are completed by the XML data-file of pw.x
+        ProjectProperty projectProperty = project == null ? null : project.getProperty();
+        if (projectProperty == null) {
+            return;
+        }
+
+        DataFile dataFile = projectProperty.getDataFile();
+        if (dataFile == null) {
+            return;
+        }
+
+        if (inputMode == Project.INPUT_MODE_SCF || inputMode == Project.INPUT_MODE_DOS) {
+            ProjectEnergies fermiEnergies = projectProperty.getFermiEnergies();
+            if (fermiEnergies != null && fermiEnergies.numEnergies() < 1 && dataFile.hasFermiEnergy()) {
+                fermiEnergies.addEnergy(Constants.AUTOEV * dataFile.getFermiEnergy());
+                projectProperty.saveFermiEnergies();
+            }
+        }
+
+        if (inputMode == Project.INPUT_MODE_SCF) {
+            ProjectEnergies scfEnergies = projectProperty.getScfEnergies();
+            if (scfEnergies != null && scfEnergies.numEnergies() < 1 && dataFile.isConverged()) {
+                scfEnergies.addEnergy(2.0 * dataFile.getTotalEnergy());
+                scfEnergies.setConverged(true);
+                projectProperty.saveScfEnergies();
+            }
+        }
+
+        if (inputMode == Project.INPUT_MODE_OPTIMIZ || inputMode == Project.INPUT_MODE_MD) {
+            boolean mdMode = inputMode == Project.INPUT_MODE_MD;
+            ProjectGeometryList geometryList = mdMode ? projectProperty.getMdList() : projectProperty.getOptList();
+            if (geometryList == null) {
+                return;
+            }
+
+            int numAtoms = dataFile.numAtoms();
+            if (numAtoms < 1) {
+                return;
+            }
+
+            synchronized (geometryList) {
+                int numGeoms = geometryList.numGeometries();
+                ProjectGeometry geometry = numGeoms > 0 ? geometryList.getGeometry(numGeoms - 1) : null;
+
+                if (geometry == null) {
+                    double[][] cell = dataFile.getCell();
+                    if (cell == null) {
+                        return;
+                    }
+
+                    geometry = new ProjectGeometry();
+                    geometry.setConverged(dataFile.isConverged());
+                    geometry.setTime(mdMode ? 0.0 : -1.0);
+                    geometry.setEnergy(2.0 * dataFile.getTotalEnergy());
+                    geometry.setCell(cell);
+                    for (int i = 0; i < numAtoms; i++) {
+                        double[] position = dataFile.getPosition(i);
+                        geometry.addAtom(dataFile.getAtomName(i), position[0], position[1], position[2]);
+                    }
+
+                    geometryList.addGeometry(geometry);
+                }
+
+                // forces parsed from the log are kept
+                if (geometry.numAtoms() == numAtoms && dataFile.hasForces() && !this.hasForces(geometry)) {
+                    for (int i = 0; i < numAtoms; i++) {
+                        double[] force = dataFile.getForce(i);
+                        geometry.setForce(i, 2.0 * force[0], 2.0 * force[1], 2.0 * force[2]);
+                    }
+                }
+            }
+
+            if (mdMode) {
+                projectProperty.saveMdList();
+            } else {
+                projectProperty.saveOptList();
+            }
+        }
+    }
+
+    private boolean hasForces(ProjectGeometry geometry) {
+        int numAtoms = geometry.numAtoms();
+        for (int i = 0; i < numAtoms; i++) {
+            if (geometry.getForceX(i) != 0.0 || geometry.getForceY(i) != 0.0 || geometry.getForceZ(i) != 0.0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private void setupSymmetricKPoints(Project project) {
         // keep QEKPoints
         QEInput input = project == null ? null : project.getQEInputBand();
@@ -0,0 +1,456 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+import burai.atoms.model.Atom;
+import burai.com.env.Environments;
+import burai.com.file.FileTools;
+import burai.input.QEInput;
+import burai.input.card.QEAtomicSpecies;
+import burai.input.card.QEKPoints;
+import burai.input.namelist.QENamelist;
+import burai.input.namelist.QEValue;
+import burai.project.Project;
+
+import com.google.gson.Gson;
+
+/*
+ * SCF is started from the charge density (and wave functions) of the nearest compatible calculation,
+ * which is the previous one of the project, or one in RunningCache.
+ */
+public final class RunningWarmStart {
+
+    private static final String PROP_KEY_WARM_START = "warm_start";
+
+    private static final String FILE_NAME_DATA = "burai.warmstart";
+
+    private static final String BACKUP_SUFFIX = ".warmstart";
+
+    private static final double LATTICE_TOLERANCE = 0.05;
+
+    // maximum displacement of each atom (in angstrom)
+    private static final double DISPLACEMENT_TOLERANCE = 0.5;
+
+    private static final double SAME_LATTICE = 1.0e-6;
+
+    private RunningWarmStart() {
+        // NOP
+    }
+
+    private static class WarmStartData {
+
+        private String potKey;
+
+        private String wfcKey;
+
+        private double[][] lattice;
+
+        private double[][] positions;
+    }
+
+    private static class Candidate {
+
+        private File saveDir;
+
+        private WarmStartData data;
+
+        private double distance;
+    }
+
+    /*
+     * called before pw.x produces the charge density,
+     * returns the input which sets startingpot (and startingwfc) = 'file' if possible.
+     */
+    public static QEInput editInput(Project project, QEInput input) {
+        File saveDir = getSaveDirectory(project);
+        if (saveDir == null || input == null) {
+            return input;
+        }
+
+        // the backup is left, if the previous run has not been finished
+        restoreSaveDirectory(saveDir, false);
+
+        try {
+            return editInput(saveDir, input);
+
+        } finally {
+            // the charge density is going to be overwritten
+            File file = new File(saveDir, FILE_NAME_DATA);
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
+
+    private static QEInput editInput(File saveDir, QEInput input) {
+        if (!Environments.getBoolProperty(PROP_KEY_WARM_START, true)) {
+            return input;
+        }
+
+        try {
+            WarmStartData data = createData(input);
+            if (data == null) {
+                return input;
+            }
+
+            Candidate candidate = findCandidate(saveDir, data);
+            if (candidate == null) {
+                return input;
+            }
+
+            if (!saveDir.equals(candidate.saveDir)) {
+                // the original is moved aside, and restored if the run fails
+                File backupDir = getBackupDirectory(saveDir);
+                if (saveDir.exists() && !saveDir.renameTo(backupDir)) {
+                    return input;
+                }
+
+                if (!FileTools.copyAllFiles(candidate.saveDir, saveDir, false)) {
+                    restoreSaveDirectory(saveDir, false);
+                    return input;
+                }
+            }
+
+            QEInput input2 = input.copy();
+            QENamelist nmlElectrons = input2.getNamelist(QEInput.NAMELIST_ELECTRONS);
+            if (nmlElectrons == null) {
+                return input;
+            }
+
+            nmlElectrons.setValue("startingpot = 'file'");
+
+            if (data.wfcKey.equals(candidate.data.wfcKey) && candidate.distance < SAME_LATTICE && hasWaveFunctions(saveDir)) {
+                nmlElectrons.setValue("startingwfc = 'file'");
+            }
+
+            return input2;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return input;
+        }
+    }
+
+    /*
+     * called when pw.x has finished, after editInput.
+     * the original directory moved aside is discarded if succeeded, or restored if failed.
+     */
+    public static void endRun(Project project, boolean succeeded) {
+        File saveDir = getSaveDirectory(project);
+        if (saveDir == null) {
+            return;
+        }
+
+        restoreSaveDirectory(saveDir, succeeded);
+    }
+
+    private static void restoreSaveDirectory(File saveDir, boolean discarded) {
+        File backupDir = getBackupDirectory(saveDir);
+        if (!backupDir.exists()) {
+            return;
+        }
+
+        try {
+            if (discarded) {
+                FileTools.deleteAllFiles(backupDir, false);
+                return;
+            }
+
+            if (saveDir.exists()) {
+                FileTools.deleteAllFiles(saveDir, false);
+            }
+
+            if (!backupDir.renameTo(saveDir)) {
+                System.err.println("cannot restore " + saveDir.getPath());
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * called when the charge density has been produced by input.
+     */
+    public static void storeData(Project project, QEInput input) {
+        File saveDir = getSaveDirectory(project);
+        if (saveDir == null || !saveDir.isDirectory()) {
+            return;
+        }
+
+        WarmStartData data = createData(input);
+        if (data == null) {
+            return;
+        }
+
+        Writer writer = null;
+
+        try {
+            writer = new BufferedWriter(new FileWriter(new File(saveDir, FILE_NAME_DATA)));
+            Gson gson = new Gson();
+            gson.toJson(data, writer);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static File getSaveDirectory(Project project) {
+        String dirPath = project == null ? null : project.getDirectoryPath();
+        String prefix = project == null ? null : project.getPrefixName();
+        prefix = prefix == null ? null : prefix.trim();
+        if (dirPath == null || prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+
+        return new File(dirPath, prefix + ".save");
+    }
+
+    private static File getBackupDirectory(File saveDir) {
+        return new File(saveDir.getParentFile(), saveDir.getName() + BACKUP_SUFFIX);
+    }
+
+    private static Candidate findCandidate(File saveDir, WarmStartData data) {
+        // the previous calculation of the project has priority
+        Candidate candidate = createCandidate(saveDir, data);
+        if (candidate != null) {
+            return candidate;
+        }
+
+        String cachesPath = Environments.getCachesPath();
+        File[] cacheDirs = cachesPath == null ? null : new File(cachesPath).listFiles();
+        if (cacheDirs == null) {
+            return null;
+        }
+
+        for (File cacheDir : cacheDirs) {
+            if (cacheDir == null || !cacheDir.isDirectory()) {
+                continue;
+            }
+
+            Candidate candidate2 = createCandidate(new File(cacheDir, saveDir.getName()), data);
+            if (candidate2 != null && (candidate == null || candidate2.distance < candidate.distance)) {
+                candidate = candidate2;
+            }
+        }
+
+        return candidate;
+    }
+
+    private static Candidate createCandidate(File saveDir, WarmStartData data) {
+        WarmStartData data2 = readData(saveDir);
+        if (data2 == null || data2.potKey == null || !data2.potKey.equals(data.potKey)) {
+            return null;
+        }
+
+        if (!RunningProduct.CHARGE_DENSITY.isAvailable(saveDir)) {
+            return null;
+        }
+
+        double distance = distanceOf(data, data2);
+        if (distance < 0.0) {
+            return null;
+        }
+
+        Candidate candidate = new Candidate();
+        candidate.saveDir = saveDir;
+        candidate.data = data2;
+        candidate.distance = distance;
+        return candidate;
+    }
+
+    /*
+     * returns relative difference of lattices plus RMS of displacements, or -1 if not compatible,
+     * where lattices differ more than LATTICE_TOLERANCE or any atom is displaced more than DISPLACEMENT_TOLERANCE.
+     */
+    private static double distanceOf(WarmStartData data1, WarmStartData data2) {
+        if (data1.lattice == null || data2.lattice == null || data1.lattice.length != 3 || data2.lattice.length != 3) {
+            return -1.0;
+        }
+
+        double scale = 0.0;
+        double dLattice = 0.0;
+        for (int i = 0; i < 3; i++) {
+            if (data1.lattice[i] == null || data2.lattice[i] == null || data2.lattice[i].length != 3) {
+                return -1.0;
+            }
+
+            for (int j = 0; j < 3; j++) {
+                scale = Math.max(scale, Math.abs(data1.lattice[i][j]));
+                dLattice = Math.max(dLattice, Math.abs(data1.lattice[i][j] - data2.lattice[i][j]));
+            }
+        }
+
+        if (scale <= 0.0 || (dLattice / scale) > LATTICE_TOLERANCE) {
+            return -1.0;
+        }
+
+        int natom = data1.positions == null ? 0 : data1.positions.length;
+        if (data2.positions == null || data2.positions.length != natom) {
+            return -1.0;
+        }
+
+        double dPosition = 0.0;
+        for (int i = 0; i < natom; i++) {
+            if (data1.positions[i] == null || data2.positions[i] == null || data2.positions[i].length != 3) {
+                return -1.0;
+            }
+
+            double dAtom = 0.0;
+            for (int j = 0; j < 3; j++) {
+                double dx = data1.positions[i][j] - data2.positions[i][j];
+                dPosition += dx * dx;
+                dAtom += dx * dx;
+            }
+
+            if (dAtom > DISPLACEMENT_TOLERANCE * DISPLACEMENT_TOLERANCE) {
+                return -1.0;
+            }
+        }
+
+        if (natom > 0) {
+            dPosition = Math.sqrt(dPosition / natom);
+        }
+
+        return (dLattice / scale) + dPosition;
+    }
+
+    private static WarmStartData createData(QEInput input) {
+        if (input == null) {
+            return null;
+        }
+
+        QENamelist nmlSystem = input.getNamelist(QEInput.NAMELIST_SYSTEM);
+        if (nmlSystem == null) {
+            return null;
+        }
+
+        double[][] lattice = input.getLattice();
+        List<Atom> atoms = input.getAtoms();
+        if (lattice == null || atoms == null) {
+            return null;
+        }
+
+        // the charge density is read on the same FFT grid, with the same atomic species.
+        StringBuilder potKey = new StringBuilder();
+        potKey.append(getKeyValue(nmlSystem, "ecutwfc"));
+        potKey.append(getKeyValue(nmlSystem, "ecutrho"));
+        potKey.append(getKeyValue(nmlSystem, "nspin"));
+        potKey.append(getKeyValue(nmlSystem, "noncolin"));
+        potKey.append(getKeyValue(nmlSystem, "lspinorb"));
+
+        QEAtomicSpecies atomicSpecies = input.getCard(QEAtomicSpecies.class);
+        int numSpecies = atomicSpecies == null ? 0 : atomicSpecies.numSpecies();
+        for (int i = 0; i < numSpecies; i++) {
+            potKey.append(atomicSpecies.getLabel(i)).append(':').append(atomicSpecies.getPseudoName(i)).append(';');
+        }
+
+        double[][] positions = new double[atoms.size()][];
+        for (int i = 0; i < atoms.size(); i++) {
+            Atom atom = atoms.get(i);
+            if (atom == null) {
+                return null;
+            }
+
+            potKey.append(atom.getName()).append(',');
+            positions[i] = new double[] { atom.getX(), atom.getY(), atom.getZ() };
+        }
+
+        // wave functions are read with the same basis set and k-points.
+        StringBuilder wfcKey = new StringBuilder(potKey);
+        wfcKey.append(getKeyValue(nmlSystem, "nbnd"));
+
+        QEKPoints kpoints = input.getCard(QEKPoints.class);
+        if (kpoints != null) {
+            wfcKey.append(kpoints.toString().trim().replaceAll("\\s+", " "));
+        }
+
+        WarmStartData data = new WarmStartData();
+        data.potKey = potKey.toString();
+        data.wfcKey = wfcKey.toString();
+        data.lattice = lattice;
+        data.positions = positions;
+        return data;
+    }
+
+    private static String getKeyValue(QENamelist namelist, String name) {
+        QEValue value = namelist.getValue(name);
+        String strValue = value == null ? "" : value.getCharacterValue();
+        return name + "=" + (strValue == null ? "" : strValue.trim()) + ";";
+    }
+
+    private static WarmStartData readData(File saveDir) {
+        File file = saveDir == null ? null : new File(saveDir, FILE_NAME_DATA);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+
+        Reader reader = null;
+
+        try {
+            reader = new BufferedReader(new FileReader(file));
+            Gson gson = new Gson();
+            return gson.fromJson(reader, WarmStartData.class);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static boolean hasWaveFunctions(File saveDir) {
+        String[] names = saveDir == null ? null : saveDir.list();
+        if (names == null) {
+            return false;
+        }
+
+        for (String name : names) {
+            if (name != null && name.startsWith("wfc")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
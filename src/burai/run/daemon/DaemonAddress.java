@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.SecureRandom;
+
+import burai.com.env.Environments;
+
+import com.google.gson.Gson;
+
+/*
+ * port and token of the running daemon, which are written to a file readable only by the owner.
+ */
+public class DaemonAddress {
+
+    private static final int TOKEN_BYTES = 16;
+
+    protected static DaemonAddress readFile() {
+        String path = Environments.getDaemonPath();
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Reader reader = null;
+        DaemonAddress address = null;
+
+        try {
+            reader = new BufferedReader(new FileReader(file));
+
+            Gson gson = new Gson();
+            address = gson.fromJson(reader, DaemonAddress.class);
+
+        } catch (Exception e) {
+            address = null;
+
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        if (address == null || address.port < 1 || address.token == null) {
+            return null;
+        }
+
+        return address;
+    }
+
+    protected static void writeFile(DaemonAddress address) throws IOException {
+        String path = Environments.getDaemonPath();
+        if (path == null || path.isEmpty()) {
+            throw new IOException("no path of the daemon.");
+        }
+
+        if (address == null) {
+            return;
+        }
+
+        File file = new File(path);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("cannot delete " + path);
+        }
+
+        if (!file.createNewFile()) {
+            throw new IOException("cannot create " + path);
+        }
+
+        file.setReadable(false, false);
+        file.setWritable(false, false);
+        file.setReadable(true, true);
+        file.setWritable(true, true);
+
+        Writer writer = null;
+
+        try {
+            writer = new BufferedWriter(new FileWriter(file));
+
+            Gson gson = new Gson();
+            gson.toJson(address, writer);
+
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    protected static void deleteFile(DaemonAddress address) {
+        DaemonAddress address2 = readFile();
+        if (address2 == null || address == null || !address.token.equals(address2.token)) {
+            // the file of another daemon is kept
+            return;
+        }
+
+        String path = Environments.getDaemonPath();
+        if (path != null && !path.isEmpty()) {
+            new File(path).delete();
+        }
+    }
+
+    private int port;
+
+    private String token;
+
+    protected DaemonAddress(int port) {
+        this.port = port;
+
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b & 0xff));
+        }
+
+        this.token = builder.toString();
+    }
+
+    protected int getPort() {
+        return this.port;
+    }
+
+    protected String getToken() {
+        return this.token;
+    }
+}
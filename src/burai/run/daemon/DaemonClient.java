@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import burai.com.env.Environments;
+
+import com.google.gson.Gson;
+
+/*
+ * a client of the daemon, which is used by GUI and batch mode.
+ */
+public class DaemonClient {
+
+    public static final String PROP_KEY_DAEMON = "job_daemon";
+
+    private static final int CONNECT_TIMEOUT = 3000;
+
+    private static final int READ_TIMEOUT = 30000;
+
+    private static final long START_TIMEOUT = 20000L;
+
+    private static final long START_INTERVAL = 250L;
+
+    private static final String LOG_SUFFIX = ".log";
+
+    /*
+     * true, if jobs of GUI are posted to the daemon.
+     */
+    public static boolean isEnabled() {
+        return Environments.getBoolProperty(PROP_KEY_DAEMON, false);
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Environments.setProperty(PROP_KEY_DAEMON, enabled);
+    }
+
+    /*
+     * returns null, if the daemon is not running.
+     */
+    public static DaemonClient getClient() {
+        DaemonAddress address = DaemonAddress.readFile();
+        if (address == null) {
+            return null;
+        }
+
+        DaemonClient client = new DaemonClient(address);
+        return client.ping() ? client : null;
+    }
+
+    /*
+     * the daemon is started as another process of Java, if not running.
+     */
+    public static DaemonClient startDaemon() {
+        DaemonClient client = getClient();
+        if (client != null) {
+            return client;
+        }
+
+        try {
+            launchDaemon();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        long startTime = System.currentTimeMillis();
+        while ((System.currentTimeMillis() - startTime) < START_TIMEOUT) {
+            try {
+                Thread.sleep(START_INTERVAL);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+
+            client = getClient();
+            if (client != null) {
+                return client;
+            }
+        }
+
+        return null;
+    }
+
+    private static void launchDaemon() throws IOException {
+        String javaName = Environments.isWindows() ? "java.exe" : "java";
+        File javaFile = new File(new File(System.getProperty("java.home"), "bin"), javaName);
+
+        List<String> command = new ArrayList<String>();
+        command.add(javaFile.getPath());
+        command.add("-Djava.awt.headless=true");
+        command.add("-Duser.home=" + System.getProperty("user.home"));
+
+        // JavaFX of Java 11+ is given as modules
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null && !modulePath.trim().isEmpty()) {
+            command.add("--module-path");
+            command.add(modulePath);
+            command.add("--add-modules");
+            command.add("javafx.base,javafx.graphics");
+        }
+
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(DaemonServer.class.getName());
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(Redirect.appendTo(new File(Environments.getDaemonPath() + LOG_SUFFIX)));
+        builder.start();
+    }
+
+    private DaemonAddress address;
+
+    private DaemonClient(DaemonAddress address) {
+        if (address == null) {
+            throw new IllegalArgumentException("address is null.");
+        }
+
+        this.address = address;
+    }
+
+    private DaemonResponse request(DaemonRequest request) throws IOException {
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.address.getPort()), CONNECT_TIMEOUT);
+            socket.setSoTimeout(READ_TIMEOUT);
+
+            Gson gson = new Gson();
+
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            writer.write(gson.toJson(request));
+            writer.write('\n');
+            writer.flush();
+
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("no response of the daemon.");
+            }
+
+            DaemonResponse response = gson.fromJson(line, DaemonResponse.class);
+            if (response == null) {
+                throw new IOException("incorrect response of the daemon.");
+            }
+
+            return response;
+
+        } catch (IOException e1) {
+            throw e1;
+
+        } catch (Exception e2) {
+            throw new IOException(e2);
+
+        } finally {
+            socket.close();
+        }
+    }
+
+    private DaemonResponse request(DaemonCommand command) throws IOException {
+        return this.request(new DaemonRequest(this.address.getToken(), command));
+    }
+
+    public boolean ping() {
+        try {
+            return this.request(DaemonCommand.PING).isSuccess();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+     * returns the job with its ID, or throws IOException with the message of the daemon.
+     */
+    public DaemonJob submit(DaemonJob job) throws IOException {
+        if (job == null) {
+            throw new IllegalArgumentException("job is null.");
+        }
+
+        DaemonRequest request = new DaemonRequest(this.address.getToken(), DaemonCommand.SUBMIT);
+        request.setJob(job);
+
+        DaemonResponse response = this.request(request);
+        if (!response.isSuccess() || response.getJobs().isEmpty()) {
+            throw new IOException(response.getMessage());
+        }
+
+        return response.getJobs().get(0);
+    }
+
+    public DaemonResponse cancel(long id) throws IOException {
+        DaemonRequest request = new DaemonRequest(this.address.getToken(), DaemonCommand.CANCEL);
+        request.setId(id);
+        return this.request(request);
+    }
+
+    /*
+     * the queued job is moved to the index of the queue, where 0 is the first.
+     */
+    public DaemonResponse move(long id, int index) throws IOException {
+        DaemonRequest request = new DaemonRequest(this.address.getToken(), DaemonCommand.MOVE);
+        request.setId(id);
+        request.setIndex(index);
+        return this.request(request);
+    }
+
+    /*
+     * jobs in order of the queue, with cores of the daemon.
+     */
+    public DaemonResponse list() throws IOException {
+        return this.request(DaemonCommand.LIST);
+    }
+
+    public DaemonJob getJob(long id) throws IOException {
+        for (DaemonJob job : this.list().getJobs()) {
+            if (job != null && job.getId() == id) {
+                return job;
+            }
+        }
+
+        return null;
+    }
+
+    /*
+     * running jobs are killed, and will be run again at the next start.
+     */
+    public DaemonResponse shutdown() throws IOException {
+        return this.request(DaemonCommand.SHUTDOWN);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.daemon;
+
+import java.io.File;
+
+import burai.run.RunningType;
+
+/*
+ * a job of the daemon, which is serialized to the journal and to clients by Gson.
+ */
+public class DaemonJob {
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELED = "CANCELED";
+
+    private long id;
+
+    private String path;
+
+    private String type;
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    private int numPools;
+
+    private boolean resume;
+
+    private String status;
+
+    private long submitTime;
+
+    private long startTime;
+
+    private long endTime;
+
+    public DaemonJob(String path, RunningType type) {
+        if (path == null || path.trim().isEmpty()) {
+            throw new IllegalArgumentException("path is empty.");
+        }
+
+        this.id = -1L;
+        this.path = new File(path.trim()).getAbsolutePath();
+        this.type = type == null ? RunningType.SCF.name() : type.name();
+        this.numProcesses = 1;
+        this.numThreads = 1;
+        this.numPools = 1;
+        this.resume = false;
+        this.status = STATUS_QUEUED;
+        this.submitTime = 0L;
+        this.startTime = 0L;
+        this.endTime = 0L;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    protected void setId(long id) {
+        this.id = id;
+    }
+
+    public String getPath() {
+        return this.path;
+    }
+
+    public RunningType getType() {
+        try {
+            return RunningType.valueOf(this.type);
+        } catch (Exception e) {
+            return RunningType.SCF;
+        }
+    }
+
+    public int getNumProcesses() {
+        return this.numProcesses;
+    }
+
+    public void setNumProcesses(int numProcesses) {
+        this.numProcesses = Math.max(1, numProcesses);
+    }
+
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public int getNumPools() {
+        return this.numPools;
+    }
+
+    public void setNumPools(int numPools) {
+        this.numPools = Math.max(1, numPools);
+    }
+
+    public boolean isResume() {
+        return this.resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public String getStatus() {
+        return this.status;
+    }
+
+    protected void setStatus(String status) {
+        this.status = status;
+    }
+
+    public boolean isFinished() {
+        return !(STATUS_QUEUED.equals(this.status) || STATUS_RUNNING.equals(this.status));
+    }
+
+    public long getSubmitTime() {
+        return this.submitTime;
+    }
+
+    protected void setSubmitTime(long submitTime) {
+        this.submitTime = submitTime;
+    }
+
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    protected void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getEndTime() {
+        return this.endTime;
+    }
+
+    protected void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    @Override
+    public String toString() {
+        String name = new File(this.path).getName();
+        return "#" + this.id + " " + name + " [" + this.getType() + ", "
+                + this.numProcesses + " MPI x " + this.numThreads + " OpenMP] " + this.status;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.gson.Gson;
+
+/*
+ * jobs of the daemon, in order of the queue, which are saved at every change.
+ * queued and running jobs are restored, when the daemon is restarted.
+ */
+public class DaemonJournal {
+
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    protected static DaemonJournal readFile(String path) throws IOException {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+
+        Reader reader = null;
+        DaemonJournal journal = null;
+
+        try {
+            File file = new File(path);
+            if (!file.isFile()) {
+                return null;
+            }
+
+            reader = new BufferedReader(new FileReader(file));
+
+            Gson gson = new Gson();
+            journal = gson.fromJson(reader, DaemonJournal.class);
+
+        } catch (FileNotFoundException e1) {
+            throw e1;
+
+        } catch (Exception e2) {
+            throw new IOException(e2);
+
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e3) {
+                    throw e3;
+                }
+            }
+        }
+
+        if (journal != null && journal.jobs == null) {
+            journal.jobs = new ArrayList<DaemonJob>();
+        }
+
+        return journal;
+    }
+
+    protected static void writeFile(String path, DaemonJournal journal) throws IOException {
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+
+        if (journal == null) {
+            return;
+        }
+
+        Writer writer = null;
+
+        // the journal is replaced at once, so that it is not broken when the daemon is killed.
+        File file = new File(path);
+        File tmpFile = new File(path + ".tmp");
+
+        try {
+            writer = new BufferedWriter(new FileWriter(tmpFile));
+
+            Gson gson = new Gson();
+            synchronized (journal) {
+                gson.toJson(journal, writer);
+            }
+
+        } catch (IOException e1) {
+            throw e1;
+
+        } catch (Exception e2) {
+            throw new IOException(e2);
+
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e3) {
+                    throw e3;
+                }
+            }
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            if (!(file.delete() && tmpFile.renameTo(file))) {
+                throw new IOException("cannot write " + path);
+            }
+        }
+    }
+
+    private long nextId;
+
+    private List<DaemonJob> jobs;
+
+    protected DaemonJournal() {
+        this.nextId = 1L;
+        this.jobs = new ArrayList<DaemonJob>();
+    }
+
+    protected synchronized void addJob(DaemonJob job) {
+        if (job == null) {
+            return;
+        }
+
+        job.setId(this.nextId++);
+        this.jobs.add(job);
+        this.pruneJobs();
+    }
+
+    protected synchronized DaemonJob getJob(long id) {
+        for (DaemonJob job : this.jobs) {
+            if (job != null && job.getId() == id) {
+                return job;
+            }
+        }
+
+        return null;
+    }
+
+    protected synchronized List<DaemonJob> listJobs() {
+        return new ArrayList<DaemonJob>(this.jobs);
+    }
+
+    /*
+     * the job is moved to the index among queued jobs.
+     */
+    protected synchronized void moveJob(DaemonJob job, int index) {
+        if (job == null || !this.jobs.remove(job)) {
+            return;
+        }
+
+        int numQueued = 0;
+        for (int i = 0; i < this.jobs.size(); i++) {
+            DaemonJob job2 = this.jobs.get(i);
+            if (job2 != null && DaemonJob.STATUS_QUEUED.equals(job2.getStatus())) {
+                if (numQueued >= index) {
+                    this.jobs.add(i, job);
+                    return;
+                }
+
+                numQueued++;
+            }
+        }
+
+        this.jobs.add(job);
+    }
+
+    private void pruneJobs() {
+        int numFinished = 0;
+        for (DaemonJob job : this.jobs) {
+            if (job != null && job.isFinished()) {
+                numFinished++;
+            }
+        }
+
+        Iterator<DaemonJob> iterator = this.jobs.iterator();
+        while (iterator.hasNext() && numFinished > MAX_FINISHED_JOBS) {
+            DaemonJob job = iterator.next();
+            if (job == null || job.isFinished()) {
+                iterator.remove();
+                numFinished--;
+            }
+        }
+    }
+}
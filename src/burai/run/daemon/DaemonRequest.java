@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.daemon;
+
+/*
+ * a request from a client, which is a line of JSON.
+ */
+public class DaemonRequest {
+
+    private String token;
+
+    private DaemonCommand command;
+
+    private DaemonJob job;
+
+    private long id;
+
+    private int index;
+
+    protected DaemonRequest(String token, DaemonCommand command) {
+        this.token = token;
+        this.command = command;
+        this.job = null;
+        this.id = -1L;
+        this.index = -1;
+    }
+
+    protected String getToken() {
+        return this.token;
+    }
+
+    protected DaemonCommand getCommand() {
+        return this.command;
+    }
+
+    protected DaemonJob getJob() {
+        return this.job;
+    }
+
+    protected void setJob(DaemonJob job) {
+        this.job = job;
+    }
+
+    protected long getId() {
+        return this.id;
+    }
+
+    protected void setId(long id) {
+        this.id = id;
+    }
+
+    protected int getIndex() {
+        return this.index;
+    }
+
+    protected void setIndex(int index) {
+        this.index = index;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.daemon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * a response of the daemon, which is a line of JSON.
+ */
+public class DaemonResponse {
+
+    private boolean success;
+
+    private String message;
+
+    private List<DaemonJob> jobs;
+
+    private int numCores;
+
+    private int numUsedCores;
+
+    protected DaemonResponse(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+        this.jobs = null;
+        this.numCores = 0;
+        this.numUsedCores = 0;
+    }
+
+    public boolean isSuccess() {
+        return this.success;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    public List<DaemonJob> getJobs() {
+        return this.jobs == null ? new ArrayList<DaemonJob>() : this.jobs;
+    }
+
+    protected void setJobs(List<DaemonJob> jobs) {
+        this.jobs = jobs;
+    }
+
+    /*
+     * cores of the daemon, which are shared by all clients.
+     */
+    public int getNumCores() {
+        return this.numCores;
+    }
+
+    public int getNumUsedCores() {
+        return this.numUsedCores;
+    }
+
+    protected void setCores(int numCores, int numUsedCores) {
+        this.numCores = numCores;
+        this.numUsedCores = numUsedCores;
+    }
+}
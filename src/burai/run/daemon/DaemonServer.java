@@ -0,0 +1,536 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import burai.com.env.Environments;
+import burai.com.life.Life;
+import burai.project.Project;
+import burai.run.RunningManager;
+import burai.run.RunningManagerListener;
+import burai.run.RunningNode;
+import burai.run.RunningStatus;
+
+import com.google.gson.Gson;
+
+/*
+ * the daemon, which runs jobs by its own RunningManager without JavaFX.
+ * Clients (GUI or batch mode) connect through a socket of the loopback address,
+ * so that jobs survive restarts of GUI and all clients share the same cores.
+ */
+public class DaemonServer implements RunningManagerListener {
+
+    private static final int SOCKET_TIMEOUT = 30000;
+
+    public static void main(String[] args) {
+        Environments.setHeadless(true);
+        Locale.setDefault(Locale.ENGLISH);
+
+        DaemonServer server = new DaemonServer();
+        if (!server.start()) {
+            System.err.println("ERROR: the daemon is already running, or cannot be started.");
+            System.exit(1);
+            return;
+        }
+
+        server.waitToEnd();
+
+        Life.getInstance().toBeDead();
+        System.exit(0);
+    }
+
+    private boolean alive;
+
+    private String journalPath;
+
+    private DaemonJournal journal;
+
+    private RandomAccessFile lockFile;
+
+    private FileLock lock;
+
+    private ServerSocket serverSocket;
+
+    private DaemonAddress address;
+
+    private Map<Long, RunningNode> nodes;
+
+    private Set<Long> canceledIds;
+
+    public DaemonServer() {
+        this.alive = false;
+        this.journalPath = Environments.getJournalPath();
+        this.journal = null;
+        this.lockFile = null;
+        this.lock = null;
+        this.serverSocket = null;
+        this.address = null;
+        this.nodes = new HashMap<Long, RunningNode>();
+        this.canceledIds = new HashSet<Long>();
+    }
+
+    public boolean start() {
+        try {
+            // only one daemon can own the journal
+            this.lockFile = new RandomAccessFile(this.journalPath + ".lock", "rw");
+            this.lock = this.lockFile.getChannel().tryLock();
+            if (this.lock == null) {
+                this.lockFile.close();
+                return false;
+            }
+
+            this.journal = this.readJournal();
+
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.address = new DaemonAddress(this.serverSocket.getLocalPort());
+            DaemonAddress.writeFile(this.address);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            this.release();
+            return false;
+        }
+
+        synchronized (this) {
+            this.alive = true;
+        }
+
+        RunningManager.getInstance().addListener(this);
+
+        this.restoreJobs();
+
+        Thread thread = new Thread(() -> this.acceptClients());
+        thread.start();
+
+        System.out.println("the daemon is listening on port " + this.address.getPort());
+        return true;
+    }
+
+    private DaemonJournal readJournal() {
+        DaemonJournal journal = null;
+
+        try {
+            journal = DaemonJournal.readFile(this.journalPath);
+
+        } catch (IOException e) {
+            // a broken journal is kept aside, and the daemon starts with no jobs.
+            e.printStackTrace();
+
+            File file = new File(this.journalPath);
+            File brokenFile = new File(this.journalPath + ".broken");
+            if (brokenFile.exists()) {
+                brokenFile.delete();
+            }
+
+            if (file.renameTo(brokenFile)) {
+                System.err.println("ERROR: the journal is broken, and moved to " + brokenFile.getPath());
+            } else {
+                System.err.println("ERROR: the journal is broken: " + file.getPath());
+            }
+
+            journal = null;
+        }
+
+        return journal == null ? new DaemonJournal() : journal;
+    }
+
+    private synchronized boolean isAlive() {
+        return this.alive;
+    }
+
+    public void stop() {
+        synchronized (this) {
+            if (!this.alive) {
+                return;
+            }
+
+            // statuses of running jobs are kept in the journal, to be restored at the next start.
+            this.alive = false;
+            this.notifyAll();
+        }
+
+        this.release();
+    }
+
+    private void release() {
+        if (this.address != null) {
+            DaemonAddress.deleteFile(this.address);
+        }
+
+        try {
+            if (this.serverSocket != null) {
+                this.serverSocket.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        try {
+            if (this.lock != null) {
+                this.lock.release();
+            }
+            if (this.lockFile != null) {
+                this.lockFile.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void waitToEnd() {
+        while (this.alive) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void saveJournal() {
+        try {
+            DaemonJournal.writeFile(this.journalPath, this.journal);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * jobs which were queued or running, when the last daemon stopped, are queued again in the same order.
+     */
+    private void restoreJobs() {
+        List<DaemonJob> jobs = new ArrayList<DaemonJob>();
+        for (DaemonJob job : this.journal.listJobs()) {
+            if (job != null && DaemonJob.STATUS_RUNNING.equals(job.getStatus())) {
+                jobs.add(job);
+            }
+        }
+
+        for (DaemonJob job : this.journal.listJobs()) {
+            if (job != null && DaemonJob.STATUS_QUEUED.equals(job.getStatus())) {
+                jobs.add(job);
+            }
+        }
+
+        for (DaemonJob job : jobs) {
+            synchronized (this.journal) {
+                // an interrupted optimization or MD is resumed
+                if (DaemonJob.STATUS_RUNNING.equals(job.getStatus())) {
+                    job.setResume(true);
+                }
+
+                job.setStatus(DaemonJob.STATUS_QUEUED);
+                job.setStartTime(0L);
+            }
+
+            if (!this.queueJob(job)) {
+                this.finishJob(job, DaemonJob.STATUS_FAILED);
+            }
+        }
+
+        this.saveJournal();
+    }
+
+    private boolean queueJob(DaemonJob job) {
+        Project project = null;
+        try {
+            project = Project.getInstance(job.getPath());
+        } catch (Exception e) {
+            e.printStackTrace();
+            project = null;
+        }
+
+        if (project == null || !project.isValid() || project.getDirectoryPath() == null) {
+            return false;
+        }
+
+        RunningNode node = new RunningNode(project);
+        node.setType(job.getType());
+        node.setNumProcesses(job.getNumProcesses());
+        node.setNumThreads(job.getNumThreads());
+        node.setNumPools(job.getNumPools());
+        node.setResume(job.isResume());
+
+        node.addOnStatusChanged(status -> {
+            if (status == RunningStatus.RUNNING) {
+                synchronized (this.journal) {
+                    job.setStatus(DaemonJob.STATUS_RUNNING);
+                    job.setStartTime(System.currentTimeMillis());
+                }
+
+                this.saveJournal();
+            }
+        });
+
+        synchronized (this) {
+            this.nodes.put(job.getId(), node);
+        }
+
+        if (!RunningManager.getInstance().addNode(node)) {
+            synchronized (this) {
+                this.nodes.remove(job.getId());
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private void finishJob(DaemonJob job, String status) {
+        synchronized (this.journal) {
+            job.setStatus(status);
+            job.setEndTime(System.currentTimeMillis());
+        }
+
+        this.saveJournal();
+    }
+
+    @Override
+    public void onNodeAdded(RunningNode node) {
+        // NOP
+    }
+
+    @Override
+    public void onNodeRemoved(RunningNode node) {
+        long id = -1L;
+        boolean canceled = false;
+
+        synchronized (this) {
+            if (!this.alive) {
+                // stopped by shutdown of the daemon
+                return;
+            }
+
+            for (Map.Entry<Long, RunningNode> entry : this.nodes.entrySet()) {
+                if (entry.getValue() == node) {
+                    id = entry.getKey();
+                    break;
+                }
+            }
+
+            if (id < 0L) {
+                return;
+            }
+
+            this.nodes.remove(id);
+            canceled = this.canceledIds.remove(id);
+        }
+
+        DaemonJob job = this.journal.getJob(id);
+        if (job == null) {
+            return;
+        }
+
+        String status = null;
+        if (canceled) {
+            status = DaemonJob.STATUS_CANCELED;
+        } else if (node.getStatus() == RunningStatus.DONE && !node.isFailed()) {
+            status = DaemonJob.STATUS_DONE;
+        } else {
+            status = DaemonJob.STATUS_FAILED;
+        }
+
+        // RunningManager is locked, while listeners are called.
+        String status_ = status;
+        Thread thread = new Thread(() -> this.finishJob(job, status_));
+        thread.start();
+    }
+
+    private void acceptClients() {
+        while (this.isAlive()) {
+            Socket socket = null;
+            try {
+                socket = this.serverSocket.accept();
+            } catch (IOException e) {
+                if (this.isAlive()) {
+                    e.printStackTrace();
+                }
+
+                continue;
+            }
+
+            Socket socket_ = socket;
+            Thread thread = new Thread(() -> this.serveClient(socket_));
+            thread.start();
+        }
+    }
+
+    private void serveClient(Socket socket) {
+        boolean toShutdown = false;
+
+        try {
+            socket.setSoTimeout(SOCKET_TIMEOUT);
+
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+            Gson gson = new Gson();
+            DaemonRequest request = null;
+            try {
+                request = gson.fromJson(reader.readLine(), DaemonRequest.class);
+            } catch (Exception e) {
+                request = null;
+            }
+
+            DaemonResponse response = null;
+            if (request == null || request.getCommand() == null) {
+                response = new DaemonResponse(false, "incorrect request.");
+
+            } else if (!this.address.getToken().equals(request.getToken())) {
+                response = new DaemonResponse(false, "not authorized.");
+
+            } else {
+                response = this.serveRequest(request);
+                toShutdown = request.getCommand() == DaemonCommand.SHUTDOWN;
+            }
+
+            RunningManager manager = RunningManager.getInstance();
+            response.setCores(manager.getNumCores(), manager.getNumUsedCores());
+
+            synchronized (this.journal) {
+                writer.write(gson.toJson(response));
+            }
+
+            writer.write('\n');
+            writer.flush();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (toShutdown) {
+            this.stop();
+        }
+    }
+
+    private DaemonResponse serveRequest(DaemonRequest request) {
+        switch (request.getCommand()) {
+        case PING:
+            return new DaemonResponse(true, null);
+
+        case SUBMIT:
+            return this.submitJob(request.getJob());
+
+        case CANCEL:
+            return this.cancelJob(request.getId());
+
+        case MOVE:
+            return this.moveJob(request.getId(), request.getIndex());
+
+        case LIST:
+            DaemonResponse response = new DaemonResponse(true, null);
+            response.setJobs(this.journal.listJobs());
+            return response;
+
+        case SHUTDOWN:
+            return new DaemonResponse(true, "the daemon is stopping.");
+
+        default:
+            return new DaemonResponse(false, "unknown command.");
+        }
+    }
+
+    private DaemonResponse submitJob(DaemonJob job) {
+        if (job == null || job.getPath() == null || !(new File(job.getPath()).isDirectory())) {
+            return new DaemonResponse(false, "no project directory.");
+        }
+
+        synchronized (this.journal) {
+            job.setStatus(DaemonJob.STATUS_QUEUED);
+            job.setSubmitTime(System.currentTimeMillis());
+            job.setStartTime(0L);
+            job.setEndTime(0L);
+            this.journal.addJob(job);
+        }
+
+        this.saveJournal();
+
+        if (!this.queueJob(job)) {
+            this.finishJob(job, DaemonJob.STATUS_FAILED);
+            return new DaemonResponse(false, "cannot open the project: " + job.getPath());
+        }
+
+        DaemonResponse response = new DaemonResponse(true, null);
+        List<DaemonJob> jobs = new ArrayList<DaemonJob>();
+        jobs.add(job);
+        response.setJobs(jobs);
+        return response;
+    }
+
+    private DaemonResponse cancelJob(long id) {
+        RunningNode node = null;
+        synchronized (this) {
+            node = this.nodes.get(id);
+            if (node != null) {
+                this.canceledIds.add(id);
+            }
+        }
+
+        // RunningManager is called out of the lock, because it calls this as a listener in its lock.
+        if (node == null || !RunningManager.getInstance().removeNode(node)) {
+            return new DaemonResponse(false, "job #" + id + " is not queued or running.");
+        }
+
+        return new DaemonResponse(true, null);
+    }
+
+    private DaemonResponse moveJob(long id, int index) {
+        RunningNode node = null;
+        synchronized (this) {
+            node = this.nodes.get(id);
+        }
+
+        DaemonJob job = this.journal.getJob(id);
+        if (node == null || job == null || !RunningManager.getInstance().moveNode(node, index)) {
+            return new DaemonResponse(false, "job #" + id + " is not queued.");
+        }
+
+        this.journal.moveJob(job, index);
+        this.saveJournal();
+        return new DaemonResponse(true, null);
+    }
+}
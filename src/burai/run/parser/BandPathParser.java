@@ -16,10 +16,7 @@
 
 package burai.run.parser;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
 import burai.project.property.ProjectBandPaths;
@@ -29,39 +26,51 @@ public class BandPathParser extends LogParser {
 
     private ProjectBandPaths bandPaths;
 
+    private long offset;
+
+    private boolean modified;
+
     public BandPathParser(ProjectProperty property) {
         super(property);
 
         this.bandPaths = this.property.getBandPaths();
+        this.offset = 0L;
+        this.modified = false;
     }
 
     @Override
-    public void parse(File file) throws IOException {
+    protected void resetParsing() {
+        this.offset = 0L;
+        this.modified = true;
+
         if (this.bandPaths != null) {
             this.bandPaths.clearBandPaths();
         }
+    }
+
+    @Override
+    protected void parseAppended(File file) throws IOException {
+        if (file.length() < this.offset) {
+            this.resetParsing();
+        }
 
         try {
             this.parseKernel(file);
 
         } catch (IOException e) {
-            if (this.bandPaths != null) {
-                this.bandPaths.clearBandPaths();
-            }
+            this.resetParsing();
             throw e;
 
         } finally {
-            this.property.saveBandPaths();
+            if (this.modified) {
+                this.modified = false;
+                this.property.saveBandPaths();
+            }
         }
     }
 
     private void parseKernel(File file) throws IOException {
-
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(new FileReader(file));
-
+        try (LogReader reader = new LogReader(file, this.offset)) {
             String line = null;
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
@@ -114,26 +123,14 @@ public class BandPathParser extends LogParser {
                     double coord = Double.parseDouble(strCoord);
                     if (this.bandPaths != null) {
                         this.bandPaths.addPoint(kx, ky, kz, coord);
+                        this.modified = true;
                     }
                 } catch (NumberFormatException e) {
                     // NOP
                 }
             }
 
-        } catch (FileNotFoundException e1) {
-            throw e1;
-
-        } catch (IOException e2) {
-            throw e2;
-
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e3) {
-                    throw e3;
-                }
-            }
+            this.offset = reader.getOffset();
         }
     }
 }
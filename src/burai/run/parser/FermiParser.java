@@ -16,10 +16,7 @@
 
 package burai.run.parser;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
 import burai.project.property.ProjectEnergies;
@@ -29,39 +26,51 @@ public class FermiParser extends LogParser {
 
     private ProjectEnergies fermiEnergies;
 
+    private long offset;
+
+    private boolean modified;
+
     public FermiParser(ProjectProperty property) {
         super(property);
 
         this.fermiEnergies = this.property.getFermiEnergies();
+        this.offset = 0L;
+        this.modified = false;
     }
 
     @Override
-    public void parse(File file) throws IOException {
+    protected void resetParsing() {
+        this.offset = 0L;
+        this.modified = true;
+
         if (this.fermiEnergies != null) {
             this.fermiEnergies.clearEnergies();
         }
+    }
+
+    @Override
+    protected void parseAppended(File file) throws IOException {
+        if (file.length() < this.offset) {
+            this.resetParsing();
+        }
 
         try {
             this.parseKernel(file);
 
         } catch (IOException e) {
-            if (this.fermiEnergies != null) {
-                this.fermiEnergies.clearEnergies();
-            }
+            this.resetParsing();
             throw e;
 
         } finally {
-            this.property.saveFermiEnergies();
+            if (this.modified) {
+                this.modified = false;
+                this.property.saveFermiEnergies();
+            }
         }
     }
 
     private void parseKernel(File file) throws IOException {
-
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(new FileReader(file));
-
+        try (LogReader reader = new LogReader(file, this.offset)) {
             String line = null;
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
@@ -99,6 +108,7 @@ public class FermiParser extends LogParser {
                         double fermi = Double.parseDouble(strFermi);
                         if (this.fermiEnergies != null) {
                             this.fermiEnergies.addEnergy(fermi);
+                            this.modified = true;
                         }
                     } catch (NumberFormatException e) {
                         // NOP
@@ -106,20 +116,7 @@ public class FermiParser extends LogParser {
                 }
             }
 
-        } catch (FileNotFoundException e1) {
-            throw e1;
-
-        } catch (IOException e2) {
-            throw e2;
-
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e3) {
-                    throw e3;
-                }
-            }
+            this.offset = reader.getOffset();
         }
     }
 }
@@ -16,10 +16,7 @@
 
 package burai.run.parser;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.LinkedList;
 
@@ -37,6 +34,28 @@ public class GeometryParser extends LogParser {
 
     private ProjectGeometryList geometryList;
 
+    /*
+     * the log is parsed again from the offset of the last complete geometry,
+     * which is kept as a copy, because the next step of the log modifies it.
+     */
+    private long offset;
+
+    private long length;
+
+    private boolean modified;
+
+    private int numAtoms;
+
+    private double alat;
+
+    private int iter;
+
+    private int numCommitted;
+
+    private ProjectGeometry lastGeometry;
+
+    private double firstTime;
+
     public GeometryParser(ProjectProperty property, boolean mdMode) {
         super(property);
 
@@ -49,6 +68,20 @@ public class GeometryParser extends LogParser {
         } else {
             this.geometryList = this.property.getOptList();
         }
+
+        this.initialize();
+        this.modified = false;
+    }
+
+    private void initialize() {
+        this.offset = 0L;
+        this.length = -1L;
+        this.numAtoms = -1;
+        this.alat = -1.0;
+        this.iter = 1;
+        this.numCommitted = 0;
+        this.lastGeometry = null;
+        this.firstTime = 0.0;
     }
 
     public void setCellAxis(String cellAxis) {
@@ -64,97 +97,127 @@ public class GeometryParser extends LogParser {
     }
 
     @Override
-    public void parse(File file) throws IOException {
-        this.scfParser.parse(file);
-        this.parseGeometry(file);
+    protected void resetParsing() {
+        this.scfParser.resetParsing();
+        this.resetGeometries();
     }
 
-    private void parseGeometry(File file) throws IOException {
+    private void resetGeometries() {
+        this.initialize();
+        this.modified = true;
+
         if (this.geometryList != null) {
             this.geometryList.clearGeometries();
         }
+    }
+
+    @Override
+    protected void parseAppended(File file) throws IOException {
+        this.scfParser.parseAppended(file);
+        this.parseGeometry(file);
+    }
+
+    private void parseGeometry(File file) throws IOException {
+        long length = file.length();
+        if (length < this.offset) {
+            this.resetGeometries();
+        }
+
+        if (length == this.length && (!this.modified)) {
+            return;
+        }
 
         try {
             this.parseGeometryKernel(file);
+            this.length = length;
+            this.modified = true;
 
         } catch (IOException e) {
-            if (this.geometryList != null) {
-                this.geometryList.clearGeometries();
-            }
+            this.resetGeometries();
             throw e;
 
         } finally {
-            if (this.mdMode) {
-                this.property.saveMdList();
-            } else {
-                this.property.saveOptList();
+            if (this.modified) {
+                this.modified = false;
+
+                if (this.mdMode) {
+                    this.property.saveMdList();
+                } else {
+                    this.property.saveOptList();
+                }
             }
         }
     }
 
     private void parseGeometryKernel(File file) throws IOException {
+        if (this.geometryList == null) {
+            return;
+        }
 
-        BufferedReader reader = null;
+        try (LogReader reader = new LogReader(file, this.offset)) {
+            if (this.lastGeometry == null) {
+                int numAtoms = this.getNumAtoms(reader);
+                if (numAtoms < 1) {
+                    return;
+                }
 
-        try {
-            reader = new BufferedReader(new FileReader(file));
+                double alat = this.getAlat(reader);
+                if (alat <= 0.0) {
+                    return;
+                }
 
-            int numAtoms = this.getNumAtoms(reader);
-            if (numAtoms < 1) {
-                return;
-            }
+                ProjectGeometry geometry = this.getFirstGeometry(reader, alat, numAtoms);
+                if (geometry == null) {
+                    return;
+                }
 
-            double alat = this.getAlat(reader);
-            if (alat <= 0.0) {
-                return;
+                this.numAtoms = numAtoms;
+                this.alat = alat;
+                this.lastGeometry = geometry;
+                this.offset = reader.getOffset();
             }
 
-            ProjectGeometry geometry = this.getFirstGeometry(reader, alat, numAtoms);
-            if (geometry == null) {
-                return;
-            }
+            int numResumed = this.geometryList.numResumedGeometries();
+            int numStart = this.numCommitted;
 
-            if (this.geometryList != null) {
-                this.geometryList.addGeometry(geometry);
-            }
+            // geometries after the last complete one are parsed again
+            this.geometryList.truncateGeometries(numResumed + this.numCommitted);
+            ProjectGeometry geometry = this.lastGeometry.copyGeometry();
+            this.geometryList.addGeometry(geometry);
 
-            for (int iter = 1; true; iter++) {
+            for (int iter = this.iter; true; iter++) {
                 boolean[] converged = { false };
-                geometry = this.getGeometry(reader, iter, alat, numAtoms, geometry, converged);
+                geometry = this.getGeometry(reader, iter, this.alat, this.numAtoms, geometry, converged);
 
                 if (converged[0]) {
-                    if (this.geometryList != null) {
-                        this.geometryList.setConverged(true);
-                    }
+                    this.geometryList.setConverged(true);
                 }
 
                 if (geometry == null) {
                     break;
                 }
 
-                if (this.geometryList != null) {
-                    this.geometryList.addGeometry(geometry);
+                this.geometryList.addGeometry(geometry);
+
+                if (!reader.isEnded()) {
+                    this.iter = iter + 1;
+                    this.numCommitted++;
+                    this.lastGeometry = geometry.copyGeometry();
+                    this.offset = reader.getOffset();
                 }
             }
 
-        } catch (FileNotFoundException e1) {
-            throw e1;
-
-        } catch (IOException e2) {
-            throw e2;
-
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e3) {
-                    throw e3;
+            if (numResumed > 0) {
+                if (numStart < 1) {
+                    this.firstTime = this.geometryList.getGeometry(numResumed).getTime();
                 }
+
+                this.geometryList.alignResumedTimes(this.firstTime, numResumed + numStart);
             }
         }
     }
 
-    private int getNumAtoms(BufferedReader reader) throws IOException {
+    private int getNumAtoms(LogReader reader) throws IOException {
         if (reader == null) {
             return -1;
         }
@@ -186,7 +249,7 @@ public class GeometryParser extends LogParser {
         return numAtoms;
     }
 
-    private double getAlat(BufferedReader reader) throws IOException {
+    private double getAlat(LogReader reader) throws IOException {
         if (reader == null) {
             return -1.0;
         }
@@ -218,7 +281,7 @@ public class GeometryParser extends LogParser {
         return alat;
     }
 
-    private ProjectGeometry getFirstGeometry(BufferedReader reader, double alat, int numAtoms) throws IOException {
+    private ProjectGeometry getFirstGeometry(LogReader reader, double alat, int numAtoms) throws IOException {
         if (reader == null) {
             return null;
         }
@@ -346,7 +409,7 @@ public class GeometryParser extends LogParser {
         return geometry;
     }
 
-    private ProjectGeometry getGeometry(BufferedReader reader, int iter,
+    private ProjectGeometry getGeometry(LogReader reader, int iter,
             double alat, int numAtoms, ProjectGeometry prevGeometry, boolean[] converged) throws IOException {
 
         if (reader == null) {
@@ -369,10 +432,21 @@ public class GeometryParser extends LogParser {
          */
         double energy = 0.0;
         boolean hasEnergy = false;
+        double cpuTime = -1.0;
 
         while ((line = reader.readLine()) != null) {
             line = line.trim();
-            if ((!line.isEmpty()) && line.charAt(0) == '!' && line.indexOf("total energy") > -1) {
+            if (line.startsWith("total cpu time spent up to now is")) {
+                String[] subLines = line.split("\\s+");
+                if (subLines != null && subLines.length > 8) {
+                    try {
+                        cpuTime = Double.parseDouble(subLines[8]);
+                    } catch (NumberFormatException e) {
+                        cpuTime = -1.0;
+                    }
+                }
+
+            } else if ((!line.isEmpty()) && line.charAt(0) == '!' && line.indexOf("total energy") > -1) {
                 String strErg = null;
                 String[] subLines = line.split("\\s+");
                 if (subLines != null && subLines.length > 4) {
@@ -397,6 +471,7 @@ public class GeometryParser extends LogParser {
         }
 
         prevGeometry.setEnergy(energy);
+        prevGeometry.setCpuTime(cpuTime);
 
         /*
          * read forces
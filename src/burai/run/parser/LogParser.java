@@ -19,16 +19,20 @@ package burai.run.parser;
 import java.io.File;
 import java.io.IOException;
 
+import burai.com.file.FileChanged;
+import burai.com.file.FileWatcher;
 import burai.project.property.ProjectProperty;
 
 public abstract class LogParser {
 
-    private static final long SLEEP_TIME = 5000L;
+    private static final long STREAM_TIME = 500L;
 
     private boolean parsing;
 
     private boolean ending;
 
+    private boolean updated;
+
     protected ProjectProperty property;
 
     public LogParser(ProjectProperty property) {
@@ -38,12 +42,33 @@ public abstract class LogParser {
 
         this.parsing = false;
         this.ending = false;
+        this.updated = false;
         this.property = property;
     }
 
-    public abstract void parse(File file) throws IOException;
+    /*
+     * parses the log from its beginning.
+     */
+    public void parse(File file) throws IOException {
+        this.resetParsing();
+        this.parseAppended(file);
+    }
+
+    /*
+     * clears states of the parser, to parse the log from its beginning.
+     */
+    protected abstract void resetParsing();
+
+    /*
+     * parses only lines appended after the last call, keeping states of the parser.
+     */
+    protected abstract void parseAppended(File file) throws IOException;
 
     public void startParsing(File file) {
+        this.startParsing(file, false);
+    }
+
+    public void startParsing(File file, boolean streaming) {
         if (file == null) {
             return;
         }
@@ -51,9 +76,30 @@ public abstract class LogParser {
         synchronized (this) {
             this.parsing = true;
             this.ending = false;
+            this.updated = false;
         }
 
+        this.resetParsing();
+
+        FileChanged fileChanged = null;
+        if (!streaming) {
+            fileChanged = changedFile -> this.notifyUpdated();
+            FileWatcher.getInstance().addListener(file, fileChanged);
+        }
+
+        FileChanged fileChanged_ = fileChanged;
+
         Thread thread = new Thread(() -> {
+            long lastTime = 0L;
+
+            if (streaming) {
+                try {
+                    this.waitForUpdate(lastTime);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+
             while (true) {
                 synchronized (this) {
                     if (!this.parsing) {
@@ -62,26 +108,32 @@ public abstract class LogParser {
                 }
 
                 try {
-                    this.parse(file);
+                    this.parseAppended(file);
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
 
+                lastTime = System.currentTimeMillis();
+
                 synchronized (this) {
                     if (!this.parsing) {
                         break;
                     }
 
                     try {
-                        this.wait(SLEEP_TIME);
+                        this.waitForUpdate(lastTime);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
                 }
             }
 
+            if (fileChanged_ != null) {
+                FileWatcher.getInstance().removeListener(fileChanged_);
+            }
+
             try {
-                this.parse(file);
+                this.parseAppended(file);
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -95,6 +147,29 @@ public abstract class LogParser {
         thread.start();
     }
 
+    private synchronized void waitForUpdate(long lastTime) throws InterruptedException {
+        while (this.parsing) {
+            if (this.updated) {
+                long restTime = lastTime + STREAM_TIME - System.currentTimeMillis();
+                if (restTime <= 0L) {
+                    break;
+                }
+
+                this.wait(restTime);
+
+            } else {
+                this.wait();
+            }
+        }
+
+        this.updated = false;
+    }
+
+    public synchronized void notifyUpdated() {
+        this.updated = true;
+        this.notifyAll();
+    }
+
     public void endParsing() {
         synchronized (this) {
             if (!this.parsing) {
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/*
+ * reads complete lines of a log from a byte offset.
+ * a last line without '\n' is not returned, since it may be still written.
+ */
+class LogReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private RandomAccessFile file;
+
+    private byte[] buffer;
+    private int bufferSize;
+    private int bufferPos;
+
+    private long offset;
+
+    private boolean ended;
+
+    private ByteArrayOutputStream lineBytes;
+
+    public LogReader(File file, long offset) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null.");
+        }
+
+        this.file = new RandomAccessFile(file, "r");
+        this.file.seek(Math.max(0L, offset));
+
+        this.buffer = new byte[BUFFER_SIZE];
+        this.bufferSize = 0;
+        this.bufferPos = 0;
+        this.offset = Math.max(0L, offset);
+        this.ended = false;
+        this.lineBytes = new ByteArrayOutputStream();
+    }
+
+    /*
+     * the offset after the last line returned.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /*
+     * readLine has reached the end of written lines.
+     */
+    public boolean isEnded() {
+        return this.ended;
+    }
+
+    public String readLine() throws IOException {
+        if (this.ended) {
+            return null;
+        }
+
+        this.lineBytes.reset();
+
+        while (true) {
+            if (this.bufferPos >= this.bufferSize) {
+                this.bufferSize = this.file.read(this.buffer, 0, this.buffer.length);
+                this.bufferPos = 0;
+                if (this.bufferSize <= 0) {
+                    this.bufferSize = 0;
+                    this.ended = true;
+                    return null;
+                }
+            }
+
+            int start = this.bufferPos;
+            while (this.bufferPos < this.bufferSize && this.buffer[this.bufferPos] != '\n') {
+                this.bufferPos++;
+            }
+
+            this.lineBytes.write(this.buffer, start, this.bufferPos - start);
+
+            if (this.bufferPos < this.bufferSize) {
+                this.bufferPos++;
+                this.offset += this.lineBytes.size() + 1;
+
+                String line = this.lineBytes.toString();
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line = line.substring(0, length - 1);
+                }
+
+                return line;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.run.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class LogStreamer {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private InputStream inputStream;
+
+    private File logFile;
+
+    private LogParser parser;
+
+    private boolean streaming;
+
+    public LogStreamer(InputStream inputStream, File logFile, LogParser parser) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("inputStream is null.");
+        }
+
+        if (logFile == null) {
+            throw new IllegalArgumentException("logFile is null.");
+        }
+
+        this.inputStream = inputStream;
+        this.logFile = logFile;
+        this.parser = parser;
+        this.streaming = false;
+    }
+
+    public void startStreaming() {
+        synchronized (this) {
+            if (this.streaming) {
+                return;
+            }
+
+            this.streaming = true;
+        }
+
+        Thread thread = new Thread(() -> {
+            try {
+                this.streamKernel();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            synchronized (this) {
+                this.streaming = false;
+                this.notifyAll();
+            }
+
+            if (this.parser != null) {
+                this.parser.notifyUpdated();
+            }
+        });
+
+        thread.start();
+    }
+
+    public synchronized void waitToEnd() {
+        while (this.streaming) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void streamKernel() throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        FileOutputStream outputStream = null;
+
+        try {
+            outputStream = new FileOutputStream(this.logFile);
+            FileChannel channel = outputStream.getChannel();
+
+            int size = 0;
+            while ((size = this.inputStream.read(bytes, buffer.position(), buffer.remaining())) >= 0) {
+                int start = buffer.position();
+                buffer.position(start + size);
+
+                boolean hasLine = false;
+                for (int i = start; i < (start + size); i++) {
+                    if (bytes[i] == '\n') {
+                        hasLine = true;
+                        break;
+                    }
+                }
+
+                if ((!hasLine) && buffer.hasRemaining() && this.inputStream.available() > 0) {
+                    continue;
+                }
+
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+
+                if (hasLine && this.parser != null) {
+                    this.parser.notifyUpdated();
+                }
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+        } finally {
+            if (outputStream != null) {
+                outputStream.close();
+            }
+
+            this.inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/*
+ * final values of a log of pw.x
+ */
+public class LogSummary {
+
+    private double energy;
+
+    private double wallTime;
+
+    private double memory;
+
+    private int numIterations;
+
+    public LogSummary() {
+        this.energy = Double.NaN;
+        this.wallTime = Double.NaN;
+        this.memory = Double.NaN;
+        this.numIterations = 0;
+    }
+
+    public double getEnergy() {
+        return this.energy;
+    }
+
+    public double getWallTime() {
+        return this.wallTime;
+    }
+
+    public double getMemory() {
+        return this.memory;
+    }
+
+    /*
+     * number of SCF iterations, summed over ionic steps
+     */
+    public int getNumIterations() {
+        return this.numIterations;
+    }
+
+    public void read(File file) throws IOException {
+        double maxMemory = Double.NaN;
+
+        BufferedReader reader = null;
+
+        try {
+            reader = new BufferedReader(new FileReader(file));
+
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                String line2 = line.trim();
+                if (line2.isEmpty()) {
+                    continue;
+                }
+
+                double value = 0.0;
+
+                if (line2.startsWith("iteration #")) {
+                    this.numIterations++;
+
+                } else if (line2.startsWith("!") && line2.contains("total energy")) {
+                    // the last one is final, also for relax and MD
+                    value = this.getValueBefore(line2, "Ry");
+                    if (!Double.isNaN(value)) {
+                        this.energy = value;
+                    }
+
+                } else if (line2.startsWith("Estimated total") && line2.contains("dynamical RAM")) {
+                    value = this.getMemory(line2);
+                    if (!Double.isNaN(value)) {
+                        this.memory = value;
+                    }
+
+                } else if (line2.startsWith("Estimated max dynamical RAM")) {
+                    value = this.getMemory(line2);
+                    if (!Double.isNaN(value)) {
+                        maxMemory = value;
+                    }
+
+                } else if (line2.startsWith("PWSCF") && line2.endsWith("WALL")) {
+                    value = this.getTime(line2);
+                    if (!Double.isNaN(value)) {
+                        this.wallTime = value;
+                    }
+                }
+            }
+
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+
+        if (Double.isNaN(this.memory)) {
+            this.memory = maxMemory;
+        }
+    }
+
+    private double getValueBefore(String line, String unit) {
+        int index = line.lastIndexOf('=');
+        if (index < 0) {
+            return Double.NaN;
+        }
+
+        String[] subLines = line.substring(index + 1).trim().split("\\s+");
+        if (subLines == null || subLines.length < 2 || !unit.equals(subLines[1])) {
+            return Double.NaN;
+        }
+
+        try {
+            return Double.parseDouble(subLines[0]);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /*
+     * e.g. "Estimated total dynamical RAM >       1.58 GB"
+     */
+    private double getMemory(String line) {
+        int index = line.lastIndexOf('>');
+        if (index < 0) {
+            return Double.NaN;
+        }
+
+        String[] subLines = line.substring(index + 1).trim().split("\\s+");
+        if (subLines == null || subLines.length < 2) {
+            return Double.NaN;
+        }
+
+        double value = 0.0;
+        try {
+            value = Double.parseDouble(subLines[0]);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+
+        String unit = subLines[1].toUpperCase();
+        if (unit.startsWith("K")) {
+            return value / 1024.0;
+        } else if (unit.startsWith("M")) {
+            return value;
+        } else if (unit.startsWith("G")) {
+            return value * 1024.0;
+        }
+
+        return Double.NaN;
+    }
+
+    /*
+     * e.g. "PWSCF        :   1h 2m CPU      1h 3m WALL", "PWSCF        :   1m50.97s CPU   1m55.35s WALL"
+     */
+    private double getTime(String line) {
+        int index1 = line.lastIndexOf("CPU");
+        int index2 = line.lastIndexOf("WALL");
+        if (index1 < 0 || index2 <= index1) {
+            return Double.NaN;
+        }
+
+        String strTime = line.substring(index1 + 3, index2).replaceAll("\\s+", "");
+        if (strTime.isEmpty()) {
+            return Double.NaN;
+        }
+
+        double time = 0.0;
+        int start = 0;
+
+        try {
+            for (int i = 0; i < strTime.length(); i++) {
+                char c = strTime.charAt(i);
+                double factor = 0.0;
+                if (c == 'd') {
+                    factor = 86400.0;
+                } else if (c == 'h') {
+                    factor = 3600.0;
+                } else if (c == 'm') {
+                    factor = 60.0;
+                } else if (c == 's') {
+                    factor = 1.0;
+                } else {
+                    continue;
+                }
+
+                time += factor * Double.parseDouble(strTime.substring(start, i));
+                start = i + 1;
+            }
+
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+
+        return start > 0 ? time : Double.NaN;
+    }
+}
@@ -16,10 +16,7 @@
 
 package burai.run.parser;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.Deque;
 import java.util.LinkedList;
@@ -33,104 +30,162 @@ public class ScfParser extends LogParser {
 
     private ProjectEnergies scfEnergies;
 
+    private long offset;
+
+    private boolean modified;
+
+    private Deque<Energy> energyQueue;
+
+    private double cpuTime;
+
+    private double convThr;
+
     public ScfParser(ProjectProperty property) {
         super(property);
 
         this.fermiParser = new FermiParser(this.property);
 
         this.scfEnergies = this.property.getScfEnergies();
+
+        this.offset = 0L;
+        this.modified = false;
+        this.energyQueue = new LinkedList<Energy>();
+        this.cpuTime = -1.0;
+        this.convThr = -1.0;
     }
 
     @Override
-    public void parse(File file) throws IOException {
-        this.fermiParser.parse(file);
-        this.parseScf(file);
+    protected void resetParsing() {
+        this.fermiParser.resetParsing();
+        this.resetScf();
     }
 
-    public void parseScf(File file) throws IOException {
+    private void resetScf() {
+        this.offset = 0L;
+        this.modified = true;
+        this.energyQueue.clear();
+        this.cpuTime = -1.0;
+        this.convThr = -1.0;
+
         if (this.scfEnergies != null) {
             this.scfEnergies.clearEnergies();
         }
+    }
+
+    @Override
+    protected void parseAppended(File file) throws IOException {
+        this.fermiParser.parseAppended(file);
+        this.parseScf(file);
+    }
+
+    private void parseScf(File file) throws IOException {
+        if (file.length() < this.offset) {
+            this.resetScf();
+        }
 
         try {
             this.parseScfKernel(file);
 
         } catch (IOException e) {
-            if (this.scfEnergies != null) {
-                this.scfEnergies.clearEnergies();
-            }
+            this.resetScf();
             throw e;
 
         } finally {
-            this.property.saveScfEnergies();
+            if (this.modified) {
+                this.modified = false;
+                this.publishEnergies();
+                this.property.saveScfEnergies();
+            }
         }
     }
 
     private void parseScfKernel(File file) throws IOException {
-
-        Deque<Energy> energyQueue1 = new LinkedList<Energy>();
-        Deque<Energy> energyQueue2 = new LinkedList<Energy>();
-
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(new FileReader(file));
-
+        try (LogReader reader = new LogReader(file, this.offset)) {
             String line = null;
             while ((line = reader.readLine()) != null) {
                 Energy energy = this.getEnergy(line);
                 if (energy != null) {
-                    energyQueue1.offerLast(energy);
+                    // only the energies after the last converged one are shown
+                    Energy lastEnergy = this.energyQueue.peekLast();
+                    if (lastEnergy != null && lastEnergy.isConverged()) {
+                        this.energyQueue.clear();
+                    }
+
+                    energy.setTime(this.cpuTime);
+                    this.energyQueue.offerLast(energy);
+                    this.modified = true;
+                    continue;
                 }
-            }
 
-        } catch (FileNotFoundException e1) {
-            throw e1;
+                double value = 0.0;
 
-        } catch (IOException e2) {
-            throw e2;
+                if ((value = this.getValue(line, "total cpu time spent up to now is", 8)) >= 0.0) {
+                    this.cpuTime = value;
 
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e3) {
-                    throw e3;
+                } else if ((value = this.getValue(line, "estimated scf accuracy", 4)) >= 0.0) {
+                    Energy lastEnergy = this.energyQueue.peekLast();
+                    if (lastEnergy != null && lastEnergy.getAccuracy() < 0.0) {
+                        lastEnergy.setAccuracy(value);
+                        this.modified = true;
+                    }
+
+                } else if (this.convThr < 0.0 && (value = this.getValue(line, "convergence threshold", 3)) >= 0.0) {
+                    this.convThr = value;
+                    this.modified = true;
                 }
             }
+
+            this.offset = reader.getOffset();
         }
+    }
 
-        if (energyQueue1.isEmpty()) {
+    private void publishEnergies() {
+        if (this.scfEnergies == null) {
             return;
         }
 
-        Energy energy1 = energyQueue1.pollLast();
-        if (energy1 != null) {
-            energyQueue2.offerFirst(energy1);
+        this.scfEnergies.clearEnergies();
+
+        Energy lastEnergy = this.energyQueue.peekLast();
+        if (lastEnergy == null) {
+            return;
         }
 
-        while ((energy1 = energyQueue1.pollLast()) != null) {
-            if (energy1.isConverged()) {
-                break;
-            }
-            energyQueue2.offerFirst(energy1);
+        this.scfEnergies.setConverged(lastEnergy.isConverged());
+
+        if (this.convThr > 0.0) {
+            this.scfEnergies.setConvThreshold(this.convThr);
         }
 
-        if (energyQueue2.isEmpty()) {
-            return;
+        for (Energy energy : this.energyQueue) {
+            this.scfEnergies.addEnergy(energy.getValue(), energy.getTime(), energy.getAccuracy());
+        }
+    }
+
+    private double getValue(String line, String header, int index) {
+        if (line == null) {
+            return -1.0;
         }
 
-        Energy energy2 = energyQueue2.peekLast();
-        if (energy2 != null) {
-            if (this.scfEnergies != null) {
-                this.scfEnergies.setConverged(energy2.isConverged());
-            }
+        String line2 = line.trim();
+        if (!line2.startsWith(header)) {
+            return -1.0;
         }
 
-        while ((energy2 = energyQueue2.pollFirst()) != null) {
-            if (this.scfEnergies != null) {
-                this.scfEnergies.addEnergy(energy2.getValue());
-            }
+        String[] subLines = line2.split("\\s+");
+        if (subLines == null || subLines.length <= index) {
+            return -1.0;
+        }
+
+        String strValue = subLines[index];
+        if (strValue == null) {
+            return -1.0;
+        }
+
+        try {
+            return Double.parseDouble(strValue.replace('D', 'E').replace('d', 'e'));
+        } catch (NumberFormatException e) {
+            return -1.0;
         }
     }
 
@@ -177,9 +232,15 @@ public class ScfParser extends LogParser {
 
         private boolean converged;
 
+        private double time;
+
+        private double accuracy;
+
         public Energy(double value, boolean converged) {
             this.value = value;
             this.converged = converged;
+            this.time = -1.0;
+            this.accuracy = -1.0;
         }
 
         public double getValue() {
@@ -189,5 +250,21 @@ public class ScfParser extends LogParser {
         public boolean isConverged() {
             return this.converged;
         }
+
+        public double getTime() {
+            return this.time;
+        }
+
+        public void setTime(double time) {
+            this.time = time;
+        }
+
+        public double getAccuracy() {
+            return this.accuracy;
+        }
+
+        public void setAccuracy(double accuracy) {
+            this.accuracy = accuracy;
+        }
     }
 }
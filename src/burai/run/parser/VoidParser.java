@@ -28,7 +28,12 @@ public class VoidParser extends LogParser {
     }
 
     @Override
-    public void parse(File file) throws IOException {
+    protected void resetParsing() {
+        // NOP
+    }
+
+    @Override
+    protected void parseAppended(File file) throws IOException {
         // NOP
     }
 
@@ -37,6 +42,16 @@ public class VoidParser extends LogParser {
         // NOP
     }
 
+    @Override
+    public void startParsing(File file, boolean streaming) {
+        // NOP
+    }
+
+    @Override
+    public void notifyUpdated() {
+        // NOP
+    }
+
     @Override
     public void endParsing() {
         // NOP
@@ -0,0 +1,517 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.sweep;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import burai.atoms.model.Cell;
+import burai.project.Project;
+import burai.run.RunningManager;
+import burai.run.RunningManagerListener;
+import burai.run.RunningNode;
+import burai.run.RunningStatus;
+import burai.run.RunningType;
+import burai.run.parser.LogSummary;
+
+/*
+ * A sweep runs clones of a project over a grid of parameters, and collects their energies.
+ * Points of each group are stopped when the energy has been converged along the last parameter.
+ */
+public class Sweep implements RunningManagerListener {
+
+    private static final String DIRECTORY_SUFFIX = "-sweep";
+
+    private Project project;
+
+    private RunningType type;
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    private double threshold;
+
+    private List<SweepParameter> parameters;
+
+    private List<SweepPoint> points;
+
+    private int numAtoms;
+
+    private File directory;
+
+    private boolean started;
+
+    private List<SweepChanged> onSweepChangedList;
+
+    public Sweep(Project project, RunningType type) {
+        if (project == null) {
+            throw new IllegalArgumentException("project is null.");
+        }
+
+        if (type == null) {
+            throw new IllegalArgumentException("type is null.");
+        }
+
+        this.project = project;
+        this.type = type;
+        this.numProcesses = 1;
+        this.numThreads = 1;
+        this.threshold = -1.0;
+        this.parameters = new ArrayList<SweepParameter>();
+        this.points = new ArrayList<SweepPoint>();
+        this.numAtoms = 1;
+        this.directory = null;
+        this.started = false;
+        this.onSweepChangedList = null;
+    }
+
+    public Project getProject() {
+        return this.project;
+    }
+
+    public RunningType getType() {
+        return this.type;
+    }
+
+    public synchronized void setNumProcesses(int numProcesses) {
+        this.numProcesses = numProcesses;
+    }
+
+    public synchronized void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /*
+     * threshold of energy per atom in Ry, which is not positive if the sweep is not stopped early.
+     */
+    public synchronized double getThreshold() {
+        return this.threshold;
+    }
+
+    public synchronized void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public synchronized void addParameter(SweepParameter parameter) {
+        if (parameter == null || parameter.numValues() < 1) {
+            return;
+        }
+
+        if (this.started) {
+            return;
+        }
+
+        this.parameters.add(parameter);
+    }
+
+    public synchronized List<SweepParameter> getParameters() {
+        return new ArrayList<SweepParameter>(this.parameters);
+    }
+
+    public synchronized List<SweepPoint> getPoints() {
+        return new ArrayList<SweepPoint>(this.points);
+    }
+
+    public synchronized File getDirectory() {
+        return this.directory;
+    }
+
+    public synchronized void addOnSweepChanged(SweepChanged onSweepChanged) {
+        if (onSweepChanged == null) {
+            return;
+        }
+
+        if (this.onSweepChangedList == null) {
+            this.onSweepChangedList = new ArrayList<SweepChanged>();
+        }
+
+        this.onSweepChangedList.add(onSweepChanged);
+    }
+
+    public synchronized void removeOnSweepChanged(SweepChanged onSweepChanged) {
+        if (this.onSweepChangedList != null) {
+            this.onSweepChangedList.remove(onSweepChanged);
+        }
+    }
+
+    private void fireSweepChanged(SweepPoint point) {
+        List<SweepChanged> onSweepChangedList2 = null;
+        synchronized (this) {
+            if (this.onSweepChangedList == null || this.onSweepChangedList.isEmpty()) {
+                return;
+            }
+
+            onSweepChangedList2 = new ArrayList<SweepChanged>(this.onSweepChangedList);
+        }
+
+        for (SweepChanged onSweepChanged : onSweepChangedList2) {
+            if (onSweepChanged != null) {
+                onSweepChanged.onSweepChanged(point);
+            }
+        }
+    }
+
+    /*
+     * child projects are created in a directory next to the project, and are posted to RunningManager.
+     */
+    public boolean start() {
+        synchronized (this) {
+            if (this.started || this.parameters.isEmpty()) {
+                return false;
+            }
+
+            this.directory = this.createDirectory();
+            if (this.directory == null) {
+                return false;
+            }
+
+            this.started = true;
+            this.createPoints();
+            this.numAtoms = this.countAtoms();
+        }
+
+        RunningManager.getInstance().addListener(this);
+
+        for (SweepPoint point : this.getPoints()) {
+            if (point.getState() != SweepState.QUEUED) {
+                // skipped by convergence of faster points
+                continue;
+            }
+
+            RunningNode node = this.createNode(point);
+            if (node == null) {
+                point.setState(SweepState.FAILED);
+
+            } else if (!RunningManager.getInstance().addNode(node)) {
+                point.setState(SweepState.FAILED);
+                point.setMessage("cannot be queued");
+
+            } else if (point.getState() == SweepState.SKIPPED) {
+                // stopped while the project was being created
+                RunningManager.getInstance().removeNode(node);
+            }
+
+            this.fireSweepChanged(point);
+        }
+
+        return true;
+    }
+
+    /*
+     * points which are not finished are cancelled.
+     */
+    public void stop() {
+        List<SweepPoint> stoppedPoints = new ArrayList<SweepPoint>();
+
+        synchronized (this) {
+            for (SweepPoint point : this.points) {
+                if (this.stopPoint(point)) {
+                    stoppedPoints.add(point);
+                }
+            }
+        }
+
+        this.removeNodes(stoppedPoints);
+    }
+
+    public boolean isFinished() {
+        for (SweepPoint point : this.getPoints()) {
+            SweepState state = point.getState();
+            if (state == SweepState.QUEUED || state == SweepState.RUNNING) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private File createDirectory() {
+        String dirPath = this.project.getDirectoryPath();
+        if (dirPath == null || dirPath.trim().isEmpty()) {
+            return null;
+        }
+
+        File dirFile = new File(dirPath.trim());
+        File parentFile = dirFile.getAbsoluteFile().getParentFile();
+        if (parentFile == null) {
+            return null;
+        }
+
+        for (int i = 1; i < Integer.MAX_VALUE; i++) {
+            String name = dirFile.getName() + DIRECTORY_SUFFIX + (i > 1 ? Integer.toString(i) : "");
+            File directory = new File(parentFile, name);
+
+            try {
+                if (!directory.exists()) {
+                    return directory.mkdirs() ? directory : null;
+                }
+
+            } catch (Exception e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    private void createPoints() {
+        int numParams = this.parameters.size();
+        int[] indexes = new int[numParams];
+
+        SweepParameter lastParam = this.parameters.get(numParams - 1);
+        int numSteps = lastParam.numValues();
+
+        int group = 0;
+        while (true) {
+            for (int step = 0; step < numSteps; step++) {
+                indexes[numParams - 1] = step;
+
+                String[] values = new String[numParams];
+                for (int i = 0; i < numParams; i++) {
+                    values[i] = this.parameters.get(i).getValue(indexes[i]);
+                }
+
+                this.points.add(new SweepPoint(this.points.size(), group, step, values));
+            }
+
+            group++;
+
+            // next combination of the other parameters
+            int i = numParams - 2;
+            while (i >= 0) {
+                indexes[i]++;
+                if (indexes[i] < this.parameters.get(i).numValues()) {
+                    break;
+                }
+
+                indexes[i] = 0;
+                i--;
+            }
+
+            if (i < 0) {
+                break;
+            }
+        }
+    }
+
+    private int countAtoms() {
+        Cell cell = this.project.getCell();
+        int natom = cell == null ? 0 : cell.numAtoms(true);
+        return Math.max(1, natom);
+    }
+
+    private RunningNode createNode(SweepPoint point) {
+        StringBuilder name = new StringBuilder(String.format("%03d", point.getIndex() + 1));
+        for (int i = 0; i < point.numValues(); i++) {
+            name.append('_');
+            name.append(point.getValue(i).replaceAll("[^A-Za-z0-9.\\-]+", "-"));
+        }
+
+        Project project2 = this.project.cloneProject(new File(this.getDirectory(), name.toString()));
+        if (project2 == null) {
+            point.setMessage("cannot create project");
+            return null;
+        }
+
+        List<SweepParameter> parameters2 = this.getParameters();
+        for (int i = 0; i < parameters2.size(); i++) {
+            if (!parameters2.get(i).apply(project2, point.getValue(i))) {
+                point.setMessage("cannot apply " + parameters2.get(i).getLabel() + " = " + point.getValue(i));
+                return null;
+            }
+        }
+
+        project2.saveQEInputs();
+
+        RunningNode node = new RunningNode(project2);
+        synchronized (this) {
+            node.setType(this.type);
+            node.setNumProcesses(this.numProcesses);
+            node.setNumThreads(this.numThreads);
+        }
+
+        node.addOnStatusChanged(status -> {
+            if (status == RunningStatus.RUNNING && point.getState() == SweepState.QUEUED) {
+                point.setState(SweepState.RUNNING);
+                point.setStartTime(System.currentTimeMillis());
+                this.fireSweepChanged(point);
+            }
+        });
+
+        point.setProject(project2);
+        point.setNode(node);
+        return node;
+    }
+
+    @Override
+    public void onNodeAdded(RunningNode node) {
+        // NOP
+    }
+
+    @Override
+    public void onNodeRemoved(RunningNode node) {
+        SweepPoint point = this.findPoint(node);
+        if (point == null) {
+            return;
+        }
+
+        // RunningManager is locked, while listeners are called.
+        Thread thread = new Thread(() -> {
+            this.finishPoint(point, node.getStatus() == RunningStatus.DONE);
+        });
+
+        thread.start();
+    }
+
+    private SweepPoint findPoint(RunningNode node) {
+        if (node == null) {
+            return null;
+        }
+
+        for (SweepPoint point : this.getPoints()) {
+            if (point.getNode() == node) {
+                return point;
+            }
+        }
+
+        return null;
+    }
+
+    private void finishPoint(SweepPoint point, boolean done) {
+        if (point.getState() == SweepState.QUEUED || point.getState() == SweepState.RUNNING) {
+            if (done) {
+                this.readResults(point);
+                if (Double.isNaN(point.getEnergy())) {
+                    point.setState(SweepState.FAILED);
+                    point.setMessage("no total energy in the log");
+                } else {
+                    point.setState(SweepState.DONE);
+                }
+            } else {
+                point.setState(SweepState.SKIPPED);
+            }
+        }
+
+        List<SweepPoint> stoppedPoints = this.checkConvergence(point.getGroup());
+
+        this.fireSweepChanged(point);
+
+        this.removeNodes(stoppedPoints);
+
+        if (this.isFinished()) {
+            RunningManager.getInstance().removeListener(this);
+        }
+    }
+
+    private void readResults(SweepPoint point) {
+        Project project2 = point.getProject();
+        List<String> logNames = project2 == null ? null : this.type.getLogNameList(project2);
+        String logName = (logNames == null || logNames.isEmpty()) ? null : logNames.get(0);
+        if (logName == null) {
+            return;
+        }
+
+        LogSummary summary = new LogSummary();
+
+        try {
+            summary.read(new File(project2.getDirectoryPath(), logName));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+
+        point.setEnergy(summary.getEnergy());
+        point.setMemory(summary.getMemory());
+
+        double wallTime = summary.getWallTime();
+        long startTime = point.getStartTime();
+        if (Double.isNaN(wallTime) && startTime > 0L) {
+            wallTime = 1.0e-3 * (System.currentTimeMillis() - startTime);
+        }
+
+        point.setWallTime(wallTime);
+    }
+
+    /*
+     * energies of a group are compared with the previous steps,
+     * and following points are stopped after the first converged step.
+     */
+    private synchronized List<SweepPoint> checkConvergence(int group) {
+        SweepPoint prevPoint = null;
+        boolean converged = false;
+        List<SweepPoint> stoppedPoints = null;
+
+        for (SweepPoint point : this.points) {
+            if (point.getGroup() != group) {
+                continue;
+            }
+
+            if (converged) {
+                if (this.stopPoint(point)) {
+                    if (stoppedPoints == null) {
+                        stoppedPoints = new ArrayList<SweepPoint>();
+                    }
+                    stoppedPoints.add(point);
+                }
+
+                continue;
+            }
+
+            double energy1 = prevPoint == null ? Double.NaN : prevPoint.getEnergy();
+            double energy2 = point.getEnergy();
+            if (!(Double.isNaN(energy1) || Double.isNaN(energy2))) {
+                double deltaEnergy = (energy2 - energy1) / ((double) this.numAtoms);
+                point.setDeltaEnergy(deltaEnergy);
+                converged = this.threshold > 0.0 && Math.abs(deltaEnergy) < this.threshold;
+            }
+
+            prevPoint = point;
+        }
+
+        return stoppedPoints;
+    }
+
+    private boolean stopPoint(SweepPoint point) {
+        SweepState state = point.getState();
+        if (state != SweepState.QUEUED && state != SweepState.RUNNING) {
+            return false;
+        }
+
+        point.setState(SweepState.SKIPPED);
+        return true;
+    }
+
+    /*
+     * has to be called without the lock of this, because RunningManager calls listeners with its lock.
+     */
+    private void removeNodes(List<SweepPoint> stoppedPoints) {
+        if (stoppedPoints == null) {
+            return;
+        }
+
+        for (SweepPoint point : stoppedPoints) {
+            RunningNode node = point.getNode();
+            if (node != null) {
+                RunningManager.getInstance().removeNode(node);
+            }
+
+            this.fireSweepChanged(point);
+        }
+    }
+}
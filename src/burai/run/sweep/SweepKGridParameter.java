@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.sweep;
+
+import burai.input.QEInput;
+import burai.input.card.QEKPoints;
+import burai.project.Project;
+
+public class SweepKGridParameter extends SweepParameter {
+
+    protected SweepKGridParameter() {
+        super("K-points");
+    }
+
+    private static int[] parseKGrid(String value) {
+        String[] subValues = value == null ? null : value.trim().split("[\\sx]+");
+        if (subValues == null || subValues.length < 1) {
+            return null;
+        }
+
+        int[] kGrid = new int[3];
+
+        try {
+            for (int i = 0; i < kGrid.length; i++) {
+                kGrid[i] = Integer.parseInt(subValues[Math.min(i, subValues.length - 1)]);
+                if (kGrid[i] < 1) {
+                    return null;
+                }
+            }
+
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return kGrid;
+    }
+
+    @Override
+    public double toNumber(String value) {
+        int[] kGrid = parseKGrid(value);
+        if (kGrid == null) {
+            return Double.NaN;
+        }
+
+        return Math.cbrt(((double) kGrid[0]) * ((double) kGrid[1]) * ((double) kGrid[2]));
+    }
+
+    @Override
+    protected boolean isAvailable(String value) {
+        return parseKGrid(value) != null;
+    }
+
+    @Override
+    protected boolean apply(Project project, String value) {
+        int[] kGrid = parseKGrid(value);
+        if (kGrid == null || project == null) {
+            return false;
+        }
+
+        // k-points of DOS and BAND are not for the SCF, and are left
+        QEInput[] inputs = { project.getQEInputScf(), project.getQEInputOptimiz(), project.getQEInputMd() };
+
+        boolean status = false;
+        for (QEInput input : inputs) {
+            QEKPoints kpoints = input == null ? null : input.getCard(QEKPoints.class);
+            if (kpoints == null) {
+                continue;
+            }
+
+            kpoints.setAutomatic();
+            kpoints.setKGrid(kGrid);
+            status = true;
+        }
+
+        return status;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.sweep;
+
+import burai.atoms.model.Cell;
+import burai.atoms.model.exception.ZeroVolumCellException;
+import burai.com.math.Matrix3D;
+import burai.project.Project;
+
+public class SweepLatticeParameter extends SweepParameter {
+
+    protected SweepLatticeParameter() {
+        super("Lattice scale");
+    }
+
+    @Override
+    protected boolean isAvailable(String value) {
+        double scale = this.toNumber(value);
+        return (!Double.isNaN(scale)) && scale > 0.0;
+    }
+
+    @Override
+    protected boolean apply(Project project, String value) {
+        double scale = this.toNumber(value);
+        if (Double.isNaN(scale) || scale <= 0.0) {
+            return false;
+        }
+
+        Cell cell = project == null ? null : project.getCell();
+        if (cell == null) {
+            return false;
+        }
+
+        // atoms are moved with the lattice, as an isotropic strain for EOS
+        double[][] lattice = Matrix3D.mult(scale, cell.copyLattice());
+
+        try {
+            cell.moveLattice(lattice);
+        } catch (ZeroVolumCellException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        return true;
+    }
+}
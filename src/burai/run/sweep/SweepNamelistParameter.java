@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.sweep;
+
+import burai.input.QEInput;
+import burai.input.namelist.QENamelist;
+import burai.input.namelist.QEValue;
+import burai.project.Project;
+
+public class SweepNamelistParameter extends SweepParameter {
+
+    private String namelist;
+
+    private String name;
+
+    protected SweepNamelistParameter(String namelist, String name) {
+        super(name);
+
+        if (namelist == null || namelist.trim().isEmpty()) {
+            throw new IllegalArgumentException("namelist is empty.");
+        }
+
+        this.namelist = namelist.trim();
+        this.name = name.trim().toLowerCase();
+    }
+
+    @Override
+    protected boolean isAvailable(String value) {
+        return value != null && (!value.isEmpty());
+    }
+
+    @Override
+    protected boolean apply(Project project, String value) {
+        QEInput geomInput = project == null ? null : project.getQEInputGeometry();
+
+        boolean status = false;
+        for (QEInput input : listQEInputs(project)) {
+            QENamelist nml = input == null ? null : input.getNamelist(this.namelist);
+            if (nml == null) {
+                continue;
+            }
+
+            if (input == geomInput && nml.getValue(this.name) == null) {
+                // the geometry keeps only its own values
+                continue;
+            }
+
+            if (this.setValue(nml, value)) {
+                status = true;
+            }
+        }
+
+        return status;
+    }
+
+    private boolean setValue(QENamelist nml, String value) {
+        if ("ecutwfc".equals(this.name)) {
+            // the ratio of ecutrho to ecutwfc is kept
+            QEValue ecutwfc = nml.getValue("ecutwfc");
+            QEValue ecutrho = nml.getValue("ecutrho");
+            double value2 = this.toNumber(value);
+            if (ecutwfc != null && ecutrho != null && ecutwfc.getRealValue() > 0.0 && value2 > 0.0) {
+                double dual = ecutrho.getRealValue() / ecutwfc.getRealValue();
+                nml.setValue("ecutrho = " + (dual * value2));
+            }
+        }
+
+        if (Double.isNaN(this.toNumber(value)) && !value.startsWith(".") && !value.startsWith("'")) {
+            return nml.setValue(this.name + " = '" + value + "'");
+        }
+
+        return nml.setValue(this.name + " = " + value);
+    }
+}
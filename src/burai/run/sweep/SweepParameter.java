@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.sweep;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import burai.input.QEInput;
+import burai.project.Project;
+
+public abstract class SweepParameter {
+
+    private String label;
+
+    private List<String> values;
+
+    protected SweepParameter(String label) {
+        if (label == null || label.trim().isEmpty()) {
+            throw new IllegalArgumentException("label is empty.");
+        }
+
+        this.label = label.trim();
+        this.values = new ArrayList<String>();
+    }
+
+    public static SweepParameter getNamelistParameter(String namelist, String name) {
+        return new SweepNamelistParameter(namelist, name);
+    }
+
+    public static SweepParameter getKGridParameter() {
+        return new SweepKGridParameter();
+    }
+
+    public static SweepParameter getLatticeParameter() {
+        return new SweepLatticeParameter();
+    }
+
+    public String getLabel() {
+        return this.label;
+    }
+
+    public boolean addValue(String value) {
+        String value2 = value == null ? null : value.trim();
+        if (value2 == null || value2.isEmpty()) {
+            return false;
+        }
+
+        if (!this.isAvailable(value2)) {
+            return false;
+        }
+
+        this.values.add(value2);
+        return true;
+    }
+
+    public int numValues() {
+        return this.values.size();
+    }
+
+    public String getValue(int i) {
+        return this.values.get(i);
+    }
+
+    /*
+     * returns a number to plot the value, or NaN.
+     */
+    public double toNumber(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    protected abstract boolean isAvailable(String value);
+
+    /*
+     * the value is applied to the project itself, as an override of batch mode.
+     */
+    public boolean applyValue(Project project, String value) {
+        String value2 = value == null ? null : value.trim();
+        if (value2 == null || value2.isEmpty()) {
+            return false;
+        }
+
+        if (!this.isAvailable(value2)) {
+            return false;
+        }
+
+        return this.apply(project, value2);
+    }
+
+    /*
+     * the value is applied to a cloned project, before its inputs are saved.
+     */
+    protected abstract boolean apply(Project project, String value);
+
+    protected static QEInput[] listQEInputs(Project project) {
+        if (project == null) {
+            return new QEInput[0];
+        }
+
+        return new QEInput[] {
+                project.getQEInputGeometry(),
+                project.getQEInputScf(),
+                project.getQEInputOptimiz(),
+                project.getQEInputMd(),
+                project.getQEInputDos(),
+                project.getQEInputBand()
+        };
+    }
+
+    @Override
+    public String toString() {
+        return this.label;
+    }
+}
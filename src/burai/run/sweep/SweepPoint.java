@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.sweep;
+
+import burai.project.Project;
+import burai.run.RunningNode;
+
+public class SweepPoint {
+
+    private int index;
+
+    private int group;
+
+    private int step;
+
+    private String[] values;
+
+    private Project project;
+
+    private RunningNode node;
+
+    private SweepState state;
+
+    private long startTime;
+
+    private double energy;
+
+    private double deltaEnergy;
+
+    private double wallTime;
+
+    private double memory;
+
+    private String message;
+
+    protected SweepPoint(int index, int group, int step, String[] values) {
+        this.index = index;
+        this.group = group;
+        this.step = step;
+        this.values = values;
+        this.project = null;
+        this.node = null;
+        this.state = SweepState.QUEUED;
+        this.startTime = 0L;
+        this.energy = Double.NaN;
+        this.deltaEnergy = Double.NaN;
+        this.wallTime = Double.NaN;
+        this.memory = Double.NaN;
+        this.message = null;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    /*
+     * points of the same group differ only in the last parameter,
+     * and are converged along it in order of step.
+     */
+    public int getGroup() {
+        return this.group;
+    }
+
+    public int getStep() {
+        return this.step;
+    }
+
+    public int numValues() {
+        return this.values == null ? 0 : this.values.length;
+    }
+
+    public String getValue(int i) {
+        return this.values[i];
+    }
+
+    public Project getProject() {
+        return this.project;
+    }
+
+    protected void setProject(Project project) {
+        this.project = project;
+    }
+
+    public RunningNode getNode() {
+        return this.node;
+    }
+
+    protected void setNode(RunningNode node) {
+        this.node = node;
+    }
+
+    public synchronized SweepState getState() {
+        return this.state;
+    }
+
+    protected synchronized void setState(SweepState state) {
+        this.state = state;
+    }
+
+    protected synchronized long getStartTime() {
+        return this.startTime;
+    }
+
+    protected synchronized void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    /*
+     * total energy in Ry, or NaN
+     */
+    public synchronized double getEnergy() {
+        return this.energy;
+    }
+
+    protected synchronized void setEnergy(double energy) {
+        this.energy = energy;
+    }
+
+    /*
+     * difference of energy per atom from the previous step in Ry, or NaN
+     */
+    public synchronized double getDeltaEnergy() {
+        return this.deltaEnergy;
+    }
+
+    protected synchronized void setDeltaEnergy(double deltaEnergy) {
+        this.deltaEnergy = deltaEnergy;
+    }
+
+    /*
+     * wall time in sec, or NaN
+     */
+    public synchronized double getWallTime() {
+        return this.wallTime;
+    }
+
+    protected synchronized void setWallTime(double wallTime) {
+        this.wallTime = wallTime;
+    }
+
+    /*
+     * estimated dynamical RAM in MB, or NaN
+     */
+    public synchronized double getMemory() {
+        return this.memory;
+    }
+
+    protected synchronized void setMemory(double memory) {
+        this.memory = memory;
+    }
+
+    /*
+     * reason of failure, or null
+     */
+    public synchronized String getMessage() {
+        return this.message;
+    }
+
+    protected synchronized void setMessage(String message) {
+        this.message = message;
+    }
+}
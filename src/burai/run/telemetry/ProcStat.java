@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * a snapshot of a process, read from /proc/<pid>/stat, status and io (only on Linux).
+ */
+public class ProcStat {
+
+    private static final File PROC_DIR = new File("/proc");
+
+    // USER_HZ, which is 100 on almost all Linux systems
+    public static final double TICKS_PER_SEC = 100.0;
+
+    public static boolean isAvailable() {
+        try {
+            return new File(PROC_DIR, "self" + File.separator + "stat").isFile();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private int pid;
+
+    private int ppid;
+
+    private String name;
+
+    private long cpuTicks;
+
+    private long majorFaults;
+
+    private int numThreads;
+
+    private long rss;
+
+    private long swap;
+
+    private long readBytes;
+
+    private long writeBytes;
+
+    private ProcStat(int pid) {
+        this.pid = pid;
+        this.ppid = -1;
+        this.name = null;
+        this.cpuTicks = 0L;
+        this.majorFaults = 0L;
+        this.numThreads = 0;
+        this.rss = 0L;
+        this.swap = 0L;
+        this.readBytes = -1L;
+        this.writeBytes = -1L;
+    }
+
+    /*
+     * null, if the process has gone.
+     */
+    public static ProcStat read(int pid) {
+        if (pid < 0) {
+            return null;
+        }
+
+        File procDir = new File(PROC_DIR, Integer.toString(pid));
+        ProcStat procStat = new ProcStat(pid);
+
+        try {
+            String[] fields = readStatFields(new File(procDir, "stat"));
+            if (fields == null || fields.length < 22) {
+                return null;
+            }
+
+            // fields after the name: state(3) ppid(4) ... majflt(12) utime(14) stime(15) ... num_threads(20)
+            procStat.name = fields[0];
+            procStat.ppid = Integer.parseInt(fields[2]);
+            procStat.majorFaults = Long.parseLong(fields[10]);
+            procStat.cpuTicks = Long.parseLong(fields[12]) + Long.parseLong(fields[13]);
+            procStat.numThreads = Integer.parseInt(fields[18]);
+
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+
+        try {
+            Map<String, String> status = readKeyValues(new File(procDir, "status"));
+            procStat.rss = parseKBytes(status.get("VmRSS"));
+            procStat.swap = parseKBytes(status.get("VmSwap"));
+
+        } catch (IOException e) {
+            // NOP
+        }
+
+        try {
+            // io is readable only by the owner
+            Map<String, String> io = readKeyValues(new File(procDir, "io"));
+            procStat.readBytes = parseBytes(io.get("read_bytes"));
+            procStat.writeBytes = parseBytes(io.get("write_bytes"));
+
+        } catch (IOException e) {
+            // NOP
+        }
+
+        return procStat;
+    }
+
+    /*
+     * pid -> ppid, of all processes
+     */
+    public static Map<Integer, Integer> readParents() {
+        Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+
+        File[] procDirs = PROC_DIR.listFiles((dir, name) -> isNumber(name));
+        if (procDirs == null) {
+            return parents;
+        }
+
+        for (File procDir : procDirs) {
+            try {
+                String[] fields = readStatFields(new File(procDir, "stat"));
+                if (fields != null && fields.length > 2) {
+                    parents.put(Integer.parseInt(procDir.getName()), Integer.parseInt(fields[2]));
+                }
+
+            } catch (IOException | NumberFormatException e) {
+                // the process has gone
+            }
+        }
+
+        return parents;
+    }
+
+    /*
+     * 1-minute load average of the system
+     */
+    public static double readLoadAverage() {
+        try {
+            String line = new String(Files.readAllBytes(new File(PROC_DIR, "loadavg").toPath())).trim();
+            String[] subLines = line.split("\\s+");
+            return subLines.length > 0 ? Double.parseDouble(subLines[0]) : 0.0;
+
+        } catch (IOException | NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    private static boolean isNumber(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * the name of the process may include spaces and parentheses, so it is cut at the last ')'.
+     * returns { name, state, ppid, ... }.
+     */
+    private static String[] readStatFields(File file) throws IOException {
+        String line = new String(Files.readAllBytes(file.toPath()));
+
+        int start = line.indexOf('(');
+        int end = line.lastIndexOf(')');
+        if (start < 0 || end < start) {
+            return null;
+        }
+
+        String[] subLines = line.substring(end + 1).trim().split("\\s+");
+        String[] fields = new String[subLines.length + 1];
+        fields[0] = line.substring(start + 1, end);
+        System.arraycopy(subLines, 0, fields, 1, subLines.length);
+        return fields;
+    }
+
+    private static Map<String, String> readKeyValues(File file) throws IOException {
+        Map<String, String> values = new HashMap<String, String>();
+
+        String text = new String(Files.readAllBytes(file.toPath()));
+        for (String line : text.split("\n")) {
+            int index = line.indexOf(':');
+            if (index > 0) {
+                values.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+            }
+        }
+
+        return values;
+    }
+
+    private static long parseKBytes(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0L;
+        }
+
+        try {
+            return Long.parseLong(value.split("\\s+")[0]);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static long parseBytes(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1L;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    public int getPID() {
+        return this.pid;
+    }
+
+    public int getParentPID() {
+        return this.ppid;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getCPUTicks() {
+        return this.cpuTicks;
+    }
+
+    public long getMajorFaults() {
+        return this.majorFaults;
+    }
+
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    /*
+     * resident set size in kB
+     */
+    public long getRSS() {
+        return this.rss;
+    }
+
+    /*
+     * swapped-out size in kB
+     */
+    public long getSwap() {
+        return this.swap;
+    }
+
+    /*
+     * -1, if io is not readable
+     */
+    public long getReadBytes() {
+        return this.readBytes;
+    }
+
+    public long getWriteBytes() {
+        return this.writeBytes;
+    }
+}
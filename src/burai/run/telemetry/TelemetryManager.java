@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.telemetry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import burai.com.env.Environments;
+import burai.project.Project;
+
+public class TelemetryManager {
+
+    private static final String PROP_KEY_TELEMETRY = "telemetry";
+
+    private static final String PROP_KEY_INTERVAL = "telemetry_interval";
+
+    private static final double DEFAULT_INTERVAL = 3.0;
+
+    private static TelemetryManager instance = null;
+
+    public static TelemetryManager getInstance() {
+        if (instance == null) {
+            instance = new TelemetryManager();
+        }
+
+        return instance;
+    }
+
+    private Map<String, TelemetrySeries> seriesMap;
+
+    private TelemetryManager() {
+        this.seriesMap = new HashMap<String, TelemetrySeries>();
+    }
+
+    public boolean isEnabled() {
+        return Environments.getBoolProperty(PROP_KEY_TELEMETRY, true) && ProcStat.isAvailable();
+    }
+
+    /*
+     * the series of a project, which is kept after the calculation.
+     */
+    public synchronized TelemetrySeries getSeries(Project project) {
+        String path = project == null ? null : project.getDirectoryPath();
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+
+        TelemetrySeries series = this.seriesMap.get(path);
+        if (series == null) {
+            series = new TelemetrySeries();
+            this.seriesMap.put(path, series);
+        }
+
+        return series;
+    }
+
+    public void resetSeries(Project project, int numCores) {
+        if (!this.isEnabled()) {
+            return;
+        }
+
+        TelemetrySeries series = this.getSeries(project);
+        if (series != null) {
+            series.reset(numCores);
+        }
+    }
+
+    /*
+     * returns null, if telemetry is not available.
+     */
+    public TelemetrySampler startSampling(Project project, Process process) {
+        if (process == null || !this.isEnabled()) {
+            return null;
+        }
+
+        TelemetrySeries series = this.getSeries(project);
+        if (series == null) {
+            return null;
+        }
+
+        double interval = Environments.getDoubleProperty(PROP_KEY_INTERVAL, DEFAULT_INTERVAL);
+        TelemetrySampler sampler = new TelemetrySampler(series, process, (long) (1000.0 * Math.max(0.1, interval)));
+        if (!sampler.isAvailable()) {
+            return null;
+        }
+
+        sampler.start();
+        return sampler;
+    }
+}
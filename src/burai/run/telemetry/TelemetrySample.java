@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.telemetry;
+
+/*
+ * resources of a process tree at a time.
+ * CPU usages are in units of cores, memories in MB, and I/O rates in MB/s.
+ */
+public class TelemetrySample {
+
+    private long time;
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    private double cpuUsage;
+
+    private double minCpuUsage;
+
+    private double loadAverage;
+
+    private double memory;
+
+    private double swap;
+
+    private double faultRate;
+
+    private double readRate;
+
+    private double writeRate;
+
+    protected TelemetrySample(long time) {
+        this.time = time;
+        this.numProcesses = 0;
+        this.numThreads = 0;
+        this.cpuUsage = 0.0;
+        this.minCpuUsage = 0.0;
+        this.loadAverage = 0.0;
+        this.memory = 0.0;
+        this.swap = 0.0;
+        this.faultRate = 0.0;
+        this.readRate = 0.0;
+        this.writeRate = 0.0;
+    }
+
+    /*
+     * a sample of two, which is used to compact a series.
+     */
+    protected static TelemetrySample merge(TelemetrySample sample1, TelemetrySample sample2) {
+        TelemetrySample sample = new TelemetrySample(sample2.time);
+        sample.numProcesses = Math.max(sample1.numProcesses, sample2.numProcesses);
+        sample.numThreads = Math.max(sample1.numThreads, sample2.numThreads);
+        sample.cpuUsage = 0.5 * (sample1.cpuUsage + sample2.cpuUsage);
+        sample.minCpuUsage = Math.min(sample1.minCpuUsage, sample2.minCpuUsage);
+        sample.loadAverage = 0.5 * (sample1.loadAverage + sample2.loadAverage);
+        sample.memory = Math.max(sample1.memory, sample2.memory);
+        sample.swap = Math.max(sample1.swap, sample2.swap);
+        sample.faultRate = 0.5 * (sample1.faultRate + sample2.faultRate);
+        sample.readRate = 0.5 * (sample1.readRate + sample2.readRate);
+        sample.writeRate = 0.5 * (sample1.writeRate + sample2.writeRate);
+        return sample;
+    }
+
+    public long getTime() {
+        return this.time;
+    }
+
+    public int getNumProcesses() {
+        return this.numProcesses;
+    }
+
+    protected void setNumProcesses(int numProcesses) {
+        this.numProcesses = numProcesses;
+    }
+
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    protected void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    public double getCpuUsage() {
+        return this.cpuUsage;
+    }
+
+    protected void setCpuUsage(double cpuUsage) {
+        this.cpuUsage = cpuUsage;
+    }
+
+    /*
+     * the least usage of leaf processes (MPI ranks), which falls to 0 if a rank is stalled.
+     */
+    public double getMinCpuUsage() {
+        return this.minCpuUsage;
+    }
+
+    protected void setMinCpuUsage(double minCpuUsage) {
+        this.minCpuUsage = minCpuUsage;
+    }
+
+    public double getLoadAverage() {
+        return this.loadAverage;
+    }
+
+    protected void setLoadAverage(double loadAverage) {
+        this.loadAverage = loadAverage;
+    }
+
+    public double getMemory() {
+        return this.memory;
+    }
+
+    protected void setMemory(double memory) {
+        this.memory = memory;
+    }
+
+    public double getSwap() {
+        return this.swap;
+    }
+
+    protected void setSwap(double swap) {
+        this.swap = swap;
+    }
+
+    /*
+     * major page faults per second, which grow with swap thrashing.
+     */
+    public double getFaultRate() {
+        return this.faultRate;
+    }
+
+    protected void setFaultRate(double faultRate) {
+        this.faultRate = faultRate;
+    }
+
+    public double getReadRate() {
+        return this.readRate;
+    }
+
+    protected void setReadRate(double readRate) {
+        this.readRate = readRate;
+    }
+
+    public double getWriteRate() {
+        return this.writeRate;
+    }
+
+    protected void setWriteRate(double writeRate) {
+        this.writeRate = writeRate;
+    }
+
+    @Override
+    public String toString() {
+        String str = String.format("CPU: %.0f%%", 100.0 * this.cpuUsage);
+        str = str + String.format(", RSS: %.0f MB", this.memory);
+        if (this.swap > 0.0) {
+            str = str + String.format(", swap: %.0f MB", this.swap);
+        }
+        str = str + ", #thread: " + this.numThreads;
+        str = str + String.format(", I/O: %.1f/%.1f MB/s", this.readRate, this.writeRate);
+        return str;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.telemetry;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * samples a process and its descendants (e.g. mpirun and its ranks) periodically.
+ */
+public class TelemetrySampler implements Runnable {
+
+    private static final double KBYTES_PER_MBYTES = 1024.0;
+
+    private static final double BYTES_PER_MBYTES = 1024.0 * 1024.0;
+
+    private boolean alive;
+
+    private int rootPID;
+
+    private long interval;
+
+    private TelemetrySeries series;
+
+    private Map<Integer, ProcStat> lastStats;
+
+    private long lastTime;
+
+    protected TelemetrySampler(TelemetrySeries series, Process process, long interval) {
+        if (series == null) {
+            throw new IllegalArgumentException("series is null.");
+        }
+
+        if (process == null) {
+            throw new IllegalArgumentException("process is null.");
+        }
+
+        this.alive = true;
+        this.rootPID = getProcessID(process);
+        this.interval = Math.max(1L, interval);
+        this.series = series;
+        this.lastStats = null;
+        this.lastTime = 0L;
+    }
+
+    /*
+     * Process.pid() exists since Java 9, and the private field is used on Java 8.
+     */
+    private static int getProcessID(Process process) {
+        try {
+            Method method = Process.class.getMethod("pid");
+            Object value = method.invoke(process);
+            if (value instanceof Number) {
+                return ((Number) value).intValue();
+            }
+
+        } catch (Exception e) {
+            // NOP
+        }
+
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return field.getInt(process);
+
+        } catch (Exception e) {
+            // NOP
+        }
+
+        return -1;
+    }
+
+    protected boolean isAvailable() {
+        return this.rootPID >= 0;
+    }
+
+    protected void start() {
+        Thread thread = new Thread(this);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        this.alive = false;
+        this.notifyAll();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            synchronized (this) {
+                if (!this.alive) {
+                    break;
+                }
+            }
+
+            TelemetrySample sample = null;
+            try {
+                sample = this.sample();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            if (sample != null) {
+                this.series.addSample(sample);
+            }
+
+            synchronized (this) {
+                if (!this.alive) {
+                    break;
+                }
+
+                try {
+                    this.wait(this.interval);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private List<Integer> listProcessTree() {
+        Map<Integer, Integer> parents = ProcStat.readParents();
+        if (!parents.containsKey(this.rootPID)) {
+            return null;
+        }
+
+        Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+        for (Map.Entry<Integer, Integer> entry : parents.entrySet()) {
+            List<Integer> pids = children.get(entry.getValue());
+            if (pids == null) {
+                pids = new ArrayList<Integer>();
+                children.put(entry.getValue(), pids);
+            }
+
+            pids.add(entry.getKey());
+        }
+
+        List<Integer> tree = new ArrayList<Integer>();
+        tree.add(this.rootPID);
+        for (int i = 0; i < tree.size(); i++) {
+            List<Integer> pids = children.get(tree.get(i));
+            if (pids != null) {
+                tree.addAll(pids);
+            }
+        }
+
+        return tree;
+    }
+
+    /*
+     * null for the first time, because rates need two snapshots.
+     */
+    private TelemetrySample sample() {
+        List<Integer> tree = this.listProcessTree();
+        if (tree == null || tree.isEmpty()) {
+            return null;
+        }
+
+        long time = System.currentTimeMillis();
+        Map<Integer, ProcStat> stats = new HashMap<Integer, ProcStat>();
+        Set<Integer> parentPIDs = new HashSet<Integer>();
+        for (Integer pid : tree) {
+            ProcStat stat = ProcStat.read(pid);
+            if (stat != null) {
+                stats.put(pid, stat);
+                parentPIDs.add(stat.getParentPID());
+            }
+        }
+
+        Map<Integer, ProcStat> lastStats = this.lastStats;
+        long lastTime = this.lastTime;
+        this.lastStats = stats;
+        this.lastTime = time;
+
+        double dtime = 0.001 * (time - lastTime);
+        if (lastStats == null || dtime <= 0.0) {
+            return null;
+        }
+
+        TelemetrySample sample = new TelemetrySample(time);
+        sample.setNumProcesses(stats.size());
+        sample.setLoadAverage(ProcStat.readLoadAverage());
+
+        int numThreads = 0;
+        long rss = 0L;
+        long swap = 0L;
+        long cpuTicks = 0L;
+        long majorFaults = 0L;
+        long readBytes = 0L;
+        long writeBytes = 0L;
+        double minCpuUsage = -1.0;
+
+        for (ProcStat stat : stats.values()) {
+            numThreads += stat.getNumThreads();
+            rss += stat.getRSS();
+            swap += stat.getSwap();
+
+            // a new process is counted from the next sample
+            ProcStat lastStat = lastStats.get(stat.getPID());
+            if (lastStat == null) {
+                continue;
+            }
+
+            long dticks = Math.max(0L, stat.getCPUTicks() - lastStat.getCPUTicks());
+            cpuTicks += dticks;
+            majorFaults += Math.max(0L, stat.getMajorFaults() - lastStat.getMajorFaults());
+            if (stat.getReadBytes() >= 0L && lastStat.getReadBytes() >= 0L) {
+                readBytes += Math.max(0L, stat.getReadBytes() - lastStat.getReadBytes());
+            }
+            if (stat.getWriteBytes() >= 0L && lastStat.getWriteBytes() >= 0L) {
+                writeBytes += Math.max(0L, stat.getWriteBytes() - lastStat.getWriteBytes());
+            }
+
+            if (!parentPIDs.contains(stat.getPID())) {
+                double cpuUsage = dticks / ProcStat.TICKS_PER_SEC / dtime;
+                minCpuUsage = minCpuUsage < 0.0 ? cpuUsage : Math.min(minCpuUsage, cpuUsage);
+            }
+        }
+
+        double cpuUsage = cpuTicks / ProcStat.TICKS_PER_SEC / dtime;
+        sample.setNumThreads(numThreads);
+        sample.setCpuUsage(cpuUsage);
+        sample.setMinCpuUsage(minCpuUsage < 0.0 ? cpuUsage : minCpuUsage);
+        sample.setMemory(rss / KBYTES_PER_MBYTES);
+        sample.setSwap(swap / KBYTES_PER_MBYTES);
+        sample.setFaultRate(majorFaults / dtime);
+        sample.setReadRate(readBytes / BYTES_PER_MBYTES / dtime);
+        sample.setWriteRate(writeBytes / BYTES_PER_MBYTES / dtime);
+        return sample;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package burai.run.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import burai.com.env.Environments;
+
+/*
+ * a time series of samples of a project.
+ * if the series becomes long, neighboring samples are merged, so that the memory is bounded.
+ */
+public class TelemetrySeries {
+
+    private static final int MAX_SAMPLES = 720;
+
+    private static final double THR_FAULT_RATE = 100.0;
+
+    private static final double THR_STALLED_USAGE = 0.05;
+
+    private static final double THR_OVERLOAD = 1.1;
+
+    private int calcID;
+
+    private long startTime;
+
+    private int numCores;
+
+    private List<TelemetrySample> samples;
+
+    private List<TelemetryChanged> onChangedList;
+
+    protected TelemetrySeries() {
+        this.calcID = 0;
+        this.startTime = 0L;
+        this.numCores = 1;
+        this.samples = new ArrayList<TelemetrySample>();
+        this.onChangedList = null;
+    }
+
+    /*
+     * to start a new calculation, which uses numCores.
+     */
+    protected void reset(int numCores) {
+        synchronized (this) {
+            this.calcID++;
+            this.startTime = System.currentTimeMillis();
+            this.numCores = Math.max(1, numCores);
+            this.samples.clear();
+        }
+
+        this.fireChanged();
+    }
+
+    protected void addSample(TelemetrySample sample) {
+        if (sample == null) {
+            return;
+        }
+
+        synchronized (this) {
+            this.samples.add(sample);
+
+            if (this.samples.size() > MAX_SAMPLES) {
+                List<TelemetrySample> samples2 = new ArrayList<TelemetrySample>();
+                for (int i = 0; i < this.samples.size(); i += 2) {
+                    if ((i + 1) < this.samples.size()) {
+                        samples2.add(TelemetrySample.merge(this.samples.get(i), this.samples.get(i + 1)));
+                    } else {
+                        samples2.add(this.samples.get(i));
+                    }
+                }
+
+                this.samples = samples2;
+            }
+        }
+
+        this.fireChanged();
+    }
+
+    public synchronized int getCalculationID() {
+        return this.calcID;
+    }
+
+    public synchronized long getStartTime() {
+        return this.startTime;
+    }
+
+    /*
+     * cores which are expected to be used (#processes x #threads)
+     */
+    public synchronized int getNumCores() {
+        return this.numCores;
+    }
+
+    public synchronized int numSamples() {
+        return this.samples.size();
+    }
+
+    public synchronized List<TelemetrySample> getSamples() {
+        return new ArrayList<TelemetrySample>(this.samples);
+    }
+
+    public synchronized TelemetrySample getLastSample() {
+        return this.samples.isEmpty() ? null : this.samples.get(this.samples.size() - 1);
+    }
+
+    /*
+     * a short message, if the last sample looks unhealthy, or null.
+     */
+    public synchronized String getWarning() {
+        TelemetrySample sample = this.samples.isEmpty() ? null : this.samples.get(this.samples.size() - 1);
+        if (sample == null) {
+            return null;
+        }
+
+        if (sample.getSwap() > 0.0 && sample.getFaultRate() > THR_FAULT_RATE) {
+            return "swapping";
+        }
+
+        if (sample.getNumProcesses() > 1 && sample.getMinCpuUsage() < THR_STALLED_USAGE
+                && sample.getCpuUsage() > (0.5 * this.numCores)) {
+            return "stalled process";
+        }
+
+        int numCPUs = Math.max(1, Environments.getNumCUPs());
+        if (sample.getLoadAverage() > (THR_OVERLOAD * numCPUs) && sample.getCpuUsage() < (0.8 * this.numCores)) {
+            return "oversubscribed";
+        }
+
+        return null;
+    }
+
+    public synchronized void addOnChanged(TelemetryChanged onChanged) {
+        if (onChanged != null) {
+            if (this.onChangedList == null) {
+                this.onChangedList = new ArrayList<TelemetryChanged>();
+            }
+
+            this.onChangedList.add(onChanged);
+        }
+    }
+
+    public synchronized void removeOnChanged(TelemetryChanged onChanged) {
+        if (onChanged != null) {
+            if (this.onChangedList != null) {
+                this.onChangedList.remove(onChanged);
+            }
+        }
+    }
+
+    private void fireChanged() {
+        List<TelemetryChanged> onChangedList2 = null;
+        synchronized (this) {
+            if (this.onChangedList == null || this.onChangedList.isEmpty()) {
+                return;
+            }
+
+            onChangedList2 = new ArrayList<TelemetryChanged>(this.onChangedList);
+        }
+
+        for (TelemetryChanged onChanged : onChangedList2) {
+            if (onChanged != null) {
+                onChanged.onTelemetryChanged(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.ssh;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+
+/*
+ * Jobs of many projects are posted to a server as a single array job:
+ * their inputs are uploaded in a bundle through one connection, and one script runs the task of ${TASK_ID}.
+ */
+public class SSHArrayJob {
+
+    private static final String WORD_TASK_ID = "TASK_ID";
+
+    // array indexes of Slurm, PBS Pro, Torque and SGE
+    private static final String TASK_ID_DEFINITION = WORD_TASK_ID
+            + "=${SLURM_ARRAY_TASK_ID:-${PBS_ARRAY_INDEX:-${PBS_ARRAYID:-${SGE_TASK_ID:-1}}}}";
+
+    private static class Task {
+
+        private SSHJob job;
+
+        private String dirName;
+
+        private List<String> qeCommands;
+
+        private String taskId;
+
+        private SSHMonitor monitor;
+    }
+
+    private SSHServer sshServer;
+
+    private String scriptName;
+
+    private int numProcesses;
+
+    private int numThreads;
+
+    private List<Task> tasks;
+
+    private String remoteDir;
+
+    private String jobId;
+
+    private SSHArrayMonitor monitor;
+
+    public SSHArrayJob(SSHServer sshServer, String scriptName) {
+        if (sshServer == null) {
+            throw new IllegalArgumentException("sshServer is null.");
+        }
+
+        if (scriptName == null || scriptName.trim().isEmpty()) {
+            throw new IllegalArgumentException("scriptName is empty.");
+        }
+
+        this.sshServer = sshServer;
+        this.scriptName = scriptName.trim();
+        this.numProcesses = 1;
+        this.numThreads = 1;
+        this.tasks = new ArrayList<Task>();
+        this.remoteDir = null;
+        this.jobId = null;
+        this.monitor = null;
+    }
+
+    public SSHServer getSSHServer() {
+        return this.sshServer;
+    }
+
+    /*
+     * jobs have to be for the same server, and the largest numbers of processes and threads are requested.
+     */
+    public void addJob(SSHJob job) {
+        if (job == null) {
+            throw new IllegalArgumentException("job is null.");
+        }
+
+        if (!this.sshServer.equals(job.getSSHServer())) {
+            throw new IllegalArgumentException("job is for another server.");
+        }
+
+        Task task = new Task();
+        task.job = job;
+        task.dirName = null;
+        task.qeCommands = null;
+        task.taskId = null;
+        task.monitor = null;
+        this.tasks.add(task);
+
+        this.numProcesses = Math.max(this.numProcesses, job.getNumProcesses());
+        this.numThreads = Math.max(this.numThreads, job.getNumThreads());
+    }
+
+    public int numJobs() {
+        return this.tasks.size();
+    }
+
+    public String getJobId() {
+        return this.jobId;
+    }
+
+    /*
+     * the ID of the task, which is used by the scheduler, or null if the job has not been posted.
+     */
+    public String getTaskId(SSHJob job) {
+        Task task = this.findTask(job);
+        return task == null ? null : task.taskId;
+    }
+
+    /*
+     * the monitor of the task, or null if the job has not been posted.
+     */
+    public SSHMonitor getMonitor(SSHJob job) {
+        Task task = this.findTask(job);
+        return task == null ? null : task.monitor;
+    }
+
+    private Task findTask(SSHJob job) {
+        for (Task task : this.tasks) {
+            if (task.job == job) {
+                return task;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isSlurm() {
+        String jobCommand = this.sshServer.getJobCommand();
+        return jobCommand != null && jobCommand.contains("sbatch");
+    }
+
+    /*
+     * Slurm : 123
+     * PBS   : 123[].server (PBS Pro and Torque)
+     */
+    private static boolean isArrayJobId(String jobId, boolean slurm) {
+        if (jobId == null || jobId.isEmpty()) {
+            return false;
+        }
+
+        return slurm ? jobId.matches("\\d+") : jobId.contains("[]");
+    }
+
+    /*
+     * Slurm : 123 -> 123_4
+     * PBS   : 123[].server -> 123[4].server
+     */
+    private static String getTaskId(String jobId, int index, boolean slurm) {
+        if (jobId == null) {
+            return null;
+        }
+
+        if (slurm) {
+            return jobId + "_" + index;
+        }
+
+        int pos = jobId.indexOf("[]");
+        if (pos < 0) {
+            return jobId;
+        }
+
+        return jobId.substring(0, pos) + "[" + index + "]" + jobId.substring(pos + 2);
+    }
+
+    /**
+     * Posts all jobs as an array job, and starts monitoring the tasks together.
+     *
+     * @return true if the array job is posted, false otherwise
+     */
+    public boolean postJobsToServer() {
+        if (this.monitor != null) {
+            this.monitor.stopMonitoring();
+        }
+
+        this.remoteDir = null;
+        this.jobId = null;
+        this.monitor = null;
+
+        List<Task> postedTasks = this.prepareTasks();
+        if (postedTasks.isEmpty()) {
+            System.err.println("No job to post");
+            return false;
+        }
+
+        File scriptFile = this.writeScript(postedTasks);
+        if (scriptFile == null) {
+            return false;
+        }
+
+        Session session = null;
+        ChannelSftp sftpChannel = null;
+        boolean failed = false;
+
+        try {
+            Session[] session_ = { null };
+            sftpChannel = (ChannelSftp) SSHSessionPool.getInstance().openChannel(this.sshServer, session_, "sftp");
+            session = session_[0];
+
+            if (!SSHJob.setupRemoteDirectory(sftpChannel, this.sshServer.getWorkDirectory())) {
+                System.err.println("Failed to setup remote working directory");
+                return false;
+            }
+
+            String remoteDir = sftpChannel.pwd();
+
+            if (!this.uploadBundle(session, remoteDir, scriptFile, postedTasks)) {
+                System.err.println("Failed to upload files as tar.gz");
+                return false;
+            }
+
+            for (Task task : postedTasks) {
+                String taskDir = remoteDir.endsWith("/") ? (remoteDir + task.dirName) : (remoteDir + "/" + task.dirName);
+                if (!task.job.pushSaveDirectory(session, taskDir)) {
+                    System.err.println("Failed to synchronize the save directory of " + task.dirName);
+                    return false;
+                }
+            }
+
+            String jobCommand = "cd " + SSHTransfer.quote(remoteDir) + " && "
+                    + this.sshServer.getArrayJobCommand(scriptFile.getName(), postedTasks.size());
+
+            String jobOutput = SSHJob.executeRemoteCommandForOutput(session, jobCommand);
+            if (jobOutput == null) {
+                System.err.println("Failed to submit array job to remote server");
+                return false;
+            }
+
+            String jobId = SSHMonitor.parseJobId(jobOutput);
+            if (!isArrayJobId(jobId, this.isSlurm())) {
+                // tasks cannot be monitored by a wrong ID, which is not known to the scheduler.
+                System.err.println("Failed to parse ID of array job: " + jobOutput.trim());
+                return false;
+            }
+
+            this.remoteDir = remoteDir;
+            this.jobId = jobId;
+            System.out.println("Array job ID: " + this.jobId + " (" + postedTasks.size() + " tasks)");
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            failed = true;
+            return false;
+
+        } finally {
+            if (sftpChannel != null) {
+                sftpChannel.disconnect();
+            }
+
+            if (session != null) {
+                SSHSessionPool.getInstance().releaseSession(this.sshServer, session, failed);
+            }
+        }
+
+        boolean slurm = this.isSlurm();
+
+        List<SSHMonitor> monitors = new ArrayList<SSHMonitor>();
+        for (int i = 0; i < postedTasks.size(); i++) {
+            Task task = postedTasks.get(i);
+            task.taskId = getTaskId(this.jobId, i + 1, slurm);
+
+            String taskDir = this.remoteDir.endsWith("/") ? (this.remoteDir + task.dirName) : (this.remoteDir + "/" + task.dirName);
+            task.monitor = task.job.createMonitor(taskDir, task.taskId, true, true);
+            monitors.add(task.monitor);
+        }
+
+        // the scheduler is polled once for all tasks, not to open channels for each task.
+        this.monitor = new SSHArrayMonitor(this.sshServer, this.jobId, monitors);
+        this.monitor.startMonitoring();
+
+        return true;
+    }
+
+    private List<Task> prepareTasks() {
+        List<Task> postedTasks = new ArrayList<Task>();
+        Set<String> dirNames = new HashSet<String>();
+
+        // directories of tasks are in a unique directory of this array job,
+        // not to be shared with other array jobs, whose projects can have the same names.
+        String arrayDir = "array-" + UUID.randomUUID().toString().replace("-", "");
+
+        for (Task task : this.tasks) {
+            task.dirName = null;
+            task.taskId = null;
+            task.monitor = null;
+
+            task.qeCommands = task.job.prepareTask();
+            File directory = task.job.getProjectDirectory();
+            if (task.qeCommands == null || directory == null) {
+                System.err.println("Skipped a job of " + task.job.getProject().getDirectoryPath());
+                continue;
+            }
+
+            // directories of tasks are named after the projects, which can have the same names.
+            String dirName = directory.getName().replaceAll("[^A-Za-z0-9._\\-]", "_");
+            if (dirName.isEmpty() || dirName.startsWith(".")) {
+                dirName = "task" + dirName;
+            }
+
+            String dirName2 = dirName;
+            for (int i = 2; dirNames.contains(dirName2); i++) {
+                dirName2 = dirName + "-" + i;
+            }
+
+            dirNames.add(dirName2);
+            task.dirName = arrayDir + "/" + dirName2;
+            postedTasks.add(task);
+        }
+
+        return postedTasks;
+    }
+
+    private List<String> getScriptCommands(List<Task> postedTasks) {
+        List<String> commands = new ArrayList<String>();
+        commands.add(TASK_ID_DEFINITION);
+        commands.add("case ${" + WORD_TASK_ID + "} in");
+
+        for (int i = 0; i < postedTasks.size(); i++) {
+            Task task = postedTasks.get(i);
+            commands.add((i + 1) + ")");
+            commands.add("  cd " + SSHTransfer.quote(task.dirName) + " || exit 1");
+            for (String qeCommand : task.qeCommands) {
+                commands.add("  " + qeCommand);
+            }
+            commands.add("  ;;");
+        }
+
+        commands.add("esac");
+        return commands;
+    }
+
+    private File writeScript(List<Task> postedTasks) {
+        String scriptContent = this.sshServer.getJobScript(
+                this.getScriptCommands(postedTasks), this.numProcesses, this.numThreads);
+
+        if (scriptContent == null || scriptContent.isEmpty()) {
+            return null;
+        }
+
+        File directory = postedTasks.get(0).job.getProjectDirectory();
+        File file = new File(directory, this.scriptName);
+
+        PrintWriter writer = null;
+
+        try {
+            writer = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+            writer.print(scriptContent.replaceAll("[\\r\\n]+", "\n"));
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+
+        return file;
+    }
+
+    private boolean uploadBundle(Session session, String remoteDir, File scriptFile, List<Task> postedTasks)
+            throws Exception {
+
+        Map<String, File> entries = new LinkedHashMap<String, File>();
+        entries.put(scriptFile.getName(), scriptFile);
+
+        Set<File> pseudoFiles = new HashSet<File>();
+        for (Task task : postedTasks) {
+            for (File inpFile : task.job.getInpFiles()) {
+                entries.put(task.dirName + "/" + inpFile.getName(), inpFile);
+            }
+
+            pseudoFiles.addAll(task.job.getPseudoFiles());
+        }
+
+        List<String> postCommands = new ArrayList<String>();
+
+        if (!pseudoFiles.isEmpty()) {
+            SSHPseudoStore pseudoStore = new SSHPseudoStore(pseudoFiles);
+
+            String output = SSHJob.executeRemoteCommandForOutput(session, pseudoStore.getListCommand(remoteDir));
+            if (output == null) {
+                return false;
+            }
+
+            pseudoStore.setRemoteDigests(output);
+
+            // the suffix is unique, not to be mixed with uploads of other jobs
+            String suffix = "." + UUID.randomUUID().toString().replace("-", "") + ".part";
+            entries.putAll(pseudoStore.getMissingEntries(suffix));
+
+            String renameCommand = pseudoStore.getRenameCommand(remoteDir, suffix);
+            if (renameCommand != null) {
+                postCommands.add(renameCommand);
+            }
+
+            for (Task task : postedTasks) {
+                String linkCommand = pseudoStore.getLinkCommand(remoteDir, task.dirName, task.job.getPseudoFiles());
+                if (linkCommand != null) {
+                    postCommands.add(linkCommand);
+                }
+            }
+        }
+
+        String postCommand = postCommands.isEmpty() ? null : String.join(" && ", postCommands);
+        return SSHTransfer.upload(session, remoteDir, entries, postCommand);
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.ssh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+
+import burai.com.life.Life;
+
+/*
+ * Tasks of an array job are monitored together: the scheduler is asked once for the states of all tasks,
+ * and the logs of all tasks are tailed through one SFTP channel.
+ */
+class SSHArrayMonitor {
+
+    private static final int CONNECTION_TIMEOUT_MS = 30000;
+
+    private static final Pattern PBS_ID_PATTERN = Pattern.compile("Job\\s+Id\\s*:\\s*\\S*\\[(\\d+)\\]");
+    private static final Pattern PBS_STATE_PATTERN = Pattern.compile("job_state\\s*=\\s*(\\w+)");
+
+    private SSHServer sshServer;
+
+    private String jobId;
+
+    private boolean slurm;
+
+    // the monitor of the task i + 1, or null
+    private List<SSHMonitor> monitors;
+
+    private boolean monitoring;
+
+    SSHArrayMonitor(SSHServer sshServer, String jobId, List<SSHMonitor> monitors) {
+        if (sshServer == null) {
+            throw new IllegalArgumentException("sshServer is null.");
+        }
+
+        if (monitors == null) {
+            throw new IllegalArgumentException("monitors is null.");
+        }
+
+        this.sshServer = sshServer;
+        this.jobId = jobId;
+
+        String jobCommand = sshServer.getJobCommand();
+        this.slurm = jobCommand != null && jobCommand.contains("sbatch");
+
+        this.monitors = monitors;
+        this.monitoring = false;
+    }
+
+    void startMonitoring() {
+        synchronized (this) {
+            if (this.monitoring) {
+                return;
+            }
+
+            this.monitoring = true;
+        }
+
+        for (SSHMonitor monitor : this.monitors) {
+            if (monitor != null) {
+                monitor.beginMonitoring();
+            }
+        }
+
+        Thread thread = new Thread(() -> {
+            try {
+                this.monitorKernel();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            synchronized (this) {
+                this.monitoring = false;
+            }
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+
+        Life.getInstance().addOnDead(() -> this.stopMonitoring());
+    }
+
+    synchronized void stopMonitoring() {
+        this.monitoring = false;
+        this.notifyAll();
+    }
+
+    private void monitorKernel() {
+        long interval = 1000L * this.sshServer.intMonitorInterval();
+
+        int numTasks = this.monitors.size();
+        boolean[] finished = new boolean[numTasks];
+        boolean[] ended = new boolean[numTasks];
+
+        for (int i = 0; i < numTasks; i++) {
+            // an array job without ID is finished when it has been posted.
+            finished[i] = this.jobId == null;
+            ended[i] = this.monitors.get(i) == null;
+        }
+
+        while (true) {
+            synchronized (this) {
+                if (!this.monitoring) {
+                    break;
+                }
+            }
+
+            // tasks can be stopped by their own monitors.
+            for (int i = 0; i < numTasks; i++) {
+                if (!ended[i] && !this.monitors.get(i).isMonitoring()) {
+                    this.monitors.get(i).finishMonitoring(false);
+                    ended[i] = true;
+                }
+            }
+
+            Session session = null;
+            boolean failed = false;
+
+            try {
+                session = SSHSessionPool.getInstance().acquireSession(this.sshServer);
+
+                if (!allOf(finished)) {
+                    Set<Integer> activeTasks = this.getActiveTasks(session);
+                    for (int i = 0; activeTasks != null && i < numTasks; i++) {
+                        finished[i] = finished[i] || !activeTasks.contains(i + 1);
+                    }
+                }
+
+                this.tailLogs(session, ended);
+
+            } catch (JSchException | SftpException | IOException e) {
+                System.err.println("Failed to monitor remote array job: " + e.getMessage());
+                failed = true;
+
+            } finally {
+                if (session != null) {
+                    SSHSessionPool.getInstance().releaseSession(this.sshServer, session, failed);
+                }
+            }
+
+            for (int i = 0; (!failed) && i < numTasks; i++) {
+                if (finished[i] && !ended[i]) {
+                    this.monitors.get(i).finishMonitoring(true);
+                    ended[i] = true;
+                }
+            }
+
+            if (allOf(ended)) {
+                break;
+            }
+
+            synchronized (this) {
+                if (!this.monitoring) {
+                    break;
+                }
+
+                try {
+                    this.wait(interval);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+
+        for (int i = 0; i < numTasks; i++) {
+            if (!ended[i]) {
+                this.monitors.get(i).finishMonitoring(finished[i]);
+            }
+        }
+    }
+
+    private static boolean allOf(boolean[] values) {
+        for (boolean value : values) {
+            if (!value) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void tailLogs(Session session, boolean[] ended) throws JSchException, SftpException, IOException {
+        ChannelSftp sftpChannel = (ChannelSftp) session.openChannel("sftp");
+
+        try {
+            sftpChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            for (int i = 0; i < ended.length; i++) {
+                if (!ended[i]) {
+                    this.monitors.get(i).tailLogs(sftpChannel);
+                }
+            }
+
+        } finally {
+            sftpChannel.disconnect();
+        }
+    }
+
+    /*
+     * Slurm : squeue -r lists a line of each task, as 123_4 RUNNING
+     * PBS   : qstat -t -f lists a block of each task, as Job Id: 123[4].server ... job_state = R
+     */
+    private String getStatusCommand() {
+        if (this.slurm) {
+            return "squeue -h -r -j " + SSHTransfer.quote(this.jobId) + " -o " + SSHTransfer.quote("%i %T");
+        } else {
+            return "qstat -t -f " + SSHTransfer.quote(this.jobId);
+        }
+    }
+
+    /*
+     * returns indexes of tasks which are not finished,
+     * or null if the states are not known (e.g. the scheduler is busy), to be asked again.
+     */
+    private Set<Integer> getActiveTasks(Session session) throws JSchException, IOException {
+        ChannelExec execChannel = null;
+
+        try {
+            execChannel = (ChannelExec) session.openChannel("exec");
+            execChannel.setCommand(this.getStatusCommand());
+            InputStream in = execChannel.getInputStream();
+            InputStream err = execChannel.getErrStream();
+            execChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            String output = SSHMonitor.readAll(in);
+            String error = SSHMonitor.readAll(err);
+            while (!execChannel.isClosed()) {
+                try {
+                    Thread.sleep(100L);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+
+            if (execChannel.getExitStatus() != 0) {
+                // the scheduler does not know jobs which have been finished.
+                if (SSHMonitor.isUnknownJob(error) || SSHMonitor.isUnknownJob(output)) {
+                    return new HashSet<Integer>();
+                }
+
+                System.err.println("Failed to get status of remote array job " + this.jobId + ": " + error.trim());
+                return null;
+            }
+
+            return this.slurm ? parseSlurmTasks(output, this.jobId) : parsePBSTasks(output);
+
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+            }
+        }
+    }
+
+    private static Set<Integer> parseSlurmTasks(String output, String jobId) {
+        Set<Integer> activeTasks = new HashSet<Integer>();
+        Pattern idPattern = Pattern.compile(Pattern.quote(jobId) + "_(\\d+)");
+
+        for (String line : output.split("\\r?\\n")) {
+            String[] words = line.trim().split("\\s+");
+            if (words.length < 2) {
+                continue;
+            }
+
+            Matcher matcher = idPattern.matcher(words[0]);
+            if (matcher.matches() && SSHMonitor.isSlurmActive(words[1])) {
+                activeTasks.add(Integer.parseInt(matcher.group(1)));
+            }
+        }
+
+        return activeTasks;
+    }
+
+    private static Set<Integer> parsePBSTasks(String output) {
+        Set<Integer> activeTasks = new HashSet<Integer>();
+        Integer index = null;
+
+        for (String line : output.split("\\r?\\n")) {
+            Matcher matcher = PBS_ID_PATTERN.matcher(line);
+            if (matcher.find()) {
+                index = Integer.valueOf(matcher.group(1));
+                continue;
+            }
+
+            matcher = PBS_STATE_PATTERN.matcher(line);
+            if (index != null && matcher.find()) {
+                if (!SSHMonitor.isPBSFinished(matcher.group(1))) {
+                    activeTasks.add(index);
+                }
+                index = null;
+            }
+        }
+
+        return activeTasks;
+    }
+}
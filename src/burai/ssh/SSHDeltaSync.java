@@ -0,0 +1,718 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.ssh;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+
+/*
+ * Directories (e.g. prefix.save) are synchronized between the server and this machine, by blocks.
+ * Checksums of remote blocks (Adler-32 and MD5) are computed by a helper script, which is shipped over exec.
+ *  - download: blocks at the same offsets are compared, and only changed blocks are read over SFTP.
+ *  - upload: the local file is scanned with the rolling Adler-32, as rsync, so that shifted blocks are also
+ *    matched, and only literal data is sent to the helper, which rebuilds the file on the server.
+ */
+public class SSHDeltaSync {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final int CONNECTION_TIMEOUT_MS = 30000;
+    private static final long CLOSING_INTERVAL_MS = 100L;
+
+    private static final int ADLER_MOD = 65521;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024 * 1024;
+
+    private static final String TEMP_SUFFIX = ".burai-delta";
+
+    // python 2 or 3 is required on the server
+    private static final String[] HELPER_SCRIPT = {
+            "import sys, os, zlib, hashlib, binascii",
+            "def files(root):",
+            "    for d, dirs, names in os.walk(root):",
+            "        dirs.sort()",
+            "        for n in sorted(names):",
+            "            p = os.path.join(d, n)",
+            "            if os.path.isfile(p) and not os.path.islink(p) and not n.endswith('.burai-delta'):",
+            "                yield os.path.relpath(p, root), p",
+            "def sums(bs, root):",
+            "    w = sys.stdout.write",
+            "    if os.path.isdir(root):",
+            "        for rel, p in files(root):",
+            "            w('F %d %s\\n' % (os.path.getsize(p), binascii.hexlify(rel.encode('utf-8')).decode('ascii')))",
+            "            f = open(p, 'rb')",
+            "            while True:",
+            "                b = f.read(bs)",
+            "                if not b:",
+            "                    break",
+            "                w('%d %s\\n' % (zlib.adler32(b) & 0xffffffff, hashlib.md5(b).hexdigest()))",
+            "            f.close()",
+            "    w('END\\n')",
+            "def copy(src, dst, n):",
+            "    while n > 0:",
+            "        b = src.read(min(n, 1048576))",
+            "        if not b:",
+            "            raise IOError('unexpected end')",
+            "        dst.write(b)",
+            "        n -= len(b)",
+            "def patch(root):",
+            "    inp = getattr(sys.stdin, 'buffer', sys.stdin)",
+            "    old = tmp = dst = None",
+            "    while True:",
+            "        t = inp.readline().decode('ascii').split()",
+            "        if not t:",
+            "            break",
+            "        if t[0] == 'F':",
+            "            dst = os.path.join(root, binascii.unhexlify(t[1]).decode('utf-8'))",
+            "            if not os.path.isdir(os.path.dirname(dst)):",
+            "                os.makedirs(os.path.dirname(dst))",
+            "            old = open(dst, 'rb') if os.path.isfile(dst) else None",
+            "            tmp = open(dst + '.burai-delta', 'wb')",
+            "        elif t[0] == 'C':",
+            "            old.seek(int(t[1]))",
+            "            copy(old, tmp, int(t[2]))",
+            "        elif t[0] == 'D':",
+            "            copy(inp, tmp, int(t[1]))",
+            "        elif t[0] == 'E':",
+            "            tmp.close()",
+            "            if old:",
+            "                old.close()",
+            "            os.rename(dst + '.burai-delta', dst)",
+            "        elif t[0] == 'X':",
+            "            p = os.path.join(root, binascii.unhexlify(t[1]).decode('utf-8'))",
+            "            if os.path.isfile(p):",
+            "                os.remove(p)",
+            "    sys.stdout.write('OK\\n')",
+            "if sys.argv[1] == 'sums':",
+            "    sums(int(sys.argv[2]), sys.argv[3])",
+            "else:",
+            "    patch(sys.argv[2])"
+    };
+
+    private static class RemoteFile {
+
+        private long size;
+
+        private List<Long> weakSums;
+
+        private List<String> strongSums;
+    }
+
+    private Session session;
+
+    private int blockSize;
+
+    private long numSentBytes;
+
+    private long numTotalBytes;
+
+    public SSHDeltaSync(Session session) {
+        this(session, DEFAULT_BLOCK_SIZE);
+    }
+
+    public SSHDeltaSync(Session session, int blockSize) {
+        if (session == null) {
+            throw new IllegalArgumentException("session is null.");
+        }
+
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize is not positive.");
+        }
+
+        this.session = session;
+        this.blockSize = blockSize;
+        this.numSentBytes = 0L;
+        this.numTotalBytes = 0L;
+    }
+
+    /*
+     * bytes which have been transferred, by the last download or upload.
+     */
+    public long getNumSentBytes() {
+        return this.numSentBytes;
+    }
+
+    /*
+     * bytes of all files, by the last download or upload.
+     */
+    public long getNumTotalBytes() {
+        return this.numTotalBytes;
+    }
+
+    private static String getHelperCommand(String... args) {
+        StringBuilder script = new StringBuilder();
+        for (String line : HELPER_SCRIPT) {
+            script.append(line).append('\n');
+        }
+
+        String encoded = Base64.getEncoder().encodeToString(script.toString().getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder command = new StringBuilder();
+        command.append("PY=$(command -v python3 || command -v python) && \"$PY\" -c ");
+        command.append(SSHTransfer.quote("import base64;exec(base64.b64decode('" + encoded + "').decode('utf-8'))"));
+        for (String arg : args) {
+            command.append(' ').append(SSHTransfer.quote(arg));
+        }
+
+        return command.toString();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte value : bytes) {
+            builder.append(String.format("%02x", value & 0xff));
+        }
+
+        return builder.toString();
+    }
+
+    private static String fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static int waitForExit(ChannelExec execChannel) {
+        while (!execChannel.isClosed()) {
+            try {
+                Thread.sleep(CLOSING_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return execChannel.getExitStatus();
+    }
+
+    /*
+     * checksums of blocks of files in the remote directory, keyed by relative paths.
+     * an empty map, if the directory does not exist.
+     */
+    private Map<String, RemoteFile> readRemoteSums(String remoteDir) throws JSchException, IOException {
+        Map<String, RemoteFile> remoteFiles = new LinkedHashMap<String, RemoteFile>();
+
+        ChannelExec execChannel = null;
+
+        try {
+            execChannel = (ChannelExec) this.session.openChannel("exec");
+            execChannel.setCommand(getHelperCommand("sums", Integer.toString(this.blockSize), remoteDir));
+
+            InputStream in = execChannel.getInputStream();
+            execChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+
+            boolean ended = false;
+            RemoteFile remoteFile = null;
+
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if ("END".equals(tokens[0])) {
+                    ended = true;
+
+                } else if ("F".equals(tokens[0]) && tokens.length > 2) {
+                    remoteFile = new RemoteFile();
+                    remoteFile.size = Long.parseLong(tokens[1]);
+                    remoteFile.weakSums = new ArrayList<Long>();
+                    remoteFile.strongSums = new ArrayList<String>();
+                    remoteFiles.put(fromHex(tokens[2]), remoteFile);
+
+                } else if (remoteFile != null && tokens.length > 1) {
+                    remoteFile.weakSums.add(Long.parseLong(tokens[0]));
+                    remoteFile.strongSums.add(tokens[1]);
+                }
+            }
+
+            int exitStatus = waitForExit(execChannel);
+            if (!ended || exitStatus != 0) {
+                throw new IOException("cannot compute checksums on the server (python is required), status: " + exitStatus);
+            }
+
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+            }
+        }
+
+        return remoteFiles;
+    }
+
+    /*
+     * local files in the directory, keyed by relative paths with '/'.
+     */
+    private static Map<String, File> listLocalFiles(File localDir) {
+        Map<String, File> localFiles = new LinkedHashMap<String, File>();
+        listLocalFiles(localDir, "", localFiles);
+        return localFiles;
+    }
+
+    private static void listLocalFiles(File dir, String prefix, Map<String, File> localFiles) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                listLocalFiles(file, name + "/", localFiles);
+            } else if (file.isFile() && !name.endsWith(TEMP_SUFFIX)) {
+                localFiles.put(name, file);
+            }
+        }
+    }
+
+    /*
+     * MD5 of blocks at fixed offsets.
+     */
+    private List<String> getLocalSums(File file) throws IOException {
+        List<String> sums = new ArrayList<String>();
+        MessageDigest digest = createDigest();
+
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] buffer = new byte[this.blockSize];
+            while (true) {
+                int size = 0;
+                while (size < buffer.length) {
+                    int nbyte = input.read(buffer, size, buffer.length - size);
+                    if (nbyte < 0) {
+                        break;
+                    }
+                    size += nbyte;
+                }
+
+                if (size < 1) {
+                    break;
+                }
+
+                digest.update(buffer, 0, size);
+                sums.add(toHex(digest.digest()));
+
+                if (size < buffer.length) {
+                    break;
+                }
+            }
+        }
+
+        return sums;
+    }
+
+    /**
+     * Mirrors the remote directory into the local directory, reading only changed blocks.
+     * Local files, which do not exist on the server, are deleted.
+     *
+     * @param remoteDir The remote directory
+     * @param localDir The local directory, which is created if needed
+     * @return the number of updated files
+     */
+    public int download(String remoteDir, File localDir) throws JSchException, SftpException, IOException {
+        if (remoteDir == null || remoteDir.isEmpty()) {
+            throw new IllegalArgumentException("remoteDir is empty.");
+        }
+
+        if (localDir == null) {
+            throw new IllegalArgumentException("localDir is null.");
+        }
+
+        this.numSentBytes = 0L;
+        this.numTotalBytes = 0L;
+
+        Map<String, RemoteFile> remoteFiles = this.readRemoteSums(remoteDir);
+        if (remoteFiles.isEmpty()) {
+            return 0;
+        }
+
+        int numUpdated = 0;
+
+        ChannelSftp sftpChannel = (ChannelSftp) this.session.openChannel("sftp");
+
+        try {
+            sftpChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            for (Map.Entry<String, RemoteFile> entry : remoteFiles.entrySet()) {
+                String name = entry.getKey();
+                RemoteFile remoteFile = entry.getValue();
+                this.numTotalBytes += remoteFile.size;
+
+                File localFile = new File(localDir, name.replace('/', File.separatorChar));
+                if (this.downloadFile(sftpChannel, remoteDir + "/" + name, remoteFile, localFile)) {
+                    numUpdated++;
+                }
+            }
+
+        } finally {
+            sftpChannel.disconnect();
+        }
+
+        for (Map.Entry<String, File> entry : listLocalFiles(localDir).entrySet()) {
+            if (!remoteFiles.containsKey(entry.getKey())) {
+                entry.getValue().delete();
+                numUpdated++;
+            }
+        }
+
+        System.out.println("Delta sync (download) " + remoteDir + ": "
+                + this.numSentBytes + " of " + this.numTotalBytes + " bytes transferred");
+
+        return numUpdated;
+    }
+
+    private boolean downloadFile(ChannelSftp sftpChannel, String remotePath, RemoteFile remoteFile, File localFile)
+            throws SftpException, IOException {
+
+        List<String> localSums = localFile.isFile() ? this.getLocalSums(localFile) : new ArrayList<String>();
+
+        File parent = localFile.getParentFile();
+        if (parent != null && !parent.isDirectory()) {
+            parent.mkdirs();
+        }
+
+        boolean updated = localFile.length() != remoteFile.size || !localFile.isFile();
+
+        // the file is updated in place, and changed blocks in a row are read at once.
+        try (RandomAccessFile output = new RandomAccessFile(localFile, "rw")) {
+            int numBlocks = remoteFile.strongSums.size();
+            int iBlock = 0;
+            while (iBlock < numBlocks) {
+                if (iBlock < localSums.size() && localSums.get(iBlock).equals(remoteFile.strongSums.get(iBlock))) {
+                    iBlock++;
+                    continue;
+                }
+
+                int jBlock = iBlock + 1;
+                while (jBlock < numBlocks && !(jBlock < localSums.size()
+                        && localSums.get(jBlock).equals(remoteFile.strongSums.get(jBlock)))) {
+                    jBlock++;
+                }
+
+                long offset = ((long) iBlock) * this.blockSize;
+                long length = Math.min(remoteFile.size, ((long) jBlock) * this.blockSize) - offset;
+                this.readRange(sftpChannel, remotePath, offset, length, output);
+
+                updated = true;
+                iBlock = jBlock;
+            }
+
+            output.setLength(remoteFile.size);
+        }
+
+        return updated;
+    }
+
+    private void readRange(ChannelSftp sftpChannel, String remotePath, long offset, long length, RandomAccessFile output)
+            throws SftpException, IOException {
+
+        output.seek(offset);
+
+        try (InputStream input = sftpChannel.get(remotePath, null, offset)) {
+            byte[] buffer = new byte[Math.min(this.blockSize, 65536)];
+            long rest = length;
+            while (rest > 0L) {
+                int nbyte = input.read(buffer, 0, (int) Math.min(buffer.length, rest));
+                if (nbyte < 0) {
+                    throw new IOException("remote file has been truncated: " + remotePath);
+                }
+
+                output.write(buffer, 0, nbyte);
+                rest -= nbyte;
+                this.numSentBytes += nbyte;
+            }
+        }
+    }
+
+    /**
+     * Mirrors the local directory into the remote directory, sending only literal data.
+     * Remote files, which do not exist on this machine, are deleted.
+     *
+     * @param localDir The local directory
+     * @param remoteDir The remote directory, which is created if needed
+     * @return true if the remote directory has been synchronized, false otherwise
+     */
+    public boolean upload(File localDir, String remoteDir) throws JSchException, IOException {
+        if (localDir == null) {
+            throw new IllegalArgumentException("localDir is null.");
+        }
+
+        if (remoteDir == null || remoteDir.isEmpty()) {
+            throw new IllegalArgumentException("remoteDir is empty.");
+        }
+
+        this.numSentBytes = 0L;
+        this.numTotalBytes = 0L;
+
+        Map<String, RemoteFile> remoteFiles = this.readRemoteSums(remoteDir);
+        Map<String, File> localFiles = listLocalFiles(localDir);
+
+        ChannelExec execChannel = null;
+        String output = null;
+        int exitStatus = -1;
+
+        try {
+            execChannel = (ChannelExec) this.session.openChannel("exec");
+            execChannel.setCommand("mkdir -p " + SSHTransfer.quote(remoteDir) + " && " + getHelperCommand("patch", remoteDir));
+
+            OutputStream out = new BufferedOutputStream(execChannel.getOutputStream(), 65536);
+            InputStream in = execChannel.getInputStream();
+            execChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            for (Map.Entry<String, File> entry : localFiles.entrySet()) {
+                String name = entry.getKey();
+                File localFile = entry.getValue();
+                this.numTotalBytes += localFile.length();
+
+                RemoteFile remoteFile = remoteFiles.get(name);
+                if (remoteFile != null && this.isSameFile(localFile, remoteFile)) {
+                    continue;
+                }
+
+                writeCommand(out, "F " + toHex(name.getBytes(StandardCharsets.UTF_8)));
+                this.writeDelta(out, localFile, remoteFile);
+                writeCommand(out, "E");
+            }
+
+            for (String name : remoteFiles.keySet()) {
+                if (!localFiles.containsKey(name)) {
+                    writeCommand(out, "X " + toHex(name.getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+
+            out.close();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            StringBuilder builder = new StringBuilder();
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                builder.append(line).append('\n');
+            }
+
+            output = builder.toString().trim();
+            exitStatus = waitForExit(execChannel);
+
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+            }
+        }
+
+        System.out.println("Delta sync (upload) " + remoteDir + ": "
+                + this.numSentBytes + " of " + this.numTotalBytes + " bytes transferred");
+
+        return exitStatus == 0 && "OK".equals(output);
+    }
+
+    private boolean isSameFile(File localFile, RemoteFile remoteFile) throws IOException {
+        if (localFile.length() != remoteFile.size) {
+            return false;
+        }
+
+        return this.getLocalSums(localFile).equals(remoteFile.strongSums);
+    }
+
+    private static void writeCommand(OutputStream out, String command) throws IOException {
+        out.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void writeCopy(OutputStream out, long offset, long length) throws IOException {
+        if (length > 0L) {
+            writeCommand(out, "C " + offset + " " + length);
+        }
+    }
+
+    private void writeLiteral(OutputStream out, RandomAccessFile input, long start, long end) throws IOException {
+        if (end <= start) {
+            return;
+        }
+
+        byte[] buffer = new byte[Math.min(this.blockSize, 65536)];
+        input.seek(start);
+
+        long rest = end - start;
+        writeCommand(out, "D " + rest);
+        while (rest > 0L) {
+            int nbyte = input.read(buffer, 0, (int) Math.min(buffer.length, rest));
+            if (nbyte < 0) {
+                throw new IOException("local file has been truncated.");
+            }
+
+            out.write(buffer, 0, nbyte);
+            rest -= nbyte;
+            this.numSentBytes += nbyte;
+        }
+    }
+
+    /*
+     * rsync-like delta: the window of a block is rolled over the local file,
+     * and matched with blocks of the remote file by Adler-32, then by MD5.
+     */
+    private void writeDelta(OutputStream out, File localFile, RemoteFile remoteFile) throws IOException {
+        long size = localFile.length();
+
+        try (RandomAccessFile input = new RandomAccessFile(localFile, "r");
+                RandomAccessFile literal = new RandomAccessFile(localFile, "r")) {
+
+            if (remoteFile == null || remoteFile.weakSums.isEmpty() || size < this.blockSize) {
+                this.writeLiteral(out, literal, 0L, size);
+                return;
+            }
+
+            Map<Long, List<Integer>> weakMap = new HashMap<Long, List<Integer>>();
+            for (int i = 0; i < remoteFile.weakSums.size(); i++) {
+                // the last short block is not matched by the rolling window
+                if (((long) (i + 1)) * this.blockSize > remoteFile.size) {
+                    continue;
+                }
+
+                List<Integer> indexes = weakMap.get(remoteFile.weakSums.get(i));
+                if (indexes == null) {
+                    indexes = new ArrayList<Integer>();
+                    weakMap.put(remoteFile.weakSums.get(i), indexes);
+                }
+                indexes.add(i);
+            }
+
+            MessageDigest digest = createDigest();
+
+            byte[] buffer = new byte[(int) Math.max(this.blockSize + 1, Math.min(SCAN_BUFFER_SIZE, size))];
+            long bufferStart = 0L;
+            int bufferSize = 0;
+
+            long literalStart = 0L;
+            long copyOffset = -1L;
+            long copyLength = 0L;
+
+            long position = 0L;
+            boolean rolling = false;
+            long a = 0L;
+            long b = 0L;
+
+            while (position + this.blockSize <= size) {
+                // the buffer has [position, position + blockSize] (one more byte to roll)
+                long needed = Math.min(size, position + this.blockSize + 1);
+                if (needed > bufferStart + bufferSize) {
+                    int keep = Math.max(0, (int) (bufferStart + bufferSize - position));
+                    if (keep > 0) {
+                        System.arraycopy(buffer, (int) (position - bufferStart), buffer, 0, keep);
+                    }
+
+                    bufferStart = position;
+                    bufferSize = keep;
+                    input.seek(bufferStart + bufferSize);
+                    while (bufferSize < buffer.length && (bufferStart + bufferSize) < size) {
+                        int nbyte = input.read(buffer, bufferSize, buffer.length - bufferSize);
+                        if (nbyte < 0) {
+                            break;
+                        }
+                        bufferSize += nbyte;
+                    }
+                }
+
+                int offset = (int) (position - bufferStart);
+
+                if (!rolling) {
+                    Adler32 adler = new Adler32();
+                    adler.update(buffer, offset, this.blockSize);
+                    long value = adler.getValue();
+                    a = value & 0xffffL;
+                    b = (value >>> 16) & 0xffffL;
+                    rolling = true;
+                }
+
+                long weak = (b << 16) | a;
+                int matched = -1;
+
+                List<Integer> indexes = weakMap.get(weak);
+                if (indexes != null) {
+                    digest.update(buffer, offset, this.blockSize);
+                    String strong = toHex(digest.digest());
+                    for (int index : indexes) {
+                        if (strong.equals(remoteFile.strongSums.get(index))) {
+                            matched = index;
+                            break;
+                        }
+                    }
+                }
+
+                if (matched >= 0) {
+                    long matchedOffset = ((long) matched) * this.blockSize;
+                    if (copyLength > 0L && literalStart == position && copyOffset + copyLength == matchedOffset) {
+                        copyLength += this.blockSize;
+
+                    } else {
+                        this.writeCopy(out, copyOffset, copyLength);
+                        this.writeLiteral(out, literal, literalStart, position);
+                        copyOffset = matchedOffset;
+                        copyLength = this.blockSize;
+                    }
+
+                    position += this.blockSize;
+                    literalStart = position;
+                    rolling = false;
+                    continue;
+                }
+
+                if (position + this.blockSize >= size) {
+                    break;
+                }
+
+                // roll the window by one byte
+                int outByte = buffer[offset] & 0xff;
+                int inByte = buffer[offset + this.blockSize] & 0xff;
+                a = Math.floorMod(a - outByte + inByte, ADLER_MOD);
+                b = Math.floorMod(b - ((long) this.blockSize) * outByte + a - 1L, ADLER_MOD);
+                position++;
+            }
+
+            this.writeCopy(out, copyOffset, copyLength);
+            this.writeLiteral(out, literal, literalStart, size);
+        }
+    }
+}
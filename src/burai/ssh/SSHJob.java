@@ -25,13 +25,15 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import com.jcraft.jsch.Channel;
 import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpException;
@@ -39,11 +41,15 @@ import com.jcraft.jsch.SftpException;
 import burai.com.file.FileTools;
 import burai.input.QEInput;
 import burai.input.card.QEAtomicSpecies;
+import burai.input.namelist.QENamelist;
+import burai.input.namelist.QEValue;
 import burai.project.Project;
 import burai.pseudo.PseudoPotential;
 import burai.run.InputEditor;
 import burai.run.RunningCondition;
+import burai.run.RunningProduct;
 import burai.run.RunningType;
+import burai.run.parser.LogParser;
 
 public class SSHJob {
 
@@ -69,6 +75,18 @@ public class SSHJob {
 
     private Set<File> pseudoFiles;
 
+    private List<String> logNames;
+
+    private List<String> errNames;
+
+    private List<LogParser> parsers;
+
+    private boolean saveRequired;
+
+    private String remoteDir;
+
+    private String jobId;
+
     private Session session;
 
     private ChannelSftp sftpChannel;
@@ -93,6 +111,12 @@ public class SSHJob {
         this.scriptFile = null;
         this.inpFiles = null;
         this.pseudoFiles = null;
+        this.logNames = null;
+        this.errNames = null;
+        this.parsers = null;
+
+        this.remoteDir = null;
+        this.jobId = null;
 
         this.session = null;
         this.sftpChannel = null;
@@ -137,12 +161,23 @@ public class SSHJob {
     }
 
     public boolean postJobToServer() {
-        this.setupFiles();
+        this.remoteDir = null;
+        this.jobId = null;
+
+        this.setupFiles(true);
 
         if (this.scriptFile == null) {
             return false;
         }
 
+        // the working directory is shared by projects of the same prefix,
+        // where prefix.save may be of another project.
+        if (this.saveRequired) {
+            System.err.println("Cannot post a job which starts from the save directory, "
+                    + "because the remote working directory is shared with other projects");
+            return false;
+        }
+
         try {
             if (!this.connectSSH()) {
                 System.err.println("Failed to connect to SSH server");
@@ -150,25 +185,34 @@ public class SSHJob {
             }
 
             // Change to or create working directory if specified
-            if (!this.setupRemoteDirectory()) {
+            if (!setupRemoteDirectory(this.sftpChannel, this.sshServer.getWorkDirectory())) {
                 System.err.println("Failed to setup remote working directory");
                 return false;
             }
 
-            this.ftpFile(this.scriptFile);
+            String remoteDir = this.sftpChannel.pwd();
+
+            if (this.sshServer.isBundledTransfer()) {
+                if (!this.uploadBundle(remoteDir)) {
+                    System.err.println("Failed to upload files as tar.gz");
+                    return false;
+                }
+
+            } else {
+                this.ftpFile(this.scriptFile);
 
-            if (this.inpFiles != null) {
-                for (File inpFile : this.inpFiles) {
-                    if (inpFile != null) {
-                        this.ftpFile(inpFile);
+                if (this.inpFiles != null) {
+                    for (File inpFile : this.inpFiles) {
+                        if (inpFile != null) {
+                            this.ftpFile(inpFile);
+                        }
                     }
                 }
-            }
 
-            if (this.pseudoFiles != null) {
-                for (File pseudoFile : this.pseudoFiles) {
-                    if (pseudoFile != null) {
-                        this.ftpFile(pseudoFile);
+                if (this.pseudoFiles != null && (!this.pseudoFiles.isEmpty())) {
+                    if (!this.storePseudoFiles(remoteDir)) {
+                        System.err.println("Failed to upload pseudo potentials");
+                        return false;
                     }
                 }
             }
@@ -182,13 +226,19 @@ public class SSHJob {
                 jobCommand = "cd " + workDir.trim() + " && " + jobCommand;
             }
             
-            boolean jobSubmitted = this.executeRemoteCommand(jobCommand);
+            String jobOutput = this.executeRemoteCommandForOutput(jobCommand);
             
-            if (!jobSubmitted) {
+            if (jobOutput == null) {
                 System.err.println("Failed to submit job to remote server");
                 return false;
             }
 
+            this.remoteDir = remoteDir;
+            this.jobId = SSHMonitor.parseJobId(jobOutput);
+            if (this.jobId != null) {
+                System.out.println("Job ID: " + this.jobId);
+            }
+
             return true;
 
         } catch (Exception e) {
@@ -234,9 +284,240 @@ public class SSHJob {
         }
     }
 
-    private void setupFiles() {
+    /**
+     * Uploads the script, the inputs and the missing pseudo potentials as a single tar.gz,
+     * then stores and links the pseudo potentials on the server.
+     *
+     * @param remoteDir The absolute path of the remote working directory
+     * @return true if all files are uploaded, false otherwise
+     */
+    private boolean uploadBundle(String remoteDir) {
+        Map<String, File> entries = new LinkedHashMap<String, File>();
+        entries.put(this.scriptFile.getName(), this.scriptFile);
+
+        if (this.inpFiles != null) {
+            for (File inpFile : this.inpFiles) {
+                if (inpFile != null) {
+                    entries.put(inpFile.getName(), inpFile);
+                }
+            }
+        }
+
+        String postCommand = null;
+
+        if (this.pseudoFiles != null && (!this.pseudoFiles.isEmpty())) {
+            SSHPseudoStore pseudoStore = new SSHPseudoStore(this.pseudoFiles);
+
+            String output = this.executeRemoteCommandForOutput(pseudoStore.getListCommand(remoteDir));
+            if (output == null) {
+                return false;
+            }
+
+            pseudoStore.setRemoteDigests(output);
+
+            // the suffix is unique, not to be mixed with uploads of other jobs
+            String suffix = "." + UUID.randomUUID().toString().replace("-", "") + ".part";
+            entries.putAll(pseudoStore.getMissingEntries(suffix));
+
+            String renameCommand = pseudoStore.getRenameCommand(remoteDir, suffix);
+            String linkCommand = pseudoStore.getLinkCommand(remoteDir);
+            if (renameCommand != null && linkCommand != null) {
+                postCommand = renameCommand + " && " + linkCommand;
+            } else {
+                postCommand = renameCommand != null ? renameCommand : linkCommand;
+            }
+        }
+
+        try {
+            return SSHTransfer.upload(this.session, remoteDir, entries, postCommand);
+
+        } catch (JSchException | IOException e) {
+            System.err.println("Failed to upload files: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Uploads pseudo potentials which are missing in the remote store,
+     * and links them into the remote working directory.
+     *
+     * @param remoteDir The absolute path of the remote working directory
+     * @return true if all pseudo potentials are linked, false otherwise
+     */
+    private boolean storePseudoFiles(String remoteDir) {
+        SSHPseudoStore pseudoStore = new SSHPseudoStore(this.pseudoFiles);
+
+        String output = this.executeRemoteCommandForOutput(pseudoStore.getListCommand(remoteDir));
+        if (output == null) {
+            return false;
+        }
+
+        pseudoStore.setRemoteDigests(output);
+        if (!pseudoStore.uploadMissingFiles(this.session, remoteDir)) {
+            return false;
+        }
+
+        String linkCommand = pseudoStore.getLinkCommand(remoteDir);
+        if (linkCommand == null) {
+            return true;
+        }
+
+        return this.executeRemoteCommand(linkCommand);
+    }
+
+    /**
+     * Synchronizes the local save directory into the remote directory of this project by delta,
+     * if a calculation of this job starts from it (e.g. NSCF after SCF which has been skipped).
+     * The remote directory has to be owned by this project (as a task of SSHArrayJob),
+     * because files which do not exist locally are deleted from it.
+     *
+     * @param session The session of the SSH server
+     * @param remoteDir The absolute path of the remote directory of this project
+     * @return true if the save directory is synchronized or not required, false otherwise
+     */
+    boolean pushSaveDirectory(Session session, String remoteDir) {
+        if (!this.saveRequired) {
+            return true;
+        }
+
+        String saveName = this.getSaveName();
+        File directory = this.getDirectory();
+        if (saveName == null || directory == null) {
+            return true;
+        }
+
+        File saveDir = new File(directory, saveName);
+        if (!saveDir.isDirectory()) {
+            return true;
+        }
+
+        String remotePath = remoteDir.endsWith("/") ? (remoteDir + saveName) : (remoteDir + "/" + saveName);
+
+        try {
+            return new SSHDeltaSync(session).upload(saveDir, remotePath);
+
+        } catch (JSchException | IOException e) {
+            System.err.println("Failed to synchronize " + saveName + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private String getSaveName() {
+        String prefix = this.project.getPrefixName();
+        prefix = prefix == null ? null : prefix.trim();
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+
+        return prefix + ".save";
+    }
+
+    private static boolean isStartingFromFile(QEInput input) {
+        QENamelist nmlElectrons = input == null ? null : input.getNamelist(QEInput.NAMELIST_ELECTRONS);
+        if (nmlElectrons == null) {
+            return false;
+        }
+
+        QEValue potValue = nmlElectrons.getValue("startingpot");
+        QEValue wfcValue = nmlElectrons.getValue("startingwfc");
+        return (potValue != null && "file".equals(potValue.getCharacterValue()))
+                || (wfcValue != null && "file".equals(wfcValue.getCharacterValue()));
+    }
+
+    /**
+     * Creates a monitor of the job, which has been posted by postJobToServer.
+     *
+     * @return the monitor, or null if the job has not been posted
+     */
+    public SSHMonitor createMonitor() {
+        if (this.remoteDir == null) {
+            return null;
+        }
+
+        return this.createMonitor(this.remoteDir, this.jobId, this.sshServer.isBundledTransfer(), false);
+    }
+
+    /*
+     * the save directory is retrieved only from a remote directory owned by this project.
+     */
+    SSHMonitor createMonitor(String remoteDir, String jobId, boolean retrieving, boolean ownDirectory) {
+        File directory = this.getDirectory();
+        if (directory == null) {
+            return null;
+        }
+
+        SSHMonitor monitor = new SSHMonitor(this.project, this.sshServer, this.type, jobId);
+
+        for (int i = 0; i < this.logNames.size(); i++) {
+            String logName = this.logNames.get(i);
+            String remotePath = remoteDir.endsWith("/") ? (remoteDir + logName) : (remoteDir + "/" + logName);
+            monitor.addLog(remotePath, new File(directory, logName), this.parsers.get(i));
+        }
+
+        if (retrieving) {
+            boolean saveRetrieved = ownDirectory && this.sshServer.isSaveRetrieved();
+            monitor.setRetrieval(remoteDir, directory, this.getOutputPatterns(saveRetrieved));
+
+            if (saveRetrieved) {
+                monitor.setSaveRetrieval(this.getSaveName());
+            }
+        }
+
+        return monitor;
+    }
+
+    /**
+     * Writes the inputs of this job as a task of SSHArrayJob, without a script.
+     *
+     * @return commands of Quantum ESPRESSO for the task, or null if nothing is to run
+     */
+    List<String> prepareTask() {
+        List<String> qeCommands = this.setupFiles(false);
+        return (qeCommands == null || qeCommands.isEmpty()) ? null : qeCommands;
+    }
+
+    List<File> getInpFiles() {
+        return this.inpFiles;
+    }
+
+    Set<File> getPseudoFiles() {
+        return this.pseudoFiles;
+    }
+
+    File getProjectDirectory() {
+        return this.getDirectory();
+    }
+
+    private List<String> getOutputPatterns(boolean saveRetrieved) {
+        List<String> patterns = new ArrayList<String>();
+        patterns.addAll(this.logNames);
+        patterns.addAll(this.errNames);
+
+        String prefix = this.project.getPrefixName();
+        prefix = prefix == null ? null : prefix.trim();
+        if (prefix == null || prefix.isEmpty()) {
+            return patterns;
+        }
+
+        patterns.add(prefix + ".xml");
+        patterns.add(prefix + ".dos");
+        patterns.add(prefix + ".pdos_*");
+        patterns.add(prefix + ".band*");
+
+        // the whole save directory is retrieved by delta sync, not in the tar.gz
+        if (!saveRetrieved) {
+            patterns.add(prefix + ".save/*.xml");
+        }
+
+        return patterns;
+    }
+
+    private List<String> setupFiles(boolean withScript) {
 
         this.scriptFile = null;
+        this.saveRequired = false;
 
         if (this.inpFiles == null) {
             this.inpFiles = new ArrayList<File>();
@@ -250,50 +531,77 @@ public class SSHJob {
             this.pseudoFiles.clear();
         }
 
+        if (this.logNames == null) {
+            this.logNames = new ArrayList<String>();
+        } else {
+            this.logNames.clear();
+        }
+
+        if (this.errNames == null) {
+            this.errNames = new ArrayList<String>();
+        } else {
+            this.errNames.clear();
+        }
+
+        if (this.parsers == null) {
+            this.parsers = new ArrayList<LogParser>();
+        } else {
+            this.parsers.clear();
+        }
+
         File directory = this.getDirectory();
         if (directory == null) {
-            return;
+            return null;
         }
 
         this.project.resolveQEInputs();
         QEInput input = this.type.getQEInput(this.project);
         if (input == null) {
-            return;
+            return null;
         }
 
         List<String[]> commandList = this.type.getUnixCommandList(DUMMY_INP_NAME, this.numProcesses);
         if (commandList == null || commandList.isEmpty()) {
-            return;
+            return null;
         }
 
         List<RunningCondition> conditionList = this.type.getConditionList();
         if (conditionList == null || conditionList.size() < commandList.size()) {
-            return;
+            return null;
         }
 
         List<InputEditor> inputEditorList = this.type.getInputEditorList(this.project);
         if (inputEditorList == null || inputEditorList.size() < commandList.size()) {
-            return;
+            return null;
         }
 
         List<String> inpNameList = this.type.getInpNameList(this.project);
         if (inpNameList == null || inpNameList.size() < commandList.size()) {
-            return;
+            return null;
         }
 
         List<String> logNameList = this.type.getLogNameList(this.project);
         if (logNameList == null || logNameList.size() < commandList.size()) {
-            return;
+            return null;
         }
 
         List<String> errNameList = this.type.getErrNameList(this.project);
         if (errNameList == null || errNameList.size() < commandList.size()) {
-            return;
+            return null;
         }
 
+        List<LogParser> parserList = this.type.getParserList(this.project);
+        if (parserList == null || parserList.size() < commandList.size()) {
+            return null;
+        }
+
+        List<RunningProduct> productList = this.type.getProductList();
+        List<RunningProduct> consumptionList = this.type.getConsumptionList();
+
         this.deleteExitFile(directory);
 
         List<String> qeCommands = new ArrayList<String>();
+        boolean produced = false;
 
         for (int i = 0; i < commandList.size(); i++) {
             String[] command = commandList.get(i);
@@ -377,6 +685,22 @@ public class SSHJob {
 
             this.inpFiles.add(inpFile);
 
+            this.logNames.add(logName);
+            this.errNames.add(errName);
+            this.parsers.add(parserList.get(i));
+
+            // the charge density is consumed before this job produces it
+            if (!produced) {
+                RunningProduct consumption = i < consumptionList.size() ? consumptionList.get(i) : null;
+                if (consumption == RunningProduct.CHARGE_DENSITY || isStartingFromFile(input2)) {
+                    this.saveRequired = true;
+                }
+            }
+
+            if (i < productList.size() && productList.get(i) == RunningProduct.CHARGE_DENSITY) {
+                produced = true;
+            }
+
             QEAtomicSpecies atomicSpecies = input2.getCard(QEAtomicSpecies.class);
             if (atomicSpecies != null) {
                 int numSpec = atomicSpecies.numSpecies();
@@ -390,9 +714,11 @@ public class SSHJob {
             }
         }
 
-        if (qeCommands != null && (!qeCommands.isEmpty())) {
+        if (withScript && qeCommands != null && (!qeCommands.isEmpty())) {
             this.scriptFile = this.writeScript(directory, qeCommands);
         }
+
+        return qeCommands;
     }
 
     private File getDirectory() {
@@ -536,11 +862,11 @@ public class SSHJob {
      * Sets up the remote working directory if specified.
      * Creates the directory if it doesn't exist and changes to it.
      * 
+     * @param sftpChannel The connected SFTP channel
+     * @param workDir The remote working directory, or null
      * @return true if setup is successful or no directory specified, false otherwise
      */
-    private boolean setupRemoteDirectory() {
-        String workDir = this.sshServer.getWorkDirectory();
-        
+    static boolean setupRemoteDirectory(ChannelSftp sftpChannel, String workDir) {
         // If no work directory specified, use current directory
         if (workDir == null || workDir.trim().isEmpty()) {
             System.out.println("No remote working directory specified, using home directory");
@@ -549,7 +875,7 @@ public class SSHJob {
 
         workDir = workDir.trim();
 
-        if (this.sftpChannel == null) {
+        if (sftpChannel == null) {
             System.err.println("SFTP channel is not connected");
             return false;
         }
@@ -557,7 +883,7 @@ public class SSHJob {
         try {
             // Try to change to the directory
             try {
-                this.sftpChannel.cd(workDir);
+                sftpChannel.cd(workDir);
                 System.out.println("Changed to remote directory: " + workDir);
                 return true;
             } catch (SftpException e) {
@@ -573,11 +899,11 @@ public class SSHJob {
                     
                     currentPath += dir;
                     try {
-                        this.sftpChannel.cd(currentPath);
+                        sftpChannel.cd(currentPath);
                     } catch (SftpException e2) {
                         // Directory doesn't exist, create it
-                        this.sftpChannel.mkdir(currentPath);
-                        this.sftpChannel.cd(currentPath);
+                        sftpChannel.mkdir(currentPath);
+                        sftpChannel.cd(currentPath);
                         System.out.println("Created directory: " + currentPath);
                     }
                     currentPath += "/";
@@ -595,66 +921,16 @@ public class SSHJob {
     }
 
     /**
-     * Establishes SSH connection to the remote server.
+     * Establishes SSH connection to the remote server, with a session shared in SSHSessionPool.
      * Supports both password and private key authentication.
      * 
      * @return true if connection is successful, false otherwise
      */
     private boolean connectSSH() {
-        String host = this.sshServer.getHost();
-        int port = this.sshServer.intPort();
-        String user = this.sshServer.getUser();
-        String password = this.sshServer.getPassword();
-        String keyPath = this.sshServer.getKeyPath();
-
-        if (host == null || host.isEmpty()) {
-            System.err.println("SSH host is not specified");
-            return false;
-        }
-
-        if (user == null || user.isEmpty()) {
-            System.err.println("SSH user is not specified");
-            return false;
-        }
-
         try {
-            JSch jsch = new JSch();
-
-            // Add private key if specified
-            if (keyPath != null && !keyPath.isEmpty()) {
-                File keyFile = new File(keyPath);
-                if (keyFile.exists() && keyFile.isFile()) {
-                    jsch.addIdentity(keyPath);
-                    System.out.println("Using private key: " + keyPath);
-                } else {
-                    System.err.println("Private key file not found: " + keyPath);
-                    return false;
-                }
-            }
-
-            // Create session
-            this.session = jsch.getSession(user, host, port);
-
-            // Set password if provided and no key is used
-            if (password != null && !password.isEmpty()) {
-                this.session.setPassword(password);
-            }
-
-            // Configure session
-            java.util.Properties config = new java.util.Properties();
-            // WARNING: StrictHostKeyChecking is disabled for convenience.
-            // This makes the connection vulnerable to man-in-the-middle attacks.
-            // In production, implement proper host key verification.
-            config.put("StrictHostKeyChecking", "no");
-            this.session.setConfig(config);
-
-            // Connect
-            System.out.println("Connecting to " + user + "@" + host + ":" + port);
-            this.session.connect(CONNECTION_TIMEOUT_MS);
-
-            // Open SFTP channel
-            Channel channel = this.session.openChannel("sftp");
-            channel.connect();
+            Session[] session = { null };
+            Channel channel = SSHSessionPool.getInstance().openChannel(this.sshServer, session, "sftp");
+            this.session = session[0];
             this.sftpChannel = (ChannelSftp) channel;
 
             System.out.println("SSH connection established successfully");
@@ -669,7 +945,7 @@ public class SSHJob {
     }
 
     /**
-     * Disconnects from the SSH server and cleans up resources.
+     * Closes the SFTP channel, and releases the SSH session to SSHSessionPool.
      */
     private void disconnectSSH() {
         if (this.sftpChannel != null) {
@@ -682,15 +958,9 @@ public class SSHJob {
         }
 
         if (this.session != null) {
-            try {
-                this.session.disconnect();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            SSHSessionPool.getInstance().releaseSession(this.sshServer, this.session);
             this.session = null;
         }
-
-        System.out.println("SSH connection closed");
     }
 
     /**
@@ -700,26 +970,48 @@ public class SSHJob {
      * @return true if command executed successfully, false otherwise
      */
     private boolean executeRemoteCommand(String command) {
+        return this.executeRemoteCommandForOutput(command) != null;
+    }
+
+    /**
+     * Executes a command on the remote server.
+     * 
+     * @param command The command to execute
+     * @return the standard output if command executed successfully, null otherwise
+     */
+    private String executeRemoteCommandForOutput(String command) {
+        return executeRemoteCommandForOutput(this.session, command);
+    }
+
+    /**
+     * Executes a command on the remote server, over a channel of the session.
+     * 
+     * @param session The connected session
+     * @param command The command to execute
+     * @return the standard output if command executed successfully, null otherwise
+     */
+    static String executeRemoteCommandForOutput(Session session, String command) {
         if (command == null || command.isEmpty()) {
             System.err.println("Command is empty");
-            return false;
+            return null;
         }
 
-        if (this.session == null || !this.session.isConnected()) {
+        if (session == null || !session.isConnected()) {
             System.err.println("SSH session is not connected");
-            return false;
+            return null;
         }
 
         ChannelExec execChannel = null;
         try {
-            execChannel = (ChannelExec) this.session.openChannel("exec");
+            // another channel is multiplexed over the session of SFTP
+            execChannel = (ChannelExec) session.openChannel("exec");
             execChannel.setCommand(command);
 
             // Get the output stream to capture command output
             InputStream in = execChannel.getInputStream();
             InputStream err = execChannel.getErrStream();
 
-            execChannel.connect();
+            execChannel.connect(CONNECTION_TIMEOUT_MS);
 
             // Read output
             byte[] buffer = new byte[BUFFER_SIZE];
@@ -763,12 +1055,12 @@ public class SSHJob {
             }
 
             System.out.println("Command executed with exit status: " + exitStatus);
-            return exitStatus == 0;
+            return exitStatus == 0 ? output.toString() : null;
 
         } catch (Exception e) {
             System.err.println("Failed to execute remote command: " + e.getMessage());
             e.printStackTrace();
-            return false;
+            return null;
 
         } finally {
             if (execChannel != null) {
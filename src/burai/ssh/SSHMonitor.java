@@ -0,0 +1,564 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.ssh;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+
+import burai.com.life.Life;
+import burai.project.Project;
+import burai.run.RunningType;
+import burai.run.parser.LogParser;
+
+/*
+ * A job on the SSH server is monitored by the scheduler (squeue or qstat),
+ * and its logs are tailed into local files, which are parsed as logs of local runs.
+ */
+public class SSHMonitor {
+
+    private static final String JOB_DONE = "JOB DONE.";
+
+    private static final int CONNECTION_TIMEOUT_MS = 30000;
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final Pattern SLURM_ID_PATTERN = Pattern.compile("Submitted\\s+batch\\s+job\\s+(\\d+)");
+    // the index of an array job is kept, as 123[].server of PBS
+    private static final Pattern JOB_ID_PATTERN = Pattern.compile("^\\s*(\\d+(\\[\\d*\\])?(\\.[\\w\\-\\.]+)?)", Pattern.MULTILINE);
+    private static final Pattern PBS_STATE_PATTERN = Pattern.compile("job_state\\s*=\\s*(\\w+)");
+
+    // messages of schedulers, when the job is not known any more (e.g. Slurm, Torque, PBS Pro, SGE).
+    private static final Pattern UNKNOWN_JOB_PATTERN = Pattern.compile(
+            "invalid\\s+job\\s+id|unknown\\s+job\\s+id|job\\s+has\\s+finished|do(es)?\\s+not\\s+exist",
+            Pattern.CASE_INSENSITIVE);
+
+    private static class TailedLog {
+
+        private String remotePath;
+
+        private File localFile;
+
+        private LogParser parser;
+
+        private long offset;
+
+        // end of the bytes read, where JOB_DONE may start
+        private String tail;
+
+        private boolean parsing;
+
+        private boolean done;
+    }
+
+    private Project project;
+
+    private SSHServer sshServer;
+
+    private RunningType type;
+
+    private String jobId;
+
+    private boolean slurm;
+
+    private List<TailedLog> logs;
+
+    private String remoteDir;
+
+    private File localDir;
+
+    private List<String> outputPatterns;
+
+    private String saveName;
+
+    private boolean monitoring;
+
+    private boolean ended;
+
+    private boolean done;
+
+    /*
+     * parses ID of the job from outputs of sbatch or qsub.
+     */
+    public static String parseJobId(String output) {
+        if (output == null || output.trim().isEmpty()) {
+            return null;
+        }
+
+        Matcher matcher = SLURM_ID_PATTERN.matcher(output);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+
+        matcher = JOB_ID_PATTERN.matcher(output);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+
+        return null;
+    }
+
+    public SSHMonitor(Project project, SSHServer sshServer, RunningType type, String jobId) {
+        if (project == null) {
+            throw new IllegalArgumentException("project is null.");
+        }
+
+        if (sshServer == null) {
+            throw new IllegalArgumentException("sshServer is null.");
+        }
+
+        if (type == null) {
+            throw new IllegalArgumentException("type is null.");
+        }
+
+        this.project = project;
+        this.sshServer = sshServer;
+        this.type = type;
+        this.jobId = jobId;
+
+        String jobCommand = sshServer.getJobCommand();
+        this.slurm = jobCommand != null && jobCommand.contains("sbatch");
+
+        this.logs = new ArrayList<TailedLog>();
+        this.remoteDir = null;
+        this.localDir = null;
+        this.outputPatterns = null;
+        this.monitoring = false;
+        this.ended = false;
+        this.done = false;
+    }
+
+    public String getJobId() {
+        return this.jobId;
+    }
+
+    public void addLog(String remotePath, File localFile, LogParser parser) {
+        if (remotePath == null || remotePath.isEmpty()) {
+            throw new IllegalArgumentException("remotePath is empty.");
+        }
+
+        if (localFile == null) {
+            throw new IllegalArgumentException("localFile is null.");
+        }
+
+        TailedLog log = new TailedLog();
+        log.remotePath = remotePath;
+        log.localFile = localFile;
+        log.parser = parser;
+        log.offset = 0L;
+        log.tail = "";
+        log.parsing = false;
+        log.done = false;
+        this.logs.add(log);
+    }
+
+    /*
+     * outputs are retrieved as a single tar.gz, when the job is finished.
+     */
+    public void setRetrieval(String remoteDir, File localDir, List<String> outputPatterns) {
+        this.remoteDir = remoteDir;
+        this.localDir = localDir;
+        this.outputPatterns = outputPatterns;
+    }
+
+    /*
+     * the save directory is retrieved by delta sync, after the tar.gz.
+     */
+    public void setSaveRetrieval(String saveName) {
+        this.saveName = saveName;
+    }
+
+    public void startMonitoring() {
+        synchronized (this) {
+            if (this.monitoring) {
+                return;
+            }
+
+            this.monitoring = true;
+        }
+
+        Thread thread = new Thread(() -> {
+            try {
+                this.monitorKernel();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            synchronized (this) {
+                this.monitoring = false;
+                this.ended = true;
+                this.notifyAll();
+            }
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+
+        Life.getInstance().addOnDead(() -> this.stopMonitoring());
+    }
+
+    public synchronized void waitToEnd() {
+        while (!this.ended) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    /*
+     * the job has been finished, and all of its logs have been completed.
+     */
+    public synchronized boolean isDone() {
+        return this.done;
+    }
+
+    public synchronized void stopMonitoring() {
+        this.monitoring = false;
+        this.notifyAll();
+    }
+
+    synchronized boolean isMonitoring() {
+        return this.monitoring;
+    }
+
+    /*
+     * the task of an array job is polled by SSHArrayMonitor, instead of the thread of this monitor.
+     */
+    synchronized void beginMonitoring() {
+        this.monitoring = true;
+    }
+
+    void finishMonitoring(boolean finished) {
+        try {
+            this.endMonitoring(finished);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        synchronized (this) {
+            this.monitoring = false;
+            this.ended = true;
+            this.notifyAll();
+        }
+    }
+
+    private void monitorKernel() {
+        long interval = 1000L * this.sshServer.intMonitorInterval();
+
+        // a job without ID is finished when it has been posted (e.g. by sh).
+        boolean finished = this.jobId == null;
+
+        while (true) {
+            synchronized (this) {
+                if (!this.monitoring) {
+                    break;
+                }
+            }
+
+            Session session = null;
+            boolean failed = false;
+
+            try {
+                session = SSHSessionPool.getInstance().acquireSession(this.sshServer);
+
+                if (!finished) {
+                    Boolean jobFinished = this.isJobFinished(session);
+                    finished = jobFinished != null && jobFinished.booleanValue();
+                }
+
+                this.tailLogs(session);
+
+            } catch (JSchException | SftpException | IOException e) {
+                System.err.println("Failed to monitor remote job: " + e.getMessage());
+                failed = true;
+
+            } finally {
+                if (session != null) {
+                    SSHSessionPool.getInstance().releaseSession(this.sshServer, session, failed);
+                }
+            }
+
+            if (finished && (!failed)) {
+                break;
+            }
+
+            synchronized (this) {
+                if (!this.monitoring) {
+                    break;
+                }
+
+                try {
+                    this.wait(interval);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+
+        this.endMonitoring(finished);
+    }
+
+    private void endMonitoring(boolean finished) {
+        boolean allDone = true;
+        boolean anyParsed = false;
+
+        for (TailedLog log : this.logs) {
+            if (log.parsing && log.parser != null) {
+                log.parser.endParsing();
+            }
+
+            anyParsed = anyParsed || log.parsing;
+            allDone = allDone && (log.done || !log.parsing);
+        }
+
+        if (finished) {
+            this.retrieveOutputs();
+        }
+
+        if (finished && anyParsed && allDone) {
+            this.type.setProjectStatus(this.project);
+
+            synchronized (this) {
+                this.done = true;
+            }
+        }
+
+        if (this.project.getProperty() != null) {
+            this.project.getProperty().reloadResults();
+        }
+    }
+
+    private void retrieveOutputs() {
+        if (this.remoteDir == null || this.localDir == null) {
+            return;
+        }
+
+        if (this.outputPatterns == null || this.outputPatterns.isEmpty()) {
+            return;
+        }
+
+        Session session = null;
+        boolean failed = false;
+
+        try {
+            session = SSHSessionPool.getInstance().acquireSession(this.sshServer);
+            SSHTransfer.download(session, this.remoteDir, this.outputPatterns, this.localDir);
+
+            if (this.saveName != null && !this.saveName.isEmpty()) {
+                String remotePath = this.remoteDir.endsWith("/") ?
+                        (this.remoteDir + this.saveName) : (this.remoteDir + "/" + this.saveName);
+                new SSHDeltaSync(session).download(remotePath, new File(this.localDir, this.saveName));
+            }
+
+        } catch (JSchException | SftpException | IOException e) {
+            System.err.println("Failed to retrieve outputs: " + e.getMessage());
+            e.printStackTrace();
+            failed = true;
+
+        } finally {
+            if (session != null) {
+                SSHSessionPool.getInstance().releaseSession(this.sshServer, session, failed);
+            }
+        }
+    }
+
+    private String getStatusCommand() {
+        if (this.slurm) {
+            return "squeue -h -j " + SSHTransfer.quote(this.jobId) + " -o %T";
+        } else {
+            return "qstat -f " + SSHTransfer.quote(this.jobId);
+        }
+    }
+
+    /*
+     * returns null, if the status is not known (e.g. the scheduler is busy), to be asked again.
+     */
+    private Boolean isJobFinished(Session session) throws JSchException, IOException {
+        ChannelExec execChannel = null;
+
+        try {
+            execChannel = (ChannelExec) session.openChannel("exec");
+            execChannel.setCommand(this.getStatusCommand());
+            InputStream in = execChannel.getInputStream();
+            InputStream err = execChannel.getErrStream();
+            execChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            String output = readAll(in);
+            String error = readAll(err);
+            while (!execChannel.isClosed()) {
+                try {
+                    Thread.sleep(100L);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+
+            if (execChannel.getExitStatus() != 0) {
+                // the scheduler does not know jobs which have been finished.
+                if (isUnknownJob(error) || isUnknownJob(output)) {
+                    return true;
+                }
+
+                System.err.println("Failed to get status of remote job " + this.jobId + ": " + error.trim());
+                return null;
+            }
+
+            if (this.slurm) {
+                String state = output.trim();
+                return state.isEmpty() || !isSlurmActive(state);
+            }
+
+            Matcher matcher = PBS_STATE_PATTERN.matcher(output);
+            if (matcher.find()) {
+                return isPBSFinished(matcher.group(1));
+            }
+
+            return output.trim().isEmpty();
+
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+            }
+        }
+    }
+
+    static boolean isUnknownJob(String message) {
+        return message != null && UNKNOWN_JOB_PATTERN.matcher(message).find();
+    }
+
+    static boolean isSlurmActive(String state) {
+        return state.startsWith("PENDING") || state.startsWith("RUNNING")
+                || state.startsWith("CONFIGURING") || state.startsWith("COMPLETING")
+                || state.startsWith("SUSPENDED") || state.startsWith("REQUEUED");
+    }
+
+    static boolean isPBSFinished(String state) {
+        return "C".equals(state) || "F".equals(state) || "X".equals(state);
+    }
+
+    static String readAll(InputStream in) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        int size = 0;
+        while ((size = in.read(buffer)) >= 0) {
+            builder.append(new String(buffer, 0, size, StandardCharsets.UTF_8));
+        }
+
+        return builder.toString();
+    }
+
+    /*
+     * only bytes after the last offset are read from the remote logs.
+     */
+    private void tailLogs(Session session) throws JSchException, SftpException, IOException {
+        Channel channel = session.openChannel("sftp");
+        ChannelSftp sftpChannel = (ChannelSftp) channel;
+
+        try {
+            sftpChannel.connect(CONNECTION_TIMEOUT_MS);
+            this.tailLogs(sftpChannel);
+
+        } finally {
+            sftpChannel.disconnect();
+        }
+    }
+
+    void tailLogs(ChannelSftp sftpChannel) throws SftpException, IOException {
+        for (TailedLog log : this.logs) {
+            this.tailLog(sftpChannel, log);
+        }
+    }
+
+    private void tailLog(ChannelSftp sftpChannel, TailedLog log) throws SftpException, IOException {
+        SftpATTRS attrs = null;
+        try {
+            attrs = sftpChannel.stat(log.remotePath);
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return;
+            }
+            throw e;
+        }
+
+        long size = attrs.getSize();
+        if (size < log.offset) {
+            // the log has been written again.
+            log.offset = 0L;
+            log.tail = "";
+            log.done = false;
+        }
+
+        if (size <= log.offset) {
+            return;
+        }
+
+        boolean append = log.offset > 0L;
+        long numRead = 0L;
+        boolean done = false;
+
+        try (InputStream in = sftpChannel.get(log.remotePath, null, log.offset);
+                OutputStream out = new FileOutputStream(log.localFile, append)) {
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int size2 = 0;
+            while ((size2 = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, size2);
+                numRead += size2;
+
+                // JOB_DONE may be split between reads
+                String text = log.tail + new String(buffer, 0, size2, StandardCharsets.ISO_8859_1);
+                if (text.contains(JOB_DONE)) {
+                    done = true;
+                }
+
+                log.tail = text.substring(Math.max(0, text.length() - JOB_DONE.length() + 1));
+            }
+        }
+
+        log.offset += numRead;
+        log.done = log.done || done;
+
+        if (log.parser == null) {
+            return;
+        }
+
+        if (!log.parsing) {
+            log.parser.startParsing(log.localFile, true);
+            log.parsing = true;
+        }
+
+        log.parser.notifyUpdated();
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.ssh;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+
+import burai.pseudo.PseudoLibrary;
+
+/*
+ * Pseudo potentials are stored in the remote directory STORE_NAME, named by their SHA-256 digests,
+ * and linked into the working directory, so that each file is uploaded only once to a server.
+ */
+public class SSHPseudoStore {
+
+    public static final String STORE_NAME = ".burai_pseudos";
+
+    private static final String PART_SUFFIX = ".part";
+
+    private static final int MAX_CHANNELS = 4;
+    private static final int CONNECTION_TIMEOUT_MS = 30000;
+    private static final int BUFFER_SIZE = 65536;
+
+    private static class DigestEntry {
+
+        private long length;
+
+        private long lastModified;
+
+        private String digest;
+    }
+
+    // digests are computed again, only if the files have been modified
+    private static final Map<String, DigestEntry> DIGEST_CACHE = new HashMap<String, DigestEntry>();
+
+    private Map<File, String> digests;
+
+    private Set<String> remoteDigests;
+
+    public SSHPseudoStore(Set<File> pseudoFiles) {
+        this.digests = new HashMap<File, String>();
+        this.remoteDigests = new HashSet<String>();
+
+        if (pseudoFiles != null) {
+            for (File pseudoFile : pseudoFiles) {
+                String digest = pseudoFile == null ? null : getDigest(pseudoFile);
+                if (digest != null) {
+                    this.digests.put(pseudoFile, digest);
+                }
+            }
+        }
+    }
+
+    private static String getDigest(File file) {
+        String path = null;
+        long length = 0L;
+        long lastModified = 0L;
+
+        try {
+            if (!file.isFile()) {
+                return null;
+            }
+
+            path = file.getCanonicalPath();
+            length = file.length();
+            lastModified = file.lastModified();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        // digests of the pseudo potential library are kept over sessions
+        String libraryDigest = PseudoLibrary.getInstance().getDigest(file);
+        if (libraryDigest != null) {
+            return libraryDigest;
+        }
+
+        synchronized (DIGEST_CACHE) {
+            DigestEntry entry = DIGEST_CACHE.get(path);
+            if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+                return entry.digest;
+            }
+        }
+
+        String digest = null;
+
+        try (InputStream stream = new FileInputStream(file)) {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int size = 0;
+            while ((size = stream.read(buffer)) >= 0) {
+                messageDigest.update(buffer, 0, size);
+            }
+
+            StringBuilder builder = new StringBuilder();
+            for (byte value : messageDigest.digest()) {
+                builder.append(String.format("%02x", value & 0xff));
+            }
+
+            digest = builder.toString();
+
+        } catch (IOException | NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        synchronized (DIGEST_CACHE) {
+            DigestEntry entry = new DigestEntry();
+            entry.length = length;
+            entry.lastModified = lastModified;
+            entry.digest = digest;
+            DIGEST_CACHE.put(path, entry);
+        }
+
+        return digest;
+    }
+
+    private static String quote(String str) {
+        return "'" + str.replace("'", "'\\''") + "'";
+    }
+
+    private static String getStorePath(String remoteDir) {
+        return remoteDir.endsWith("/") ? (remoteDir + STORE_NAME) : (remoteDir + "/" + STORE_NAME);
+    }
+
+    /*
+     * a command, which creates the store and lists the digests in it.
+     */
+    public String getListCommand(String remoteDir) {
+        if (remoteDir == null || remoteDir.isEmpty()) {
+            throw new IllegalArgumentException("remoteDir is empty.");
+        }
+
+        String storePath = quote(getStorePath(remoteDir));
+        return "mkdir -p " + storePath + " && ls -1 " + storePath;
+    }
+
+    /*
+     * parses the output of getListCommand.
+     * partial files are not listed, because they are renamed after uploaded.
+     */
+    public void setRemoteDigests(String output) {
+        this.remoteDigests.clear();
+        if (output == null) {
+            return;
+        }
+
+        for (String line : output.split("[\\r\\n]+")) {
+            line = line.trim();
+            if (line.matches("[0-9a-f]{64}")) {
+                this.remoteDigests.add(line);
+            }
+        }
+    }
+
+    public List<File> getMissingFiles() {
+        List<File> files = new ArrayList<File>();
+        Set<String> missingDigests = new HashSet<String>();
+
+        for (Map.Entry<File, String> entry : this.digests.entrySet()) {
+            String digest = entry.getValue();
+            if (!this.remoteDigests.contains(digest) && missingDigests.add(digest)) {
+                files.add(entry.getKey());
+            }
+        }
+
+        return files;
+    }
+
+    /*
+     * uploads the missing files into the store, in parallel over SFTP channels of the session.
+     */
+    public boolean uploadMissingFiles(Session session, String remoteDir) {
+        if (session == null) {
+            throw new IllegalArgumentException("session is null.");
+        }
+
+        if (remoteDir == null || remoteDir.isEmpty()) {
+            throw new IllegalArgumentException("remoteDir is empty.");
+        }
+
+        List<File> files = this.getMissingFiles();
+        if (files.isEmpty()) {
+            System.out.println("All pseudo potentials are already stored on the server");
+            return true;
+        }
+
+        String storePath = getStorePath(remoteDir);
+        Queue<File> queue = new LinkedList<File>(files);
+        boolean[] status = { true };
+
+        int numThreads = Math.min(MAX_CHANNELS, files.size());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread thread = new Thread(() -> {
+                if (!this.uploadFiles(session, storePath, queue)) {
+                    synchronized (status) {
+                        status[0] = false;
+                    }
+                }
+            });
+
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        synchronized (status) {
+            return status[0];
+        }
+    }
+
+    private boolean uploadFiles(Session session, String storePath, Queue<File> queue) {
+        ChannelSftp sftpChannel = null;
+
+        try {
+            sftpChannel = (ChannelSftp) session.openChannel("sftp");
+            sftpChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            while (true) {
+                File file = null;
+                synchronized (queue) {
+                    file = queue.poll();
+                }
+
+                if (file == null) {
+                    return true;
+                }
+
+                String digest = this.digests.get(file);
+                // the suffix is unique, not to be mixed with uploads of other jobs
+                String suffix = "." + UUID.randomUUID().toString().replace("-", "") + PART_SUFFIX;
+                String partPath = storePath + "/" + digest + suffix;
+                String digestPath = storePath + "/" + digest;
+
+                try (InputStream stream = new FileInputStream(file)) {
+                    sftpChannel.put(stream, partPath);
+                }
+
+                try {
+                    sftpChannel.rename(partPath, digestPath);
+                } catch (SftpException e) {
+                    // the same file may have been stored by another job
+                    sftpChannel.stat(digestPath);
+                    sftpChannel.rm(partPath);
+                }
+
+                System.out.println("Uploaded pseudo potential: " + file.getName() + " -> " + digest);
+            }
+
+        } catch (JSchException | SftpException | IOException e) {
+            System.err.println("Failed to upload pseudo potentials: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+
+        } finally {
+            if (sftpChannel != null) {
+                sftpChannel.disconnect();
+            }
+        }
+    }
+
+    /*
+     * the missing files, which are named as STORE_NAME/<digest><suffix> (relative to the working directory),
+     * to be uploaded in a bundle.
+     */
+    public Map<String, File> getMissingEntries(String suffix) {
+        if (suffix == null || suffix.isEmpty()) {
+            throw new IllegalArgumentException("suffix is empty.");
+        }
+
+        Map<String, File> entries = new LinkedHashMap<String, File>();
+        for (File file : this.getMissingFiles()) {
+            entries.put(STORE_NAME + "/" + this.digests.get(file) + suffix, file);
+        }
+
+        return entries;
+    }
+
+    /*
+     * a command, which renames the missing files uploaded in a bundle with the suffix, to be stored.
+     */
+    public String getRenameCommand(String remoteDir, String suffix) {
+        if (remoteDir == null || remoteDir.isEmpty()) {
+            throw new IllegalArgumentException("remoteDir is empty.");
+        }
+
+        if (suffix == null || suffix.isEmpty()) {
+            throw new IllegalArgumentException("suffix is empty.");
+        }
+
+        List<File> files = this.getMissingFiles();
+        if (files.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder command = new StringBuilder();
+        command.append("cd ").append(quote(getStorePath(remoteDir)));
+        for (File file : files) {
+            String digest = this.digests.get(file);
+            command.append(" && mv -f ").append(quote(digest + suffix)).append(" ").append(quote(digest));
+        }
+
+        return command.toString();
+    }
+
+    /*
+     * a command, which links the stored files into the working directory with their own names.
+     */
+    public String getLinkCommand(String remoteDir) {
+        return this.getLinkCommand(remoteDir, null, this.digests.keySet());
+    }
+
+    /*
+     * a command, which links the stored files into the subdirectory of the working directory.
+     */
+    public String getLinkCommand(String remoteDir, String subDir, Set<File> files) {
+        if (remoteDir == null || remoteDir.isEmpty()) {
+            throw new IllegalArgumentException("remoteDir is empty.");
+        }
+
+        if (files == null || files.isEmpty()) {
+            return null;
+        }
+
+        String dirPath = remoteDir;
+        String storeName = STORE_NAME;
+        if (subDir != null && (!subDir.isEmpty())) {
+            dirPath = remoteDir.endsWith("/") ? (remoteDir + subDir) : (remoteDir + "/" + subDir);
+
+            // the subdirectory can be nested, as array-ID/task
+            for (String name : subDir.split("/")) {
+                if (!name.isEmpty()) {
+                    storeName = "../" + storeName;
+                }
+            }
+        }
+
+        StringBuilder command = new StringBuilder();
+        command.append("cd ").append(quote(dirPath));
+        for (File file : files) {
+            String digest = this.digests.get(file);
+            if (digest == null) {
+                continue;
+            }
+
+            String name = file.getName();
+            String target = storeName + "/" + digest;
+            command.append(" && rm -f ").append(quote(name));
+            command.append(" && ln -s ").append(quote(target)).append(" ").append(quote(name));
+        }
+
+        return command.toString();
+    }
+}
@@ -17,6 +17,7 @@
 package burai.ssh;
 
 import java.util.List;
+import java.util.regex.Matcher;
 
 public class SSHServer {
 
@@ -29,6 +30,11 @@ public class SSHServer {
 
     private static final int DEFAULT_PORT = 22;
 
+    private static final int DEFAULT_MONITOR_INTERVAL = 30;
+    private static final int MIN_MONITOR_INTERVAL = 5;
+
+    private static final String DEFAULT_ARRAY_OPTION = "-J";
+
     private String title;
 
     private String host;
@@ -49,6 +55,14 @@ public class SSHServer {
 
     private String jobScript;
 
+    private String monitorInterval;
+
+    private String arrayOption;
+
+    private Boolean bundledTransfer;
+
+    private Boolean saveRetrieved;
+
     public SSHServer(String title) {
         if (title == null || title.isEmpty()) {
             throw new IllegalArgumentException("title is empty.");
@@ -62,6 +76,10 @@ public class SSHServer {
         this.keyPath = null;
         this.workDirectory = null;
         this.moduleCommands = null;
+        this.monitorInterval = Integer.toString(DEFAULT_MONITOR_INTERVAL);
+        this.arrayOption = DEFAULT_ARRAY_OPTION;
+        this.bundledTransfer = Boolean.TRUE;
+        this.saveRetrieved = Boolean.FALSE;
         this.initializeJobCommand();
         this.initializeJobScript();
     }
@@ -139,6 +157,66 @@ public class SSHServer {
         this.moduleCommands = moduleCommands;
     }
 
+    public String getMonitorInterval() {
+        return this.monitorInterval;
+    }
+
+    /*
+     * the interval (in seconds) to poll the scheduler and the logs of posted jobs.
+     */
+    public int intMonitorInterval() {
+        int interval = 0;
+
+        try {
+            interval = this.monitorInterval == null ? DEFAULT_MONITOR_INTERVAL : Integer.parseInt(this.monitorInterval);
+
+        } catch (NumberFormatException e) {
+            interval = DEFAULT_MONITOR_INTERVAL;
+        }
+
+        return Math.max(MIN_MONITOR_INTERVAL, interval);
+    }
+
+    public void setMonitorInterval(String monitorInterval) {
+        this.monitorInterval = monitorInterval;
+    }
+
+    /*
+     * the option of qsub to post an array job: -J (PBS Pro), or -t (Torque and SGE).
+     */
+    public String getArrayOption() {
+        String arrayOption_ = this.arrayOption == null ? null : this.arrayOption.trim();
+        return (arrayOption_ == null || arrayOption_.isEmpty()) ? DEFAULT_ARRAY_OPTION : arrayOption_;
+    }
+
+    public void setArrayOption(String arrayOption) {
+        this.arrayOption = arrayOption;
+    }
+
+    /*
+     * files are transferred as a single tar.gz over an exec channel, and outputs are retrieved.
+     * this is enabled by default, also for servers saved before this option.
+     */
+    public boolean isBundledTransfer() {
+        return this.bundledTransfer == null || this.bundledTransfer.booleanValue();
+    }
+
+    public void setBundledTransfer(boolean bundledTransfer) {
+        this.bundledTransfer = Boolean.valueOf(bundledTransfer);
+    }
+
+    /*
+     * the directory prefix.save is also retrieved, in bundled transfer of array jobs,
+     * whose projects have their own remote directories.
+     */
+    public boolean isSaveRetrieved() {
+        return this.saveRetrieved != null && this.saveRetrieved.booleanValue();
+    }
+
+    public void setSaveRetrieved(boolean saveRetrieved) {
+        this.saveRetrieved = Boolean.valueOf(saveRetrieved);
+    }
+
     public String getJobCommand() {
         return this.getJobCommand(null);
     }
@@ -156,6 +234,27 @@ public class SSHServer {
         return jobCommand_;
     }
 
+    /*
+     * the job command to post an array of tasks 1..numTasks, with a single script.
+     * the option of the array is inserted after sbatch (--array) or qsub (the array option of the server).
+     */
+    public String getArrayJobCommand(String scriptName, int numTasks) {
+        String jobCommand_ = this.getJobCommand(scriptName);
+        if (jobCommand_ == null || numTasks < 1) {
+            return jobCommand_;
+        }
+
+        String range = "1-" + numTasks;
+        if (jobCommand_.matches("(?s).*\\bsbatch\\b.*")) {
+            return jobCommand_.replaceFirst("\\bsbatch\\b", "sbatch --array=" + range);
+        } else if (jobCommand_.matches("(?s).*\\bqsub\\b.*")) {
+            String option = Matcher.quoteReplacement(this.getArrayOption());
+            return jobCommand_.replaceFirst("\\bqsub\\b", "qsub " + option + " " + range);
+        }
+
+        return jobCommand_;
+    }
+
     public void setJobCommand(String jobCommand) {
         this.jobCommand = jobCommand;
     }
@@ -171,7 +270,8 @@ public class SSHServer {
     public String getJobScript(String qeCommand, int numMPI, int numOMP) {
         String jobScript_ = this.jobScript;
 
-        String qeCommand_ = qeCommand == null ? null : qeCommand.trim();
+        // commands can have '$' of shell variables
+        String qeCommand_ = qeCommand == null ? null : Matcher.quoteReplacement(qeCommand.trim());
         if (qeCommand_ != null && (!qeCommand_.isEmpty())) {
             jobScript_ = jobScript_.replaceAll("\\$" + WORD_QE_COMMAND, qeCommand_);
             jobScript_ = jobScript_.replaceAll("\\$\\(" + WORD_QE_COMMAND + "\\)", qeCommand_);
@@ -200,7 +300,7 @@ public class SSHServer {
             jobScript_ = jobScript_.replaceAll("\\$\\{" + WORD_NUM_CPUS + "\\}", strCPU);
         }
 
-        String moduleCommands_ = this.moduleCommands == null ? "" : this.moduleCommands.trim();
+        String moduleCommands_ = this.moduleCommands == null ? "" : Matcher.quoteReplacement(this.moduleCommands.trim());
         jobScript_ = jobScript_.replaceAll("\\$" + WORD_MODULE_COMMANDS, moduleCommands_);
         jobScript_ = jobScript_.replaceAll("\\$\\(" + WORD_MODULE_COMMANDS + "\\)", moduleCommands_);
         jobScript_ = jobScript_.replaceAll("\\$\\{" + WORD_MODULE_COMMANDS + "\\}", moduleCommands_);
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.ssh;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import burai.com.life.Life;
+
+/*
+ * SSH sessions are pooled for each server, and shared by jobs which open their own channels (SFTP, exec),
+ * so that a server is authenticated once for many jobs.
+ * Sessions are kept alive while used, closed after idling, and connected again if they are down.
+ */
+public class SSHSessionPool {
+
+    private static final int CONNECTION_TIMEOUT_MS = 30000;
+    private static final int ALIVE_INTERVAL_MS = 30000;
+    private static final int ALIVE_COUNT_MAX = 3;
+    private static final long IDLE_TIMEOUT_MS = 300000L;
+    private static final long EVICTION_INTERVAL_MS = 30000L;
+
+    private static SSHSessionPool instance = null;
+
+    public static synchronized SSHSessionPool getInstance() {
+        if (instance == null) {
+            instance = new SSHSessionPool();
+        }
+
+        return instance;
+    }
+
+    private static class PooledSession {
+
+        private Session session;
+
+        private int numUsers;
+
+        private long lastUsed;
+
+        private boolean removed;
+    }
+
+    private boolean alive;
+
+    private Map<String, PooledSession> sessions;
+
+    private SSHSessionPool() {
+        this.alive = true;
+        this.sessions = new HashMap<String, PooledSession>();
+
+        Thread thread = new Thread(() -> this.evictIdleSessions());
+        thread.setDaemon(true);
+        thread.start();
+
+        Life.getInstance().addOnDead(() -> this.stop());
+    }
+
+    private static String getKey(SSHServer sshServer) {
+        // a session is not shared, after the server has been changed.
+        String password = sshServer.getPassword();
+        return sshServer.getUser() + "@" + sshServer.getHost() + ":" + sshServer.intPort()
+                + "#" + sshServer.getKeyPath() + "#" + (password == null ? 0 : password.hashCode());
+    }
+
+    /*
+     * the session has to be released by releaseSession.
+     */
+    public Session acquireSession(SSHServer sshServer) throws JSchException {
+        if (sshServer == null) {
+            throw new IllegalArgumentException("sshServer is null.");
+        }
+
+        String key = getKey(sshServer);
+
+        while (true) {
+            PooledSession pooled = null;
+            synchronized (this) {
+                if (!this.alive) {
+                    throw new JSchException("SSH session pool has been stopped.");
+                }
+
+                pooled = this.sessions.get(key);
+                if (pooled == null) {
+                    pooled = new PooledSession();
+                    this.sessions.put(key, pooled);
+                }
+            }
+
+            // sessions of other servers are not blocked while connecting
+            synchronized (pooled) {
+                if (pooled.removed) {
+                    continue;
+                }
+
+                if (pooled.session == null || !pooled.session.isConnected()) {
+                    disconnect(pooled.session);
+                    pooled.session = null;
+                    pooled.session = connect(sshServer);
+                }
+
+                pooled.numUsers++;
+                pooled.lastUsed = System.currentTimeMillis();
+                return pooled.session;
+            }
+        }
+    }
+
+    public void releaseSession(SSHServer sshServer, Session session) {
+        this.releaseSession(sshServer, session, false);
+    }
+
+    /*
+     * the session is released, and disconnected if it is down, to be connected again by the next user.
+     */
+    public void releaseSession(SSHServer sshServer, Session session, boolean failed) {
+        if (sshServer == null || session == null) {
+            return;
+        }
+
+        PooledSession pooled = null;
+        synchronized (this) {
+            pooled = this.sessions.get(getKey(sshServer));
+        }
+
+        if (pooled == null) {
+            disconnect(session);
+            return;
+        }
+
+        synchronized (pooled) {
+            if (pooled.session != session) {
+                disconnect(session);
+                return;
+            }
+
+            pooled.numUsers = Math.max(0, pooled.numUsers - 1);
+            pooled.lastUsed = System.currentTimeMillis();
+
+            if (failed && !session.isConnected()) {
+                disconnect(pooled.session);
+                pooled.session = null;
+            }
+        }
+    }
+
+    /*
+     * opens and connects a channel over the pooled session, which is connected again once if it is down.
+     */
+    public Channel openChannel(SSHServer sshServer, Session[] session, String type) throws JSchException {
+        if (session == null || session.length < 1) {
+            throw new IllegalArgumentException("session is empty.");
+        }
+
+        JSchException exception = null;
+
+        for (int i = 0; i < 2; i++) {
+            session[0] = this.acquireSession(sshServer);
+
+            Channel channel = null;
+            try {
+                channel = session[0].openChannel(type);
+                channel.connect(CONNECTION_TIMEOUT_MS);
+                return channel;
+
+            } catch (JSchException e) {
+                exception = e;
+                if (channel != null) {
+                    channel.disconnect();
+                }
+
+                boolean down = !session[0].isConnected();
+                this.releaseSession(sshServer, session[0], true);
+                session[0] = null;
+
+                if (!down) {
+                    break;
+                }
+            }
+        }
+
+        throw exception;
+    }
+
+    private static Session connect(SSHServer sshServer) throws JSchException {
+        String host = sshServer.getHost();
+        int port = sshServer.intPort();
+        String user = sshServer.getUser();
+        String password = sshServer.getPassword();
+        String keyPath = sshServer.getKeyPath();
+
+        if (host == null || host.isEmpty()) {
+            throw new JSchException("SSH host is not specified");
+        }
+
+        if (user == null || user.isEmpty()) {
+            throw new JSchException("SSH user is not specified");
+        }
+
+        JSch jsch = new JSch();
+
+        if (keyPath != null && !keyPath.isEmpty()) {
+            File keyFile = new File(keyPath);
+            if (!keyFile.isFile()) {
+                throw new JSchException("Private key file not found: " + keyPath);
+            }
+
+            jsch.addIdentity(keyPath);
+        }
+
+        Session session = jsch.getSession(user, host, port);
+        if (password != null && !password.isEmpty()) {
+            session.setPassword(password);
+        }
+
+        Properties config = new Properties();
+        // WARNING: StrictHostKeyChecking is disabled for convenience.
+        config.put("StrictHostKeyChecking", "no");
+        session.setConfig(config);
+
+        session.setServerAliveInterval(ALIVE_INTERVAL_MS);
+        session.setServerAliveCountMax(ALIVE_COUNT_MAX);
+
+        System.out.println("Connecting to " + user + "@" + host + ":" + port);
+        session.connect(CONNECTION_TIMEOUT_MS);
+        return session;
+    }
+
+    private static void disconnect(Session session) {
+        if (session == null) {
+            return;
+        }
+
+        try {
+            session.disconnect();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdleSessions() {
+        while (true) {
+            synchronized (this) {
+                if (!this.alive) {
+                    return;
+                }
+
+                try {
+                    this.wait(EVICTION_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (!this.alive) {
+                    return;
+                }
+            }
+
+            this.removeSessions(false);
+        }
+    }
+
+    private void removeSessions(boolean all) {
+        List<Map.Entry<String, PooledSession>> entries = null;
+        synchronized (this) {
+            entries = new ArrayList<Map.Entry<String, PooledSession>>(this.sessions.entrySet());
+        }
+
+        long currentTime = System.currentTimeMillis();
+
+        for (Map.Entry<String, PooledSession> entry : entries) {
+            PooledSession pooled = entry.getValue();
+
+            synchronized (pooled) {
+                boolean idle = pooled.numUsers < 1 && (currentTime - pooled.lastUsed) > IDLE_TIMEOUT_MS;
+                boolean down = pooled.numUsers < 1 && (pooled.session == null || !pooled.session.isConnected());
+                if (!(all || idle || down)) {
+                    continue;
+                }
+
+                pooled.removed = true;
+                disconnect(pooled.session);
+                pooled.session = null;
+            }
+
+            synchronized (this) {
+                if (this.sessions.get(entry.getKey()) == pooled) {
+                    this.sessions.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    public void stop() {
+        synchronized (this) {
+            if (!this.alive) {
+                return;
+            }
+
+            this.alive = false;
+            this.notifyAll();
+        }
+
+        this.removeSessions(true);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2018 Satomichi Nishihara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package burai.ssh;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import burai.com.file.FileTar;
+
+/*
+ * Files are transferred as a single gzip'd tar over an exec channel (tar xzf - or tar czf -),
+ * so that the latency is paid once for many files.
+ */
+public final class SSHTransfer {
+
+    private static final int CONNECTION_TIMEOUT_MS = 30000;
+    private static final int BUFFER_SIZE = 1024;
+    private static final long CLOSING_INTERVAL_MS = 100L;
+
+    private SSHTransfer() {
+        // NOP
+    }
+
+    public static String quote(String str) {
+        return "'" + str.replace("'", "'\\''") + "'";
+    }
+
+    /*
+     * '*' in the pattern is left for the remote shell.
+     */
+    private static String quotePattern(String pattern) {
+        StringBuilder builder = new StringBuilder();
+        String[] pieces = pattern.split("\\*", -1);
+        for (int i = 0; i < pieces.length; i++) {
+            if (i > 0) {
+                builder.append('*');
+            }
+            if (!pieces[i].isEmpty()) {
+                builder.append(quote(pieces[i]));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Uploads files into the remote directory, as a single stream of tar.
+     *
+     * @param session The connected session
+     * @param remoteDir The remote directory, which has to exist
+     * @param entries Names (relative to remoteDir) and local files
+     * @param postCommand A command executed in remoteDir after extracting, or null
+     * @return true if files are extracted (and postCommand succeeded), false otherwise
+     */
+    public static boolean upload(Session session, String remoteDir, Map<String, File> entries, String postCommand)
+            throws JSchException, IOException {
+
+        if (session == null) {
+            throw new IllegalArgumentException("session is null.");
+        }
+
+        if (remoteDir == null || remoteDir.isEmpty()) {
+            throw new IllegalArgumentException("remoteDir is empty.");
+        }
+
+        String command = "cd " + quote(remoteDir) + " && tar xzf -";
+        if (postCommand != null && (!postCommand.trim().isEmpty())) {
+            command = command + " && " + postCommand.trim();
+        }
+
+        ChannelExec execChannel = null;
+
+        try {
+            execChannel = (ChannelExec) session.openChannel("exec");
+            execChannel.setCommand(command);
+
+            OutputStream out = execChannel.getOutputStream();
+            InputStream in = execChannel.getInputStream();
+            InputStream err = execChannel.getErrStream();
+
+            execChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            FileTar.writeTarGz(out, entries);
+            out.close();
+
+            String output = readAll(in);
+            String errOutput = readAll(err);
+            int exitStatus = waitForExit(execChannel);
+
+            if (!output.isEmpty()) {
+                System.out.println("Command output: " + output);
+            }
+
+            if (!errOutput.isEmpty()) {
+                System.err.println("Command error output: " + errOutput);
+            }
+
+            System.out.println("Uploaded " + entries.size() + " files as tar.gz, with exit status: " + exitStatus);
+            return exitStatus == 0;
+
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Downloads files from the remote directory into the local directory, as a single stream of tar.
+     *
+     * @param session The connected session
+     * @param remoteDir The remote directory
+     * @param patterns Names (relative to remoteDir), which may contain '*'; missing files are skipped
+     * @param localDir The local directory
+     * @return the downloaded files
+     */
+    public static List<File> download(Session session, String remoteDir, List<String> patterns, File localDir)
+            throws JSchException, IOException {
+
+        if (session == null) {
+            throw new IllegalArgumentException("session is null.");
+        }
+
+        if (remoteDir == null || remoteDir.isEmpty()) {
+            throw new IllegalArgumentException("remoteDir is empty.");
+        }
+
+        if (localDir == null) {
+            throw new IllegalArgumentException("localDir is null.");
+        }
+
+        List<File> files = new ArrayList<File>();
+        if (patterns == null || patterns.isEmpty()) {
+            return files;
+        }
+
+        StringBuilder command = new StringBuilder();
+        command.append("cd ").append(quote(remoteDir)).append(" && set -- && for f in");
+        for (String pattern : patterns) {
+            command.append(' ').append(quotePattern(pattern));
+        }
+        command.append("; do if [ -e \"$f\" ]; then set -- \"$@\" \"$f\"; fi; done");
+        command.append(" && if [ $# -gt 0 ]; then tar czf - \"$@\"; fi");
+
+        ChannelExec execChannel = null;
+
+        try {
+            execChannel = (ChannelExec) session.openChannel("exec");
+            execChannel.setCommand(command.toString());
+            execChannel.setErrStream(new ByteArrayOutputStream());
+
+            InputStream in = new BufferedInputStream(execChannel.getInputStream());
+
+            execChannel.connect(CONNECTION_TIMEOUT_MS);
+
+            // nothing is sent, if no file is found.
+            in.mark(1);
+            boolean hasData = in.read() >= 0;
+            in.reset();
+
+            if (hasData) {
+                files.addAll(FileTar.readTarGz(in, localDir));
+            }
+
+            // the end of gzip is not read by tar.
+            readAll(in);
+
+            int exitStatus = waitForExit(execChannel);
+            System.out.println("Downloaded " + files.size() + " files as tar.gz, with exit status: " + exitStatus);
+
+            return files;
+
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+            }
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        int nbyte = 0;
+        while ((nbyte = in.read(buffer)) >= 0) {
+            output.write(buffer, 0, nbyte);
+        }
+
+        return output.toString().trim();
+    }
+
+    private static int waitForExit(ChannelExec execChannel) {
+        while (!execChannel.isClosed()) {
+            try {
+                Thread.sleep(CLOSING_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return execChannel.getExitStatus();
+    }
+}